@@ -0,0 +1,109 @@
+
+/****************************************************************************************
+ * @file TableOperators.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.util.Random;
+
+/****************************************************************************************
+ * This class implements the benchmarked operations (see bench.Operators) over MovieDB
+ * tables generated by MovieGen: movie, cinema (half of it overlapping movie) and
+ * studio.  The key cardinality is the number of studios, so it sets how many movies
+ * match each studio in the equi-joins; studioName is Zipf distributed, as in
+ * MovieGen's default.  The tables are named bench*, so saving them does not overwrite
+ * MovieDB's.
+ */
+public class TableOperators
+        implements bench.Operators {
+    private static final String MOVIE_ATTRS = "title year length genre studioName producerNo";
+    private static final String MOVIE_DOMAINS = "String Integer Integer String String Integer";
+
+    private Table movie, cinema, studio, inserted;
+    private Table.MapType mType;
+    private KeyType someKey;
+    private String someStudio;
+    private int next = 0;
+
+    @Override
+    public void setUp(int rows, int keys, String mapType, long seed) {
+        mType = Table.MapType.valueOf(mapType);
+        var gen = new MovieGen(seed, rows).studios(keys).overlap(0.5);
+
+        studio = new Table("benchStudio", "name address presNo", "String String Integer", "name", mType);
+        studio.insertAll(gen.studioRows());
+        movie = new Table("benchMovie", MOVIE_ATTRS, MOVIE_DOMAINS, "title year", mType);
+        movie.insertAll(gen.movieRows());
+        cinema = new Table("benchCinema", MOVIE_ATTRS, MOVIE_DOMAINS, "title year", mType);
+        cinema.insertAll(gen.cinemaRows());
+
+        var probe = movie.getTuples().get(new Random(seed).nextInt(rows));
+        someKey = new KeyType(probe[0], probe[1]);
+        someStudio = (String) probe[4];
+        movie.save();
+    } // setUp
+
+    @Override
+    public void resetInsert() {
+        inserted = new Table("benchInsert", MOVIE_ATTRS, MOVIE_DOMAINS, "title year", mType);
+    } // resetInsert
+
+    @Override
+    public Object insert() {
+        var n = next++;
+        return inserted.insert(new Comparable[]{"New" + n, 1900 + n % 120, 90, "drama", "Studio0", n});
+    }
+
+    @Override
+    public Object selectPredicate() {
+        return movie.select(t -> t[4].equals(someStudio));
+    }
+
+    @Override
+    public Object selectKey() {
+        return movie.select(someKey);
+    }
+
+    @Override
+    public Object project() {
+        return movie.project("title year");
+    }
+
+    @Override
+    public Object union() {
+        return movie.union(cinema);
+    }
+
+    @Override
+    public Object minus() {
+        return movie.minus(cinema);
+    }
+
+    @Override
+    public Object join() {
+        return movie.join("studioName", "name", studio);
+    }
+
+    @Override
+    public Object hJoin() {
+        return movie.h_join("studioName", "name", studio);
+    }
+
+    @Override
+    public Object naturalJoin() {
+        return movie.join(cinema);
+    }
+
+    @Override
+    public Object save() {
+        movie.save();
+        return movie;
+    }
+
+    @Override
+    public Object load() {
+        return Table.load(movie.getName());
+    }
+
+} // TableOperators class
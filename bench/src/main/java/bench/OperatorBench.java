@@ -0,0 +1,110 @@
+
+/****************************************************************************************
+ * @file OperatorBench.java
+ *
+ * @author  Sequel To SQL
+ */
+
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/****************************************************************************************
+ * JMH benchmarks of every relational operator, for each combination of table size, key
+ * cardinality (the number of distinct studios movies join to) and index map type.  The
+ * data is generated from a fixed seed, so runs before and after a change compare the
+ * same tables.
+ *
+ * #usage sbt "bench/jmh:run -p rows=100000 -p mapType=BPTREE_MAP OperatorBench.selectKey"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class OperatorBench {
+    /**
+     * The seed for generating the tables.
+     */
+    private static final long SEED = 4370;
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    @Param({"10", "1000"})
+    public int keys;
+
+    @Param({"NO_MAP", "TREE_MAP", "LINHASH_MAP", "BPTREE_MAP"})
+    public String mapType;
+
+    private Operators ops;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ops = Operators.create(rows, keys, mapType, SEED);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetInsert() {
+        ops.resetInsert();
+    }
+
+    @Benchmark
+    public Object insert() {
+        return ops.insert();
+    }
+
+    @Benchmark
+    public Object selectPredicate() {
+        return ops.selectPredicate();
+    }
+
+    @Benchmark
+    public Object selectKey() {
+        return ops.selectKey();
+    }
+
+    @Benchmark
+    public Object project() {
+        return ops.project();
+    }
+
+    @Benchmark
+    public Object union() {
+        return ops.union();
+    }
+
+    @Benchmark
+    public Object minus() {
+        return ops.minus();
+    }
+
+    @Benchmark
+    public Object join() {
+        return ops.join();
+    }
+
+    @Benchmark
+    public Object hJoin() {
+        return ops.hJoin();
+    }
+
+    @Benchmark
+    public Object naturalJoin() {
+        return ops.naturalJoin();
+    }
+
+    @Benchmark
+    public Object save() {
+        return ops.save();
+    }
+
+    @Benchmark
+    public Object load() {
+        return ops.load();
+    }
+
+} // OperatorBench class
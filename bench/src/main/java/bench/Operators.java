@@ -0,0 +1,78 @@
+
+/****************************************************************************************
+ * @file Operators.java
+ *
+ * @author  Sequel To SQL
+ */
+
+package bench;
+
+/****************************************************************************************
+ * The operations the benchmarks time.  JMH only accepts benchmark classes in a named
+ * package, and classes in a named package cannot refer to the engine's classes (which
+ * are in the default package), so the benchmarks call the engine through this
+ * interface, implemented in the default package by TableOperators.  One interface call
+ * per operation costs nanoseconds, far below the operations themselves.
+ */
+public interface Operators {
+
+    /************************************************************************************
+     * Make the implementation over freshly generated tables.
+     *
+     * @param rows     the number of movie tuples
+     * @param keys     the number of distinct join (studio) values
+     * @param mapType  the name of the Table.MapType for every table's index
+     * @param seed     the seed for generating the data
+     * @return the operations
+     */
+    static Operators create(int rows, int keys, String mapType, long seed) {
+        try {
+            var impl = Class.forName("TableOperators").asSubclass(Operators.class);
+            var ops = impl.getDeclaredConstructor().newInstance();
+            ops.setUp(rows, keys, mapType, seed);
+            return ops;
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("cannot make TableOperators", ex);
+        } // try
+    } // create
+
+    /** Generate the tables. */
+    void setUp(int rows, int keys, String mapType, long seed);
+
+    /** Empty the table that insert adds to. */
+    void resetInsert();
+
+    /** Insert one new movie. */
+    Object insert();
+
+    /** Select movies of one studio with a lambda predicate. */
+    Object selectPredicate();
+
+    /** Select one movie by its key. */
+    Object selectKey();
+
+    /** Project movies onto (title, year). */
+    Object project();
+
+    /** Union of movie and cinema. */
+    Object union();
+
+    /** Difference of movie and cinema. */
+    Object minus();
+
+    /** Nested loop equi-join of movie and studio on the studio name. */
+    Object join();
+
+    /** Hash equi-join of movie and studio. */
+    Object hJoin();
+
+    /** Natural join of movie and cinema. */
+    Object naturalJoin();
+
+    /** Save movie to disk. */
+    Object save();
+
+    /** Load movie from disk. */
+    Object load();
+
+} // Operators interface
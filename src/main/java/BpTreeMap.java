@@ -0,0 +1,668 @@
+
+/****************************************************************************************
+ * @file BpTreeMap.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.io.Serializable;
+import java.util.*;
+
+/****************************************************************************************
+ * This class provides B+Tree maps.  B+Trees are used as multi-level index structures that
+ * provide efficient access for both point queries and range queries.  All key-value pairs
+ * live in the leaves, which are linked left to right so that a range scan descends the
+ * tree once and then walks the leaf chain.  Deletes are lazy: entries are removed from
+ * their leaf, but nodes are never merged.
+ *
+ * @param <K>  the type of the keys contained in the map
+ * @param <V>  the type of the values assigned to keys
+ */
+public class BpTreeMap<K extends Comparable<K>, V>
+        extends AbstractMap<K, V>
+        implements SortedMap<K, V>, Serializable {
+    /**
+     * The default maximum fan-out (number of keys per node).
+     */
+    private static final int DEFAULT_ORDER = 128;
+
+    /************************************************************************************
+     * This inner class defines nodes that are stored in the B+Tree map.  A leaf holds
+     * keys and values (and a link to the next leaf); an internal node holds keys and
+     * children, where child i holds keys less than key i.
+     */
+    private static class Node
+            implements Serializable {
+        final boolean isLeaf;
+        int nKeys;
+        final Object[] key;
+        final Object[] ref;
+        Node next;
+
+        Node(int order, boolean _isLeaf) {
+            isLeaf = _isLeaf;
+            key = new Object[order];
+            ref = new Object[_isLeaf ? order : order + 1];
+        } // constructor
+    } // Node inner class
+
+    /**
+     * The maximum number of keys per node.
+     */
+    private final int order;
+
+    /**
+     * The root of the B+Tree.
+     */
+    private Node root;
+
+    /**
+     * The leftmost leaf (start of the leaf chain).
+     */
+    private Node firstLeaf;
+
+    /**
+     * The number of key-value pairs in the map.
+     */
+    private int size = 0;
+
+    /************************************************************************************
+     * Construct an empty B+Tree map with the default order.
+     */
+    public BpTreeMap() {
+        this(DEFAULT_ORDER);
+    } // constructor
+
+    /************************************************************************************
+     * Construct an empty B+Tree map with the given order (maximum keys per node).
+     *
+     * @param _order  the order of the tree (at least 3)
+     */
+    public BpTreeMap(int _order) {
+        order = Math.max(3, _order);
+        root = firstLeaf = new Node(order, true);
+    } // constructor
+
+    /************************************************************************************
+     * Return null to indicate that the map uses the natural ordering of its keys.
+     *
+     * @return null
+     */
+    @Override
+    public Comparator<? super K> comparator() {
+        return null;
+    } // comparator
+
+    /************************************************************************************
+     * Return a set containing all the entries as pairs of keys and values, in key order.
+     *
+     * @return the set view of the map
+     */
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new Range(null, true, null, true).entrySet();
+    } // entrySet
+
+    /************************************************************************************
+     * Given the key, look up the value in the B+Tree map.
+     *
+     * @param key  the key used for look up
+     * @return the value associated with the key, or null if not found
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        var leaf = findLeaf((K) key);
+        var i = find(leaf, (K) key);
+        return (i >= 0) ? (V) leaf.ref[i] : null;
+    } // get
+
+    /************************************************************************************
+     * Determine whether the B+Tree map contains the given key.
+     *
+     * @param key  the key to look for
+     * @return whether the key is present
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean containsKey(Object key) {
+        return find(findLeaf((K) key), (K) key) >= 0;
+    } // containsKey
+
+    /************************************************************************************
+     * Put the key-value pair in the B+Tree map, splitting nodes on the way back up as
+     * needed.
+     *
+     * @param key    the key to insert
+     * @param value  the value to insert
+     * @return the old value associated with the key, or null if there was none
+     */
+    @Override
+    public V put(K key, V value) {
+        if (key == null) throw new NullPointerException("BpTreeMap does not permit null keys");
+        var result = new Object[2];
+        var sibling = insert(root, key, value, result);
+        if (sibling != null) {
+            var newRoot = new Node(order, false);
+            newRoot.key[0] = result[1];
+            newRoot.ref[0] = root;
+            newRoot.ref[1] = sibling;
+            newRoot.nKeys = 1;
+            root = newRoot;
+        } // if
+        @SuppressWarnings("unchecked")
+        var old = (V) result[0];
+        return old;
+    } // put
+
+    /************************************************************************************
+     * Remove the key (and its value) from its leaf.  Nodes are not merged.
+     *
+     * @param key  the key to remove
+     * @return the value that was associated with the key, or null if there was none
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        var leaf = findLeaf((K) key);
+        var i = find(leaf, (K) key);
+        if (i < 0) return null;
+        var old = (V) leaf.ref[i];
+        System.arraycopy(leaf.key, i + 1, leaf.key, i, leaf.nKeys - i - 1);
+        System.arraycopy(leaf.ref, i + 1, leaf.ref, i, leaf.nKeys - i - 1);
+        leaf.nKeys--;
+        leaf.key[leaf.nKeys] = null;
+        leaf.ref[leaf.nKeys] = null;
+        size--;
+        return old;
+    } // remove
+
+    /************************************************************************************
+     * Copy every entry of m into the B+Tree map.  An empty map given a SortedMap in
+     * natural order is built bottom-up (see bulkLoad) instead of by repeated puts.
+     *
+     * @param m  the entries to add
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        if (size == 0 && m instanceof SortedMap && ((SortedMap<?, ?>) m).comparator() == null) {
+            bulkLoad(m.entrySet().iterator());
+        } else {
+            super.putAll(m);
+        } // if
+    } // putAll
+
+    /************************************************************************************
+     * Build the B+Tree bottom-up from entries in strictly increasing key order: the
+     * leaves are filled left to right, then each level of internal nodes is built over
+     * the level below, taking the smallest key of each child as its separator.  Nodes
+     * are filled to three quarters, leaving room for later inserts.  This takes linear
+     * time, against O(n log n) for repeated puts, and touches each node once.
+     *
+     * @param sorted  the entries, in strictly increasing key order
+     * @throws IllegalStateException if the map is not empty
+     * @throws IllegalArgumentException if the keys are not strictly increasing
+     */
+    public void bulkLoad(Iterator<? extends Map.Entry<? extends K, ? extends V>> sorted) {
+        if (size != 0) throw new IllegalStateException("BpTreeMap.bulkLoad: the map is not empty");
+        var fill = Math.max(2, order * 3 / 4);
+
+        // fill the leaves, remembering each node's smallest key
+        var level = new ArrayList<Node>();
+        var mins = new ArrayList<Object>();
+        Node leaf = null;
+        K prev = null;
+        while (sorted.hasNext()) {
+            var e = sorted.next();
+            K k = e.getKey();
+            if (prev != null && k.compareTo(prev) <= 0)
+                throw new IllegalArgumentException("BpTreeMap.bulkLoad: keys are not increasing at " + k);
+            if (leaf == null || leaf.nKeys == fill) {
+                var next = new Node(order, true);
+                if (leaf != null) leaf.next = next;
+                leaf = next;
+                level.add(leaf);
+                mins.add(k);
+            } // if
+            leaf.key[leaf.nKeys] = k;
+            leaf.ref[leaf.nKeys++] = e.getValue();
+            size++;
+            prev = k;
+        } // while
+        if (level.isEmpty()) return;
+        firstLeaf = level.get(0);
+
+        // build each level of internal nodes over the one below
+        while (level.size() > 1) {
+            var parents = new ArrayList<Node>();
+            var parentMins = new ArrayList<Object>();
+            Node parent = null;
+            for (var i = 0; i < level.size(); i++) {
+                if (parent == null || parent.nKeys == fill) {
+                    parent = new Node(order, false);
+                    parent.ref[0] = level.get(i);
+                    parents.add(parent);
+                    parentMins.add(mins.get(i));
+                } else {
+                    parent.key[parent.nKeys] = mins.get(i);
+                    parent.ref[++parent.nKeys] = level.get(i);
+                } // if
+            } // for
+            level = parents;
+            mins = parentMins;
+        } // while
+        root = level.get(0);
+    } // bulkLoad
+
+    /************************************************************************************
+     * Remove all the entries from the B+Tree map.
+     */
+    @Override
+    public void clear() {
+        root = firstLeaf = new Node(order, true);
+        size = 0;
+    } // clear
+
+    /************************************************************************************
+     * Return the size (number of key-value pairs) of the B+Tree map.
+     *
+     * @return the size of the map
+     */
+    @Override
+    public int size() {
+        return size;
+    } // size
+
+    /************************************************************************************
+     * Return the first (smallest) key in the B+Tree map.
+     *
+     * @return the first key
+     */
+    @Override
+    public K firstKey() {
+        return new Range(null, true, null, true).firstKey();
+    } // firstKey
+
+    /************************************************************************************
+     * Return the last (largest) key in the B+Tree map.
+     *
+     * @return the last key
+     */
+    @Override
+    public K lastKey() {
+        return new Range(null, true, null, true).lastKey();
+    } // lastKey
+
+    /************************************************************************************
+     * Return the portion of the B+Tree map whose keys are strictly less than toKey.
+     *
+     * @param toKey  the high key (exclusive)
+     * @return the submap view
+     */
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return new Range(null, true, toKey, false);
+    } // headMap
+
+    /************************************************************************************
+     * Return the portion of the B+Tree map whose keys are greater than or equal to
+     * fromKey.
+     *
+     * @param fromKey  the low key (inclusive)
+     * @return the submap view
+     */
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return new Range(fromKey, true, null, true);
+    } // tailMap
+
+    /************************************************************************************
+     * Return the portion of the B+Tree map whose keys are in [fromKey, toKey).
+     *
+     * @param fromKey  the low key (inclusive)
+     * @param toKey    the high key (exclusive)
+     * @return the submap view
+     */
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        return new Range(fromKey, true, toKey, false);
+    } // subMap
+
+    /************************************************************************************
+     * Return the portion of the B+Tree map whose keys lie between fromKey and toKey.  A
+     * null bound means the range is unbounded on that side.
+     *
+     * #usage index.subMap (new KeyType ("Rambo", 1978), true, new KeyType ("Rocky", 1985), true)
+     *
+     * @param fromKey    the low key (null for no lower bound)
+     * @param fromIncl   whether the low key is included
+     * @param toKey      the high key (null for no upper bound)
+     * @param toIncl     whether the high key is included
+     * @return the submap view
+     */
+    public SortedMap<K, V> subMap(K fromKey, boolean fromIncl, K toKey, boolean toIncl) {
+        return new Range(fromKey, fromIncl, toKey, toIncl);
+    } // subMap
+
+    //----------------------------------------------------------------------------------
+    // Private Methods
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Find the leaf node that would contain the given key.
+     *
+     * @param key  the key to find
+     * @return the leaf node
+     */
+    @SuppressWarnings("unchecked")
+    private Node findLeaf(K key) {
+        var n = root;
+        while (!n.isLeaf) n = (Node) n.ref[childIndex(n, key)];
+        return n;
+    } // findLeaf
+
+    /************************************************************************************
+     * Return the index of the child of internal node n to descend to for the given key.
+     */
+    @SuppressWarnings("unchecked")
+    private static <K extends Comparable<K>> int childIndex(Node n, K key) {
+        int lo = 0, hi = n.nKeys;
+        while (lo < hi) {
+            var mid = (lo + hi) >>> 1;
+            if (key.compareTo((K) n.key[mid]) < 0) hi = mid;
+            else lo = mid + 1;
+        } // while
+        return lo;
+    } // childIndex
+
+    /************************************************************************************
+     * Binary search a node for the key, returning its position if found, otherwise
+     * (-(insertion point) - 1).
+     */
+    @SuppressWarnings("unchecked")
+    private static <K extends Comparable<K>> int find(Node n, K key) {
+        int lo = 0, hi = n.nKeys - 1;
+        while (lo <= hi) {
+            var mid = (lo + hi) >>> 1;
+            var cmp = ((K) n.key[mid]).compareTo(key);
+            if (cmp < 0) lo = mid + 1;
+            else if (cmp > 0) hi = mid - 1;
+            else return mid;
+        } // while
+        return -(lo + 1);
+    } // find
+
+    /************************************************************************************
+     * Return the largest key in the subtree rooted at n that is below hi, descending
+     * along the right edge of the range.  A subtree left empty by deletes is skipped by
+     * stepping back to its left sibling.
+     *
+     * @param n       the root of the subtree
+     * @param hi      the high key (null for no upper bound)
+     * @param hiIncl  whether the high key is included
+     * @return the largest such key, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    private K lastBelow(Node n, K hi, boolean hiIncl) {
+        if (n.isLeaf) {
+            var i = n.nKeys - 1;
+            if (hi != null) {
+                i = find(n, hi);
+                i = (i >= 0) ? (hiIncl ? i : i - 1) : -(i + 1) - 1;
+            } // if
+            return (i >= 0) ? (K) n.key[i] : null;
+        } // if
+        for (var c = (hi == null) ? n.nKeys : childIndex(n, hi); c >= 0; c--) {
+            var last = lastBelow((Node) n.ref[c], hi, hiIncl);
+            if (last != null) return last;
+        } // for
+        return null;
+    } // lastBelow
+
+    /************************************************************************************
+     * Recursively insert the key-value pair into the subtree rooted at n.  If n splits,
+     * return the new right sibling and store the separator key in result[1].  The old
+     * value (if the key was already present) is stored in result[0].
+     *
+     * @param n       the root of the subtree
+     * @param key     the key to insert
+     * @param value   the value to insert
+     * @param result  holder for the old value and the separator key
+     * @return the new right sibling of n, or null if n did not split
+     */
+    private Node insert(Node n, K key, V value, Object[] result) {
+        if (n.isLeaf) {
+            var i = find(n, key);
+            if (i >= 0) {
+                result[0] = n.ref[i];
+                n.ref[i] = value;
+                return null;
+            } // if
+            size++;
+            return insertAt(n, -(i + 1), key, value, null, result);
+        } // if
+
+        var c = childIndex(n, key);
+        var sibling = insert((Node) n.ref[c], key, value, result);
+        if (sibling == null) return null;
+        return insertAt(n, c, result[1], null, sibling, result);
+    } // insert
+
+    /************************************************************************************
+     * Insert a key (with a value for leaves, or a right child for internal nodes) at
+     * position i in node n, splitting n in half if it is full.
+     */
+    private Node insertAt(Node n, int i, Object key, Object value, Node child, Object[] result) {
+        if (n.nKeys < order) {
+            shiftIn(n, i, key, value, child);
+            return null;
+        } // if
+
+        // copy into an overfull scratch node, then divide between n and a new sibling
+        var all = new Node(order + 1, n.isLeaf);
+        System.arraycopy(n.key, 0, all.key, 0, n.nKeys);
+        System.arraycopy(n.ref, 0, all.ref, 0, n.isLeaf ? n.nKeys : n.nKeys + 1);
+        all.nKeys = n.nKeys;
+        shiftIn(all, i, key, value, child);
+
+        var sibling = new Node(order, n.isLeaf);
+        var half = all.nKeys / 2;
+        Arrays.fill(n.key, null);
+        Arrays.fill(n.ref, null);
+        if (n.isLeaf) {
+            System.arraycopy(all.key, 0, n.key, 0, half);
+            System.arraycopy(all.ref, 0, n.ref, 0, half);
+            n.nKeys = half;
+            sibling.nKeys = all.nKeys - half;
+            System.arraycopy(all.key, half, sibling.key, 0, sibling.nKeys);
+            System.arraycopy(all.ref, half, sibling.ref, 0, sibling.nKeys);
+            sibling.next = n.next;
+            n.next = sibling;
+            result[1] = sibling.key[0];
+        } else {
+            System.arraycopy(all.key, 0, n.key, 0, half);
+            System.arraycopy(all.ref, 0, n.ref, 0, half + 1);
+            n.nKeys = half;
+            sibling.nKeys = all.nKeys - half - 1;
+            System.arraycopy(all.key, half + 1, sibling.key, 0, sibling.nKeys);
+            System.arraycopy(all.ref, half + 1, sibling.ref, 0, sibling.nKeys + 1);
+            result[1] = all.key[half];
+        } // if
+        return sibling;
+    } // insertAt
+
+    /************************************************************************************
+     * Shift the entries of a non-full node right and place the new entry at position i.
+     */
+    private static void shiftIn(Node n, int i, Object key, Object value, Node child) {
+        System.arraycopy(n.key, i, n.key, i + 1, n.nKeys - i);
+        n.key[i] = key;
+        if (n.isLeaf) {
+            System.arraycopy(n.ref, i, n.ref, i + 1, n.nKeys - i);
+            n.ref[i] = value;
+        } else {
+            System.arraycopy(n.ref, i + 1, n.ref, i + 2, n.nKeys - i);
+            n.ref[i + 1] = child;
+        } // if
+        n.nKeys++;
+    } // shiftIn
+
+    /************************************************************************************
+     * This inner class provides a view of the entries whose keys fall in a range.  The
+     * range is scanned by descending to the first qualifying leaf and following the
+     * leaf links.
+     */
+    private class Range
+            extends AbstractMap<K, V>
+            implements SortedMap<K, V> {
+        private final K lo;
+        private final boolean loIncl;
+        private final K hi;
+        private final boolean hiIncl;
+
+        Range(K _lo, boolean _loIncl, K _hi, boolean _hiIncl) {
+            lo = _lo;
+            loIncl = _loIncl;
+            hi = _hi;
+            hiIncl = _hiIncl;
+        } // constructor
+
+        private boolean tooLow(K k) {
+            if (lo == null) return false;
+            var cmp = k.compareTo(lo);
+            return cmp < 0 || (cmp == 0 && !loIncl);
+        } // tooLow
+
+        private boolean tooHigh(K k) {
+            if (hi == null) return false;
+            var cmp = k.compareTo(hi);
+            return cmp > 0 || (cmp == 0 && !hiIncl);
+        } // tooHigh
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return new RangeIterator();
+                }
+
+                @Override
+                public int size() {
+                    if (lo == null && hi == null) return size;
+                    var n = 0;
+                    for (var it = iterator(); it.hasNext(); it.next()) n++;
+                    return n;
+                }
+            };
+        } // entrySet
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(Object key) {
+            var k = (K) key;
+            return (tooLow(k) || tooHigh(k)) ? null : BpTreeMap.this.get(key);
+        } // get
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return null;
+        } // comparator
+
+        @Override
+        public SortedMap<K, V> subMap(K fromKey, K toKey) {
+            if (fromKey.compareTo(toKey) > 0) throw new IllegalArgumentException("fromKey > toKey");
+            return new Range(bound(fromKey, true), true, bound(toKey, false), false);
+        } // subMap
+
+        @Override
+        public SortedMap<K, V> headMap(K toKey) {
+            return new Range(lo, loIncl, bound(toKey, false), false);
+        } // headMap
+
+        @Override
+        public SortedMap<K, V> tailMap(K fromKey) {
+            return new Range(bound(fromKey, true), true, hi, hiIncl);
+        } // tailMap
+
+        /****************************************************************************
+         * Check that a bound of a view of this view lies within this view (as TreeMap
+         * does): an included bound must be in the range, an excluded one may also equal
+         * either end of it.
+         *
+         * @param k     the bound
+         * @param incl  whether the bound is included in the new view
+         * @return the bound
+         * @throws IllegalArgumentException if the bound is outside this view
+         */
+        private K bound(K k, boolean incl) {
+            var inside = incl ? !tooLow(k) && !tooHigh(k)
+                              : (lo == null || k.compareTo(lo) >= 0) && (hi == null || k.compareTo(hi) <= 0);
+            if (!inside) throw new IllegalArgumentException("key out of range: " + k);
+            return k;
+        } // bound
+
+        @Override
+        public K firstKey() {
+            var it = new RangeIterator();
+            if (!it.hasNext()) throw new NoSuchElementException();
+            return it.next().getKey();
+        } // firstKey
+
+        @Override
+        public K lastKey() {
+            var last = lastBelow(root, hi, hiIncl);
+            if (last == null || tooLow(last)) throw new NoSuchElementException();
+            return last;
+        } // lastKey
+
+        /********************************************************************************
+         * This inner class walks the leaf chain from the first key in the range.
+         */
+        private class RangeIterator
+                implements Iterator<Map.Entry<K, V>> {
+            private Node leaf;
+            private int i;
+
+            @SuppressWarnings("unchecked")
+            RangeIterator() {
+                if (lo == null) {
+                    leaf = firstLeaf;
+                    i = 0;
+                } else {
+                    leaf = findLeaf(lo);
+                    i = find(leaf, lo);
+                    i = (i >= 0) ? (loIncl ? i : i + 1) : -(i + 1);
+                } // if
+                advance();
+            } // constructor
+
+            /** Skip past exhausted (or empty) leaves and stop at the end of the range. */
+            @SuppressWarnings("unchecked")
+            private void advance() {
+                while (leaf != null && i >= leaf.nKeys) {
+                    leaf = leaf.next;
+                    i = 0;
+                } // while
+                if (leaf != null && tooHigh((K) leaf.key[i])) leaf = null;
+            } // advance
+
+            @Override
+            public boolean hasNext() {
+                return leaf != null;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Map.Entry<K, V> next() {
+                if (leaf == null) throw new NoSuchElementException();
+                var e = new AbstractMap.SimpleImmutableEntry<>((K) leaf.key[i], (V) leaf.ref[i]);
+                i++;
+                advance();
+                return e;
+            }
+        } // RangeIterator inner class
+
+    } // Range inner class
+
+} // BpTreeMap class
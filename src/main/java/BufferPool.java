@@ -0,0 +1,369 @@
+
+/****************************************************************************************
+ * @file BufferPool.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/****************************************************************************************
+ * This class caches pages of PageFiles in a fixed number of frames, so that tables much
+ * larger than the heap can be read and written with a bounded memory footprint.
+ * <p>
+ * A page must be pinned while it is in use and unpinned (saying whether it was changed)
+ * when done.  When a page is needed that is not resident, a victim frame is chosen by
+ * the clock algorithm: the clock hand sweeps the frames, skipping pinned ones and
+ * giving recently used ones (reference bit set) a second chance.  A dirty victim is
+ * written back before its frame is reused.
+ * <p>
+ * Disk I/O is done without holding the pool's lock, so threads reading resident pages
+ * (or other pages) are not held up by one thread's read.  A frame being filled is
+ * latched (reading): threads pinning its page wait for the latch to clear.  A page
+ * being written back from an evicted frame is not read again until the write is done.
+ */
+class BufferPool {
+    /**
+     * A frame: one page-sized buffer and the bookkeeping for the page it holds.
+     */
+    private static class Frame {
+        final ByteBuffer buf;
+        PageFile file;
+        int pageNo = -1;
+        int pins;
+        boolean ref;
+        boolean dirty;
+        boolean reading;
+
+        Frame(int pageSize) {
+            buf = ByteBuffer.allocate(pageSize);
+        }
+    } // Frame class
+
+    /**
+     * Identifies a page: the file holding it and its number within the file.
+     */
+    private static class PageId {
+        final PageFile file;
+        final int pageNo;
+
+        PageId(PageFile _file, int _pageNo) {
+            file = _file;
+            pageNo = _pageNo;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof PageId)) return false;
+            var id = (PageId) obj;
+            return file == id.file && pageNo == id.pageNo;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(file), pageNo);
+        }
+    } // PageId class
+
+    /**
+     * The frames.
+     */
+    private final Frame[] frames;
+
+    /**
+     * The size of every page (and frame).
+     */
+    private final int pageSize;
+
+    /**
+     * Maps each resident page to its frame.
+     */
+    private final Map<PageId, Frame> pageTable = new HashMap<>();
+
+    /**
+     * Pages evicted while dirty whose write-back is still in progress.
+     */
+    private final Set<PageId> writingBack = new HashSet<>();
+
+    /**
+     * The position of the clock hand.
+     */
+    private int hand = 0;
+
+    /**
+     * Statistics: requests served from a frame, requests that read the file, frames
+     * reused for another page, and pages written back.
+     */
+    private long hits, misses, evictions, writes;
+
+    /************************************************************************************
+     * Construct a buffer pool.
+     *
+     * @param nFrames    the number of frames (the most pages held in memory at once)
+     * @param _pageSize  the size of each page
+     */
+    BufferPool(int nFrames, int _pageSize) {
+        if (nFrames < 1) throw new IllegalArgumentException("BufferPool: need at least one frame");
+        pageSize = _pageSize;
+        frames = new Frame[nFrames];
+        for (var i = 0; i < nFrames; i++) frames[i] = new Frame(pageSize);
+    } // constructor
+
+    /************************************************************************************
+     * Pin page pageNo of file, reading it in if it is not resident.  The returned buffer
+     * stays valid until the page is unpinned; readers should use absolute gets so that
+     * a page may be pinned by several threads at once.  The frame is claimed under the
+     * pool's lock, and the page is read (after writing back the frame's old page, if
+     * dirty) outside it.
+     *
+     * @param file    the file holding the page
+     * @param pageNo  the page's number
+     * @return the buffer holding the page
+     * @throws IllegalStateException if every frame is pinned
+     */
+    ByteBuffer pin(PageFile file, int pageNo) {
+        if (file.pageSize() != pageSize)
+            throw new IllegalArgumentException("BufferPool: page size " + file.pageSize() + " != " + pageSize);
+
+        var id = new PageId(file, pageNo);
+        var interrupted = false;
+        Frame f;
+        PageId old = null;
+        synchronized (this) {
+            for (; ; ) {
+                f = pageTable.get(id);
+                if (f != null) {
+                    hits++;
+                    f.pins++;
+                    f.ref = true;
+                    while (f.reading) interrupted |= await();
+                    if (f.file == file && f.pageNo == pageNo) {
+                        if (interrupted) Thread.currentThread().interrupt();
+                        return f.buf;
+                    } // if
+                    f.pins--;                           // the read failed: try again
+                } else if (writingBack.contains(id)) {
+                    interrupted |= await();
+                } else {
+                    break;
+                } // if
+            } // for
+
+            misses++;
+            f = victim();
+            if (f.file != null && f.dirty) {
+                old = new PageId(f.file, f.pageNo);
+                writingBack.add(old);
+            } // if
+            f.file = file;
+            f.pageNo = pageNo;
+            f.dirty = false;
+            f.pins = 1;
+            f.ref = true;
+            f.reading = true;
+            pageTable.put(id, f);
+        } // synchronized
+        if (interrupted) Thread.currentThread().interrupt();
+
+        var written = false;
+        try {
+            if (old != null) {
+                old.file.write(old.pageNo, f.buf);
+                written = true;
+            } // if
+            file.read(pageNo, f.buf);
+        } catch (RuntimeException ex) {
+            synchronized (this) {
+                pageTable.remove(id);
+                f.file = null;
+                f.pageNo = -1;
+                f.pins--;
+                endRead(f, old, written);
+            } // synchronized
+            throw ex;
+        } // try
+        synchronized (this) {
+            endRead(f, old, written);
+        } // synchronized
+        return f.buf;
+    } // pin
+
+    /************************************************************************************
+     * Unpin page pageNo of file.
+     *
+     * @param file    the file holding the page
+     * @param pageNo  the page's number
+     * @param dirty   whether the page was changed while pinned
+     */
+    synchronized void unpin(PageFile file, int pageNo, boolean dirty) {
+        var f = pageTable.get(new PageId(file, pageNo));
+        if (f == null || f.pins == 0)
+            throw new IllegalStateException("BufferPool: page " + pageNo + " is not pinned");
+        f.pins--;
+        f.dirty |= dirty;
+    } // unpin
+
+    /************************************************************************************
+     * Write every dirty page of file back to it.
+     *
+     * @param file  the file to flush
+     */
+    void flush(PageFile file) {
+        // pin the dirty pages (so they stay put) and write them without holding the lock
+        var dirty = new ArrayList<Frame>();
+        synchronized (this) {
+            for (var f : frames) {
+                if (f.file == file && f.dirty && !f.reading) {
+                    f.dirty = false;
+                    f.pins++;
+                    dirty.add(f);
+                } // if
+            } // for
+        } // synchronized
+
+        RuntimeException error = null;
+        var done = 0;
+        for (var f : dirty) {
+            try {
+                file.write(f.pageNo, f.buf);
+                done++;
+            } catch (RuntimeException ex) {
+                error = ex;
+                break;
+            } // try
+        } // for
+
+        synchronized (this) {
+            for (var i = 0; i < dirty.size(); i++) {
+                var f = dirty.get(i);
+                f.pins--;
+                if (i >= done) f.dirty = true;
+            } // for
+            writes += done;
+        } // synchronized
+        if (error != null) throw error;
+    } // flush
+
+    /************************************************************************************
+     * Drop every page of file from the pool without writing it back (e.g., before the
+     * file is deleted).
+     *
+     * @param file  the file whose pages are dropped
+     */
+    synchronized void discard(PageFile file) {
+        for (var f : frames) {
+            if (f.file == file) {
+                pageTable.remove(new PageId(f.file, f.pageNo));
+                f.file = null;
+                f.pageNo = -1;
+                f.pins = 0;
+                f.ref = false;
+                f.dirty = false;
+            } // if
+        } // for
+    } // discard
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    synchronized long writes() {
+        return writes;
+    }
+
+    int frames() {
+        return frames.length;
+    }
+
+    int pageSize() {
+        return pageSize;
+    }
+
+    /************************************************************************************
+     * Return the fraction of pin requests served without reading the file.
+     *
+     * @return the hit ratio (0 if nothing has been pinned)
+     */
+    synchronized double hitRatio() {
+        var total = hits + misses;
+        return (total == 0) ? 0.0 : (double) hits / total;
+    } // hitRatio
+
+    @Override
+    public synchronized String toString() {
+        return "BufferPool(frames = " + frames.length + ", hits = " + hits + ", misses = " + misses +
+                ", evictions = " + evictions + ", writes = " + writes + ")";
+    }
+
+    //----------------------------------------------------------------------------------
+    // Private Methods
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Choose a frame to hold a new page, by the clock algorithm, and remove its page
+     * from the page table.  The frame keeps its old page (and dirty bit) so the caller
+     * can write it back.
+     *
+     * @return the victim frame
+     */
+    private Frame victim() {
+        for (var step = 0; step < 2 * frames.length; step++) {
+            var f = frames[hand];
+            hand = (hand + 1) % frames.length;
+            if (f.pins > 0) continue;
+            if (f.ref) {
+                f.ref = false;
+                continue;
+            } // if
+
+            if (f.file != null) {
+                pageTable.remove(new PageId(f.file, f.pageNo));
+                evictions++;
+            } // if
+            return f;
+        } // for
+        throw new IllegalStateException("BufferPool: all " + frames.length + " frames are pinned");
+    } // victim
+
+    /************************************************************************************
+     * Release frame f's latch after its page was read (or failed to be), ending the
+     * write-back of its old page, and wake the threads waiting for either.
+     */
+    private void endRead(Frame f, PageId old, boolean written) {
+        if (old != null) writingBack.remove(old);
+        if (written) writes++;
+        f.reading = false;
+        notifyAll();
+    } // endRead
+
+    /************************************************************************************
+     * Wait (holding the lock) to be woken by the end of another thread's page I/O.
+     * Interrupts do not abandon the wait, since the caller may hold a pin, but are
+     * reported so the caller can restore the thread's interrupt status.
+     *
+     * @return whether the thread was interrupted
+     */
+    private boolean await() {
+        try {
+            wait();
+            return false;
+        } catch (InterruptedException ex) {
+            return true;
+        } // try
+    } // await
+
+} // BufferPool class
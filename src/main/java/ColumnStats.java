@@ -0,0 +1,258 @@
+
+/****************************************************************************************
+ * @file ColumnStats.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/****************************************************************************************
+ * This class summarizes the values of one column of a table, updated as tuples are
+ * inserted: the count of values and nulls, the minimum and maximum, a HyperLogLog
+ * sketch estimating the number of distinct values, and a uniform (reservoir) sample
+ * from which an equi-depth histogram is built when asked for.  Each takes constant
+ * space (about 12 KB per column) however many tuples are inserted.
+ */
+public class ColumnStats
+        implements Serializable {
+    /**
+     * The HyperLogLog sketch has 2^P registers (relative error about 1.04 / 2^(P/2), so
+     * under 2%).
+     */
+    private static final int P = 12, REGISTERS = 1 << P;
+
+    /**
+     * The number of values kept in the sample.
+     */
+    private static final int SAMPLE = 1024;
+
+    /**
+     * The most buckets an equi-depth histogram has.
+     */
+    private static final int BUCKETS = 32;
+
+    /**
+     * The numbers of non-null and null values added.
+     */
+    private long count = 0, nulls = 0;
+
+    /**
+     * The smallest and largest values added.
+     */
+    private Comparable min = null, max = null;
+
+    /**
+     * The HyperLogLog registers: for each bucket of hash values, the longest run of
+     * leading zeros (plus one) seen.
+     */
+    private final byte[] register = new byte[REGISTERS];
+
+    /**
+     * A uniform sample of the non-null values (the first count values while count is
+     * below SAMPLE).
+     */
+    private final Comparable[] sample = new Comparable[SAMPLE];
+
+    /**
+     * The state of the random number generator choosing which values are sampled.
+     */
+    private long random = 0x9E3779B97F4A7C15L;
+
+    /**
+     * The upper bounds of the histogram's buckets, or null if values were added since it
+     * was built.
+     */
+    private transient Comparable[] bounds = null;
+
+    /************************************************************************************
+     * Add a value of the column.
+     *
+     * @param v  the value (may be null)
+     */
+    @SuppressWarnings("unchecked")
+    synchronized void add(Comparable v) {
+        if (v == null) {
+            nulls++;
+            return;
+        } // if
+        if (min == null || v.compareTo(min) < 0) min = v;
+        if (max == null || v.compareTo(max) > 0) max = v;
+
+        var h = hash(v);
+        var bucket = (int) (h >>> (64 - P));
+        var rank = (byte) (Long.numberOfLeadingZeros(h << P | 1L << (P - 1)) + 1);
+        if (rank > register[bucket]) register[bucket] = rank;
+
+        if (count < SAMPLE) {
+            sample[(int) count] = v;
+        } else {
+            random ^= random << 13;
+            random ^= random >>> 7;
+            random ^= random << 17;
+            var j = Math.floorMod(random, count + 1);
+            if (j < SAMPLE) sample[(int) j] = v;
+        } // if
+        count++;
+        bounds = null;
+    } // add
+
+    /************************************************************************************
+     * Return the number of non-null values.
+     *
+     * @return the count
+     */
+    public synchronized long count() {
+        return count;
+    } // count
+
+    /************************************************************************************
+     * Return the number of null values.
+     *
+     * @return the null count
+     */
+    public synchronized long nulls() {
+        return nulls;
+    } // nulls
+
+    /************************************************************************************
+     * Return the smallest value, or null if there are none.
+     *
+     * @return the minimum
+     */
+    public synchronized Comparable min() {
+        return min;
+    } // min
+
+    /************************************************************************************
+     * Return the largest value, or null if there are none.
+     *
+     * @return the maximum
+     */
+    public synchronized Comparable max() {
+        return max;
+    } // max
+
+    /************************************************************************************
+     * Estimate the number of distinct non-null values, using the HyperLogLog estimator
+     * (with linear counting while few registers are set).
+     *
+     * @return the estimated number of distinct values
+     */
+    public synchronized long distinct() {
+        if (count == 0) return 0;
+        var sum = 0.0;
+        var zeros = 0;
+        for (var r : register) {
+            sum += 1.0 / (1L << r);
+            if (r == 0) zeros++;
+        } // for
+        var m = (double) REGISTERS;
+        var e = 0.7213 / (1 + 1.079 / m) * m * m / sum;
+        if (e <= 2.5 * m && zeros > 0) e = m * Math.log(m / zeros);
+        return Math.max(1, Math.min(count, Math.round(e)));
+    } // distinct
+
+    /************************************************************************************
+     * Return the equi-depth histogram of the values: the upper bound of each bucket,
+     * where each bucket holds about the same number of values.
+     *
+     * @return the bucket bounds in increasing order (empty if there are no values)
+     */
+    public synchronized Comparable[] histogram() {
+        if (bounds == null) {
+            var n = (int) Math.min(count, SAMPLE);
+            var sorted = Arrays.copyOf(sample, n);
+            Arrays.sort(sorted);
+            var b = Math.min(BUCKETS, n);
+            bounds = new Comparable[b];
+            for (var k = 0; k < b; k++) bounds[k] = sorted[(int) ((long) (k + 1) * n / b) - 1];
+        } // if
+        return bounds.clone();
+    } // histogram
+
+    /************************************************************************************
+     * Estimate the fraction of the column's values (nulls included) for which
+     * "value op v" holds.  Equality uses the distinct count (or the sample, for values
+     * common enough to appear in it more than once); ranges use the histogram.
+     *
+     * @param op  the comparison
+     * @param v   the value compared with
+     * @return the estimated selectivity, from 0 to 1
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized double selectivity(Expr.Op op, Comparable v) {
+        var total = count + nulls;
+        if (count == 0 || v == null || v.getClass() != min.getClass()) return (total == 0) ? 0 : 0.5;
+        var nonNull = (double) count / total;
+
+        double eq;
+        if (v.compareTo(min) < 0 || v.compareTo(max) > 0) {
+            eq = 0;
+        } else {
+            var n = (int) Math.min(count, SAMPLE);
+            var seen = 0;
+            for (var k = 0; k < n; k++) if (v.compareTo(sample[k]) == 0) seen++;
+            eq = (seen > 1) ? (double) seen / n : 1.0 / distinct();
+        } // if
+
+        switch (op) {
+            case EQ: return nonNull * eq;
+            case NE: return nonNull * (1 - eq);
+            case LT: return nonNull * below(v, false);
+            case LE: return nonNull * below(v, true);
+            case GT: return nonNull * (1 - below(v, true));
+            default: return nonNull * (1 - below(v, false));
+        } // switch
+    } // selectivity
+
+    /************************************************************************************
+     * Estimate the fraction of values below v (or equal to it, if inclusive) from the
+     * histogram, counting half of the bucket v falls in.
+     */
+    @SuppressWarnings("unchecked")
+    private double below(Comparable v, boolean inclusive) {
+        var c = v.compareTo(min);
+        if (c < 0 || c == 0 && !inclusive) return 0;
+        c = v.compareTo(max);
+        if (c > 0 || c == 0 && inclusive) return 1;
+
+        var b = histogram();
+        var k = 0;
+        while (k < b.length && (inclusive ? b[k].compareTo(v) <= 0 : b[k].compareTo(v) < 0)) k++;
+        return Math.min(1, (k + 0.5) / b.length);
+    } // below
+
+    /************************************************************************************
+     * Hash a value to 64 bits, well mixed (Strings are hashed over all their characters
+     * rather than through their 32-bit hashCode).
+     */
+    private static long hash(Comparable v) {
+        long h;
+        if (v instanceof String) {
+            h = 1125899906842597L;
+            var s = (String) v;
+            for (var i = 0; i < s.length(); i++) h = 31 * h + s.charAt(i);
+        } else if (v instanceof Double || v instanceof Float) {
+            h = Double.doubleToLongBits(((Number) v).doubleValue());
+        } else if (v instanceof Number) {
+            h = ((Number) v).longValue();
+        } else {
+            h = v.hashCode();
+        } // if
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    } // hash
+
+    @Override
+    public synchronized String toString() {
+        return "count = " + count + ", nulls = " + nulls + ", min = " + min + ", max = " + max +
+               ", distinct ~ " + distinct();
+    }
+
+} // ColumnStats class
@@ -0,0 +1,332 @@
+
+/****************************************************************************************
+ * @file ColumnStore.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.io.Serializable;
+import java.util.*;
+
+/****************************************************************************************
+ * This class stores tuples column by column, using a primitive array for each column whose
+ * domain allows it.  Integer, Short and Byte columns are kept in int arrays, Long columns in
+ * long arrays, Double and Float columns in double arrays and Character columns in char
+ * arrays.  String columns are dictionary encoded: each distinct string is stored once and
+ * the column holds int codes.  Any other domain is kept as an array of references.
+ * <p>
+ * The store is a List of tuples, so Table can use it in place of an ArrayList; a tuple is
+ * only materialized (boxed) when it is read.
+ */
+public class ColumnStore
+        extends AbstractList<Comparable[]>
+        implements RandomAccess, Serializable {
+    /**
+     * The initial capacity (in tuples) of each column.
+     */
+    private static final int INIT_CAPACITY = 16;
+
+    /**
+     * The physical representation of a column.
+     */
+    enum Kind {INT, LONG, DOUBLE, CHAR, DICT, OBJECT}
+
+    /**
+     * The domain of each column.
+     */
+    private final Class[] domain;
+
+    /**
+     * The physical representation chosen for each column.
+     */
+    private final Kind[] kind;
+
+    /**
+     * The column arrays (int[], long[], double[], char[] or Comparable[]), one per column.
+     */
+    private final Object[] column;
+
+    /**
+     * The dictionary (code to string) for each DICT column, null for other columns.
+     */
+    private final List<String>[] dict;
+
+    /**
+     * The reverse dictionary (string to code) for each DICT column.
+     */
+    private final Map<String, Integer>[] codes;
+
+    /**
+     * The number of tuples stored.
+     */
+    private int size = 0;
+
+    /**
+     * The number of tuples the column arrays can currently hold.
+     */
+    private int capacity = INIT_CAPACITY;
+
+    /************************************************************************************
+     * Construct an empty column store for tuples from the given domains.
+     *
+     * @param _domain  the domain (data type) of each column
+     */
+    @SuppressWarnings("unchecked")
+    public ColumnStore(Class[] _domain) {
+        domain = _domain;
+        kind = new Kind[domain.length];
+        column = new Object[domain.length];
+        dict = new List[domain.length];
+        codes = new Map[domain.length];
+
+        for (var j = 0; j < domain.length; j++) {
+            kind[j] = kindOf(domain[j]);
+            switch (kind[j]) {
+                case INT:
+                    column[j] = new int[capacity];
+                    break;
+                case LONG:
+                    column[j] = new long[capacity];
+                    break;
+                case DOUBLE:
+                    column[j] = new double[capacity];
+                    break;
+                case CHAR:
+                    column[j] = new char[capacity];
+                    break;
+                case DICT:
+                    column[j] = new int[capacity];
+                    dict[j] = new ArrayList<>();
+                    codes[j] = new HashMap<>();
+                    break;
+                default:
+                    column[j] = new Comparable[capacity];
+            } // switch
+        } // for
+    } // constructor
+
+    /************************************************************************************
+     * Choose the physical representation for a domain.
+     *
+     * @param type  the domain (data type)
+     * @return the kind of column used to store it
+     */
+    static Kind kindOf(Class type) {
+        if (type == Integer.class || type == Short.class || type == Byte.class) return Kind.INT;
+        if (type == Long.class) return Kind.LONG;
+        if (type == Double.class || type == Float.class) return Kind.DOUBLE;
+        if (type == Character.class) return Kind.CHAR;
+        if (type == String.class) return Kind.DICT;
+        return Kind.OBJECT;
+    } // kindOf
+
+    /************************************************************************************
+     * Return the number of tuples in the store.
+     *
+     * @return the number of tuples
+     */
+    @Override
+    public int size() {
+        return size;
+    } // size
+
+    /************************************************************************************
+     * Materialize the i-th tuple.
+     *
+     * @param i  the position of the tuple
+     * @return a new array holding the tuple's (boxed) values
+     */
+    @Override
+    public Comparable[] get(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("ColumnStore index " + i);
+        var tup = new Comparable[domain.length];
+        for (var j = 0; j < domain.length; j++) tup[j] = value(j, i);
+        return tup;
+    } // get
+
+    /************************************************************************************
+     * Append a tuple, splitting its values into the columns.
+     *
+     * @param tup  the tuple to add (its values must match the domains)
+     * @return true
+     */
+    @Override
+    public boolean add(Comparable[] tup) {
+        if (size == capacity) grow();
+        for (var j = 0; j < domain.length; j++) {
+            var v = tup[j];
+            switch (kind[j]) {
+                case INT:
+                    ((int[]) column[j])[size] = ((Number) v).intValue();
+                    break;
+                case LONG:
+                    ((long[]) column[j])[size] = (Long) v;
+                    break;
+                case DOUBLE:
+                    ((double[]) column[j])[size] = ((Number) v).doubleValue();
+                    break;
+                case CHAR:
+                    ((char[]) column[j])[size] = (Character) v;
+                    break;
+                case DICT:
+                    ((int[]) column[j])[size] = encode(j, (String) v);
+                    break;
+                default:
+                    ((Comparable[]) column[j])[size] = v;
+            } // switch
+        } // for
+        size++;
+        modCount++;
+        return true;
+    } // add
+
+    /************************************************************************************
+     * Remove all the tuples (the dictionaries are kept).
+     */
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    } // clear
+
+    /************************************************************************************
+     * Return the (boxed) value of column j in the i-th tuple, in the column's domain.
+     *
+     * @param j  the column position
+     * @param i  the tuple position
+     * @return the value
+     */
+    Comparable value(int j, int i) {
+        switch (kind[j]) {
+            case INT:
+                var n = ((int[]) column[j])[i];
+                if (domain[j] == Short.class) return (short) n;
+                if (domain[j] == Byte.class) return (byte) n;
+                return n;
+            case LONG:
+                return ((long[]) column[j])[i];
+            case DOUBLE:
+                var d = ((double[]) column[j])[i];
+                return (domain[j] == Float.class) ? (Comparable) (float) d : (Comparable) d;
+            case CHAR:
+                return ((char[]) column[j])[i];
+            case DICT:
+                return dict[j].get(((int[]) column[j])[i]);
+            default:
+                return ((Comparable[]) column[j])[i];
+        } // switch
+    } // value
+
+    /************************************************************************************
+     * Evaluate "column j op literal" over the column, clearing the bits of the candidate
+     * tuples for which it is false.  Primitive columns compare unboxed values, and
+     * dictionary encoded columns evaluate the comparison once per distinct string.
+     *
+     * @param j           the column position
+     * @param op          the comparison operator
+     * @param literal     the value to compare with (in the column's domain)
+     * @param candidates  the positions of the tuples still qualifying (updated in place)
+     */
+    @SuppressWarnings("unchecked")
+    public void filter(int j, Expr.Op op, Comparable literal, BitSet candidates) {
+        if (literal == null || literal.getClass() != domain[j]) {
+            for (var i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                if (!op.holds(value(j, i).compareTo(literal))) candidates.clear(i);
+            } // for
+            return;
+        } // if
+
+        switch (kind[j]) {
+            case INT: {
+                var col = (int[]) column[j];
+                var lit = ((Number) literal).intValue();
+                for (var i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                    if (!op.holds(Integer.compare(col[i], lit))) candidates.clear(i);
+                } // for
+                break;
+            }
+            case LONG: {
+                var col = (long[]) column[j];
+                var lit = (Long) literal;
+                for (var i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                    if (!op.holds(Long.compare(col[i], lit))) candidates.clear(i);
+                } // for
+                break;
+            }
+            case DOUBLE: {
+                var col = (double[]) column[j];
+                var lit = ((Number) literal).doubleValue();
+                for (var i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                    if (!op.holds(Double.compare(col[i], lit))) candidates.clear(i);
+                } // for
+                break;
+            }
+            case CHAR: {
+                var col = (char[]) column[j];
+                var lit = (char) (Character) literal;
+                for (var i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                    if (!op.holds(Character.compare(col[i], lit))) candidates.clear(i);
+                } // for
+                break;
+            }
+            case DICT: {
+                var col = (int[]) column[j];
+                var pass = new boolean[dict[j].size()];
+                for (var c = 0; c < pass.length; c++) pass[c] = op.holds(dict[j].get(c).compareTo((String) literal));
+                for (var i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                    if (!pass[col[i]]) candidates.clear(i);
+                } // for
+                break;
+            }
+            default: {
+                var col = (Comparable[]) column[j];
+                for (var i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                    if (!op.holds(col[i].compareTo(literal))) candidates.clear(i);
+                } // for
+            }
+        } // switch
+    } // filter
+
+    /************************************************************************************
+     * Return the number of distinct strings in a dictionary encoded column.
+     *
+     * @param j  the column position
+     * @return the dictionary size, or -1 if the column is not dictionary encoded
+     */
+    public int dictionarySize(int j) {
+        return (kind[j] == Kind.DICT) ? dict[j].size() : -1;
+    } // dictionarySize
+
+    //----------------------------------------------------------------------------------
+    // Private Methods
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Return the dictionary code for string s in column j, adding it if it is new.
+     */
+    private int encode(int j, String s) {
+        var code = codes[j].get(s);
+        if (code == null) {
+            code = dict[j].size();
+            dict[j].add(s);
+            codes[j].put(s, code);
+        } // if
+        return code;
+    } // encode
+
+    /************************************************************************************
+     * Double the capacity of every column.
+     */
+    private void grow() {
+        capacity *= 2;
+        for (var j = 0; j < domain.length; j++) {
+            var col = column[j];
+            if (col instanceof int[]) column[j] = Arrays.copyOf((int[]) col, capacity);
+            else if (col instanceof long[]) column[j] = Arrays.copyOf((long[]) col, capacity);
+            else if (col instanceof double[]) column[j] = Arrays.copyOf((double[]) col, capacity);
+            else if (col instanceof char[]) column[j] = Arrays.copyOf((char[]) col, capacity);
+            else column[j] = Arrays.copyOf((Comparable[]) col, capacity);
+        } // for
+    } // grow
+
+} // ColumnStore class
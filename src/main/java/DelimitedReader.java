@@ -0,0 +1,152 @@
+
+/****************************************************************************************
+ * @file DelimitedReader.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+import static java.lang.System.out;
+
+/****************************************************************************************
+ * This class streams tuples from a delimited text file (e.g., CSV), one line per tuple,
+ * converting each field to its attribute's domain.  A field may be wrapped in double
+ * quotes (which are removed), but may not contain the delimiter.  The converter for each
+ * column is chosen once, from the domains, rather than for every field.  Lines that
+ * cannot be converted are reported and skipped.
+ */
+class DelimitedReader
+        implements Iterator<Comparable[]> {
+    /**
+     * The lines being read.
+     */
+    private final BufferedReader in;
+
+    /**
+     * The field delimiter.
+     */
+    private final char delimiter;
+
+    /**
+     * The converter from text to value for each column.
+     */
+    private final Function<String, Comparable>[] parser;
+
+    /**
+     * The next tuple, or null if it has not been read yet.
+     */
+    private Comparable[] next = null;
+
+    /**
+     * The number of the line last read, and the number of lines skipped.
+     */
+    private int line = 0, skipped = 0;
+
+    /************************************************************************************
+     * Construct a reader of tuples with the given domains.
+     *
+     * @param _in         the lines to read (positioned after any header)
+     * @param _delimiter  the character separating fields
+     * @param domain      the domain of each column
+     */
+    @SuppressWarnings("unchecked")
+    DelimitedReader(BufferedReader _in, char _delimiter, Class[] domain) {
+        in = _in;
+        delimiter = _delimiter;
+        parser = new Function[domain.length];
+        for (var j = 0; j < domain.length; j++) parser[j] = parser(domain[j]);
+    } // constructor
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) return true;
+        try {
+            for (String text; (text = in.readLine()) != null; ) {
+                line++;
+                if (text.isEmpty()) continue;
+                next = parse(text);
+                if (next != null) return true;
+                skipped++;
+            } // for
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } // try
+        return false;
+    }
+
+    @Override
+    public Comparable[] next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        var t = next;
+        next = null;
+        return t;
+    }
+
+    /************************************************************************************
+     * Return the number of lines skipped because they could not be converted.
+     *
+     * @return the number of bad lines
+     */
+    int skipped() {
+        return skipped;
+    } // skipped
+
+    /************************************************************************************
+     * Split a line into fields and convert them.
+     *
+     * @param text  the line
+     * @return the tuple, or null if the line is bad
+     */
+    private Comparable[] parse(String text) {
+        var t = new Comparable[parser.length];
+        var from = 0;
+        for (var j = 0; j < parser.length; j++) {
+            var to = text.indexOf(delimiter, from);
+            if (to < 0) to = text.length();
+            if (from > text.length() || (j == parser.length - 1) != (to == text.length())) {
+                out.println("DelimitedReader: line " + line + " does not have " + parser.length + " fields");
+                return null;
+            } // if
+
+            var field = text.substring(from, to).trim();
+            if (field.length() >= 2 && field.charAt(0) == '"' && field.charAt(field.length() - 1) == '"')
+                field = field.substring(1, field.length() - 1);
+            try {
+                t[j] = parser[j].apply(field);
+            } catch (RuntimeException ex) {
+                out.println("DelimitedReader: line " + line + ", field " + (j + 1) + ": " + ex.getMessage());
+                return null;
+            } // try
+            from = to + 1;
+        } // for
+        return t;
+    } // parse
+
+    /************************************************************************************
+     * Choose the converter from text to values of the given domain.
+     *
+     * @param type  the domain
+     * @return the converter
+     */
+    private static Function<String, Comparable> parser(Class type) {
+        if (type == Integer.class) return Integer::valueOf;
+        if (type == Long.class) return Long::valueOf;
+        if (type == Short.class) return Short::valueOf;
+        if (type == Byte.class) return Byte::valueOf;
+        if (type == Double.class) return Double::valueOf;
+        if (type == Float.class) return Float::valueOf;
+        if (type == Character.class) return s -> {
+            if (s.length() != 1) throw new IllegalArgumentException("not a single character: " + s);
+            return s.charAt(0);
+        };
+        if (type == String.class) return s -> s;
+        throw new IllegalArgumentException("DelimitedReader: unsupported domain " + type);
+    } // parser
+
+} // DelimitedReader class
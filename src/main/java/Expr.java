@@ -0,0 +1,529 @@
+
+/****************************************************************************************
+ * @file Expr.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Predicate;
+
+/****************************************************************************************
+ * This class provides expressions over the attributes of a tuple: column references,
+ * literals, comparisons and the boolean connectives AND, OR and NOT.  Unlike an opaque
+ * lambda, an expression can be taken apart, so Table.select (Expr) can send key
+ * conditions to the index and evaluate simple comparisons column by column.
+ * <p>
+ * Expressions name columns by attribute; they are bound to a table (attribute names
+ * resolved to column positions) before being evaluated.
+ *
+ * #usage movie.select (Expr.col ("year").lt (1980).and (Expr.col ("genre").eq ("sciFi")))
+ */
+public abstract class Expr
+        implements Predicate<Comparable[]>, Serializable {
+
+    /**
+     * The comparison operators.
+     */
+    public enum Op {
+        EQ("="), NE("!="), LT("<"), LE("<="), GT(">"), GE(">=");
+
+        private final String symbol;
+
+        Op(String _symbol) {
+            symbol = _symbol;
+        } // constructor
+
+        /********************************************************************************
+         * Determine whether the comparison holds given the result of compareTo.
+         *
+         * @param cmp  the result of left.compareTo (right)
+         * @return whether "left op right" is true
+         */
+        public boolean holds(int cmp) {
+            switch (this) {
+                case EQ: return cmp == 0;
+                case NE: return cmp != 0;
+                case LT: return cmp < 0;
+                case LE: return cmp <= 0;
+                case GT: return cmp > 0;
+                default: return cmp >= 0;
+            } // switch
+        } // holds
+
+        /********************************************************************************
+         * Return the operator that gives the same result with its operands swapped.
+         *
+         * @return the mirrored operator
+         */
+        public Op flip() {
+            switch (this) {
+                case LT: return GT;
+                case LE: return GE;
+                case GT: return LT;
+                case GE: return LE;
+                default: return this;
+            } // switch
+        } // flip
+
+        @Override
+        public String toString() {
+            return symbol;
+        }
+    } // Op enum
+
+    //----------------------------------------------------------------------------------
+    // Factory and combinator methods
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Make a reference to the column with the given attribute name.
+     *
+     * @param attr  the attribute name
+     * @return the column reference
+     */
+    public static Col col(String attr) {
+        return new Col(attr, -1);
+    } // col
+
+    /************************************************************************************
+     * Make a literal (constant) value.
+     *
+     * @param value  the value
+     * @return the literal
+     */
+    public static Lit lit(Comparable value) {
+        return new Lit(value);
+    } // lit
+
+    /************************************************************************************
+     * Make the comparison "this equal to rhs".
+     *
+     * @param rhs  the right operand (an expression, or a value taken as a literal)
+     * @return the comparison
+     */
+    public Expr eq(Object rhs) {
+        return new Cmp(Op.EQ, this, wrap(rhs));
+    } // eq
+
+    /************************************************************************************
+     * Make the comparison "this not equal to rhs".
+     *
+     * @param rhs  the right operand (an expression, or a value taken as a literal)
+     * @return the comparison
+     */
+    public Expr ne(Object rhs) {
+        return new Cmp(Op.NE, this, wrap(rhs));
+    } // ne
+
+    /************************************************************************************
+     * Make the comparison "this less than rhs".
+     *
+     * @param rhs  the right operand (an expression, or a value taken as a literal)
+     * @return the comparison
+     */
+    public Expr lt(Object rhs) {
+        return new Cmp(Op.LT, this, wrap(rhs));
+    } // lt
+
+    /************************************************************************************
+     * Make the comparison "this less than or equal to rhs".
+     *
+     * @param rhs  the right operand (an expression, or a value taken as a literal)
+     * @return the comparison
+     */
+    public Expr le(Object rhs) {
+        return new Cmp(Op.LE, this, wrap(rhs));
+    } // le
+
+    /************************************************************************************
+     * Make the comparison "this greater than rhs".
+     *
+     * @param rhs  the right operand (an expression, or a value taken as a literal)
+     * @return the comparison
+     */
+    public Expr gt(Object rhs) {
+        return new Cmp(Op.GT, this, wrap(rhs));
+    } // gt
+
+    /************************************************************************************
+     * Make the comparison "this greater than or equal to rhs".
+     *
+     * @param rhs  the right operand (an expression, or a value taken as a literal)
+     * @return the comparison
+     */
+    public Expr ge(Object rhs) {
+        return new Cmp(Op.GE, this, wrap(rhs));
+    } // ge
+
+    /************************************************************************************
+     * Make the conjunction "this AND rhs".
+     *
+     * @param rhs  the right operand
+     * @return the combined expression
+     */
+    public Expr and(Expr rhs) {
+        return new And(this, rhs);
+    } // and
+
+    /************************************************************************************
+     * Make the disjunction "this OR rhs".
+     *
+     * @param rhs  the right operand
+     * @return the combined expression
+     */
+    public Expr or(Expr rhs) {
+        return new Or(this, rhs);
+    } // or
+
+    /************************************************************************************
+     * Make the negation "NOT this".
+     *
+     * @return the negated expression
+     */
+    public Expr not() {
+        return new Not(this);
+    } // not
+
+    //----------------------------------------------------------------------------------
+    // Evaluation
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Evaluate this expression on tuple t.  Comparisons and connectives yield a Boolean.
+     *
+     * @param t  the tuple (of the table this expression is bound to)
+     * @return the value of the expression
+     */
+    public abstract Comparable eval(Comparable[] t);
+
+    /************************************************************************************
+     * Test whether this (boolean) expression is true for tuple t.
+     *
+     * @param t  the tuple (of the table this expression is bound to)
+     * @return whether the expression holds
+     */
+    @Override
+    public boolean test(Comparable[] t) {
+        return (Boolean) eval(t);
+    } // test
+
+    /************************************************************************************
+     * Resolve the column references in this expression against the attribute names of
+     * a table.
+     *
+     * @param attribute  the attribute names of the table
+     * @return an equivalent expression whose columns refer to positions in the table
+     */
+    public abstract Expr bind(String[] attribute);
+
+    /************************************************************************************
+     * Replace the attribute names of the column references in this expression (names
+     * not in the map are kept).  The result is unbound.
+     *
+     * @param names  maps old attribute names to new ones
+     * @return the renamed expression
+     */
+    public abstract Expr rename(Map<String, String> names);
+
+    /************************************************************************************
+     * Split this expression into the expressions that are ANDed together at its top.
+     *
+     * @return the list of conjuncts (just this expression if it is not an AND)
+     */
+    public List<Expr> conjuncts() {
+        var list = new ArrayList<Expr>();
+        list.add(this);
+        return list;
+    } // conjuncts
+
+    /************************************************************************************
+     * Collect the attribute names referenced by this expression.
+     *
+     * @param attrs  the set to add the attribute names to
+     */
+    public abstract void columns(Set<String> attrs);
+
+    /************************************************************************************
+     * Combine the expressions with AND.
+     *
+     * @param exprs  the expressions (at least one)
+     * @return their conjunction
+     */
+    public static Expr allOf(List<Expr> exprs) {
+        var e = exprs.get(0);
+        for (var i = 1; i < exprs.size(); i++) e = e.and(exprs.get(i));
+        return e;
+    } // allOf
+
+    /************************************************************************************
+     * Turn a right-hand operand into an expression, treating non-expressions as literals.
+     */
+    private static Expr wrap(Object rhs) {
+        return (rhs instanceof Expr) ? (Expr) rhs : new Lit((Comparable) rhs);
+    } // wrap
+
+    //----------------------------------------------------------------------------------
+    // Expression nodes
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * A reference to a column (attribute) of the tuple.
+     */
+    public static class Col
+            extends Expr {
+        public final String attr;
+        public final int pos;
+
+        Col(String _attr, int _pos) {
+            attr = _attr;
+            pos = _pos;
+        } // constructor
+
+        @Override
+        public Comparable eval(Comparable[] t) {
+            if (pos < 0) throw new IllegalStateException("column " + attr + " is not bound");
+            return t[pos];
+        } // eval
+
+        @Override
+        public Expr bind(String[] attribute) {
+            var p = Arrays.asList(attribute).indexOf(attr);
+            if (p < 0) throw new IllegalArgumentException("bind: attribute " + attr + " not found");
+            return new Col(attr, p);
+        } // bind
+
+        @Override
+        public Expr rename(Map<String, String> names) {
+            return new Col(names.getOrDefault(attr, attr), -1);
+        } // rename
+
+        @Override
+        public void columns(Set<String> attrs) {
+            attrs.add(attr);
+        } // columns
+
+        @Override
+        public String toString() {
+            return attr;
+        }
+    } // Col class
+
+    /************************************************************************************
+     * A literal (constant) value.
+     */
+    public static class Lit
+            extends Expr {
+        public final Comparable value;
+
+        Lit(Comparable _value) {
+            value = _value;
+        } // constructor
+
+        @Override
+        public Comparable eval(Comparable[] t) {
+            return value;
+        } // eval
+
+        @Override
+        public Expr bind(String[] attribute) {
+            return this;
+        } // bind
+
+        @Override
+        public Expr rename(Map<String, String> names) {
+            return this;
+        } // rename
+
+        @Override
+        public void columns(Set<String> attrs) {
+        } // columns
+
+        @Override
+        public String toString() {
+            return (value instanceof String) ? "'" + value + "'" : String.valueOf(value);
+        }
+    } // Lit class
+
+    /************************************************************************************
+     * A comparison of two expressions.
+     */
+    public static class Cmp
+            extends Expr {
+        public final Op op;
+        public final Expr left;
+        public final Expr right;
+
+        Cmp(Op _op, Expr _left, Expr _right) {
+            op = _op;
+            left = _left;
+            right = _right;
+        } // constructor
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Comparable eval(Comparable[] t) {
+            return op.holds(left.eval(t).compareTo(right.eval(t)));
+        } // eval
+
+        @Override
+        public Expr bind(String[] attribute) {
+            return new Cmp(op, left.bind(attribute), right.bind(attribute));
+        } // bind
+
+        @Override
+        public Expr rename(Map<String, String> names) {
+            return new Cmp(op, left.rename(names), right.rename(names));
+        } // rename
+
+        @Override
+        public void columns(Set<String> attrs) {
+            left.columns(attrs);
+            right.columns(attrs);
+        } // columns
+
+        /********************************************************************************
+         * Return this comparison in the form "column op literal", if it has that form
+         * (with the operands in either order).
+         *
+         * @return the normalized comparison, or null if it does not compare a column
+         *         with a literal
+         */
+        public Cmp columnVsLiteral() {
+            if (left instanceof Col && right instanceof Lit) return this;
+            if (left instanceof Lit && right instanceof Col) return new Cmp(op.flip(), right, left);
+            return null;
+        } // columnVsLiteral
+
+        @Override
+        public String toString() {
+            return left + " " + op + " " + right;
+        }
+    } // Cmp class
+
+    /************************************************************************************
+     * The conjunction (AND) of two expressions.
+     */
+    public static class And
+            extends Expr {
+        public final Expr left;
+        public final Expr right;
+
+        And(Expr _left, Expr _right) {
+            left = _left;
+            right = _right;
+        } // constructor
+
+        @Override
+        public Comparable eval(Comparable[] t) {
+            return left.test(t) && right.test(t);
+        } // eval
+
+        @Override
+        public Expr bind(String[] attribute) {
+            return new And(left.bind(attribute), right.bind(attribute));
+        } // bind
+
+        @Override
+        public Expr rename(Map<String, String> names) {
+            return new And(left.rename(names), right.rename(names));
+        } // rename
+
+        @Override
+        public List<Expr> conjuncts() {
+            var list = left.conjuncts();
+            list.addAll(right.conjuncts());
+            return list;
+        } // conjuncts
+
+        @Override
+        public void columns(Set<String> attrs) {
+            left.columns(attrs);
+            right.columns(attrs);
+        } // columns
+
+        @Override
+        public String toString() {
+            return "(" + left + " AND " + right + ")";
+        }
+    } // And class
+
+    /************************************************************************************
+     * The disjunction (OR) of two expressions.
+     */
+    public static class Or
+            extends Expr {
+        public final Expr left;
+        public final Expr right;
+
+        Or(Expr _left, Expr _right) {
+            left = _left;
+            right = _right;
+        } // constructor
+
+        @Override
+        public Comparable eval(Comparable[] t) {
+            return left.test(t) || right.test(t);
+        } // eval
+
+        @Override
+        public Expr bind(String[] attribute) {
+            return new Or(left.bind(attribute), right.bind(attribute));
+        } // bind
+
+        @Override
+        public Expr rename(Map<String, String> names) {
+            return new Or(left.rename(names), right.rename(names));
+        } // rename
+
+        @Override
+        public void columns(Set<String> attrs) {
+            left.columns(attrs);
+            right.columns(attrs);
+        } // columns
+
+        @Override
+        public String toString() {
+            return "(" + left + " OR " + right + ")";
+        }
+    } // Or class
+
+    /************************************************************************************
+     * The negation (NOT) of an expression.
+     */
+    public static class Not
+            extends Expr {
+        public final Expr expr;
+
+        Not(Expr _expr) {
+            expr = _expr;
+        } // constructor
+
+        @Override
+        public Comparable eval(Comparable[] t) {
+            return !expr.test(t);
+        } // eval
+
+        @Override
+        public Expr bind(String[] attribute) {
+            return new Not(expr.bind(attribute));
+        } // bind
+
+        @Override
+        public Expr rename(Map<String, String> names) {
+            return new Not(expr.rename(names));
+        } // rename
+
+        @Override
+        public void columns(Set<String> attrs) {
+            expr.columns(attrs);
+        } // columns
+
+        @Override
+        public String toString() {
+            return "NOT " + expr;
+        }
+    } // Not class
+
+} // Expr class
@@ -0,0 +1,262 @@
+
+/****************************************************************************************
+ * @file ExternalSort.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.io.*;
+import java.util.*;
+
+/****************************************************************************************
+ * This class sorts tuples with an external (two-phase, multi-way) merge sort.  Inputs that
+ * fit within the memory budget are sorted in memory.  Larger inputs are cut into runs of
+ * at most budget tuples, each run is sorted and spilled to a temporary file in the given
+ * directory, and the runs are then merged through a priority queue as the result is
+ * iterated.  At most MAX_FANIN runs are open at once: while there are more, groups of
+ * MAX_FANIN runs are merged into longer runs first.  Run files are deleted once they
+ * have been fully read, or when the iterator over the result is closed.
+ */
+class ExternalSort {
+    /**
+     * Number of tuples written between resets of a run's object stream (resetting stops
+     * the stream from holding on to every tuple it has written).
+     */
+    private static final int RESET_EVERY = 1024;
+
+    /**
+     * The most runs merged (and so open) at once.
+     */
+    static final int MAX_FANIN = 64;
+
+    /************************************************************************************
+     * An iterator over sorted tuples that must be closed when the caller stops early, so
+     * that the run files it still holds are closed and deleted.
+     */
+    interface Sorted
+            extends Iterator<Comparable[]>, AutoCloseable {
+        @Override
+        void close();
+    } // Sorted interface
+
+    /************************************************************************************
+     * Sort the tuples using the given comparator, holding at most budget tuples in
+     * memory at a time.
+     *
+     * @param rows    the tuples to sort
+     * @param cmp     the order to sort in
+     * @param budget  the maximum number of tuples to sort in memory
+     * @param dir     the directory to spill runs into
+     * @return a closeable iterator over the tuples in sorted order
+     */
+    static Sorted sort(Iterable<Comparable[]> rows, Comparator<Comparable[]> cmp,
+                                       int budget, String dir) {
+        var runs = new ArrayList<File>();
+        var buffer = new ArrayList<Comparable[]>();
+
+        for (var t : rows) {
+            buffer.add(t);
+            if (buffer.size() >= budget) {
+                runs.add(spill(buffer, cmp, dir));
+                buffer.clear();
+            } // if
+        } // for
+
+        buffer.sort(cmp);
+        if (runs.isEmpty()) return of(buffer.iterator());
+        if (!buffer.isEmpty()) runs.add(spill(buffer, cmp, dir));
+
+        // merge passes until the remaining runs can all be merged at once
+        while (runs.size() > MAX_FANIN) {
+            var longer = new ArrayList<File>();
+            for (var i = 0; i < runs.size(); i += MAX_FANIN) {
+                var group = runs.subList(i, Math.min(i + MAX_FANIN, runs.size()));
+                if (group.size() == 1) {
+                    longer.add(group.get(0));
+                } else {
+                    try (var merger = new Merger(group, cmp)) {
+                        longer.add(write(merger, merger.remaining, dir));
+                    } // try
+                } // if
+            } // for
+            runs = longer;
+        } // while
+
+        return new Merger(runs, cmp);
+    } // sort
+
+    /************************************************************************************
+     * Wrap an iterator over tuples held in memory, which has nothing to release.
+     *
+     * @param it  the iterator over the tuples in order
+     * @return the iterator as a Sorted, whose close does nothing
+     */
+    static Sorted of(Iterator<Comparable[]> it) {
+        return new Sorted() {
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            public Comparable[] next() {
+                return it.next();
+            }
+
+            public void close() {
+            }
+        };
+    } // of
+
+    /************************************************************************************
+     * Determine whether the tuples are already in order, so that sorting can be skipped.
+     *
+     * @param rows  the tuples to check
+     * @param cmp   the order to check
+     * @return whether every tuple is less than or equal to its successor
+     */
+    static boolean isSorted(List<Comparable[]> rows, Comparator<Comparable[]> cmp) {
+        for (var i = 1; i < rows.size(); i++) {
+            if (cmp.compare(rows.get(i - 1), rows.get(i)) > 0) return false;
+        } // for
+        return true;
+    } // isSorted
+
+    /************************************************************************************
+     * Sort the buffered tuples and write them to a new run file.
+     *
+     * @param buffer  the tuples forming the run
+     * @param cmp     the order to sort in
+     * @param dir     the directory to write the run into
+     * @return the run file
+     */
+    private static File spill(List<Comparable[]> buffer, Comparator<Comparable[]> cmp, String dir) {
+        buffer.sort(cmp);
+        return write(buffer.iterator(), buffer.size(), dir);
+    } // spill
+
+    /************************************************************************************
+     * Write n tuples, already in order, to a new run file.
+     *
+     * @param tuples  the tuples forming the run
+     * @param n       the number of tuples
+     * @param dir     the directory to write the run into
+     * @return the run file
+     */
+    private static File write(Iterator<Comparable[]> tuples, long n, String dir) {
+        File run = null;
+        try {
+            var folder = new File(dir);
+            folder.mkdirs();
+            run = File.createTempFile("run", ".tmp", folder);
+            try (var oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(run)))) {
+                oos.writeLong(n);
+                for (var i = 0L; i < n; i++) {
+                    oos.writeObject(tuples.next());
+                    if (i % RESET_EVERY == RESET_EVERY - 1) oos.reset();
+                } // for
+            } // try
+            return run;
+        } catch (IOException ex) {
+            if (run != null) run.delete();
+            throw new UncheckedIOException("spill: IO Exception", ex);
+        } // try
+    } // write
+
+    /************************************************************************************
+     * This inner class reads a run file back one tuple at a time.
+     */
+    private static class RunReader {
+        private final File file;
+        private final ObjectInputStream ois;
+        private long remaining;
+        Comparable[] head;
+
+        RunReader(File _file) throws IOException {
+            file = _file;
+            ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            remaining = ois.readLong();
+        } // constructor
+
+        /** Read the next tuple into head, returning false (and deleting the run) at the end. */
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                close();
+                return false;
+            } // if
+            try {
+                head = (Comparable[]) ois.readObject();
+            } catch (ClassNotFoundException ex) {
+                throw new IOException(ex);
+            } // try
+            remaining--;
+            return true;
+        } // advance
+
+        /** Close the run and delete its file, whether or not it was read to the end. */
+        void close() {
+            head = null;
+            try {
+                ois.close();
+            } catch (IOException ex) {
+                // the file is deleted regardless
+            } // try
+            file.delete();
+        } // close
+    } // RunReader inner class
+
+    /************************************************************************************
+     * This inner class merges the sorted runs, always returning the smallest head.
+     */
+    private static class Merger
+            implements Sorted {
+        private final PriorityQueue<RunReader> heap;
+
+        /** The number of tuples not yet returned. */
+        long remaining = 0;
+
+        Merger(List<File> runs, Comparator<Comparable[]> cmp) {
+            heap = new PriorityQueue<>(runs.size(), (a, b) -> cmp.compare(a.head, b.head));
+            var opened = new ArrayList<RunReader>();
+            try {
+                for (var run : runs) {
+                    var reader = new RunReader(run);
+                    opened.add(reader);
+                    remaining += reader.remaining;
+                    if (reader.advance()) heap.add(reader);
+                } // for
+            } catch (IOException ex) {
+                for (var reader : opened) reader.close();
+                for (var run : runs) run.delete();
+                heap.clear();
+                throw new UncheckedIOException("merge: IO Exception", ex);
+            } // try
+        } // constructor
+
+        @Override
+        public boolean hasNext() {
+            return !heap.isEmpty();
+        }
+
+        @Override
+        public Comparable[] next() {
+            var reader = heap.poll();
+            if (reader == null) throw new NoSuchElementException();
+            var t = reader.head;
+            remaining--;
+            try {
+                if (reader.advance()) heap.add(reader);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("merge: IO Exception", ex);
+            } // try
+            return t;
+        }
+
+        /** Close and delete every run not yet read to the end. */
+        @Override
+        public void close() {
+            for (var reader : heap) reader.close();
+            heap.clear();
+            remaining = 0;
+        } // close
+    } // Merger inner class
+
+} // ExternalSort class
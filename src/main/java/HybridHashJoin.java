@@ -0,0 +1,332 @@
+/****************************************************************************************
+ * @file HybridHashJoin.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/****************************************************************************************
+ * This class joins tuples with a hybrid hash join, for inputs larger than the memory
+ * budget.  The smaller input is the build side; if it fits in the budget it is simply
+ * hashed in memory.  Otherwise both inputs are hash partitioned on the join columns.  Build
+ * partitions stay in memory until the budget is exceeded, when the largest one is
+ * spilled to a temporary file in the given directory (as are, later, the probe tuples
+ * falling into it).  The partitions kept in memory are joined while the probe input is
+ * read; each spilled pair of partitions is then joined the same way, repartitioned with
+ * a different hash.  A partition that is still too large after MAX_DEPTH rounds (e.g.,
+ * one heavily repeated key) is joined a budget-sized block of build tuples at a time.
+ * Partition files are deleted once joined.
+ */
+class HybridHashJoin {
+    /**
+     * Number of tuples written between resets of a partition's object stream (resetting
+     * stops the stream from holding on to every tuple it has written).
+     */
+    private static final int RESET_EVERY = 1024;
+
+    /**
+     * The most partitions an input is split into at a time.
+     */
+    private static final int FANOUT = 32;
+
+    /**
+     * The most times a partition is repartitioned before it is joined block by block.
+     */
+    private static final int MAX_DEPTH = 4;
+
+    /**
+     * The number of partitions spilled to disk so far (by every join).
+     */
+    private static final AtomicLong spilled = new AtomicLong();
+
+    /**
+     * The join columns of the build and probe tuples.
+     */
+    private final int[] buildCols, probeCols;
+
+    /**
+     * The columns of the right tuples kept in the output (null for all).
+     */
+    private final int[] keep;
+
+    /**
+     * Whether the build tuples are the right input (so output tuples are each probe
+     * tuple followed by the kept build columns).
+     */
+    private final boolean swapped;
+
+    /**
+     * The maximum number of build tuples held in memory.
+     */
+    private final int budget;
+
+    /**
+     * The directory partitions are spilled into.
+     */
+    private final String dir;
+
+    /**
+     * The joined tuples.
+     */
+    private final List<Comparable[]> result = new ArrayList<>();
+
+    /************************************************************************************
+     * Join the left and right tuples whose join columns are all equal, building on the
+     * smaller of the two and holding at most budget build tuples in memory at a time.
+     *
+     * @param left       the left tuples
+     * @param leftCols   their join columns
+     * @param right      the right tuples
+     * @param rightCols  their join columns
+     * @param keep       the columns of the right tuples kept in the output (null for all)
+     * @param budget     the maximum number of build tuples to hash in memory
+     * @param dir        the directory to spill partitions into
+     * @return the joined tuples: each left tuple followed by the kept right columns
+     */
+    static List<Comparable[]> join(List<Comparable[]> left, int[] leftCols, List<Comparable[]> right,
+                                   int[] rightCols, int[] keep, int budget, String dir) {
+        if (right.size() < left.size()) {
+            var hj = new HybridHashJoin(rightCols, leftCols, keep, true, budget, dir);
+            hj.join(right, right.size(), left, 0);
+            return hj.result;
+        } // if
+        var hj = new HybridHashJoin(leftCols, rightCols, keep, false, budget, dir);
+        hj.join(left, left.size(), right, 0);
+        return hj.result;
+    } // join
+
+    /************************************************************************************
+     * Return the number of partitions spilled to disk so far.
+     *
+     * @return the number of spilled partitions
+     */
+    static long spilled() {
+        return spilled.get();
+    } // spilled
+
+    /************************************************************************************
+     * Construct a join with the given columns and budget.
+     */
+    private HybridHashJoin(int[] _buildCols, int[] _probeCols, int[] _keep, boolean _swapped, int _budget,
+                           String _dir) {
+        buildCols = _buildCols;
+        probeCols = _probeCols;
+        keep = _keep;
+        swapped = _swapped;
+        budget = _budget;
+        dir = _dir;
+    } // constructor
+
+    /************************************************************************************
+     * Join n build tuples with the probe tuples, partitioning at the given depth if the
+     * build tuples do not fit in memory.
+     */
+    @SuppressWarnings("unchecked")
+    private void join(Iterable<Comparable[]> build, long n, Iterable<Comparable[]> probe, int level) {
+        if (n <= budget) {
+            hashJoin(build, probe);
+            return;
+        } // if
+        if (level == MAX_DEPTH) {
+            blockJoin(build, probe);
+            return;
+        } // if
+
+        // partition the build tuples, spilling the largest partition whenever over budget
+        var parts = (int) Math.min(FANOUT, n / budget + 2);
+        var resident = new List[parts];
+        var buildSpill = new Spill[parts];
+        for (var p = 0; p < parts; p++) resident[p] = new ArrayList<Comparable[]>();
+        var inMemory = 0L;
+        for (var t : build) {
+            var p = partition(t, buildCols, level, parts);
+            if (buildSpill[p] != null) {
+                buildSpill[p].write(t);
+                continue;
+            } // if
+            resident[p].add(t);
+            if (++inMemory > budget) {
+                var victim = 0;
+                for (var q = 1; q < parts; q++) {
+                    if (resident[q] != null && (resident[victim] == null || resident[q].size() > resident[victim].size()))
+                        victim = q;
+                } // for
+                buildSpill[victim] = new Spill(dir);
+                spilled.incrementAndGet();
+                for (var u : (List<Comparable[]>) resident[victim]) buildSpill[victim].write(u);
+                inMemory -= resident[victim].size();
+                resident[victim] = null;
+            } // if
+        } // for
+
+        // join the resident partitions while partitioning the probe tuples
+        var table = new HashMap<Object, List<Comparable[]>>();
+        for (var p = 0; p < parts; p++) {
+            if (resident[p] == null) continue;
+            for (var t : (List<Comparable[]>) resident[p]) {
+                table.computeIfAbsent(Table.hashKey(t, buildCols), k -> new ArrayList<>(1)).add(t);
+            } // for
+            resident[p] = null;
+        } // for
+        var probeSpill = new Spill[parts];
+        for (var u : probe) {
+            var p = partition(u, probeCols, level, parts);
+            if (buildSpill[p] == null) {
+                var matches = table.get(Table.hashKey(u, probeCols));
+                if (matches != null) for (var t : matches) emit(t, u);
+            } else {
+                if (probeSpill[p] == null) probeSpill[p] = new Spill(dir);
+                probeSpill[p].write(u);
+            } // if
+        } // for
+        table = null;
+
+        // join the spilled partitions
+        for (var p = 0; p < parts; p++) {
+            if (buildSpill[p] == null) continue;
+            buildSpill[p].close();
+            if (probeSpill[p] != null) {
+                probeSpill[p].close();
+                join(buildSpill[p], buildSpill[p].count, probeSpill[p], level + 1);
+                probeSpill[p].delete();
+            } // if
+            buildSpill[p].delete();
+        } // for
+    } // join
+
+    /************************************************************************************
+     * Join by hashing all the build tuples in memory.
+     */
+    private void hashJoin(Iterable<Comparable[]> build, Iterable<Comparable[]> probe) {
+        var table = new HashMap<Object, List<Comparable[]>>();
+        for (var t : build) table.computeIfAbsent(Table.hashKey(t, buildCols), k -> new ArrayList<>(1)).add(t);
+        for (var u : probe) {
+            var matches = table.get(Table.hashKey(u, probeCols));
+            if (matches != null) for (var t : matches) emit(t, u);
+        } // for
+    } // hashJoin
+
+    /************************************************************************************
+     * Add the join of build tuple t and probe tuple u to the result, in the left-right
+     * column order.
+     */
+    private void emit(Comparable[] t, Comparable[] u) {
+        result.add(swapped ? Table.joined(u, t, keep) : Table.joined(t, u, keep));
+    } // emit
+
+    /************************************************************************************
+     * Join by hashing budget build tuples at a time, reading the probe tuples once per
+     * block.
+     */
+    private void blockJoin(Iterable<Comparable[]> build, Iterable<Comparable[]> probe) {
+        var block = new ArrayList<Comparable[]>(budget);
+        for (var t : build) {
+            block.add(t);
+            if (block.size() == budget) {
+                hashJoin(block, probe);
+                block.clear();
+            } // if
+        } // for
+        if (!block.isEmpty()) hashJoin(block, probe);
+    } // blockJoin
+
+    /************************************************************************************
+     * Choose the partition of a tuple, hashing its join columns with a different seed at
+     * each depth so a repartitioned partition is split again.
+     */
+    private static int partition(Comparable[] t, int[] cols, int level, int parts) {
+        var h = Table.hashKey(t, cols).hashCode() ^ (level + 1) * 0x9E3779B9;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, parts);
+    } // partition
+
+    /************************************************************************************
+     * This inner class holds the tuples of a partition spilled to a temporary file.  It
+     * may be read any number of times once closed.
+     */
+    private static class Spill
+            implements Iterable<Comparable[]> {
+        private final File file;
+        private final ObjectOutputStream oos;
+        long count = 0;
+
+        Spill(String dir) {
+            try {
+                var folder = new File(dir);
+                folder.mkdirs();
+                file = File.createTempFile("part", ".tmp", folder);
+                file.deleteOnExit();
+                oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            } catch (IOException ex) {
+                throw new UncheckedIOException("spill: IO Exception", ex);
+            } // try
+        } // constructor
+
+        /** Append a tuple. */
+        void write(Comparable[] t) {
+            try {
+                oos.writeObject(t);
+                if (++count % RESET_EVERY == 0) oos.reset();
+            } catch (IOException ex) {
+                throw new UncheckedIOException("spill: IO Exception", ex);
+            } // try
+        } // write
+
+        /** Finish writing, marking the end with a null. */
+        void close() {
+            try {
+                oos.writeObject(null);
+                oos.close();
+            } catch (IOException ex) {
+                throw new UncheckedIOException("spill: IO Exception", ex);
+            } // try
+        } // close
+
+        /** Delete the file. */
+        void delete() {
+            file.delete();
+        } // delete
+
+        @Override
+        public Iterator<Comparable[]> iterator() {
+            try {
+                var ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+                return new Iterator<>() {
+                    private Comparable[] head = read();
+
+                    private Comparable[] read() {
+                        try {
+                            var t = (Comparable[]) ois.readObject();
+                            if (t == null) ois.close();
+                            return t;
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException("spill: IO Exception", ex);
+                        } catch (ClassNotFoundException ex) {
+                            throw new IllegalStateException(ex);
+                        } // try
+                    } // read
+
+                    public boolean hasNext() {
+                        return head != null;
+                    }
+
+                    public Comparable[] next() {
+                        if (head == null) throw new NoSuchElementException();
+                        var t = head;
+                        head = read();
+                        return t;
+                    }
+                };
+            } catch (IOException ex) {
+                throw new UncheckedIOException("spill: IO Exception", ex);
+            } // try
+        } // iterator
+    } // Spill inner class
+
+} // HybridHashJoin class
@@ -8,26 +8,99 @@
  */
 
 import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Objects;
 
 import static java.lang.System.out;
 
 /*****************************************************************************************
  * The KeyType class provides a key type for handling both non-composite and composite keys.
  * A key is a minimal set of attributes that can be used to uniquely identify a tuple.
+ *
+ * On construction the key is also normalized, so comparing and hashing keys does not go
+ * through the boxed values: a key of one or two Integers or one Long is packed into a
+ * long compared as unsigned, and any other key of the built-in domains (Long, Integer,
+ * Short, Byte, Double, Float, Character, String) is encoded as a byte string whose
+ * unsigned lexicographic order is the order of the values (each value is tagged with its
+ * type and written big-endian, sign bit flipped; floating point values as their ordered
+ * bits; Strings as their 16-bit characters, ending with three zero bytes, a zero
+ * character being written as 0, 0, 0xFF).  Keys holding other values (or null) are
+ * compared value by value, a null value ordering before any other.  The hash code is
+ * computed once.
  */
 public class KeyType
         implements Comparable<KeyType>, Serializable {
+    /**
+     * The forms of normalized key.
+     */
+    private static final byte NONE = 0, INT = 1, INT_PAIR = 2, LONG = 3, BYTES = 4;
+
+    /**
+     * The type tags of the values in a BYTES key.
+     */
+    private static final byte T_LONG = 1, T_INT = 2, T_SHORT = 3, T_BYTE = 4, T_DOUBLE = 5,
+                              T_FLOAT = 6, T_CHAR = 7, T_STRING = 8;
+
     /**
      * Array holding the attribute values for a particular key
      */
     private final Comparable[] key;
 
+    /**
+     * The form of the normalized key (NONE if the key is compared value by value).
+     */
+    private final byte kind;
+
+    /**
+     * The packed key (INT, INT_PAIR and LONG keys), in unsigned order.
+     */
+    private final long packed;
+
+    /**
+     * The encoded key (BYTES keys), in unsigned lexicographic order.
+     */
+    private final byte[] norm;
+
+    /**
+     * The hash code.
+     */
+    private final int hash;
+
     /*************************************************************************************
      * Construct an instance of KeyType from a Comparable array.  
      * @param _key  the primary key
      */
     public KeyType(Comparable[] _key) {
         key = _key;
+        var k = NONE;
+        var p = 0L;
+        byte[] n = null;
+        if (key.length == 1 && key[0] instanceof Integer) {
+            k = INT;
+            p = (Integer) key[0] ^ Long.MIN_VALUE;
+        } else if (key.length == 1 && key[0] instanceof Long) {
+            k = LONG;
+            p = (Long) key[0] ^ Long.MIN_VALUE;
+        } else if (key.length == 2 && key[0] instanceof Integer && key[1] instanceof Integer) {
+            k = INT_PAIR;
+            p = (long) ((Integer) key[0] ^ Integer.MIN_VALUE) << 32 | ((Integer) key[1] ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+        } else {
+            n = encode(key);
+            if (n != null) k = BYTES;
+        } // if
+        kind = k;
+        packed = p;
+        norm = n;
+
+        if (kind == BYTES) {
+            hash = Arrays.hashCode(norm);
+        } else if (kind != NONE) {
+            hash = Long.hashCode(packed * 0x9E3779B97F4A7C15L);
+        } else {
+            var sum = 0;
+            for (var i = 0; i < key.length; i++) sum = 7 * sum + Objects.hashCode(key[i]);
+            hash = sum;
+        } // if
     } // constructor
 
     /*************************************************************************************
@@ -35,11 +108,104 @@ public class KeyType
      * @param _key  the primary key
      */
     public KeyType(Comparable key0, Comparable... keys) {
-        key = new Comparable[keys.length + 1];
-        key[0] = key0;
-        for (var i = 1; i < key.length; i++) key[i] = keys[i - 1];
+        this(prepend(key0, keys));
     } // constructor
 
+    /*************************************************************************************
+     * Put key0 in front of the other values.
+     */
+    private static Comparable[] prepend(Comparable key0, Comparable[] keys) {
+        var all = new Comparable[keys.length + 1];
+        all[0] = key0;
+        System.arraycopy(keys, 0, all, 1, keys.length);
+        return all;
+    } // prepend
+
+    /*************************************************************************************
+     * Encode the values of a key as an order-preserving byte string.
+     * @param key  the values
+     * @return the encoding, or null if some value is not of a built-in domain
+     */
+    private static byte[] encode(Comparable[] key) {
+        var len = 0;
+        for (var v : key) {
+            if (v instanceof Long || v instanceof Double) len += 9;
+            else if (v instanceof Integer || v instanceof Float) len += 5;
+            else if (v instanceof Short || v instanceof Character) len += 3;
+            else if (v instanceof Byte) len += 2;
+            else if (v instanceof String) {
+                var s = (String) v;
+                len += 1 + 2 * s.length() + 3;
+                for (var i = 0; i < s.length(); i++) if (s.charAt(i) == 0) len++;
+            } else return null;
+        } // for
+
+        var buf = new byte[len];
+        var pos = 0;
+        for (var v : key) {
+            if (v instanceof Long) {
+                buf[pos++] = T_LONG;
+                pos = put(buf, pos, (Long) v ^ Long.MIN_VALUE, 8);
+            } else if (v instanceof Integer) {
+                buf[pos++] = T_INT;
+                pos = put(buf, pos, (Integer) v ^ Integer.MIN_VALUE, 4);
+            } else if (v instanceof Short) {
+                buf[pos++] = T_SHORT;
+                pos = put(buf, pos, (Short) v ^ Short.MIN_VALUE, 2);
+            } else if (v instanceof Byte) {
+                buf[pos++] = T_BYTE;
+                pos = put(buf, pos, (Byte) v ^ Byte.MIN_VALUE, 1);
+            } else if (v instanceof Double) {
+                var bits = Double.doubleToLongBits((Double) v);
+                buf[pos++] = T_DOUBLE;
+                pos = put(buf, pos, bits ^ (bits >> 63 | Long.MIN_VALUE), 8);
+            } else if (v instanceof Float) {
+                var bits = Float.floatToIntBits((Float) v);
+                buf[pos++] = T_FLOAT;
+                pos = put(buf, pos, bits ^ (bits >> 31 | Integer.MIN_VALUE), 4);
+            } else if (v instanceof Character) {
+                buf[pos++] = T_CHAR;
+                pos = put(buf, pos, (Character) v, 2);
+            } else {
+                var s = (String) v;
+                buf[pos++] = T_STRING;
+                for (var i = 0; i < s.length(); i++) {
+                    var c = s.charAt(i);
+                    pos = put(buf, pos, c, 2);
+                    if (c == 0) buf[pos++] = (byte) 0xFF;
+                } // for
+                pos += 3;
+            } // if
+        } // for
+        return buf;
+    } // encode
+
+    /*************************************************************************************
+     * Write the low bytes of a value big-endian.
+     * @return the position after the value
+     */
+    private static int put(byte[] buf, int pos, long v, int bytes) {
+        for (var i = bytes - 1; i >= 0; i--) buf[pos++] = (byte) (v >>> 8 * i);
+        return pos;
+    } // put
+
+    /*************************************************************************************
+     * Return the number of attribute values in the key.
+     * @return the key's arity
+     */
+    public int size() {
+        return key.length;
+    } // size
+
+    /*************************************************************************************
+     * Return the i-th attribute value of the key.
+     * @param i  the position of the value
+     * @return the attribute value
+     */
+    public Comparable get(int i) {
+        return key[i];
+    } // get
+
     /*************************************************************************************
      * Compare two keys (negative => less than, zero => equals, positive => greater than).
      * @param k  the other key (to compare with this)
@@ -47,9 +213,17 @@ public class KeyType
      */
     @SuppressWarnings("unchecked")
     public int compareTo(KeyType k) {
+        if (kind == k.kind && kind != NONE) {
+            return Integer.signum((kind == BYTES) ? Arrays.compareUnsigned(norm, k.norm)
+                                                  : Long.compareUnsigned(packed, k.packed));
+        } // if
         for (var i = 0; i < key.length; i++) {
-            if (key[i].compareTo(k.key[i]) < 0) return -1;
-            if (key[i].compareTo(k.key[i]) > 0) return 1;
+            if (key[i] == null || k.key[i] == null) {
+                if (key[i] != k.key[i]) return (key[i] == null) ? -1 : 1;
+                continue;
+            } // if
+            var cmp = key[i].compareTo(k.key[i]);
+            if (cmp != 0) return Integer.signum(cmp);
         } // for
         return 0;
     } // compareTo
@@ -60,17 +234,22 @@ public class KeyType
      * @return true if equal, false otherwise
      */
     public boolean equals(Object k) {
-        return compareTo((KeyType) k) == 0;
+        if (this == k) return true;
+        if (!(k instanceof KeyType)) return false;
+        var other = (KeyType) k;
+        if (hash != other.hash) return false;
+        if (kind == other.kind && kind == BYTES) return Arrays.equals(norm, other.norm);
+        if (kind == other.kind && kind != NONE) return packed == other.packed;
+        return compareTo(other) == 0;
     } // equals
 
     /*************************************************************************************
-     * Compute a hash code for this object (equal objects should produce the same hash code).
+     * Return the hash code for this object (equal objects produce the same hash code),
+     * computed when the key was made.
      * @return an integer hash code value
      */
     public int hashCode() {
-        var sum = 0;
-        for (var i = 0; i < key.length; i++) sum = 7 * sum + key[i].hashCode();
-        return sum;
+        return hash;
     } // hashCode
 
     /*************************************************************************************
@@ -0,0 +1,352 @@
+
+/****************************************************************************************
+ * @file LinHashMap.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.io.Serializable;
+import java.util.*;
+
+/****************************************************************************************
+ * This class provides hash maps that use the Linear Hashing algorithm.  A hash table is
+ * created that is an expandable array of buckets.  Rather than doubling the table when it
+ * gets too full, a single bucket (the one at the split pointer) is split each time the load
+ * factor is exceeded, so growth is incremental and there is never a full rehash.
+ *
+ * @param <K>  the type of the keys contained in the map
+ * @param <V>  the type of the values assigned to keys
+ */
+public class LinHashMap<K, V>
+        extends AbstractMap<K, V>
+        implements Serializable {
+    /**
+     * The number of slots (for key-value pairs) per bucket.
+     */
+    private static final int SLOTS = 4;
+
+    /**
+     * The load factor (entries / slots) above which the next bucket is split.
+     */
+    private static final double LOAD_FACTOR = 0.75;
+
+    /**
+     * The default number of buckets in the initial hash table.
+     */
+    private static final int DEFAULT_SIZE = 16;
+
+    /************************************************************************************
+     * This inner class defines buckets that are stored in the hash table.  Buckets that
+     * run out of slots are chained through next (overflow buckets).
+     */
+    private static class Bucket
+            implements Serializable {
+        int nKeys;
+        Object[] key = new Object[SLOTS];
+        Object[] value = new Object[SLOTS];
+        int[] hash = new int[SLOTS];
+        Bucket next;
+    } // Bucket inner class
+
+    /**
+     * The list of buckets making up the hash table.
+     */
+    private final List<Bucket> hTable;
+
+    /**
+     * The initial number of buckets (restored by clear).
+     */
+    private final int initSize;
+
+    /**
+     * The modulus for low resolution hashing.
+     */
+    private int mod1;
+
+    /**
+     * The index of the next bucket to split.
+     */
+    private int split = 0;
+
+    /**
+     * The number of key-value pairs in the map.
+     */
+    private int size = 0;
+
+    /************************************************************************************
+     * Construct a hash table with the default initial number of buckets.
+     */
+    public LinHashMap() {
+        this(DEFAULT_SIZE);
+    } // constructor
+
+    /************************************************************************************
+     * Construct a hash table with the given initial number of buckets.
+     *
+     * @param initSize  the initial number of buckets (at least 1)
+     */
+    public LinHashMap(int initSize) {
+        this.initSize = Math.max(1, initSize);
+        mod1 = this.initSize;
+        hTable = new ArrayList<>(mod1 * 2);
+        for (var i = 0; i < mod1; i++) hTable.add(new Bucket());
+    } // constructor
+
+    /************************************************************************************
+     * Return a set containing all the entries as pairs of keys and values.
+     *
+     * @return the set view of the map
+     */
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    } // entrySet
+
+    /************************************************************************************
+     * Given the key, look up the value in the hash table.
+     *
+     * @param key  the key used for look up
+     * @return the value associated with the key
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        var h = hash(key);
+        for (var b = hTable.get(bucketOf(h)); b != null; b = b.next) {
+            for (var j = 0; j < b.nKeys; j++) {
+                if (b.hash[j] == h && b.key[j].equals(key)) return (V) b.value[j];
+            } // for
+        } // for
+        return null;
+    } // get
+
+    /************************************************************************************
+     * Determine whether the hash table contains the given key.
+     *
+     * @param key  the key to look for
+     * @return whether the key is present
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        var h = hash(key);
+        for (var b = hTable.get(bucketOf(h)); b != null; b = b.next) {
+            for (var j = 0; j < b.nKeys; j++) {
+                if (b.hash[j] == h && b.key[j].equals(key)) return true;
+            } // for
+        } // for
+        return false;
+    } // containsKey
+
+    /************************************************************************************
+     * Put the key-value pair in the hash table.  Split the bucket at the split pointer
+     * if the load factor is exceeded.
+     *
+     * @param key    the key to insert
+     * @param value  the value to insert
+     * @return the old value associated with the key, or null if there was none
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        if (key == null) throw new NullPointerException("LinHashMap does not permit null keys");
+        var h = hash(key);
+        var home = hTable.get(bucketOf(h));
+        for (var b = home; b != null; b = b.next) {
+            for (var j = 0; j < b.nKeys; j++) {
+                if (b.hash[j] == h && b.key[j].equals(key)) {
+                    var old = (V) b.value[j];
+                    b.value[j] = value;
+                    return old;
+                } // if
+            } // for
+        } // for
+
+        add(home, h, key, value);
+        size++;
+        if (size > LOAD_FACTOR * SLOTS * hTable.size()) splitBucket();
+        return null;
+    } // put
+
+    /************************************************************************************
+     * Remove the key (and its value) from the hash table.  Buckets are not merged back.
+     *
+     * @param key  the key to remove
+     * @return the value that was associated with the key, or null if there was none
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        var h = hash(key);
+        for (var b = hTable.get(bucketOf(h)); b != null; b = b.next) {
+            for (var j = 0; j < b.nKeys; j++) {
+                if (b.hash[j] == h && b.key[j].equals(key)) {
+                    var old = (V) b.value[j];
+                    removeAt(hTable.get(bucketOf(h)), b, j);
+                    size--;
+                    return old;
+                } // if
+            } // for
+        } // for
+        return null;
+    } // remove
+
+    /************************************************************************************
+     * Return the size (number of key-value pairs) of the hash table.
+     *
+     * @return the size of the hash table
+     */
+    @Override
+    public int size() {
+        return size;
+    } // size
+
+    /************************************************************************************
+     * Remove all the entries, resetting the table to its initial number of buckets.
+     */
+    @Override
+    public void clear() {
+        hTable.clear();
+        mod1 = initSize;
+        split = 0;
+        size = 0;
+        for (var i = 0; i < mod1; i++) hTable.add(new Bucket());
+    } // clear
+
+    /************************************************************************************
+     * Return the number of buckets (not counting overflow buckets) in the hash table.
+     *
+     * @return the number of buckets
+     */
+    public int buckets() {
+        return hTable.size();
+    } // buckets
+
+    //----------------------------------------------------------------------------------
+    // Private Methods
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Spread the bits of the key's hash code so that the low bits used for addressing
+     * depend on the high bits as well.
+     *
+     * @param key  the key to hash
+     * @return the spread hash code
+     */
+    private static int hash(Object key) {
+        var h = key.hashCode();
+        return (h ^ (h >>> 16)) & 0x7fffffff;
+    } // hash
+
+    /************************************************************************************
+     * Determine the bucket for a hash code, using the high resolution modulus for
+     * buckets that have already been split in this round.
+     *
+     * @param h  the (non-negative) hash code
+     * @return the index of the home bucket
+     */
+    private int bucketOf(int h) {
+        var i = h % mod1;
+        return (i < split) ? h % (2 * mod1) : i;
+    } // bucketOf
+
+    /************************************************************************************
+     * Add a key-value pair to the chain starting at bucket b, adding an overflow
+     * bucket if every bucket in the chain is full.
+     */
+    private static void add(Bucket b, int h, Object key, Object value) {
+        while (b.nKeys == SLOTS) {
+            if (b.next == null) b.next = new Bucket();
+            b = b.next;
+        } // while
+        b.key[b.nKeys] = key;
+        b.value[b.nKeys] = value;
+        b.hash[b.nKeys] = h;
+        b.nKeys++;
+    } // add
+
+    /************************************************************************************
+     * Remove slot j of bucket b by moving the last entry of the chain into its place.
+     */
+    private static void removeAt(Bucket home, Bucket b, int j) {
+        var last = home;
+        Bucket prev = null;
+        while (last.next != null && last.next.nKeys > 0) {
+            prev = last;
+            last = last.next;
+        } // while
+        var k = last.nKeys - 1;
+        b.key[j] = last.key[k];
+        b.value[j] = last.value[k];
+        b.hash[j] = last.hash[k];
+        last.key[k] = null;
+        last.value[k] = null;
+        last.nKeys--;
+        if (last.nKeys == 0 && prev != null) prev.next = null;
+    } // removeAt
+
+    /************************************************************************************
+     * Split the bucket at the split pointer, redistributing its chain between itself
+     * and a new bucket appended to the end of the table.
+     */
+    private void splitBucket() {
+        var mod2 = 2 * mod1;
+        var old = hTable.get(split);
+        var stay = new Bucket();
+        var move = new Bucket();
+        for (var b = old; b != null; b = b.next) {
+            for (var j = 0; j < b.nKeys; j++) {
+                add((b.hash[j] % mod2 == split) ? stay : move, b.hash[j], b.key[j], b.value[j]);
+            } // for
+        } // for
+        hTable.set(split, stay);
+        hTable.add(move);
+
+        if (++split == mod1) {
+            mod1 = mod2;
+            split = 0;
+        } // if
+    } // splitBucket
+
+    /************************************************************************************
+     * This inner class iterates over the entries in bucket order.
+     */
+    private class EntryIterator
+            implements Iterator<Map.Entry<K, V>> {
+        private int i = 0;
+        private Bucket b = hTable.get(0);
+        private int j = 0;
+        private int seen = 0;
+
+        @Override
+        public boolean hasNext() {
+            return seen < size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K, V> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            while (b == null || j >= b.nKeys) {
+                if (b != null && b.next != null) b = b.next;
+                else b = hTable.get(++i);
+                j = 0;
+            } // while
+            seen++;
+            var k = (K) b.key[j];
+            var v = (V) b.value[j];
+            j++;
+            return new AbstractMap.SimpleImmutableEntry<>(k, v);
+        }
+    } // EntryIterator inner class
+
+} // LinHashMap class
@@ -0,0 +1,125 @@
+
+/****************************************************************************************
+ * @file Log.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Supplier;
+
+import static java.lang.System.out;
+
+/****************************************************************************************
+ * This class is the opt-in text log of the statements tables execute (the "DDL>",
+ * "DML>" and "RA>" lines).  Logging is off by default, in which case a log call costs
+ * one volatile read: the message supplier is not even called.  When it is on, messages
+ * are queued and printed by a background thread, so the caller never waits for the
+ * console (unless the queue is full).
+ */
+public class Log {
+    /**
+     * The most messages waiting to be printed.
+     */
+    private static final int CAPACITY = 1 << 16;
+
+    /**
+     * Whether logging is on.
+     */
+    private static volatile boolean enabled = false;
+
+    /**
+     * The messages waiting to be printed.
+     */
+    private static final BlockingQueue<String> queue = new LinkedBlockingQueue<>(CAPACITY);
+
+    /**
+     * The number of messages queued and the number printed.
+     */
+    private static long queued = 0, printed = 0;
+
+    /**
+     * The thread printing the messages (started on first use).
+     */
+    private static Thread writer = null;
+
+    /************************************************************************************
+     * Turn logging on or off.
+     *
+     * #usage Log.enable (true)
+     *
+     * @param on  whether statements should be logged
+     */
+    public static synchronized void enable(boolean on) {
+        if (on && writer == null) {
+            writer = new Thread(Log::drain, "table-log");
+            writer.setDaemon(true);
+            writer.start();
+        } // if
+        enabled = on;
+    } // enable
+
+    /************************************************************************************
+     * Determine whether logging is on.
+     *
+     * @return whether statements are logged
+     */
+    public static boolean enabled() {
+        return enabled;
+    } // enabled
+
+    /************************************************************************************
+     * Log the message built by msg, if logging is on.
+     *
+     * @param msg  builds the message (called only when logging is on)
+     */
+    public static void log(Supplier<String> msg) {
+        if (!enabled) return;
+        var text = msg.get();
+        synchronized (Log.class) {
+            queued++;
+        } // synchronized
+        try {
+            queue.put(text);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } // try
+    } // log
+
+    /************************************************************************************
+     * Wait until every message logged so far has been printed (e.g., before printing
+     * directly, so the output stays in order).
+     */
+    public static void flush() {
+        synchronized (Log.class) {
+            var target = queued;
+            while (printed < target && writer != null) {
+                try {
+                    Log.class.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } // try
+            } // while
+        } // synchronized
+    } // flush
+
+    /************************************************************************************
+     * Print queued messages until the JVM exits.
+     */
+    private static void drain() {
+        try {
+            for ( ; ; ) {
+                out.println(queue.take());
+                synchronized (Log.class) {
+                    printed++;
+                    Log.class.notifyAll();
+                } // synchronized
+            } // for
+        } catch (InterruptedException ex) {
+            // exiting
+        } // try
+    } // drain
+
+} // Log class
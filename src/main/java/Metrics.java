@@ -0,0 +1,142 @@
+
+/****************************************************************************************
+ * @file Metrics.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.lang.System.out;
+
+/****************************************************************************************
+ * This class keeps the OperatorMetrics of every operator and registers them with the
+ * platform MBean server (e.g., for viewing in JConsole) under
+ * <pre>
+ *   TableDB:type=Operator,table=TABLE,name=OPERATOR
+ * </pre>
+ * Every call is counted under table "*" (all tables); calls on named tables (those
+ * created by DDL or loaded from disk) are also counted under the table's name.  The
+ * temporary tables operators return are not named, so they do not each get MBeans.
+ */
+public class Metrics {
+    /**
+     * The table name under which every call is counted.
+     */
+    public static final String ALL = "*";
+
+    /**
+     * The metrics of each (table, operator) pair, keyed by "table/operator".
+     */
+    private static final ConcurrentMap<String, OperatorMetrics> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * The metrics of every insert, held so that the per-row insert path does no lookup.
+     */
+    static final OperatorMetrics INSERTS = of(ALL, "insert");
+
+    /**
+     * Whether calls are counted.
+     */
+    private static volatile boolean enabled = true;
+
+    /************************************************************************************
+     * Turn metrics on or off.
+     *
+     * @param on  whether operator calls should be counted
+     */
+    public static void enable(boolean on) {
+        enabled = on;
+    } // enable
+
+    /************************************************************************************
+     * Get the metrics of an operator on a table, making and registering them if needed.
+     *
+     * @param table     the table name, or ALL
+     * @param operator  the operator name (e.g., "select")
+     * @return the metrics
+     */
+    public static OperatorMetrics of(String table, String operator) {
+        return metrics.computeIfAbsent(table + "/" + operator, k -> register(table, operator));
+    } // of
+
+    /************************************************************************************
+     * Record one call of an operator.
+     *
+     * @param table     the named table it ran on, or null for a temporary table
+     * @param operator  the operator name
+     * @param in        the number of input tuples
+     * @param out       the number of result tuples
+     * @param elapsed   the time taken, in nanoseconds
+     */
+    static void record(String table, String operator, long in, long out, long elapsed) {
+        if (!enabled) return;
+        of(ALL, operator).record(in, out, elapsed);
+        if (table != null) of(table, operator).record(in, out, elapsed);
+    } // record
+
+    /************************************************************************************
+     * Record one call of an operator into metrics already resolved by the caller (see
+     * Table.insert), avoiding the name concatenation and map lookups of the above.
+     *
+     * @param all       the operator's metrics under ALL
+     * @param named     the operator's metrics under the table's name, or null
+     * @param in        the number of input tuples
+     * @param out       the number of result tuples
+     * @param elapsed   the time taken, in nanoseconds
+     */
+    static void record(OperatorMetrics all, OperatorMetrics named, long in, long out, long elapsed) {
+        if (!enabled) return;
+        all.record(in, out, elapsed);
+        if (named != null) named.record(in, out, elapsed);
+    } // record
+
+    /************************************************************************************
+     * Record index probes made by an operator.
+     *
+     * @param table     the named table it ran on, or null for a temporary table
+     * @param operator  the operator name
+     * @param probes    the number of probes
+     * @param found     the number of probes that found a tuple
+     */
+    static void index(String table, String operator, long probes, long found) {
+        if (!enabled) return;
+        of(ALL, operator).index(probes, found);
+        if (table != null) of(table, operator).index(probes, found);
+    } // index
+
+    /************************************************************************************
+     * Record that an operator scanned every tuple because no index could be used.
+     *
+     * @param table     the named table it ran on, or null for a temporary table
+     * @param operator  the operator name
+     */
+    static void scan(String table, String operator) {
+        if (!enabled) return;
+        of(ALL, operator).scan();
+        if (table != null) of(table, operator).scan();
+    } // scan
+
+    /************************************************************************************
+     * Make the metrics for a (table, operator) pair and register them with JMX.  Failure
+     * to register (e.g., no MBean server) leaves the metrics usable from code.
+     */
+    private static OperatorMetrics register(String table, String operator) {
+        var m = new OperatorMetrics();
+        try {
+            var name = new ObjectName("TableDB:type=Operator,table=" + ObjectName.quote(table) +
+                    ",name=" + operator);
+            var server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+            server.registerMBean(m, name);
+        } catch (JMException | SecurityException ex) {
+            out.println("Metrics: cannot register " + table + "/" + operator + ": " + ex);
+        } // try
+        return m;
+    } // register
+
+} // Metrics class
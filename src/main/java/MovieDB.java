@@ -18,6 +18,7 @@ class MovieDB {
      * @param args  the command-line arguments
      */
     public static void main(String[] args) {
+        Log.enable(true);
         out.println();
 
         var movie = new Table("movie", "title year length genre studioName producerNo",
@@ -43,6 +44,7 @@ class MovieDB {
         var film2 = new Comparable[]{"Rocky", 1985, 200, "action", "Universal", 12125};
         var film3 = new Comparable[]{"Rambo", 1978, 100, "action", "Universal", 32355};
 
+        Log.flush();                        // print the queued DDL before writing directly
         out.println();
         movie.insert(film0);
         movie.insert(film1);
@@ -113,12 +115,24 @@ class MovieDB {
         var t_select2 = movie.select(t -> (Integer) t[movie.col("year")] < 1980);
         t_select2.print();
 
+        //--------------------- select: expression (year < 1980 AND genre = 'sciFi')
+
+        out.println();
+        var t_select3 = movie.select(Expr.col("year").lt(1980).and(Expr.col("genre").eq("sciFi")));
+        t_select3.print();
+
         //--------------------- indexed select: key
 
         out.println();
         var t_iselect = movieStar.select(new KeyType("Harrison_Ford"));
         t_iselect.print();
 
+        //--------------------- indexed select: composite key
+
+        out.println();
+        var t_iselect2 = movie.select(new KeyType("Star_Wars", 1977));
+        t_iselect2.print();
+
         //--------------------- union: movie UNION cinema
 
         out.println();
@@ -131,6 +145,12 @@ class MovieDB {
         var t_minus = movie.minus(cinema);
         t_minus.print();
 
+        //--------------------- intersect: movie INTERSECT cinema
+
+        out.println();
+        var t_intersect = movie.intersect(cinema);
+        t_intersect.print();
+
         //--------------------- equi-join: movie JOIN studio ON studioName = name
 
         out.println();
@@ -143,6 +163,15 @@ class MovieDB {
         var t_join2 = movie.join(cinema);
         t_join2.print();
 
+        //--------------------- operator metrics (also published over JMX)
+
+        out.println();
+        for (var op : new String[]{"select", "join"}) {
+            var m = Metrics.of(Metrics.ALL, op);
+            out.printf("%s: calls = %d, rows out = %d, mean = %.1f us, index hit rate = %.2f%n",
+                    op, m.getCalls(), m.getRowsOut(), m.getMeanMicros(), m.getIndexHitRate());
+        } // for
+
     } // main
 
 } // MovieDB class
@@ -0,0 +1,450 @@
+
+/****************************************************************************************
+ * @file MovieGen.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.function.IntFunction;
+
+import static java.lang.System.out;
+
+/****************************************************************************************
+ * This class generates the six MovieDB tables at any scale, from a seed.  Each tuple is
+ * a function of only the seed, its table and its row number, so the same seed always
+ * gives the same tables, rows can be generated in any order, and nothing but the
+ * popularity distributions is kept in memory.
+ * <p>
+ * The data is shaped like a real catalogue:
+ * <ul>
+ *   <li> studioName and genre follow Zipf distributions (a few studios and genres make
+ *        most movies), as do the stars cast in movies;
+ *   <li> every starsIn tuple names a movie in movie and a star in movieStar, and every
+ *        producerNo and presNo is the certNo of a movieExec;
+ *   <li> a configurable fraction of cinema's tuples are also in movie.
+ * </ul>
+ *
+ * #usage new MovieGen (42, 1_000_000).skew (1.2).overlap (0.25).movie ()
+ */
+public class MovieGen {
+    /**
+     * Salts giving each table its own stream of random numbers.
+     */
+    private static final long MOVIE = 1, STAR = 2, CAST = 3, EXEC = 4, STUDIO = 5;
+
+    /**
+     * The genres, most popular first.
+     */
+    private static final String[] GENRES = {"drama", "comedy", "action", "thriller", "horror", "romance",
+            "sciFi", "crime", "animation", "documentary", "fantasy", "western"};
+
+    /**
+     * The seed all tuples are derived from.
+     */
+    private final long seed;
+
+    /**
+     * The number of movies.
+     */
+    private final int movies;
+
+    /**
+     * The numbers of stars, studios and executives (by default scaled with movies).
+     */
+    private int stars, studios, execs;
+
+    /**
+     * The mean number of stars cast in a movie.
+     */
+    private int cast = 4;
+
+    /**
+     * The Zipf exponent of studioName, genre and casting (0 is uniform).
+     */
+    private double skew = 1.0;
+
+    /**
+     * The fraction of cinema's tuples that are also in movie.
+     */
+    private double overlap = 0.5;
+
+    /**
+     * The map type for the generated tables' indices.
+     */
+    private Table.MapType mType = Table.MapType.TREE_MAP;
+
+    /**
+     * The popularity distributions, built on first use.
+     */
+    private Zipf studioDist, genreDist, starDist;
+
+    /************************************************************************************
+     * Construct a generator of a database with the given number of movies.
+     *
+     * @param _seed    the seed (the same seed gives the same tables)
+     * @param _movies  the number of tuples in movie (and in cinema)
+     */
+    public MovieGen(long _seed, int _movies) {
+        if (_movies < 1) throw new IllegalArgumentException("MovieGen: need at least one movie");
+        seed = _seed;
+        movies = _movies;
+        stars = Math.max(1, movies / 2);
+        studios = Math.max(1, movies / 100);
+        execs = Math.max(1, movies / 20);
+    } // constructor
+
+    /************************************************************************************
+     * Set the number of stars in movieStar.
+     *
+     * @param n  the number of stars
+     * @return this generator
+     */
+    public MovieGen stars(int n) {
+        stars = positive(n);
+        starDist = null;
+        return this;
+    } // stars
+
+    /************************************************************************************
+     * Set the number of studios, which is the number of distinct studioName values.
+     *
+     * @param n  the number of studios
+     * @return this generator
+     */
+    public MovieGen studios(int n) {
+        studios = positive(n);
+        studioDist = null;
+        return this;
+    } // studios
+
+    /************************************************************************************
+     * Set the number of executives in movieExec.
+     *
+     * @param n  the number of executives
+     * @return this generator
+     */
+    public MovieGen execs(int n) {
+        execs = positive(n);
+        return this;
+    } // execs
+
+    /************************************************************************************
+     * Set the mean number of stars per movie in starsIn.
+     *
+     * @param n  the mean cast size
+     * @return this generator
+     */
+    public MovieGen cast(int n) {
+        cast = positive(n);
+        return this;
+    } // cast
+
+    /************************************************************************************
+     * Set the Zipf exponent for studioName, genre and casting: 0 is uniform, and the
+     * larger it is the more the most popular values dominate.
+     *
+     * @param s  the exponent
+     * @return this generator
+     */
+    public MovieGen skew(double s) {
+        if (s < 0) throw new IllegalArgumentException("MovieGen: skew must not be negative");
+        skew = s;
+        studioDist = genreDist = starDist = null;
+        return this;
+    } // skew
+
+    /************************************************************************************
+     * Set the fraction of cinema's tuples that are also in movie.
+     *
+     * @param f  the fraction, from 0 to 1
+     * @return this generator
+     */
+    public MovieGen overlap(double f) {
+        if (f < 0 || f > 1) throw new IllegalArgumentException("MovieGen: overlap must be in [0, 1]");
+        overlap = f;
+        return this;
+    } // overlap
+
+    /************************************************************************************
+     * Set the map type for the indices of the generated tables.
+     *
+     * @param type  the map type
+     * @return this generator
+     */
+    public MovieGen mapType(Table.MapType type) {
+        mType = type;
+        return this;
+    } // mapType
+
+    //----------------------------------------------------------------------------------
+    // Tables
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Generate movie (title year length genre studioName producerNo).
+     *
+     * @return the movie table
+     */
+    public Table movie() {
+        return fill(new Table("movie", "title year length genre studioName producerNo",
+                "String Integer Integer String String Integer", "title year", mType), movieRows());
+    } // movie
+
+    /************************************************************************************
+     * Generate cinema, which has movie's schema.
+     *
+     * @return the cinema table
+     */
+    public Table cinema() {
+        return fill(new Table("cinema", "title year length genre studioName producerNo",
+                "String Integer Integer String String Integer", "title year", mType), cinemaRows());
+    } // cinema
+
+    /************************************************************************************
+     * Generate movieStar (name address gender birthdate).
+     *
+     * @return the movieStar table
+     */
+    public Table movieStar() {
+        return fill(new Table("movieStar", "name address gender birthdate",
+                "String String Character String", "name", mType), movieStarRows());
+    } // movieStar
+
+    /************************************************************************************
+     * Generate starsIn (movieTitle movieYear starName).
+     *
+     * @return the starsIn table
+     */
+    public Table starsIn() {
+        return fill(new Table("starsIn", "movieTitle movieYear starName",
+                "String Integer String", "movieTitle movieYear starName", mType), starsInRows());
+    } // starsIn
+
+    /************************************************************************************
+     * Generate movieExec (certNo name address fee).
+     *
+     * @return the movieExec table
+     */
+    public Table movieExec() {
+        return fill(new Table("movieExec", "certNo name address fee",
+                "Integer String String Float", "certNo", mType), movieExecRows());
+    } // movieExec
+
+    /************************************************************************************
+     * Generate studio (name address presNo).
+     *
+     * @return the studio table
+     */
+    public Table studio() {
+        return fill(new Table("studio", "name address presNo",
+                "String String Integer", "name", mType), studioRows());
+    } // studio
+
+    /************************************************************************************
+     * Insert the rows into the table in bulk.
+     */
+    private static Table fill(Table table, Iterable<Comparable[]> rows) {
+        table.insertAll(rows);
+        return table;
+    } // fill
+
+    //----------------------------------------------------------------------------------
+    // Rows (for streaming into other tables or files)
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Return the tuples of movie, generated as they are iterated.
+     *
+     * @return the movie tuples
+     */
+    public Iterable<Comparable[]> movieRows() {
+        return rows(movies, this::film);
+    } // movieRows
+
+    /************************************************************************************
+     * Return the tuples of cinema: the first overlap * movies of them are movies from
+     * movie (spread evenly over it) and the rest are films that are not in movie.
+     *
+     * @return the cinema tuples
+     */
+    public Iterable<Comparable[]> cinemaRows() {
+        var shared = (int) Math.round(overlap * movies);
+        return rows(movies, c -> (c < shared) ? film((int) ((long) c * movies / shared)) : film(movies + c));
+    } // cinemaRows
+
+    /************************************************************************************
+     * Return the tuples of movieStar.
+     *
+     * @return the movieStar tuples
+     */
+    public Iterable<Comparable[]> movieStarRows() {
+        return rows(stars, i -> {
+            var r = random(STAR, i);
+            return new Comparable[]{"Star" + i, "Address" + r.nextInt(1_000_000), r.nextBoolean() ? 'F' : 'M',
+                    (1 + r.nextInt(12)) + "/" + (1 + r.nextInt(28)) + "/" + (1920 + r.nextInt(85))};
+        });
+    } // movieStarRows
+
+    /************************************************************************************
+     * Return the tuples of starsIn: each movie has from 1 to 2 * cast - 1 distinct stars,
+     * the popular stars appearing in many movies.
+     *
+     * @return the starsIn tuples
+     */
+    public Iterable<Comparable[]> starsInRows() {
+        return () -> new Iterator<>() {
+            private int movie = 0, next = 0;
+            private int[] crew = new int[0];
+            private Comparable[] film;
+
+            @Override
+            public boolean hasNext() {
+                while (next == crew.length && movie < movies) {
+                    film = film(movie);
+                    crew = crew(movie++);
+                    next = 0;
+                } // while
+                return next < crew.length;
+            }
+
+            @Override
+            public Comparable[] next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return new Comparable[]{film[0], film[1], "Star" + crew[next++]};
+            }
+        };
+    } // starsInRows
+
+    /************************************************************************************
+     * Return the tuples of movieExec.
+     *
+     * @return the movieExec tuples
+     */
+    public Iterable<Comparable[]> movieExecRows() {
+        return rows(execs, i -> {
+            var r = random(EXEC, i);
+            return new Comparable[]{i, "Exec" + i, "Address" + r.nextInt(1_000_000),
+                    (float) (10_000 + r.nextInt(9_990_000))};
+        });
+    } // movieExecRows
+
+    /************************************************************************************
+     * Return the tuples of studio.
+     *
+     * @return the studio tuples
+     */
+    public Iterable<Comparable[]> studioRows() {
+        return rows(studios, i -> {
+            var r = random(STUDIO, i);
+            return new Comparable[]{"Studio" + i, "Address" + r.nextInt(1_000_000), r.nextInt(execs)};
+        });
+    } // studioRows
+
+    //----------------------------------------------------------------------------------
+    // Generation
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Generate film number i (movie holds films 0 to movies - 1).  The title is unique,
+     * so (title, year) is too.
+     */
+    private Comparable[] film(int i) {
+        var r = random(MOVIE, i);
+        if (studioDist == null) studioDist = new Zipf(studios, skew);
+        if (genreDist == null) genreDist = new Zipf(GENRES.length, skew);
+        return new Comparable[]{"Movie" + i, 1920 + r.nextInt(105), 60 + r.nextInt(150),
+                GENRES[genreDist.sample(r)], "Studio" + studioDist.sample(r), r.nextInt(execs)};
+    } // film
+
+    /************************************************************************************
+     * Choose the distinct stars cast in movie i.
+     */
+    private int[] crew(int i) {
+        var r = random(CAST, i);
+        if (starDist == null) starDist = new Zipf(stars, skew);
+        var n = Math.min(stars, 1 + r.nextInt(2 * cast - 1));
+        var crew = new int[n];
+        for (var k = 0; k < n; ) {
+            var s = starDist.sample(r);
+            var dup = false;
+            for (var j = 0; j < k && !dup; j++) dup = crew[j] == s;
+            if (!dup) crew[k++] = s;
+        } // for
+        return crew;
+    } // crew
+
+    /************************************************************************************
+     * Make the random number stream for row i of a table.
+     */
+    private SplittableRandom random(long table, int i) {
+        return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + (table << 40) + i);
+    } // random
+
+    /************************************************************************************
+     * Make an iterable over rows 0 to n - 1.
+     */
+    private static Iterable<Comparable[]> rows(int n, IntFunction<Comparable[]> row) {
+        return () -> new Iterator<>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < n;
+            }
+
+            @Override
+            public Comparable[] next() {
+                if (i >= n) throw new NoSuchElementException();
+                return row.apply(i++);
+            }
+        };
+    } // rows
+
+    private static int positive(int n) {
+        if (n < 1) throw new IllegalArgumentException("MovieGen: count must be positive");
+        return n;
+    } // positive
+
+    /************************************************************************************
+     * A Zipf distribution over 0 to n - 1: value k has probability proportional to
+     * 1 / (k + 1)^s.  Sampling is a binary search of the cumulative distribution.
+     */
+    private static class Zipf {
+        private final double[] cdf;
+
+        Zipf(int n, double s) {
+            cdf = new double[n];
+            var sum = 0.0;
+            for (var k = 0; k < n; k++) cdf[k] = sum += Math.pow(k + 1, -s);
+            for (var k = 0; k < n; k++) cdf[k] /= sum;
+        } // constructor
+
+        int sample(SplittableRandom r) {
+            var k = Arrays.binarySearch(cdf, r.nextDouble());
+            return Math.min((k < 0) ? -k - 1 : k, cdf.length - 1);
+        } // sample
+    } // Zipf class
+
+    /************************************************************************************
+     * Generate the six tables and save them in the store directory.
+     *
+     * #usage java MovieGen 1000000 42
+     *
+     * @param args  the number of movies (default 100000) and the seed (default 0)
+     */
+    public static void main(String[] args) {
+        var n = (args.length > 0) ? Integer.parseInt(args[0]) : 100_000;
+        var seed = (args.length > 1) ? Long.parseLong(args[1]) : 0;
+        var gen = new MovieGen(seed, n);
+        for (var table : new Table[]{gen.movie(), gen.cinema(), gen.movieStar(), gen.starsIn(),
+                gen.movieExec(), gen.studio()}) {
+            table.save();
+            out.println(table.getName() + ": " + table.getTuples().size() + " tuples");
+        } // for
+    } // main
+
+} // MovieGen class
@@ -0,0 +1,499 @@
+
+/****************************************************************************************
+ * @file Operator.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/****************************************************************************************
+ * This class provides pipelined (Volcano-style) execution of relational algebra operators.
+ * Each operator is an iterator with open, next and close: next pulls tuples from the
+ * operator's children one at a time, so a chain of operators passes tuples along without
+ * building an intermediate table for each step.  Only blocking work is buffered (the set
+ * of tuples seen by union, the right side of minus and the build side of a hash join).
+ * A consumer that stops early (e.g., limit) stops pulling from the whole chain.
+ *
+ * #usage movie.scan ().select (t -> (Integer) t[1] < 1980).project ("title year").limit (10).toTable ()
+ */
+public abstract class Operator {
+    /**
+     * Names of the attributes of the tuples this operator produces.
+     */
+    protected final String[] attribute;
+
+    /**
+     * Domains of the attributes of the tuples this operator produces.
+     */
+    protected final Class[] domain;
+
+    /**
+     * Key of the tuples this operator produces.
+     */
+    protected final String[] key;
+
+    /************************************************************************************
+     * Construct an operator producing tuples with the given schema.
+     *
+     * @param _attribute  the attribute names
+     * @param _domain     the attribute domains
+     * @param _key        the key
+     */
+    protected Operator(String[] _attribute, Class[] _domain, String[] _key) {
+        attribute = _attribute;
+        domain = _domain;
+        key = _key;
+    } // constructor
+
+    /************************************************************************************
+     * Prepare the operator (and its children) to produce tuples.
+     */
+    public abstract void open();
+
+    /************************************************************************************
+     * Produce the next tuple.
+     *
+     * @return the next tuple, or null when there are no more
+     */
+    public abstract Comparable[] next();
+
+    /************************************************************************************
+     * Release the resources held by the operator (and its children).
+     */
+    public abstract void close();
+
+    //----------------------------------------------------------------------------------
+    // Building pipelines
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Keep only the tuples satisfying the predicate.  An Expr is bound to this
+     * operator's attributes first.
+     *
+     * @param predicate  the check condition for tuples
+     * @return the select operator
+     */
+    public Operator select(Predicate<Comparable[]> predicate) {
+        return new Select(this, (predicate instanceof Expr) ? ((Expr) predicate).bind(attribute) : predicate);
+    } // select
+
+    /************************************************************************************
+     * Keep only the given attributes of each tuple.
+     *
+     * @param attributes  the attributes to project onto
+     * @return the project operator
+     */
+    public Operator project(String attributes) {
+        return new Project(this, attributes.split(" "));
+    } // project
+
+    /************************************************************************************
+     * Produce the tuples of this operator or of other, eliminating duplicates.
+     *
+     * @param other  the rhs of the union
+     * @return the union operator
+     */
+    public Operator union(Operator other) {
+        return new Union(this, other);
+    } // union
+
+    /************************************************************************************
+     * Produce the tuples of this operator that are not produced by other, eliminating
+     * duplicates.
+     *
+     * @param other  the rhs of the difference
+     * @return the minus operator
+     */
+    public Operator minus(Operator other) {
+        return new Minus(this, other);
+    } // minus
+
+    /************************************************************************************
+     * Equi-join this operator with other using a hash join that builds on other and
+     * streams this operator's tuples through it.
+     *
+     * @param attributes1  the attributes of this operator to be compared
+     * @param attributes2  the attributes of other to be compared
+     * @param other        the rhs of the join
+     * @return the join operator
+     */
+    public Operator h_join(String attributes1, String attributes2, Operator other) {
+        return new HashJoin(this, attributes1.split(" "), attributes2.split(" "), other);
+    } // h_join
+
+    /************************************************************************************
+     * Produce at most n tuples, then stop pulling from the children.
+     *
+     * @param n  the maximum number of tuples
+     * @return the limit operator
+     */
+    public Operator limit(int n) {
+        return new Limit(this, n);
+    } // limit
+
+    /************************************************************************************
+     * Run the pipeline and collect its result into a table.
+     *
+     * @param name  the name of the result table
+     * @return the table holding every tuple produced
+     */
+    public Table toTable(String name) {
+        var rows = new ArrayList<Comparable[]>();
+        open();
+        try {
+            for (var t = next(); t != null; t = next()) rows.add(t);
+        } finally {
+            close();
+        } // try
+        return new Table(name, attribute, domain, key, rows);
+    } // toTable
+
+    /************************************************************************************
+     * Run the pipeline and collect its result into a table named after the pipeline.
+     *
+     * @return the table holding every tuple produced
+     */
+    public Table toTable() {
+        return toTable("pipeline");
+    } // toTable
+
+    public String[] getAttribute() {
+        return attribute;
+    }
+
+    public Class[] getDomain() {
+        return domain;
+    }
+
+    /************************************************************************************
+     * Return the column position for the given attribute name.
+     *
+     * @param attr  the given attribute name
+     * @return a column position, or -1 if not found
+     */
+    public int col(String attr) {
+        return Arrays.asList(attribute).indexOf(attr);
+    } // col
+
+    /************************************************************************************
+     * Return the column positions of the given attributes, failing on unknown names.
+     */
+    protected int[] cols(String[] attrs) {
+        var pos = new int[attrs.length];
+        for (var j = 0; j < attrs.length; j++) {
+            pos[j] = col(attrs[j]);
+            if (pos[j] < 0) throw new IllegalArgumentException("attribute " + attrs[j] + " not found");
+        } // for
+        return pos;
+    } // cols
+
+    /************************************************************************************
+     * Build a key from the values of tuple t at the given column positions.
+     */
+    protected static KeyType keyAt(Comparable[] t, int[] pos) {
+        var vals = new Comparable[pos.length];
+        for (var j = 0; j < pos.length; j++) vals[j] = t[pos[j]];
+        return new KeyType(vals);
+    } // keyAt
+
+    //----------------------------------------------------------------------------------
+    // Operators
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Scan the tuples of a table.
+     */
+    public static class Scan
+            extends Operator {
+        private final Table table;
+        private Iterator<Comparable[]> it;
+
+        public Scan(Table _table) {
+            super(_table.getAttribute(), _table.getDomain(), _table.getKey());
+            table = _table;
+        } // constructor
+
+        @Override
+        public void open() {
+            it = table.getTuples().iterator();
+        }
+
+        @Override
+        public Comparable[] next() {
+            return it.hasNext() ? it.next() : null;
+        }
+
+        @Override
+        public void close() {
+            it = null;
+        }
+    } // Scan class
+
+    /************************************************************************************
+     * Pass on the tuples of the child satisfying a predicate.
+     */
+    private static class Select
+            extends Operator {
+        private final Operator child;
+        private final Predicate<Comparable[]> predicate;
+
+        Select(Operator _child, Predicate<Comparable[]> _predicate) {
+            super(_child.attribute, _child.domain, _child.key);
+            child = _child;
+            predicate = _predicate;
+        } // constructor
+
+        @Override
+        public void open() {
+            child.open();
+        }
+
+        @Override
+        public Comparable[] next() {
+            for (var t = child.next(); t != null; t = child.next()) {
+                if (predicate.test(t)) return t;
+            } // for
+            return null;
+        }
+
+        @Override
+        public void close() {
+            child.close();
+        }
+    } // Select class
+
+    /************************************************************************************
+     * Pass on the given columns of each tuple of the child.
+     */
+    private static class Project
+            extends Operator {
+        private final Operator child;
+        private final int[] pos;
+
+        Project(Operator _child, String[] attrs) {
+            super(attrs, domainsOf(_child, attrs),
+                    Arrays.asList(attrs).containsAll(Arrays.asList(_child.key)) ? _child.key : attrs);
+            child = _child;
+            pos = _child.cols(attrs);
+        } // constructor
+
+        private static Class[] domainsOf(Operator child, String[] attrs) {
+            var pos = child.cols(attrs);
+            var dom = new Class[pos.length];
+            for (var j = 0; j < pos.length; j++) dom[j] = child.domain[pos[j]];
+            return dom;
+        } // domainsOf
+
+        @Override
+        public void open() {
+            child.open();
+        }
+
+        @Override
+        public Comparable[] next() {
+            var t = child.next();
+            if (t == null) return null;
+            var tup = new Comparable[pos.length];
+            for (var j = 0; j < pos.length; j++) tup[j] = t[pos[j]];
+            return tup;
+        }
+
+        @Override
+        public void close() {
+            child.close();
+        }
+    } // Project class
+
+    /************************************************************************************
+     * Pass on the tuples of the left child and then the right child, skipping tuples
+     * already passed on.
+     */
+    private static class Union
+            extends Operator {
+        private final Operator left;
+        private final Operator right;
+        private Set<KeyType> seen;
+        private boolean onRight;
+
+        Union(Operator _left, Operator _right) {
+            super(_left.attribute, _left.domain, _left.key);
+            if (!Arrays.equals(_left.domain, _right.domain))
+                throw new IllegalArgumentException("union: operands are not union compatible");
+            left = _left;
+            right = _right;
+        } // constructor
+
+        @Override
+        public void open() {
+            seen = new HashSet<>();
+            onRight = false;
+            left.open();
+        }
+
+        @Override
+        public Comparable[] next() {
+            while (true) {
+                var t = onRight ? right.next() : left.next();
+                if (t == null) {
+                    if (onRight) return null;
+                    left.close();
+                    right.open();
+                    onRight = true;
+                } else if (seen.add(new KeyType(t))) {
+                    return t;
+                } // if
+            } // while
+        }
+
+        @Override
+        public void close() {
+            if (onRight) right.close();
+            else left.close();
+            seen = null;
+        }
+    } // Union class
+
+    /************************************************************************************
+     * Pass on the tuples of the left child that the right child does not produce.  The
+     * right child is read (and hashed) when the operator is opened.
+     */
+    private static class Minus
+            extends Operator {
+        private final Operator left;
+        private final Operator right;
+        private Set<KeyType> seen;
+
+        Minus(Operator _left, Operator _right) {
+            super(_left.attribute, _left.domain, _left.key);
+            if (!Arrays.equals(_left.domain, _right.domain))
+                throw new IllegalArgumentException("minus: operands are not union compatible");
+            left = _left;
+            right = _right;
+        } // constructor
+
+        @Override
+        public void open() {
+            seen = new HashSet<>();
+            right.open();
+            for (var t = right.next(); t != null; t = right.next()) seen.add(new KeyType(t));
+            right.close();
+            left.open();
+        }
+
+        @Override
+        public Comparable[] next() {
+            for (var t = left.next(); t != null; t = left.next()) {
+                if (seen.add(new KeyType(t))) return t;
+            } // for
+            return null;
+        }
+
+        @Override
+        public void close() {
+            left.close();
+            seen = null;
+        }
+    } // Minus class
+
+    /************************************************************************************
+     * Equi-join the left child with the right child: the right child is hashed on its
+     * join attributes when the operator is opened, and each left tuple probes the hash
+     * table as it arrives.  Duplicate attribute names from the right get a "2" appended.
+     */
+    private static class HashJoin
+            extends Operator {
+        private final Operator left;
+        private final Operator right;
+        private final int[] leftPos;
+        private final int[] rightPos;
+        private Map<KeyType, List<Comparable[]>> build;
+        private Comparable[] probe;
+        private List<Comparable[]> matches;
+        private int m;
+
+        HashJoin(Operator _left, String[] attrs1, String[] attrs2, Operator _right) {
+            super(joinedAttributes(_left, _right), ArrayUtil.concat(_left.domain, _right.domain), _left.key);
+            if (attrs1.length != attrs2.length)
+                throw new ArrayIndexOutOfBoundsException("Attributes must be of equal length.");
+            left = _left;
+            right = _right;
+            leftPos = _left.cols(attrs1);
+            rightPos = _right.cols(attrs2);
+        } // constructor
+
+        private static String[] joinedAttributes(Operator left, Operator right) {
+            var names = new ArrayList<>(Arrays.asList(left.attribute));
+            var seen = new HashSet<>(names);
+            for (var a : right.attribute) names.add(seen.contains(a) ? a + "2" : a);
+            return names.toArray(new String[0]);
+        } // joinedAttributes
+
+        @Override
+        public void open() {
+            build = new HashMap<>();
+            right.open();
+            for (var t = right.next(); t != null; t = right.next()) {
+                build.computeIfAbsent(keyAt(t, rightPos), k -> new ArrayList<>()).add(t);
+            } // for
+            right.close();
+            left.open();
+            matches = null;
+        }
+
+        @Override
+        public Comparable[] next() {
+            while (matches == null || m == matches.size()) {
+                probe = left.next();
+                if (probe == null) return null;
+                matches = build.get(keyAt(probe, leftPos));
+                m = 0;
+            } // while
+            return ArrayUtil.concat(probe, matches.get(m++));
+        }
+
+        @Override
+        public void close() {
+            left.close();
+            build = null;
+            matches = null;
+        }
+    } // HashJoin class
+
+    /************************************************************************************
+     * Pass on at most n tuples of the child.
+     */
+    private static class Limit
+            extends Operator {
+        private final Operator child;
+        private final int n;
+        private int produced;
+
+        Limit(Operator _child, int _n) {
+            super(_child.attribute, _child.domain, _child.key);
+            child = _child;
+            n = _n;
+        } // constructor
+
+        @Override
+        public void open() {
+            produced = 0;
+            child.open();
+        }
+
+        @Override
+        public Comparable[] next() {
+            if (produced >= n) return null;
+            var t = child.next();
+            if (t != null) produced++;
+            return t;
+        }
+
+        @Override
+        public void close() {
+            child.close();
+        }
+    } // Limit class
+
+} // Operator class
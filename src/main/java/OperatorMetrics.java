@@ -0,0 +1,159 @@
+
+/****************************************************************************************
+ * @file OperatorMetrics.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/****************************************************************************************
+ * This class counts what one relational operator has done: calls, tuples in and out,
+ * time, and index use.  Call times are kept in a histogram with one bucket per power of
+ * 2 nanoseconds, so recording a call is a handful of uncontended additions and
+ * percentiles are accurate to within a factor of 2.  Instances are made and registered
+ * with JMX by Metrics.
+ */
+public class OperatorMetrics
+        implements OperatorMetricsMBean {
+    /**
+     * The number of histogram buckets (bucket b counts times in [2^b, 2^(b+1)) ns).
+     */
+    private static final int BUCKETS = 64;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder rowsIn = new LongAdder();
+    private final LongAdder rowsOut = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder scans = new LongAdder();
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+    /************************************************************************************
+     * Record one call of the operator.
+     *
+     * @param in       the number of input tuples
+     * @param out      the number of result tuples
+     * @param elapsed  the time taken, in nanoseconds
+     */
+    void record(long in, long out, long elapsed) {
+        calls.increment();
+        rowsIn.add(in);
+        rowsOut.add(out);
+        nanos.add(elapsed);
+        histogram.incrementAndGet(BUCKETS - 1 - Long.numberOfLeadingZeros(Math.max(1, elapsed)));
+    } // record
+
+    /************************************************************************************
+     * Record index probes.
+     *
+     * @param n      the number of probes
+     * @param found  the number of probes that found a tuple
+     */
+    void index(long n, long found) {
+        probes.add(n);
+        matches.add(found);
+    } // index
+
+    /************************************************************************************
+     * Record a call that scanned every tuple because no index could be used.
+     */
+    void scan() {
+        scans.increment();
+    } // scan
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getRowsIn() {
+        return rowsIn.sum();
+    }
+
+    @Override
+    public long getRowsOut() {
+        return rowsOut.sum();
+    }
+
+    @Override
+    public double getTotalMillis() {
+        return nanos.sum() / 1e6;
+    }
+
+    @Override
+    public double getMeanMicros() {
+        var n = calls.sum();
+        return (n == 0) ? 0.0 : nanos.sum() / 1e3 / n;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return percentile(0.50);
+    }
+
+    @Override
+    public double getP99Micros() {
+        return percentile(0.99);
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+        var h = new long[BUCKETS];
+        for (var b = 0; b < BUCKETS; b++) h[b] = histogram.get(b);
+        return h;
+    }
+
+    @Override
+    public long getIndexProbes() {
+        return probes.sum();
+    }
+
+    @Override
+    public long getIndexMatches() {
+        return matches.sum();
+    }
+
+    @Override
+    public double getIndexHitRate() {
+        var n = probes.sum();
+        return (n == 0) ? 0.0 : (double) matches.sum() / n;
+    }
+
+    @Override
+    public long getScans() {
+        return scans.sum();
+    }
+
+    @Override
+    public void reset() {
+        for (var a : new LongAdder[]{calls, rowsIn, rowsOut, nanos, probes, matches, scans}) a.reset();
+        for (var b = 0; b < BUCKETS; b++) histogram.set(b, 0);
+    }
+
+    /************************************************************************************
+     * Estimate a percentile of the call times from the histogram (the upper end of the
+     * bucket holding it).
+     *
+     * @param p  the percentile, as a fraction
+     * @return the estimate, in microseconds
+     */
+    private double percentile(double p) {
+        var h = getLatencyHistogram();
+        var total = 0L;
+        for (var c : h) total += c;
+        if (total == 0) return 0.0;
+
+        var rank = (long) Math.ceil(p * total);
+        var seen = 0L;
+        for (var b = 0; b < BUCKETS; b++) {
+            seen += h[b];
+            if (seen >= rank) return Math.pow(2, b + 1) / 1e3;
+        } // for
+        return Math.pow(2, BUCKETS) / 1e3;
+    } // percentile
+
+} // OperatorMetrics class
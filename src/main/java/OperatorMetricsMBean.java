@@ -0,0 +1,53 @@
+
+/****************************************************************************************
+ * @file OperatorMetricsMBean.java
+ *
+ * @author  Sequel To SQL
+ */
+
+/****************************************************************************************
+ * The JMX management interface of OperatorMetrics: what one relational operator (e.g.,
+ * select or h_join) has done, on one table or on every table.
+ */
+public interface OperatorMetricsMBean {
+
+    /** @return the number of times the operator ran */
+    long getCalls();
+
+    /** @return the number of input tuples read */
+    long getRowsIn();
+
+    /** @return the number of result tuples produced */
+    long getRowsOut();
+
+    /** @return the total time spent in the operator, in milliseconds */
+    double getTotalMillis();
+
+    /** @return the mean time per call, in microseconds */
+    double getMeanMicros();
+
+    /** @return the median time per call, in microseconds (to within a factor of 2) */
+    double getP50Micros();
+
+    /** @return the 99th percentile time per call, in microseconds (to within a factor of 2) */
+    double getP99Micros();
+
+    /** @return the number of calls whose time fell in each power-of-2 range of nanoseconds */
+    long[] getLatencyHistogram();
+
+    /** @return the number of index probes */
+    long getIndexProbes();
+
+    /** @return the number of index probes that found a tuple */
+    long getIndexMatches();
+
+    /** @return the fraction of index probes that found a tuple */
+    double getIndexHitRate();
+
+    /** @return the number of calls that scanned every tuple because no index could be used */
+    long getScans();
+
+    /** Set every counter back to zero. */
+    void reset();
+
+} // OperatorMetricsMBean interface
@@ -0,0 +1,795 @@
+/****************************************************************************************
+ * @file Optimizer.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/****************************************************************************************
+ * This class is a cost-based optimizer for logical plans (see Plan).  Each maximal
+ * region of selects, projects and joins is flattened into its inputs (leaves), the
+ * conjuncts of its conditions and its equi-join edges, and then rebuilt:
+ * <ul>
+ *   <li> conjuncts over one leaf are evaluated on that leaf (a select on a table, which
+ *        uses the table's index for key conditions);
+ *   <li> the join order is chosen by dynamic programming over the subsets of leaves
+ *        (greedily for more than DP_LEAVES leaves), minimizing the estimated size of
+ *        the intermediate results plus the cost of the join algorithms;
+ *   <li> each join uses the cheapest of i_join (probing a table's primary or a
+ *        secondary index, so the table is never scanned), h_join and the nested loop
+ *        join;
+ *   <li> conjuncts over several leaves are evaluated right after the join that brings
+ *        their leaves together, and each leaf is projected onto the columns used above
+ *        it.
+ * </ul>
+ * Selects over a union or difference are pushed into both operands.  While a region
+ * is planned, every column gets a unique name (leaf alias "." attribute), and the
+ * result is renamed back to the attributes of the original plan.
+ * <p>
+ * Estimates come from the tables' statistics (see TableStats): comparisons of a
+ * table's column with a value use the column's histogram and distinct count.  Above
+ * the tables, columns are assumed independent and uniform: an equality keeps 1 / V of
+ * the tuples (V being the number of distinct values), a range comparison a third, and
+ * an equi-join of R and S |R| |S| / max (V (R.a), V (S.b)).
+ */
+class Optimizer {
+    /**
+     * The most leaves a region may have for its join order to be found by dynamic
+     * programming (which takes 3^n steps).
+     */
+    private static final int DP_LEAVES = 12;
+
+    /**
+     * Selectivity of a range comparison, and of a condition that cannot be analyzed.
+     */
+    private static final double RANGE = 1.0 / 3, UNKNOWN = 0.5;
+
+    /**
+     * Cost of probing an index, relative to reading a tuple.
+     */
+    private static final double PROBE = 1.0;
+
+    /**
+     * Estimated distinct values of each column of the plans seen so far.
+     */
+    private final Map<Plan, double[]> ndvs = new IdentityHashMap<>();
+
+    /************************************************************************************
+     * Optimize a plan.
+     *
+     * @param p  the plan, as written
+     * @return an equivalent plan with the same attributes, with estimates set
+     */
+    Plan optimize(Plan p) {
+        if (p instanceof Plan.Scan) return estimate(new Plan.Scan(((Plan.Scan) p).table));
+        if (p instanceof Plan.Union) {
+            var u = (Plan.Union) p;
+            return estimate(new Plan.Union(optimize(u.left), optimize(u.right)));
+        } // if
+        if (p instanceof Plan.Minus) {
+            var m = (Plan.Minus) p;
+            return estimate(new Plan.Minus(optimize(m.left), optimize(m.right)));
+        } // if
+        if (p instanceof Plan.Rename) {
+            return estimate(new Plan.Rename(optimize(((Plan.Rename) p).child), p.attribute));
+        } // if
+        if (p instanceof Plan.Select) {
+            var s = (Plan.Select) p;
+            if (s.child instanceof Plan.Union) {
+                var u = (Plan.Union) s.child;
+                return optimize(new Plan.Union(new Plan.Select(u.left, s.condition),
+                        new Plan.Select(u.right, s.condition.rename(positional(u.left, u.right)))));
+            } // if
+            if (s.child instanceof Plan.Minus) {
+                var m = (Plan.Minus) s.child;
+                return optimize(new Plan.Minus(new Plan.Select(m.left, s.condition),
+                        new Plan.Select(m.right, s.condition.rename(positional(m.left, m.right)))));
+            } // if
+            if (distinct(s.child)) {
+                var d = (Plan.Project) s.child;
+                return optimize(new Plan.Project(new Plan.Select(d.child, s.condition), d.attribute, d.distinct));
+            } // if
+        } // if
+        if (distinct(p)) {
+            var d = (Plan.Project) p;
+            return estimate(new Plan.Project(optimize(d.child), d.attribute, d.distinct));
+        } // if
+        return new Region().plan(p);
+    } // optimize
+
+    /************************************************************************************
+     * Determine whether p eliminates duplicates, so the joins and selects below it are
+     * optimized apart from those above (which would otherwise change how many times
+     * each tuple appears).
+     */
+    private static boolean distinct(Plan p) {
+        return p instanceof Plan.Project && ((Plan.Project) p).distinct != null;
+    } // distinct
+
+    /************************************************************************************
+     * Map the attributes of one operand of a union or difference to the other's.
+     */
+    private static Map<String, String> positional(Plan from, Plan to) {
+        var names = new HashMap<String, String>();
+        for (var j = 0; j < from.attribute.length; j++) names.putIfAbsent(from.attribute[j], to.attribute[j]);
+        return names;
+    } // positional
+
+    //----------------------------------------------------------------------------------
+    // Estimates
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Set the estimated rows and cost of plan p (and its children), unless already set.
+     *
+     * @param p  the plan
+     * @return p
+     */
+    private Plan estimate(Plan p) {
+        if (p.rows >= 0) return p;
+        for (var child : p.children()) estimate(child);
+
+        if (p instanceof Plan.Scan) {
+            p.rows = ((Plan.Scan) p).table.getTuples().size();
+            p.cost = p.rows;
+        } else if (p instanceof Plan.Select) {
+            var s = (Plan.Select) p;
+            var table = (s.child instanceof Plan.Scan) ? ((Plan.Scan) s.child).table : null;
+            p.rows = s.child.rows * selectivity(s.condition, a -> ndv(s.child, s.child.col(a)),
+                    a -> (table == null) ? null : table.getStats(a));
+            p.cost = keyLookup(s) ? 1 : indexLookup(s) ? 1 + p.rows : s.child.cost + s.child.rows;
+        } else if (p instanceof Plan.Project) {
+            var c = ((Plan.Project) p).child;
+            p.rows = c.rows;
+            if (distinct(p)) {
+                var groups = 1.0;
+                for (var a : p.attribute) groups *= ndv(c, c.col(a));
+                p.rows = Math.max(1, Math.min(c.rows, groups));
+            } // if
+            p.cost = c.cost + c.rows;
+        } else if (p instanceof Plan.Rename) {
+            var c = ((Plan.Rename) p).child;
+            p.rows = c.rows;
+            p.cost = c.cost;
+        } else if (p instanceof Plan.Union) {
+            var u = (Plan.Union) p;
+            p.rows = u.left.rows + u.right.rows;
+            p.cost = u.left.cost + u.right.cost + p.rows;
+        } else if (p instanceof Plan.Minus) {
+            var m = (Plan.Minus) p;
+            p.rows = m.left.rows;
+            p.cost = m.left.cost + m.right.cost + m.left.rows + m.right.rows;
+        } else if (p instanceof Plan.Join) {
+            var j = (Plan.Join) p;
+            var l = j.left;
+            var r = j.right;
+            var sel = 1.0;
+            for (var pair : joinPairs(j)) sel /= Math.max(ndv(l, pair[0]), ndv(r, pair[1]));
+            p.rows = Math.max(1, l.rows * r.rows * Math.max(sel, 1 / Math.max(l.rows, r.rows)));
+            var work = (j.algo == Plan.Algo.NESTED_LOOP) ? l.rows * r.rows
+                     : (j.algo == Plan.Algo.INDEX) ? l.rows * PROBE : l.rows + r.rows;
+            p.cost = l.cost + r.cost + work + p.rows;
+        } // if
+        return p;
+    } // estimate
+
+    /************************************************************************************
+     * Return the column pairs (left, right) a join compares.
+     */
+    private static List<int[]> joinPairs(Plan.Join j) {
+        var pairs = new ArrayList<int[]>();
+        if (j.natural()) {
+            for (var a = 0; a < j.left.attribute.length; a++) {
+                var b = j.right.col(j.left.attribute[a]);
+                if (b >= 0 && j.left.col(j.left.attribute[a]) == a) pairs.add(new int[]{a, b});
+            } // for
+        } else {
+            for (var k = 0; k < j.attrs1.length; k++) pairs.add(new int[]{j.left.col(j.attrs1[k]), j.right.col(j.attrs2[k])});
+        } // if
+        return pairs;
+    } // joinPairs
+
+    /************************************************************************************
+     * Determine whether a select over a table is answered by a lookup in its primary
+     * index (equality with a value on every key attribute).
+     */
+    private static boolean keyLookup(Plan.Select s) {
+        if (!(s.child instanceof Plan.Scan)) return false;
+        var table = ((Plan.Scan) s.child).table;
+        if (table.getMapType() == Table.MapType.NO_MAP) return false;
+        return equalities(s).containsAll(Arrays.asList(table.getKey()));
+    } // keyLookup
+
+    /************************************************************************************
+     * Determine whether a select over a table is answered by a lookup in one of its
+     * secondary indexes (equality with a value on every indexed attribute).
+     */
+    private static boolean indexLookup(Plan.Select s) {
+        if (!(s.child instanceof Plan.Scan)) return false;
+        var bound = equalities(s);
+        for (var attrs : ((Plan.Scan) s.child).table.getIndexes()) {
+            if (bound.containsAll(Arrays.asList(attrs))) return true;
+        } // for
+        return false;
+    } // indexLookup
+
+    /************************************************************************************
+     * Return the attributes a select's condition requires to equal a value.
+     */
+    private static Set<String> equalities(Plan.Select s) {
+        var bound = new HashSet<String>();
+        for (var c : s.condition.conjuncts()) {
+            var cmp = (c instanceof Expr.Cmp) ? ((Expr.Cmp) c).columnVsLiteral() : null;
+            if (cmp != null && cmp.op == Expr.Op.EQ) bound.add(((Expr.Col) cmp.left).attr);
+        } // for
+        return bound;
+    } // equalities
+
+    /************************************************************************************
+     * Estimate the number of distinct values in column col of plan p's result.
+     *
+     * @param p    the plan (already estimated)
+     * @param col  the column position
+     * @return the estimated number of distinct values (at least 1)
+     */
+    private double ndv(Plan p, int col) {
+        var memo = ndvs.get(p);
+        if (memo == null) {
+            memo = new double[p.attribute.length];
+            Arrays.fill(memo, -1);
+            ndvs.put(p, memo);
+        } // if
+        if (memo[col] >= 0) return memo[col];
+
+        double v;
+        if (p instanceof Plan.Scan) {
+            var table = ((Plan.Scan) p).table;
+            var key = table.getKey();
+            v = (key.length == 1 && table.col(key[0]) == col) ? p.rows : table.getStats().column(col).distinct();
+        } else if (p instanceof Plan.Select) {
+            v = ndv(((Plan.Select) p).child, col);
+        } else if (p instanceof Plan.Project) {
+            var c = ((Plan.Project) p).child;
+            v = ndv(c, c.col(p.attribute[col]));
+        } else if (p instanceof Plan.Rename) {
+            v = ndv(((Plan.Rename) p).child, col);
+        } else if (p instanceof Plan.Union) {
+            v = ndv(((Plan.Union) p).left, col) + ndv(((Plan.Union) p).right, col);
+        } else if (p instanceof Plan.Minus) {
+            v = ndv(((Plan.Minus) p).left, col);
+        } else {
+            var j = (Plan.Join) p;
+            var n = j.left.attribute.length;
+            v = (col < n) ? ndv(j.left, col)
+              : j.natural() ? ndv(j.right, j.right.col(p.attribute[col])) : ndv(j.right, col - n);
+        } // if
+        memo[col] = Math.max(1, Math.min(v, p.rows));
+        return memo[col];
+    } // ndv
+
+    /************************************************************************************
+     * Estimate the fraction of tuples satisfying a condition.
+     *
+     * @param e      the condition
+     * @param ndv    gives the distinct values of a column, by attribute name
+     * @param stats  gives the statistics of a table column, by attribute name (or null
+     *               if the column is not a table's)
+     * @return the selectivity, from 0 to 1
+     */
+    private static double selectivity(Expr e, ToDoubleFunction<String> ndv, Function<String, ColumnStats> stats) {
+        if (e instanceof Expr.And) {
+            var a = (Expr.And) e;
+            return selectivity(a.left, ndv, stats) * selectivity(a.right, ndv, stats);
+        } // if
+        if (e instanceof Expr.Or) {
+            var o = (Expr.Or) e;
+            var l = selectivity(o.left, ndv, stats);
+            var r = selectivity(o.right, ndv, stats);
+            return l + r - l * r;
+        } // if
+        if (e instanceof Expr.Not) return 1 - selectivity(((Expr.Not) e).expr, ndv, stats);
+        if (!(e instanceof Expr.Cmp)) return UNKNOWN;
+
+        var cmp = (Expr.Cmp) e;
+        double v;
+        var lit = cmp.columnVsLiteral();
+        if (lit != null) {
+            var column = stats.apply(((Expr.Col) lit.left).attr);
+            if (column != null) return column.selectivity(lit.op, ((Expr.Lit) lit.right).value);
+            v = ndv.applyAsDouble(((Expr.Col) lit.left).attr);
+        } else if (cmp.left instanceof Expr.Col && cmp.right instanceof Expr.Col) {
+            v = Math.max(ndv.applyAsDouble(((Expr.Col) cmp.left).attr), ndv.applyAsDouble(((Expr.Col) cmp.right).attr));
+        } else {
+            return UNKNOWN;
+        } // if
+        switch (cmp.op) {
+            case EQ: return 1 / v;
+            case NE: return 1 - 1 / v;
+            default: return RANGE;
+        } // switch
+    } // selectivity
+
+    //----------------------------------------------------------------------------------
+    // Join regions
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * An input of a region: a table or a union or difference.
+     */
+    private static class Leaf {
+        Plan plan;                                   // the input as written
+        Plan filtered;                               // optimized, with its conjuncts applied
+        String[] ids;                                // unique names of its columns
+        final List<Expr> filter = new ArrayList<>(); // conjuncts over its columns only (by id)
+        double rows;
+    } // Leaf class
+
+    /************************************************************************************
+     * An equality between columns of two leaves.
+     */
+    private static class Edge {
+        final Expr expr;
+        final String a, b;
+        final int la, lb;
+
+        Edge(Expr _expr, String _a, String _b, int _la, int _lb) {
+            expr = _expr;
+            a = _a;
+            b = _b;
+            la = _la;
+            lb = _lb;
+        } // constructor
+    } // Edge class
+
+    /************************************************************************************
+     * A conjunct over the columns of several leaves that is not an equi-join edge.
+     */
+    private static class Pred {
+        final Expr expr;
+        final long mask;
+        double sel = UNKNOWN;
+
+        Pred(Expr _expr, long _mask) {
+            expr = _expr;
+            mask = _mask;
+        } // constructor
+    } // Pred class
+
+    /************************************************************************************
+     * A plan for joining the leaves in mask: a leaf, or a join of two sub-plans.
+     */
+    private static class Sub {
+        final long mask;
+        final int leaf;                              // the leaf, or -1 for a join
+        final Sub left, right;
+        final Plan.Algo algo;
+        final List<Edge> on;                         // the edges the join algorithm compares
+        final double rows, cost;
+
+        Sub(int _leaf, double _rows, double _cost) {
+            this(1L << _leaf, _leaf, null, null, null, null, _rows, _cost);
+        } // constructor
+
+        Sub(long _mask, int _leaf, Sub _left, Sub _right, Plan.Algo _algo, List<Edge> _on, double _rows, double _cost) {
+            mask = _mask;
+            leaf = _leaf;
+            left = _left;
+            right = _right;
+            algo = _algo;
+            on = _on;
+            rows = _rows;
+            cost = _cost;
+        } // constructor
+    } // Sub class
+
+    /************************************************************************************
+     * The attribute names of a (sub-)plan in the region and the unique ids of their
+     * columns.
+     */
+    private static class Out {
+        final String[] names, ids;
+
+        Out(String[] _names, String[] _ids) {
+            names = _names;
+            ids = _ids;
+        } // constructor
+
+        String id(String name) {
+            var j = Arrays.asList(names).indexOf(name);
+            if (j < 0) throw new IllegalArgumentException("attribute " + name + " not found");
+            return ids[j];
+        } // id
+
+        Map<String, String> toIds() {
+            var map = new HashMap<String, String>();
+            for (var j = 0; j < names.length; j++) map.putIfAbsent(names[j], ids[j]);
+            return map;
+        } // toIds
+    } // Out class
+
+    /************************************************************************************
+     * The planning of one region of selects, projects and joins.
+     */
+    private class Region {
+        private final List<Leaf> leaves = new ArrayList<>();
+        private final List<Expr> conjuncts = new ArrayList<>();
+        private final Map<String, Integer> leafOf = new HashMap<>();
+        private final Map<String, String> localName = new HashMap<>();
+        private final Map<String, Double> ndvOf = new HashMap<>();
+        private final List<Edge> edges = new ArrayList<>();
+        private final List<Pred> preds = new ArrayList<>();
+        private final Set<String> needed = new HashSet<>();
+
+        /********************************************************************************
+         * Plan the region rooted at p.
+         *
+         * @param p  the root of the region, as written
+         * @return the optimized plan
+         */
+        Plan plan(Plan p) {
+            var out = collect(p);
+            var n = leaves.size();
+            if (n > 62) return p;
+
+            for (var i = 0; i < n; i++) prepare(i);
+            classify();
+            needed.addAll(Arrays.asList(out.ids));
+            for (var e : edges) {
+                needed.add(e.a);
+                needed.add(e.b);
+            } // for
+            for (var pr : preds) pr.expr.columns(needed);
+
+            var best = (n <= DP_LEAVES) ? dynamic() : greedy();
+            if (best == null) return p;                         // not connected: run as written
+
+            var root = build(best);
+            if (!Arrays.equals(root.attribute, out.ids)) root = est(new Plan.Project(root, out.ids), root.rows, root.cost + root.rows);
+            return est(new Plan.Rename(root, out.names), root.rows, root.cost);
+        } // plan
+
+        /********************************************************************************
+         * Flatten the plan into leaves and conjuncts, returning its columns.
+         */
+        private Out collect(Plan p) {
+            if (p instanceof Plan.Select) {
+                var s = (Plan.Select) p;
+                var out = collect(s.child);
+                conjuncts.addAll(s.condition.rename(out.toIds()).conjuncts());
+                return out;
+            } // if
+
+            if (p instanceof Plan.Project && !distinct(p)) {
+                var out = collect(((Plan.Project) p).child);
+                var ids = new String[p.attribute.length];
+                for (var j = 0; j < ids.length; j++) ids[j] = out.id(p.attribute[j]);
+                return new Out(p.attribute, ids);
+            } // if
+
+            if (p instanceof Plan.Join) {
+                var j = (Plan.Join) p;
+                var lo = collect(j.left);
+                var ro = collect(j.right);
+                var ids = new ArrayList<>(Arrays.asList(lo.ids));
+                if (j.natural()) {
+                    var common = new HashSet<String>();
+                    for (var a : lo.names) {
+                        if (Arrays.asList(ro.names).contains(a) && common.add(a))
+                            conjuncts.add(Expr.col(lo.id(a)).eq(Expr.col(ro.id(a))));
+                    } // for
+                    for (var k = 0; k < ro.names.length; k++) if (!common.contains(ro.names[k])) ids.add(ro.ids[k]);
+                } else {
+                    for (var k = 0; k < j.attrs1.length; k++)
+                        conjuncts.add(Expr.col(lo.id(j.attrs1[k])).eq(Expr.col(ro.id(j.attrs2[k]))));
+                    ids.addAll(Arrays.asList(ro.ids));
+                } // if
+                return new Out(p.attribute, ids.toArray(new String[0]));
+            } // if
+
+            // anything else is a leaf
+            var leaf = new Leaf();
+            leaf.plan = (p instanceof Plan.Scan) ? new Plan.Scan(((Plan.Scan) p).table) : p;
+            var base = (p instanceof Plan.Scan) ? ((Plan.Scan) p).table.getName() : "q" + leaves.size();
+            var alias = base;
+            for (var k = 2; aliasUsed(alias); k++) alias = base + "#" + k;
+            leaf.ids = new String[p.attribute.length];
+            for (var j = 0; j < p.attribute.length; j++) {
+                var id = alias + "." + p.attribute[j];
+                for (var k = 2; leafOf.containsKey(id); k++) id = alias + "." + p.attribute[j] + "#" + k;
+                leaf.ids[j] = id;
+                leafOf.put(id, leaves.size());
+                localName.put(id, p.attribute[j]);
+            } // for
+            leaves.add(leaf);
+            return new Out(p.attribute, leaf.ids);
+        } // collect
+
+        private boolean aliasUsed(String alias) {
+            for (var id : leafOf.keySet()) if (id.startsWith(alias + ".")) return true;
+            return false;
+        } // aliasUsed
+
+        /********************************************************************************
+         * Split the conjuncts into leaf filters, join edges and other predicates.
+         */
+        private void classify() {
+            for (var c : conjuncts) {
+                var cols = new HashSet<String>();
+                c.columns(cols);
+                var mask = mask(cols);
+                if (Long.bitCount(mask) <= 1) {
+                    leaves.get((mask == 0) ? 0 : Long.numberOfTrailingZeros(mask)).filter.add(c);
+                    continue;
+                } // if
+                if (c instanceof Expr.Cmp && ((Expr.Cmp) c).op == Expr.Op.EQ && Long.bitCount(mask) == 2 &&
+                        ((Expr.Cmp) c).left instanceof Expr.Col && ((Expr.Cmp) c).right instanceof Expr.Col) {
+                    var a = ((Expr.Col) ((Expr.Cmp) c).left).attr;
+                    var b = ((Expr.Col) ((Expr.Cmp) c).right).attr;
+                    edges.add(new Edge(c, a, b, leafOf.get(a), leafOf.get(b)));
+                } else {
+                    preds.add(new Pred(c, mask));
+                } // if
+            } // for
+
+            // apply the leaf filters now that they are known, then estimate the rest
+            for (var i = 0; i < leaves.size(); i++) filter(i);
+            for (var pr : preds) pr.sel = selectivity(pr.expr, this::ndvOf, a -> null);
+        } // classify
+
+        private long mask(Set<String> cols) {
+            var mask = 0L;
+            for (var id : cols) mask |= 1L << leafOf.get(id);
+            return mask;
+        } // mask
+
+        /********************************************************************************
+         * Estimate leaf i before its filter is known (used for predicates' selectivity).
+         */
+        private void prepare(int i) {
+            var leaf = leaves.get(i);
+            leaf.filtered = (leaf.plan instanceof Plan.Scan) ? estimate(leaf.plan) : optimize(leaf.plan);
+        } // prepare
+
+        /********************************************************************************
+         * Apply leaf i's filter and record its estimated rows and distinct values.
+         */
+        private void filter(int i) {
+            var leaf = leaves.get(i);
+            var input = leaf.filtered;
+            if (!leaf.filter.isEmpty()) {
+                var names = new HashMap<String, String>();
+                for (var j = 0; j < leaf.ids.length; j++) names.put(leaf.ids[j], leaf.plan.attribute[j]);
+                var cond = Expr.allOf(leaf.filter).rename(names);
+                leaf.filtered = (leaf.plan instanceof Plan.Scan) ? estimate(new Plan.Select(leaf.plan, cond))
+                                                                : optimize(new Plan.Select(leaf.plan, cond));
+            } // if
+            leaf.rows = Math.max(1, leaf.filtered.rows);
+            for (var j = 0; j < leaf.ids.length; j++) {
+                ndvOf.put(leaf.ids[j], Math.max(1, Math.min(ndv(input, j), leaf.rows)));
+            } // for
+        } // filter
+
+        private double ndvOf(String id) {
+            return ndvOf.getOrDefault(id, 1.0);
+        } // ndvOf
+
+        /********************************************************************************
+         * Estimate the number of tuples from joining the leaves in mask.
+         */
+        private double card(long mask) {
+            var r = 1.0;
+            for (var i = 0; i < leaves.size(); i++) if ((mask & 1L << i) != 0) r *= leaves.get(i).rows;
+
+            var pairSel = new HashMap<Long, Double>();
+            for (var e : edges) {
+                var m = 1L << e.la | 1L << e.lb;
+                if ((mask & m) == m) pairSel.merge(m, 1 / Math.max(ndvOf(e.a), ndvOf(e.b)), (x, y) -> x * y);
+            } // for
+            for (var entry : pairSel.entrySet()) {
+                var m = entry.getKey();
+                var la = Long.numberOfTrailingZeros(m);
+                var lb = 63 - Long.numberOfLeadingZeros(m);
+                r *= Math.max(entry.getValue(), 1 / Math.max(leaves.get(la).rows, leaves.get(lb).rows));
+            } // for
+            for (var pr : preds) if ((mask & pr.mask) == pr.mask) r *= pr.sel;
+            return Math.max(1, r);
+        } // card
+
+        /********************************************************************************
+         * Find the cheapest plan joining all the leaves by dynamic programming over the
+         * subsets of leaves, considering only joins connected by an edge.
+         */
+        private Sub dynamic() {
+            var n = leaves.size();
+            var best = new Sub[1 << n];
+            for (var i = 0; i < n; i++) best[1 << i] = leafSub(i);
+
+            for (var mask = 1; mask < 1 << n; mask++) {
+                if (Integer.bitCount(mask) < 2) continue;
+                var rows = card(mask);
+                var low = mask & -mask;
+                for (var sub = (mask - 1) & mask; sub > 0; sub = (sub - 1) & mask) {
+                    if ((sub & low) == 0) continue;                     // each split once
+                    var a = best[sub];
+                    var b = best[mask ^ sub];
+                    if (a == null || b == null) continue;
+                    var c = join(a, b, rows);
+                    if (c != null && (best[mask] == null || c.cost < best[mask].cost)) best[mask] = c;
+                } // for
+            } // for
+            return best[(1 << n) - 1];
+        } // dynamic
+
+        /********************************************************************************
+         * Find a plan joining all the leaves by repeatedly making the cheapest join of
+         * two connected sub-plans.
+         */
+        private Sub greedy() {
+            var subs = new ArrayList<Sub>();
+            for (var i = 0; i < leaves.size(); i++) subs.add(leafSub(i));
+            while (subs.size() > 1) {
+                Sub best = null;
+                int bi = -1, bj = -1;
+                for (var i = 0; i < subs.size(); i++) {
+                    for (var j = i + 1; j < subs.size(); j++) {
+                        var c = join(subs.get(i), subs.get(j), card(subs.get(i).mask | subs.get(j).mask));
+                        if (c != null && (best == null || c.cost < best.cost)) {
+                            best = c;
+                            bi = i;
+                            bj = j;
+                        } // if
+                    } // for
+                } // for
+                if (best == null) return null;
+                subs.remove(bj);
+                subs.set(bi, best);
+            } // while
+            return subs.get(0);
+        } // greedy
+
+        private Sub leafSub(int i) {
+            var f = leaves.get(i).filtered;
+            return new Sub(i, leaves.get(i).rows, f.cost);
+        } // leafSub
+
+        /********************************************************************************
+         * Choose the cheapest way to join sub-plans a and b, or return null if no edge
+         * connects them.
+         */
+        private Sub join(Sub a, Sub b, double rows) {
+            var on = new ArrayList<Edge>();
+            for (var e : edges) {
+                if ((a.mask & 1L << e.la) != 0 && (b.mask & 1L << e.lb) != 0 ||
+                    (a.mask & 1L << e.lb) != 0 && (b.mask & 1L << e.la) != 0) on.add(e);
+            } // for
+            if (on.isEmpty()) return null;
+            var mask = a.mask | b.mask;
+
+            // hash join on every edge, building on the smaller side
+            var small = (a.rows <= b.rows) ? a : b;
+            var large = (small == a) ? b : a;
+            var best = new Sub(mask, -1, small, large, Plan.Algo.HASH, on, rows,
+                    a.cost + b.cost + 2 * small.rows + large.rows + rows);
+
+            // index join, probing a table's primary or secondary index
+            for (var inner : new Sub[]{b, a}) {
+                var outer = (inner == b) ? a : b;
+                var keyEdges = indexEdges(inner, on);
+                if (keyEdges == null) continue;
+                var cost = outer.cost + outer.rows * PROBE + rows;
+                if (cost < best.cost) best = new Sub(mask, -1, outer, inner, Plan.Algo.INDEX, keyEdges, rows, cost);
+            } // for
+
+            // nested loop join
+            var nl = a.cost + b.cost + a.rows * b.rows + rows;
+            if (nl < best.cost) best = new Sub(mask, -1, a, b, Plan.Algo.NESTED_LOOP, on, rows, nl);
+            return best;
+        } // join
+
+        /********************************************************************************
+         * Return the edges giving a value for each attribute of the primary key, or
+         * else of a secondary index, of inner, if inner is a single table, or null.
+         */
+        private List<Edge> indexEdges(Sub inner, List<Edge> on) {
+            if (inner.leaf < 0) return null;
+            var leaf = leaves.get(inner.leaf);
+            if (!(leaf.plan instanceof Plan.Scan)) return null;
+            var table = ((Plan.Scan) leaf.plan).table;
+
+            var keyEdges = (table.getMapType() == Table.MapType.NO_MAP) ? null : indexEdges(inner, on, table.getKey());
+            for (var attrs : table.getIndexes()) if (keyEdges == null) keyEdges = indexEdges(inner, on, attrs);
+            return keyEdges;
+        } // indexEdges
+
+        /********************************************************************************
+         * Return the edges giving a value for each of the given attributes of inner, or
+         * null if some attribute has none.
+         */
+        private List<Edge> indexEdges(Sub inner, List<Edge> on, String[] attrs) {
+            var keyEdges = new ArrayList<Edge>();
+            for (var k : attrs) {
+                Edge found = null;
+                for (var e : on) {
+                    var col = (e.la == inner.leaf) ? e.a : e.b;
+                    if (localName.get(col).equals(k)) found = e;
+                } // for
+                if (found == null) return null;
+                keyEdges.add(found);
+            } // for
+            return keyEdges;
+        } // indexEdges
+
+        /********************************************************************************
+         * Turn a sub-plan into a plan over the unique column ids.
+         */
+        private Plan build(Sub s) {
+            if (s.leaf >= 0) return leafPlan(s.leaf);
+
+            var conds = new ArrayList<Expr>();
+            Plan joined;
+            var outer = build(s.left);
+            var a1 = new String[s.on.size()];
+            var a2 = new String[s.on.size()];
+            for (var k = 0; k < a1.length; k++) {
+                var e = s.on.get(k);
+                var aLeft = (s.left.mask & 1L << e.la) != 0;
+                a1[k] = aLeft ? e.a : e.b;
+                a2[k] = aLeft ? e.b : e.a;
+            } // for
+
+            if (s.algo == Plan.Algo.INDEX) {
+                var leaf = leaves.get(s.right.leaf);
+                var scan = est(leaf.plan, ((Plan.Scan) leaf.plan).table.getTuples().size(), 0);
+                for (var k = 0; k < a2.length; k++) a2[k] = localName.get(a2[k]);
+                var j = est(new Plan.Join(outer, a1, a2, scan, Plan.Algo.INDEX), s.rows, s.cost);
+                var names = new ArrayList<>(Arrays.asList(outer.attribute));
+                names.addAll(Arrays.asList(leaf.ids));
+                joined = est(new Plan.Rename(j, names.toArray(new String[0])), s.rows, s.cost);
+                conds.addAll(leaf.filter);
+            } else {
+                joined = est(new Plan.Join(outer, a1, a2, build(s.right), s.algo), s.rows, s.cost);
+            } // if
+
+            for (var e : edges) {
+                var m = 1L << e.la | 1L << e.lb;
+                if ((s.mask & m) == m && (s.left.mask & m) != m && (s.right.mask & m) != m && !s.on.contains(e))
+                    conds.add(e.expr);
+            } // for
+            for (var pr : preds) {
+                if ((s.mask & pr.mask) == pr.mask && (s.left.mask & pr.mask) != pr.mask &&
+                    (s.right.mask & pr.mask) != pr.mask) conds.add(pr.expr);
+            } // for
+            if (conds.isEmpty()) return joined;
+            return est(new Plan.Select(joined, Expr.allOf(conds)), s.rows, s.cost + s.rows);
+        } // build
+
+        /********************************************************************************
+         * Make the plan for leaf i: its filtered input under the column ids, projected
+         * onto the columns used above it.
+         */
+        private Plan leafPlan(int i) {
+            var leaf = leaves.get(i);
+            var f = leaf.filtered;
+            Plan p = est(new Plan.Rename(f, leaf.ids), f.rows, f.cost);
+            var keep = new ArrayList<String>();
+            for (var id : leaf.ids) if (needed.contains(id)) keep.add(id);
+            if (keep.size() < leaf.ids.length && !keep.isEmpty()) {
+                p = est(new Plan.Project(p, keep.toArray(new String[0])), f.rows, f.cost + f.rows);
+            } // if
+            return p;
+        } // leafPlan
+    } // Region class
+
+    /************************************************************************************
+     * Set the estimates of a plan the optimizer built.
+     */
+    private static Plan est(Plan p, double rows, double cost) {
+        p.rows = rows;
+        p.cost = cost;
+        return p;
+    } // est
+
+} // Optimizer class
@@ -0,0 +1,147 @@
+
+/****************************************************************************************
+ * @file PageFile.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/****************************************************************************************
+ * This class is a file of fixed-size pages, read and written whole by the BufferPool.
+ * Pages are numbered from 0; a page that has been allocated but never written reads
+ * as zeros.
+ */
+class PageFile {
+    /**
+     * The file's path.
+     */
+    private final Path path;
+
+    /**
+     * The open channel to the file.
+     */
+    private final FileChannel ch;
+
+    /**
+     * The size of each page.
+     */
+    private final int pageSize;
+
+    /**
+     * The number of pages allocated.
+     */
+    private int pages;
+
+    /************************************************************************************
+     * Open (creating if necessary) the page file at the given path.
+     *
+     * @param _path      the path of the file
+     * @param _pageSize  the size of each page
+     * @throws UncheckedIOException if the file cannot be opened
+     */
+    PageFile(Path _path, int _pageSize) {
+        path = _path;
+        pageSize = _pageSize;
+        try {
+            ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            pages = (int) ((ch.size() + pageSize - 1) / pageSize);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } // try
+    } // constructor
+
+    /************************************************************************************
+     * Create a scratch page file in the given directory, deleted when the JVM exits.
+     *
+     * @param dir       the directory to create the file in
+     * @param prefix    the start of the file's name
+     * @param pageSize  the size of each page
+     * @return the new page file
+     */
+    static PageFile temporary(String dir, String prefix, int pageSize) {
+        try {
+            var d = Path.of(dir);
+            Files.createDirectories(d);
+            var file = Files.createTempFile(d, prefix + "_", ".pages");
+            file.toFile().deleteOnExit();
+            return new PageFile(file, pageSize);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } // try
+    } // temporary
+
+    /************************************************************************************
+     * Allocate a new page at the end of the file.
+     *
+     * @return the new page's number
+     */
+    synchronized int allocate() {
+        return pages++;
+    } // allocate
+
+    /************************************************************************************
+     * Read page p into buf (zero-filling any part beyond the end of the file).
+     *
+     * @param p    the page number
+     * @param buf  a buffer of pageSize bytes
+     */
+    void read(int p, ByteBuffer buf) {
+        buf.clear();
+        try {
+            var pos = (long) p * pageSize;
+            while (buf.hasRemaining()) {
+                var n = ch.read(buf, pos + buf.position());
+                if (n < 0) break;
+            } // while
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } // try
+        while (buf.hasRemaining()) buf.put((byte) 0);
+        buf.clear();
+    } // read
+
+    /************************************************************************************
+     * Write buf out as page p.
+     *
+     * @param p    the page number
+     * @param buf  a buffer of pageSize bytes
+     */
+    void write(int p, ByteBuffer buf) {
+        var src = buf.duplicate().clear();
+        try {
+            var pos = (long) p * pageSize;
+            while (src.hasRemaining()) ch.write(src, pos + src.position());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } // try
+    } // write
+
+    /************************************************************************************
+     * Close the file and delete it.
+     */
+    void delete() {
+        try {
+            ch.close();
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } // try
+    } // delete
+
+    synchronized int pages() {
+        return pages;
+    }
+
+    int pageSize() {
+        return pageSize;
+    }
+
+} // PageFile class
@@ -0,0 +1,207 @@
+
+/****************************************************************************************
+ * @file PagedTuples.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.io.Serializable;
+import java.util.*;
+
+/****************************************************************************************
+ * This class is the tuple list of a PAGED table.  Tuples are encoded (see RowCodec) into
+ * slotted pages (see SlottedPage) of a heap file, and every read or write of a page goes
+ * through the BufferPool, so only the pool's frames and a directory of one int per page
+ * are kept in memory however large the table grows.
+ * <p>
+ * Tuples are appended to the last page until it is full.  Iterating reads each page
+ * once, pinning it just long enough to decode its tuples; get (i) finds the page from
+ * the directory and decodes the one tuple.
+ */
+class PagedTuples
+        extends AbstractList<Comparable[]>
+        implements RandomAccess, Serializable {
+    /**
+     * The pool every page access goes through.
+     */
+    private final transient BufferPool pool;
+
+    /**
+     * The heap file holding the pages.
+     */
+    private final transient PageFile file;
+
+    /**
+     * The codec for the table's domains.
+     */
+    private final transient RowCodec codec;
+
+    /**
+     * For each page, the number of the first tuple on it.
+     */
+    private int[] firstRow = new int[16];
+
+    /**
+     * The number of pages in use.
+     */
+    private int pages = 0;
+
+    /**
+     * The number of tuples.
+     */
+    private int size = 0;
+
+    /************************************************************************************
+     * Construct an empty list over a new scratch file in the given directory.
+     *
+     * @param _pool    the buffer pool to use
+     * @param domain   the domains of the tuples
+     * @param dir      the directory for the heap file
+     * @param name     the table name (used to name the heap file)
+     */
+    PagedTuples(BufferPool _pool, Class[] domain, String dir, String name) {
+        pool = _pool;
+        codec = new RowCodec(domain);
+        file = PageFile.temporary(dir, name, pool.pageSize());
+    } // constructor
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    /************************************************************************************
+     * Get the i-th tuple, pinning its page while it is decoded.
+     *
+     * @param i  the tuple's position
+     * @return the decoded tuple
+     */
+    @Override
+    public Comparable[] get(int i) {
+        int p, first;
+        synchronized (this) {
+            if (i < 0 || i >= size) throw new IndexOutOfBoundsException("PagedTuples index " + i);
+            p = Arrays.binarySearch(firstRow, 0, pages, i);
+            if (p < 0) p = -p - 2;
+            first = firstRow[p];
+        } // synchronized
+
+        var buf = pool.pin(file, p);
+        try {
+            return codec.decode(buf, SlottedPage.tuple(buf, 0, buf.capacity(), i - first));
+        } finally {
+            pool.unpin(file, p, false);
+        } // try
+    } // get
+
+    /************************************************************************************
+     * Append tuple t, starting a new page when the last one is full.
+     *
+     * @param t  the tuple to add
+     * @return true
+     * @throws IllegalArgumentException if the encoded tuple does not fit in a page
+     */
+    @Override
+    public synchronized boolean add(Comparable[] t) {
+        var enc = codec.encode(t);
+        var pageSize = pool.pageSize();
+        if (!SlottedPage.fitsEmpty(pageSize, enc.remaining()))
+            throw new IllegalArgumentException("PagedTuples: tuple of " + enc.remaining() +
+                    " bytes does not fit in a " + pageSize + " byte page");
+
+        if (pages > 0) {
+            var last = pages - 1;
+            var buf = pool.pin(file, last);
+            var fits = SlottedPage.fits(buf, 0, pageSize, enc.remaining());
+            if (fits) SlottedPage.append(buf, 0, pageSize, enc);
+            pool.unpin(file, last, fits);
+            if (fits) {
+                size++;
+                modCount++;
+                return true;
+            } // if
+        } // if
+
+        var p = file.allocate();
+        if (pages == firstRow.length) firstRow = Arrays.copyOf(firstRow, 2 * pages);
+        firstRow[pages++] = size;
+        var buf = pool.pin(file, p);
+        SlottedPage.init(buf, 0);
+        SlottedPage.append(buf, 0, pageSize, enc);
+        pool.unpin(file, p, true);
+        size++;
+        modCount++;
+        return true;
+    } // add
+
+    /************************************************************************************
+     * Iterate over the tuples a page at a time.
+     *
+     * @return an iterator over the tuples present when it was created
+     */
+    @Override
+    public Iterator<Comparable[]> iterator() {
+        var end = size();
+        return new Iterator<>() {
+            private int next = 0;
+            private Comparable[][] page = new Comparable[0][];
+            private int pos = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < end;
+            }
+
+            @Override
+            public Comparable[] next() {
+                if (next >= end) throw new NoSuchElementException();
+                if (pos == page.length) readPage();
+                next++;
+                return page[pos++];
+            }
+
+            /** Decode every tuple of the page holding tuple number next. */
+            private void readPage() {
+                int p, first;
+                synchronized (PagedTuples.this) {
+                    p = Arrays.binarySearch(firstRow, 0, pages, next);
+                    if (p < 0) p = -p - 2;
+                    first = firstRow[p];
+                } // synchronized
+                var buf = pool.pin(file, p);
+                try {
+                    var n = Math.min(SlottedPage.rows(buf, 0), end - first);
+                    page = new Comparable[n - (next - first)][];
+                    for (var k = 0; k < page.length; k++) {
+                        page[k] = codec.decode(buf, SlottedPage.tuple(buf, 0, buf.capacity(), next - first + k));
+                    } // for
+                    pos = 0;
+                } finally {
+                    pool.unpin(file, p, false);
+                } // try
+            }
+        };
+    } // iterator
+
+    /************************************************************************************
+     * Write the list's dirty pages back to its heap file.
+     */
+    void flush() {
+        pool.flush(file);
+    } // flush
+
+    /************************************************************************************
+     * Drop the list's pages from the pool and delete its heap file.  The list must not
+     * be used afterwards.
+     */
+    void close() {
+        pool.discard(file);
+        file.delete();
+    } // close
+
+    /** Serialize as a plain list, since the heap file belongs to this process. */
+    private Object writeReplace() {
+        return new ArrayList<>(this);
+    } // writeReplace
+
+} // PagedTuples class
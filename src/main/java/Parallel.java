@@ -0,0 +1,113 @@
+
+/****************************************************************************************
+ * @file Parallel.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/****************************************************************************************
+ * This class runs partitioned scans on a fork/join pool.  The input list is cut into
+ * contiguous chunks, each chunk is processed by its own task, and the per-chunk outputs
+ * are merged either in chunk order (so the result keeps the input order) or in whatever
+ * order the chunks finish.
+ */
+class Parallel {
+    /**
+     * Number of chunks per worker thread, so that uneven chunks still balance.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /************************************************************************************
+     * Apply fn to every tuple in parallel, keeping the non-null results.
+     *
+     * @param pool     the pool to run on
+     * @param rows     the tuples to scan (should be a RandomAccess list)
+     * @param fn       the function to apply (returning null drops the tuple)
+     * @param ordered  whether the results must keep the order of the input
+     * @return the results
+     */
+    static List<Comparable[]> map(ForkJoinPool pool, List<Comparable[]> rows,
+                                  Function<Comparable[], Comparable[]> fn, boolean ordered) {
+        return scan(pool, rows, (t, out) -> {
+            var r = fn.apply(t);
+            if (r != null) out.add(r);
+        }, ordered);
+    } // map
+
+    /************************************************************************************
+     * Run body on every tuple in parallel; body may add any number of results per tuple.
+     *
+     * @param pool     the pool to run on
+     * @param rows     the tuples to scan (should be a RandomAccess list)
+     * @param body     the work to do for each tuple, given the chunk's output list
+     * @param ordered  whether the results must keep the order of the input
+     * @return the results
+     */
+    static List<Comparable[]> scan(ForkJoinPool pool, List<Comparable[]> rows,
+                                   BiConsumer<Comparable[], List<Comparable[]>> body, boolean ordered) {
+        var n = rows.size();
+        var chunks = Math.max(1, Math.min(n, pool.getParallelism() * CHUNKS_PER_THREAD));
+        var parts = new ArrayList<List<Comparable[]>>(Collections.nCopies(chunks, null));
+        var finished = Collections.synchronizedList(new ArrayList<List<Comparable[]>>());
+
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                var tasks = new ArrayList<RecursiveAction>();
+                for (var c = 0; c < chunks; c++) {
+                    var chunk = c;
+                    tasks.add(new RecursiveAction() {
+                        @Override
+                        protected void compute() {
+                            var lo = (int) ((long) n * chunk / chunks);
+                            var hi = (int) ((long) n * (chunk + 1) / chunks);
+                            var out = new ArrayList<Comparable[]>();
+                            for (var i = lo; i < hi; i++) body.accept(rows.get(i), out);
+                            if (ordered) parts.set(chunk, out);
+                            else finished.add(out);
+                        }
+                    });
+                } // for
+                invokeAll(tasks);
+            }
+        });
+
+        var result = new ArrayList<Comparable[]>();
+        for (var part : ordered ? parts : finished) result.addAll(part);
+        return result;
+    } // scan
+
+    /************************************************************************************
+     * Run one task per partition in parallel.
+     *
+     * @param pool        the pool to run on
+     * @param partitions  the number of partitions
+     * @param body        the work for a partition, given its number
+     */
+    static void forEachPartition(ForkJoinPool pool, int partitions, IntConsumer body) {
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                var tasks = new ArrayList<RecursiveAction>();
+                for (var p = 0; p < partitions; p++) {
+                    var part = p;
+                    tasks.add(new RecursiveAction() {
+                        @Override
+                        protected void compute() {
+                            body.accept(part);
+                        }
+                    });
+                } // for
+                invokeAll(tasks);
+            }
+        });
+    } // forEachPartition
+
+} // Parallel class
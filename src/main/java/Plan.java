@@ -0,0 +1,535 @@
+/****************************************************************************************
+ * @file Plan.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.util.*;
+
+/****************************************************************************************
+ * This class is a logical query plan: a tree of relational algebra operators over
+ * tables that is built first and run later.  Run as written (execute), each node calls
+ * the Table method of the same name, in the order the caller wrote them.  Optimized
+ * first (optimize), selections and projections are pushed down, joins are reordered by
+ * estimated cardinality and each join gets the cheapest algorithm (see Optimizer).
+ *
+ * #usage movie.plan ().join ("studioName", "name", studio.plan ()).select (Expr.col ("year").lt (1980)).optimize ().execute ()
+ */
+public abstract class Plan {
+    /**
+     * The join algorithms: join (nested loop), h_join (hash) and i_join (index).
+     */
+    public enum Algo {NESTED_LOOP, HASH, INDEX}
+
+    /**
+     * Names of the attributes of the tuples this plan produces.
+     */
+    protected final String[] attribute;
+
+    /**
+     * Domains of the attributes of the tuples this plan produces.
+     */
+    protected final Class[] domain;
+
+    /**
+     * Key of the tuples this plan produces.
+     */
+    protected final String[] key;
+
+    /**
+     * The estimated number of result tuples and the estimated cost of producing them
+     * (set by the optimizer; negative if not estimated).
+     */
+    double rows = -1, cost = -1;
+
+    /************************************************************************************
+     * Construct a plan producing tuples with the given schema.
+     *
+     * @param _attribute  the attribute names
+     * @param _domain     the attribute domains
+     * @param _key        the key
+     */
+    protected Plan(String[] _attribute, Class[] _domain, String[] _key) {
+        attribute = _attribute;
+        domain = _domain;
+        key = _key;
+    } // constructor
+
+    /************************************************************************************
+     * Run the plan.
+     *
+     * @return the table of result tuples
+     */
+    public abstract Table execute();
+
+    /************************************************************************************
+     * Return the inputs of this plan node.
+     *
+     * @return the child plans
+     */
+    abstract List<Plan> children();
+
+    /************************************************************************************
+     * Describe this plan node (without its children) for explain.
+     *
+     * @return a one-line description
+     */
+    abstract String describe();
+
+    //----------------------------------------------------------------------------------
+    // Building plans
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Keep only the tuples satisfying the condition.
+     *
+     * @param condition  the check condition for tuples
+     * @return the select plan
+     */
+    public Plan select(Expr condition) {
+        return new Select(this, condition);
+    } // select
+
+    /************************************************************************************
+     * Keep only the given attributes of each tuple.
+     *
+     * @param attributes  the attributes to project onto
+     * @return the project plan
+     */
+    public Plan project(String attributes) {
+        return new Project(this, attributes.split(" "), null);
+    } // project
+
+    /************************************************************************************
+     * Keep only the given attributes of each tuple, eliminating duplicate tuples.
+     *
+     * @param attributes  the attributes to project onto
+     * @param distinct    how to eliminate duplicates
+     * @return the project plan
+     */
+    public Plan project(String attributes, Table.Distinct distinct) {
+        return new Project(this, attributes.split(" "), distinct);
+    } // project
+
+    /************************************************************************************
+     * Equi-join this plan with other, as written by a nested loop join.
+     *
+     * @param attributes1  the attributes of this plan to be compared
+     * @param attributes2  the attributes of other to be compared
+     * @param other        the rhs of the join
+     * @return the join plan
+     */
+    public Plan join(String attributes1, String attributes2, Plan other) {
+        return new Join(this, attributes1.split(" "), attributes2.split(" "), other, Algo.NESTED_LOOP);
+    } // join
+
+    /************************************************************************************
+     * Equi-join this plan with other, as written by a hash join.
+     *
+     * @param attributes1  the attributes of this plan to be compared
+     * @param attributes2  the attributes of other to be compared
+     * @param other        the rhs of the join
+     * @return the join plan
+     */
+    public Plan h_join(String attributes1, String attributes2, Plan other) {
+        return new Join(this, attributes1.split(" "), attributes2.split(" "), other, Algo.HASH);
+    } // h_join
+
+    /************************************************************************************
+     * Equi-join this plan with other, as written by an index join.
+     *
+     * @param attributes1  the attributes of this plan to be compared
+     * @param attributes2  the attributes of other to be compared
+     * @param other        the rhs of the join
+     * @return the join plan
+     */
+    public Plan i_join(String attributes1, String attributes2, Plan other) {
+        return new Join(this, attributes1.split(" "), attributes2.split(" "), other, Algo.INDEX);
+    } // i_join
+
+    /************************************************************************************
+     * Natural join this plan with other (on their common attributes).
+     *
+     * @param other  the rhs of the join
+     * @return the join plan
+     */
+    public Plan join(Plan other) {
+        return new Join(this, null, null, other, Algo.HASH);
+    } // join
+
+    /************************************************************************************
+     * Produce the tuples of this plan or of other, eliminating duplicates.
+     *
+     * @param other  the rhs of the union
+     * @return the union plan
+     */
+    public Plan union(Plan other) {
+        return new Union(this, other);
+    } // union
+
+    /************************************************************************************
+     * Produce the tuples of this plan that other does not produce.
+     *
+     * @param other  the rhs of the difference
+     * @return the minus plan
+     */
+    public Plan minus(Plan other) {
+        return new Minus(this, other);
+    } // minus
+
+    /************************************************************************************
+     * Rewrite this plan into an equivalent one that is estimated to be cheapest (see
+     * Optimizer).  The result has the same attributes, in the same order.
+     *
+     * @return the optimized plan
+     */
+    public Plan optimize() {
+        return new Optimizer().optimize(this);
+    } // optimize
+
+    /************************************************************************************
+     * Show the plan as an indented tree, one node per line, with the optimizer's
+     * estimates for optimized plans.
+     *
+     * @return the plan as text
+     */
+    public String explain() {
+        var sb = new StringBuilder();
+        explain(sb, 0);
+        return sb.toString();
+    } // explain
+
+    private void explain(StringBuilder sb, int depth) {
+        sb.append("  ".repeat(depth)).append(describe());
+        if (rows >= 0) sb.append(String.format("   (rows ~ %.0f, cost ~ %.0f)", rows, cost));
+        sb.append('\n');
+        for (var child : children()) child.explain(sb, depth + 1);
+    } // explain
+
+    @Override
+    public String toString() {
+        return explain();
+    }
+
+    public String[] getAttribute() {
+        return attribute;
+    }
+
+    public Class[] getDomain() {
+        return domain;
+    }
+
+    /************************************************************************************
+     * Return the column position for the given attribute name.
+     *
+     * @param attr  the given attribute name
+     * @return a column position, or -1 if not found
+     */
+    public int col(String attr) {
+        return Arrays.asList(attribute).indexOf(attr);
+    } // col
+
+    /************************************************************************************
+     * Return the column positions of the given attributes, failing on unknown names.
+     */
+    int[] cols(String[] attrs) {
+        var pos = new int[attrs.length];
+        for (var j = 0; j < attrs.length; j++) {
+            pos[j] = col(attrs[j]);
+            if (pos[j] < 0) throw new IllegalArgumentException("attribute " + attrs[j] + " not found");
+        } // for
+        return pos;
+    } // cols
+
+    //----------------------------------------------------------------------------------
+    // Plan nodes
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * The tuples of a table.
+     */
+    public static class Scan
+            extends Plan {
+        final Table table;
+
+        Scan(Table _table) {
+            super(_table.getAttribute(), _table.getDomain(), _table.getKey());
+            table = _table;
+        } // constructor
+
+        @Override
+        public Table execute() {
+            return table;
+        }
+
+        @Override
+        List<Plan> children() {
+            return List.of();
+        }
+
+        @Override
+        String describe() {
+            return "scan " + table.getName();
+        }
+    } // Scan class
+
+    /************************************************************************************
+     * The tuples of the child satisfying a condition.
+     */
+    public static class Select
+            extends Plan {
+        final Plan child;
+        final Expr condition;
+
+        Select(Plan _child, Expr _condition) {
+            super(_child.attribute, _child.domain, _child.key);
+            _condition.bind(_child.attribute);                  // fail now on unknown attributes
+            child = _child;
+            condition = _condition;
+        } // constructor
+
+        @Override
+        public Table execute() {
+            return child.execute().select(condition);
+        }
+
+        @Override
+        List<Plan> children() {
+            return List.of(child);
+        }
+
+        @Override
+        String describe() {
+            return "select " + condition;
+        }
+    } // Select class
+
+    /************************************************************************************
+     * The given columns of each tuple of the child, without duplicates if distinct is
+     * set.
+     */
+    public static class Project
+            extends Plan {
+        final Plan child;
+        final Table.Distinct distinct;
+
+        Project(Plan _child, String[] attrs) {
+            this(_child, attrs, null);
+        } // constructor
+
+        Project(Plan _child, String[] attrs, Table.Distinct _distinct) {
+            super(attrs, domainsOf(_child, attrs),
+                    Arrays.asList(attrs).containsAll(Arrays.asList(_child.key)) ? _child.key : attrs);
+            child = _child;
+            distinct = _distinct;
+        } // constructor
+
+        private static Class[] domainsOf(Plan child, String[] attrs) {
+            var pos = child.cols(attrs);
+            var dom = new Class[pos.length];
+            for (var j = 0; j < pos.length; j++) dom[j] = child.domain[pos[j]];
+            return dom;
+        } // domainsOf
+
+        @Override
+        public Table execute() {
+            var t = child.execute();
+            var attrs = String.join(" ", attribute);
+            return (distinct == null) ? t.project(attrs) : t.project(attrs, distinct);
+        }
+
+        @Override
+        List<Plan> children() {
+            return List.of(child);
+        }
+
+        @Override
+        String describe() {
+            return "project " + ((distinct == null) ? "" : "distinct " + distinct + " ") + String.join(" ", attribute);
+        }
+    } // Project class
+
+    /************************************************************************************
+     * The equi-join of two children by a given algorithm, or their natural join (when
+     * the join attributes are null).  As in Table, duplicate attribute names from the
+     * right get a "2" appended (natural join drops the right's common attributes).
+     */
+    public static class Join
+            extends Plan {
+        final Plan left;
+        final Plan right;
+        final String[] attrs1;
+        final String[] attrs2;
+        final Algo algo;
+
+        Join(Plan _left, String[] _attrs1, String[] _attrs2, Plan _right, Algo _algo) {
+            super(joinedAttributes(_left, _right, _attrs1 == null),
+                    joinedDomains(_left, _right, _attrs1 == null), _left.key);
+            if (_attrs1 != null) {
+                if (_attrs1.length != _attrs2.length)
+                    throw new ArrayIndexOutOfBoundsException("Attributes must be of equal length.");
+                _left.cols(_attrs1);
+                _right.cols(_attrs2);
+            } // if
+            left = _left;
+            right = _right;
+            attrs1 = _attrs1;
+            attrs2 = _attrs2;
+            algo = _algo;
+        } // constructor
+
+        boolean natural() {
+            return attrs1 == null;
+        } // natural
+
+        private static String[] joinedAttributes(Plan left, Plan right, boolean natural) {
+            var names = new ArrayList<>(Arrays.asList(left.attribute));
+            var seen = new HashSet<>(names);
+            for (var a : right.attribute) {
+                if (!seen.contains(a)) names.add(a);
+                else if (!natural) names.add(a + "2");
+            } // for
+            return names.toArray(new String[0]);
+        } // joinedAttributes
+
+        private static Class[] joinedDomains(Plan left, Plan right, boolean natural) {
+            var doms = new ArrayList<>(Arrays.asList(left.domain));
+            var seen = new HashSet<>(Arrays.asList(left.attribute));
+            for (var j = 0; j < right.attribute.length; j++) {
+                if (!natural || !seen.contains(right.attribute[j])) doms.add(right.domain[j]);
+            } // for
+            return doms.toArray(new Class[0]);
+        } // joinedDomains
+
+        @Override
+        public Table execute() {
+            var l = left.execute();
+            var r = right.execute();
+            if (natural()) return l.join(r);
+
+            var a1 = String.join(" ", attrs1);
+            var a2 = String.join(" ", attrs2);
+            switch (algo) {
+                case HASH:  return l.h_join(a1, a2, r);
+                case INDEX: return l.i_join(a1, a2, r);
+                default:    return l.join(a1, a2, r);
+            } // switch
+        }
+
+        @Override
+        List<Plan> children() {
+            return List.of(left, right);
+        }
+
+        @Override
+        String describe() {
+            if (natural()) return "natural join";
+            var on = new StringJoiner(" AND ");
+            for (var j = 0; j < attrs1.length; j++) on.add(attrs1[j] + " = " + attrs2[j]);
+            return "join " + algo + " on " + on;
+        }
+    } // Join class
+
+    /************************************************************************************
+     * The tuples of either child, without duplicates.
+     */
+    public static class Union
+            extends Plan {
+        final Plan left;
+        final Plan right;
+
+        Union(Plan _left, Plan _right) {
+            super(_left.attribute, _left.domain, _left.key);
+            if (!Arrays.equals(_left.domain, _right.domain))
+                throw new IllegalArgumentException("union: operands are not union compatible");
+            left = _left;
+            right = _right;
+        } // constructor
+
+        @Override
+        public Table execute() {
+            return left.execute().union(right.execute());
+        }
+
+        @Override
+        List<Plan> children() {
+            return List.of(left, right);
+        }
+
+        @Override
+        String describe() {
+            return "union";
+        }
+    } // Union class
+
+    /************************************************************************************
+     * The tuples of the left child that the right child does not produce.
+     */
+    public static class Minus
+            extends Plan {
+        final Plan left;
+        final Plan right;
+
+        Minus(Plan _left, Plan _right) {
+            super(_left.attribute, _left.domain, _left.key);
+            if (!Arrays.equals(_left.domain, _right.domain))
+                throw new IllegalArgumentException("minus: operands are not union compatible");
+            left = _left;
+            right = _right;
+        } // constructor
+
+        @Override
+        public Table execute() {
+            return left.execute().minus(right.execute());
+        }
+
+        @Override
+        List<Plan> children() {
+            return List.of(left, right);
+        }
+
+        @Override
+        String describe() {
+            return "minus";
+        }
+    } // Minus class
+
+    /************************************************************************************
+     * The tuples of the child under new attribute names (made by the optimizer, which
+     * gives every column of a join a unique name while it plans).  The tuples are not
+     * copied.
+     */
+    public static class Rename
+            extends Plan {
+        final Plan child;
+
+        Rename(Plan _child, String[] names) {
+            super(names, _child.domain, renamedKey(_child, names));
+            child = _child;
+        } // constructor
+
+        private static String[] renamedKey(Plan child, String[] names) {
+            var pos = child.cols(child.key);
+            var k = new String[pos.length];
+            for (var j = 0; j < pos.length; j++) k[j] = names[pos[j]];
+            return k;
+        } // renamedKey
+
+        @Override
+        public Table execute() {
+            var t = child.execute();
+            return new Table(t.getName(), attribute, domain, key, t.getTuples(), t.getMapType());
+        }
+
+        @Override
+        List<Plan> children() {
+            return List.of(child);
+        }
+
+        @Override
+        String describe() {
+            return "rename " + String.join(" ", attribute);
+        }
+    } // Rename class
+
+} // Plan class
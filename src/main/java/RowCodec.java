@@ -0,0 +1,163 @@
+
+/****************************************************************************************
+ * @file RowCodec.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/****************************************************************************************
+ * This class encodes tuples into bytes (and decodes them back) using the table's domains,
+ * so no type information is stored with each value.  Integers, reals and characters take
+ * their fixed Java sizes; a String takes a 4-byte length followed by its UTF-8 bytes.
+ */
+class RowCodec {
+    /**
+     * The domain of each attribute.
+     */
+    private final Class[] domain;
+
+    /**
+     * Scratch buffer reused for encoding (grown as needed).
+     */
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+
+    /************************************************************************************
+     * Construct a codec for tuples with the given domains.
+     *
+     * @param _domain  the attribute domains (Long, Integer, Short, Byte, Double, Float,
+     *                 Character or String)
+     */
+    RowCodec(Class[] _domain) {
+        domain = _domain;
+        for (var type : domain) {
+            if (!(type == Integer.class || type == Long.class || type == Short.class || type == Byte.class ||
+                    type == Double.class || type == Float.class || type == Character.class || type == String.class))
+                throw new IllegalArgumentException("RowCodec: unsupported domain " + type);
+        } // for
+    } // constructor
+
+    /************************************************************************************
+     * Encode tuple t.  The returned buffer is reused by the next call.
+     *
+     * @param t  the tuple to encode
+     * @return a buffer positioned at 0 whose limit is the encoded length
+     */
+    ByteBuffer encode(Comparable[] t) {
+        scratch.clear();
+        for (var j = 0; j < domain.length; j++) {
+            var v = t[j];
+            if (domain[j] == String.class) {
+                var bytes = ((String) v).getBytes(StandardCharsets.UTF_8);
+                ensure(4 + bytes.length);
+                scratch.putInt(bytes.length).put(bytes);
+            } else {
+                ensure(8);
+                if (domain[j] == Integer.class) scratch.putInt((Integer) v);
+                else if (domain[j] == Long.class) scratch.putLong((Long) v);
+                else if (domain[j] == Short.class) scratch.putShort((Short) v);
+                else if (domain[j] == Byte.class) scratch.put((Byte) v);
+                else if (domain[j] == Double.class) scratch.putDouble((Double) v);
+                else if (domain[j] == Float.class) scratch.putFloat((Float) v);
+                else scratch.putChar((Character) v);
+            } // if
+        } // for
+        return scratch.flip();
+    } // encode
+
+    /************************************************************************************
+     * Return the length of tuple t's encoding, without encoding it.
+     *
+     * @param t  the tuple
+     * @return the number of bytes encode would produce
+     */
+    int size(Comparable[] t) {
+        var n = 0;
+        for (var j = 0; j < domain.length; j++) {
+            var type = domain[j];
+            if (type == String.class) n += 4 + utf8Length((String) t[j]);
+            else if (type == Long.class || type == Double.class) n += 8;
+            else if (type == Integer.class || type == Float.class) n += 4;
+            else if (type == Short.class || type == Character.class) n += 2;
+            else n += 1;
+        } // for
+        return n;
+    } // size
+
+    /************************************************************************************
+     * Decode the tuple stored at the given position of buf (absolute reads, so buf's
+     * position is not changed and buf may be shared between threads).
+     *
+     * @param buf  the buffer holding the encoded tuple
+     * @param pos  the position of the tuple's first byte
+     * @return the decoded tuple
+     */
+    Comparable[] decode(ByteBuffer buf, int pos) {
+        var t = new Comparable[domain.length];
+        for (var j = 0; j < domain.length; j++) {
+            var type = domain[j];
+            if (type == String.class) {
+                var len = buf.getInt(pos);
+                var bytes = new byte[len];
+                buf.get(pos + 4, bytes);
+                t[j] = new String(bytes, StandardCharsets.UTF_8);
+                pos += 4 + len;
+            } else if (type == Integer.class) {
+                t[j] = buf.getInt(pos);
+                pos += 4;
+            } else if (type == Long.class) {
+                t[j] = buf.getLong(pos);
+                pos += 8;
+            } else if (type == Short.class) {
+                t[j] = buf.getShort(pos);
+                pos += 2;
+            } else if (type == Byte.class) {
+                t[j] = buf.get(pos);
+                pos += 1;
+            } else if (type == Double.class) {
+                t[j] = buf.getDouble(pos);
+                pos += 8;
+            } else if (type == Float.class) {
+                t[j] = buf.getFloat(pos);
+                pos += 4;
+            } else {
+                t[j] = buf.getChar(pos);
+                pos += 2;
+            } // if
+        } // for
+        return t;
+    } // decode
+
+    /************************************************************************************
+     * Return the number of bytes in the UTF-8 encoding of s (as String.getBytes makes
+     * it, so an unpaired surrogate counts as the one byte of its replacement).
+     */
+    private static int utf8Length(String s) {
+        var n = 0;
+        for (var i = 0; i < s.length(); i++) {
+            var c = s.charAt(i);
+            if (c < 0x80) n += 1;
+            else if (c < 0x800) n += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                n += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) n += 1;
+            else n += 3;
+        } // for
+        return n;
+    } // utf8Length
+
+    /************************************************************************************
+     * Make sure the scratch buffer has room for n more bytes.
+     */
+    private void ensure(int n) {
+        if (scratch.remaining() >= n) return;
+        var bigger = ByteBuffer.allocate(Math.max(2 * scratch.capacity(), scratch.position() + n));
+        scratch.flip();
+        bigger.put(scratch);
+        scratch = bigger;
+    } // ensure
+
+} // RowCodec class
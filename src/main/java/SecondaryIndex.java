@@ -0,0 +1,156 @@
+
+/****************************************************************************************
+ * @file SecondaryIndex.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.io.Serializable;
+import java.util.*;
+
+/****************************************************************************************
+ * This class implements a secondary index of a table: a map from the values of some
+ * attributes (not necessarily unique) to the positions of the tuples having them.  It
+ * holds positions rather than tuples, so it works the same for every storage layout,
+ * and catches up on tuples appended since it was last used, since tables only grow.
+ */
+class SecondaryIndex
+        implements Serializable {
+    /**
+     * The indexed attributes.
+     */
+    final String[] attrs;
+
+    /**
+     * The column positions of the indexed attributes.
+     */
+    final int[] cols;
+
+    /**
+     * The type of map holding the index.
+     */
+    final Table.MapType type;
+
+    /**
+     * The index: maps each value of the attributes to the positions of its tuples.
+     */
+    private final Map<KeyType, Rows> map;
+
+    /**
+     * Number of tuples (from the front of the table) that have been added to the index.
+     */
+    private int indexed = 0;
+
+    /************************************************************************************
+     * Construct an empty secondary index.
+     *
+     * @param _attrs  the indexed attributes
+     * @param _cols   their column positions
+     * @param _type   the map type for the index (not NO_MAP)
+     */
+    SecondaryIndex(String[] _attrs, int[] _cols, Table.MapType _type) {
+        attrs = _attrs;
+        cols = _cols;
+        type = _type;
+        map = Table.makeMap(type);
+    } // constructor
+
+    /************************************************************************************
+     * Determine whether the index answers range queries in key order.
+     *
+     * @return whether the map is sorted
+     */
+    boolean sorted() {
+        return map instanceof SortedMap;
+    } // sorted
+
+    /************************************************************************************
+     * Add the tuples not yet in the index.  The first build over many tuples groups them
+     * in a TreeMap, so a sorted index is then loaded bottom-up in one pass.
+     *
+     * @param tuples  the table's tuples
+     */
+    synchronized void update(List<Comparable[]> tuples) {
+        var n = tuples.size();
+        if (indexed >= n) return;
+        Map<KeyType, Rows> into = (map.isEmpty() && sorted() && n - indexed > 1) ? new TreeMap<>() : map;
+        for (var it = tuples.listIterator(indexed); it.hasNext(); indexed++) {
+            into.computeIfAbsent(keyOf(it.next()), k -> new Rows()).add(indexed);
+        } // for
+        if (into != map) map.putAll(into);
+    } // update
+
+    /************************************************************************************
+     * Return the tuples whose indexed attributes equal the given value.
+     *
+     * @param keyVal  the value, one per indexed attribute (in attrs order)
+     * @param tuples  the table's tuples
+     * @return the matching tuples, in position order
+     */
+    synchronized List<Comparable[]> get(KeyType keyVal, List<Comparable[]> tuples) {
+        update(tuples);
+        var rows = map.get(keyVal);
+        if (rows == null) return List.of();
+        var result = new ArrayList<Comparable[]>(rows.size);
+        rows.addTo(result, tuples);
+        return result;
+    } // get
+
+    /************************************************************************************
+     * Return the tuples whose indexed attributes lie between the given inclusive bounds,
+     * in key order.  A null bound leaves that side of the range open.
+     *
+     * @param fromKey  the lowest value to include (null for no lower bound)
+     * @param toKey    the highest value to include (null for no upper bound)
+     * @param tuples   the table's tuples
+     * @return the tuples in the range (none if fromKey is above toKey), or null if the
+     *         index is not sorted
+     */
+    @SuppressWarnings("unchecked")
+    synchronized List<Comparable[]> range(KeyType fromKey, KeyType toKey, List<Comparable[]> tuples) {
+        if (!sorted()) return null;
+        if (fromKey != null && toKey != null && fromKey.compareTo(toKey) > 0) return new ArrayList<>();
+        update(tuples);
+
+        Collection<Rows> range;
+        if (map instanceof NavigableMap) {
+            var nav = (NavigableMap<KeyType, Rows>) map;
+            range = ((fromKey == null)
+                    ? (toKey == null ? nav : nav.headMap(toKey, true))
+                    : (toKey == null ? nav.tailMap(fromKey, true) : nav.subMap(fromKey, true, toKey, true))).values();
+        } else {
+            range = ((BpTreeMap<KeyType, Rows>) map).subMap(fromKey, true, toKey, true).values();
+        } // if
+        var result = new ArrayList<Comparable[]>();
+        for (var rows : range) rows.addTo(result, tuples);
+        return result;
+    } // range
+
+    /************************************************************************************
+     * Build the index key of tuple t.
+     */
+    private KeyType keyOf(Comparable[] t) {
+        var keyVal = new Comparable[cols.length];
+        for (var j = 0; j < cols.length; j++) keyVal[j] = t[cols[j]];
+        return new KeyType(keyVal);
+    } // keyOf
+
+    /****************************************************************************************
+     * The positions of the tuples having one value of the indexed attributes.
+     */
+    private static class Rows
+            implements Serializable {
+        private int[] pos = new int[1];
+        private int size = 0;
+
+        void add(int p) {
+            if (size == pos.length) pos = Arrays.copyOf(pos, 2 * size);
+            pos[size++] = p;
+        } // add
+
+        void addTo(List<Comparable[]> result, List<Comparable[]> tuples) {
+            for (var i = 0; i < size; i++) result.add(tuples.get(pos[i]));
+        } // addTo
+    } // Rows class
+
+} // SecondaryIndex class
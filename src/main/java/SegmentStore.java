@@ -0,0 +1,500 @@
+
+/****************************************************************************************
+ * @file SegmentStore.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.lang.System.out;
+
+/****************************************************************************************
+ * This class saves a table incrementally, as a list of immutable segment files plus a
+ * manifest naming them in order.  Each save writes one new segment (in the TableFile
+ * format) holding only the tuples added since the previous save, and then replaces the
+ * manifest, so the I/O of a save is proportional to the number of new tuples.
+ * <p>
+ * Many small saves leave many small segments, so after each save a background
+ * compactor merges any run of MERGE_FANIN or more adjacent small segments into one.
+ * The merged segment replaces the run in the manifest before the old files are
+ * deleted, so a crash at any point leaves a manifest whose segments all exist.  Deleting
+ * a store first closes the open store of that table, waiting for its compaction, so a
+ * merge finishing late cannot bring back a manifest whose segments are gone.
+ * <p>
+ * The manifest (store/name.manifest) is a text file:
+ * <pre>
+ *   DBM1 nextSegmentNumber
+ *   segmentFile rows
+ *   ...
+ * </pre>
+ */
+class SegmentStore {
+    /**
+     * First word of a manifest.
+     */
+    private static final String MAGIC = "DBM1";
+
+    /**
+     * Filename extension for manifests.
+     */
+    private static final String MANIFEST_EXT = ".manifest";
+
+    /**
+     * Segments with fewer tuples than this are merged by the compactor.
+     */
+    static final int SMALL_ROWS = 65_536;
+
+    /**
+     * The least number of adjacent small segments worth merging.
+     */
+    static final int MERGE_FANIN = 4;
+
+    /**
+     * The thread that merges small segments (shared by every table).
+     */
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        var thread = new Thread(r, "segment-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The open store of each table, by manifest path (so deleting a store can close it).
+     */
+    private static final Map<Path, SegmentStore> OPEN = new ConcurrentHashMap<>();
+
+    /**
+     * A manifest entry: a segment file and the number of tuples in it.
+     */
+    private static class Segment {
+        final String file;
+        final int rows;
+
+        Segment(String _file, int _rows) {
+            file = _file;
+            rows = _rows;
+        }
+    } // Segment class
+
+    /**
+     * The table whose schema the segments are written with.
+     */
+    private final Table table;
+
+    /**
+     * The directory holding the manifest and segments.
+     */
+    private final Path dir;
+
+    /**
+     * The segments, in tuple order.
+     */
+    private final List<Segment> segments = new ArrayList<>();
+
+    /**
+     * The number to give the next segment file.
+     */
+    private int nextSegment = 0;
+
+    /**
+     * Held while compacting, so only one compaction runs at a time (and while load
+     * maps the segments of an open store, so none is deleted under it).
+     */
+    private final Object compacting = new Object();
+
+    /**
+     * The last compaction scheduled (so callers can wait for it).
+     */
+    private Future<?> compaction = null;
+
+    /**
+     * Whether the store has been closed (its files deleted or about to be): a closed
+     * store schedules no compactions and writes no manifest.
+     */
+    private boolean closed = false;
+
+    /************************************************************************************
+     * Construct a store for the given table.
+     */
+    private SegmentStore(Table _table, String _dir) {
+        table = _table;
+        dir = Paths.get(_dir);
+    } // constructor
+
+    /************************************************************************************
+     * Start a new, empty segment store for the table, deleting any segments a previous
+     * table of the same name left behind.
+     *
+     * @param table  the table to save
+     * @param dir    the directory to save in
+     * @return the new store
+     * @throws IOException if the old segments cannot be deleted
+     */
+    static SegmentStore create(Table table, String dir) throws IOException {
+        delete(dir, table.getName());
+        var store = new SegmentStore(table, dir);
+        Files.createDirectories(store.dir);
+        store.writeManifest();
+        OPEN.put(manifest(store.dir, table.getName()), store);
+        return store;
+    } // create
+
+    /************************************************************************************
+     * Open the segment store of a loaded table.
+     *
+     * @param table  the table loaded from the store (see load)
+     * @param dir    the directory holding the store
+     * @return the store
+     * @throws IOException if the manifest cannot be read
+     */
+    static SegmentStore open(Table table, String dir) throws IOException {
+        var store = new SegmentStore(table, dir);
+        var path = manifest(store.dir, table.getName());
+        store.readManifest(path);
+        OPEN.put(path, store);
+        return store;
+    } // open
+
+    /************************************************************************************
+     * Determine whether the named table has been saved as segments.
+     *
+     * @param dir   the directory to look in
+     * @param name  the table's name
+     * @return whether its manifest exists
+     */
+    static boolean exists(String dir, String name) {
+        return Files.exists(manifest(Paths.get(dir), name));
+    } // exists
+
+    /************************************************************************************
+     * Load the named table from its segments.  The tuples of each segment stay in its
+     * memory-mapped file (see TableFile) until read, and are copied just once into a
+     * PAGED or COLUMNAR table's storage.
+     *
+     * @param dir   the directory holding the store
+     * @param name  the table's name
+     * @return the table
+     * @throws IOException if a segment or the manifest cannot be read
+     */
+    static Table load(String dir, String name) throws IOException {
+        var d = Paths.get(dir);
+        var manifest = manifest(d, name);
+        var open = OPEN.get(manifest);
+        if (open == null) return load(d, manifest);
+        synchronized (open.compacting) {
+            // keep the store's compactor from deleting the segments listed until they are mapped
+            return load(d, manifest);
+        } // synchronized
+    } // load
+
+    /************************************************************************************
+     * Load a table from the segments its manifest lists.
+     */
+    private static Table load(Path d, Path manifest) throws IOException {
+        var entries = readEntries(manifest);
+        if (entries.isEmpty()) throw new IOException(manifest + " lists no segments");
+
+        TableFile.Mapped first = null;
+        var parts = new ArrayList<List<Comparable[]>>();
+        for (var e : entries) {
+            var seg = TableFile.open(d.resolve(e.file));
+            if (first == null) first = seg;
+            parts.add(seg.tuples);
+        } // for
+        return first.table(new SegmentedTuples(parts));
+    } // load
+
+    /************************************************************************************
+     * Delete the named table's manifest and segments, if any, after closing its open
+     * store.
+     *
+     * @param dir   the directory holding the store
+     * @param name  the table's name
+     * @throws IOException if a file cannot be deleted
+     */
+    static void delete(String dir, String name) throws IOException {
+        var d = Paths.get(dir);
+        var manifest = manifest(d, name);
+        var open = OPEN.remove(manifest);
+        if (open != null) open.close();
+        if (!Files.exists(manifest)) return;
+        var entries = readEntries(manifest);
+        Files.delete(manifest);
+        for (var e : entries) Files.deleteIfExists(d.resolve(e.file));
+    } // delete
+
+    /************************************************************************************
+     * Return the number of tuples saved in the segments.
+     *
+     * @return the number of saved tuples
+     */
+    synchronized int rows() {
+        var n = 0;
+        for (var s : segments) n += s.rows;
+        return n;
+    } // rows
+
+    /************************************************************************************
+     * Return the number of segments.
+     *
+     * @return the number of segment files in the manifest
+     */
+    synchronized int segmentCount() {
+        return segments.size();
+    } // segmentCount
+
+    /************************************************************************************
+     * Save the tuples that have not been saved yet (those after the first rows()) as a
+     * new segment, and schedule a compaction.  The first segment is written even if it
+     * is empty, so that the store always records the table's schema.
+     *
+     * @param tuples  all of the table's tuples
+     * @return the number of tuples written
+     * @throws IOException if the segment or manifest cannot be written
+     */
+    synchronized int append(List<Comparable[]> tuples) throws IOException {
+        var saved = rows();
+        var n = tuples.size() - saved;
+        if (n <= 0 && !segments.isEmpty()) return 0;
+
+        var file = segmentName(nextSegment++);
+        TableFile.save(table, tuples.subList(saved, saved + n), dir.resolve(file));
+        segments.add(new Segment(file, n));
+        writeManifest();
+
+        if (segments.size() >= MERGE_FANIN && !closed) compaction = COMPACTOR.submit(this::compactQuietly);
+        return n;
+    } // append
+
+    /************************************************************************************
+     * Merge every run of MERGE_FANIN or more adjacent small segments into one segment.
+     *
+     * @throws IOException if a segment or the manifest cannot be read or written
+     */
+    void compact() throws IOException {
+        synchronized (compacting) {
+            compactRuns();
+        } // synchronized
+    } // compact
+
+    /************************************************************************************
+     * Wait for the last scheduled compaction to finish.
+     */
+    void awaitCompaction() {
+        Future<?> f;
+        synchronized (this) {
+            f = compaction;
+        } // synchronized
+        if (f == null) return;
+        try {
+            f.get();
+        } catch (Exception ex) {
+            out.println("awaitCompaction: " + ex);
+        } // try
+    } // awaitCompaction
+
+    /************************************************************************************
+     * Stop compacting: no compaction is scheduled after this, and any running one is
+     * waited for (it writes no manifest once the store is closed).
+     */
+    void close() {
+        synchronized (this) {
+            closed = true;
+        } // synchronized
+        awaitCompaction();
+        synchronized (compacting) {
+            // wait out a compaction run by the caller of compact
+        } // synchronized
+    } // close
+
+    //----------------------------------------------------------------------------------
+    // Private Methods
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Merge runs of small segments until none is left (the caller holds compacting).
+     */
+    private void compactRuns() throws IOException {
+        for (var run = smallRun(); run != null; run = smallRun()) {
+            synchronized (this) {
+                if (closed) return;
+            } // synchronized
+            // read and write the merged segment without holding the lock, so saves continue
+            var parts = new ArrayList<List<Comparable[]>>();
+            for (var s : run) parts.add(TableFile.open(dir.resolve(s.file)).tuples);
+            String file;
+            synchronized (this) {
+                file = segmentName(nextSegment++);
+            } // synchronized
+            var merged = new SegmentedTuples(parts);
+            TableFile.save(table, merged, dir.resolve(file));
+
+            synchronized (this) {
+                if (closed) {
+                    // the store was deleted meanwhile: drop the merged segment
+                    Files.deleteIfExists(dir.resolve(file));
+                    return;
+                } // if
+                // only the compactor removes segments, so the run is still in place
+                var at = segments.indexOf(run.get(0));
+                segments.subList(at, at + run.size()).clear();
+                segments.add(at, new Segment(file, merged.size()));
+                writeManifest();
+            } // synchronized
+            for (var s : run) Files.deleteIfExists(dir.resolve(s.file));
+        } // for
+    } // compactRuns
+
+    /************************************************************************************
+     * Compact, reporting rather than throwing errors (for the background thread).
+     */
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException | UncheckedIOException ex) {
+            out.println("compact: IO Exception");
+            ex.printStackTrace();
+        } // try
+    } // compactQuietly
+
+    /************************************************************************************
+     * Find the first run of at least MERGE_FANIN adjacent small segments.
+     *
+     * @return a copy of the run, or null if there is none
+     */
+    private synchronized List<Segment> smallRun() {
+        var start = 0;
+        for (var i = 0; i <= segments.size(); i++) {
+            if (i == segments.size() || segments.get(i).rows >= SMALL_ROWS) {
+                if (i - start >= MERGE_FANIN) return new ArrayList<>(segments.subList(start, i));
+                start = i + 1;
+            } // if
+        } // for
+        return null;
+    } // smallRun
+
+    private String segmentName(int number) {
+        return table.getName() + ".seg" + number + ".dbf";
+    } // segmentName
+
+    private static Path manifest(Path dir, String name) {
+        return dir.resolve(name + MANIFEST_EXT);
+    } // manifest
+
+    /************************************************************************************
+     * Atomically replace the manifest with the current list of segments.
+     */
+    private void writeManifest() throws IOException {
+        var text = new StringBuilder(MAGIC + " " + nextSegment + "\n");
+        for (var s : segments) text.append(s.file).append(' ').append(s.rows).append('\n');
+
+        var path = manifest(dir, table.getName());
+        var tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(tmp, text.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } // writeManifest
+
+    /************************************************************************************
+     * Read the manifest into this store.
+     */
+    private void readManifest(Path path) throws IOException {
+        var lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        nextSegment = Integer.parseInt(lines.get(0).split(" ")[1]);
+        segments.addAll(readEntries(path));
+    } // readManifest
+
+    /************************************************************************************
+     * Read the segment entries of a manifest.
+     */
+    private static List<Segment> readEntries(Path path) throws IOException {
+        var lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).startsWith(MAGIC + " "))
+            throw new IOException(path + " is not a manifest");
+        var entries = new ArrayList<Segment>();
+        for (var line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) continue;
+            var f = line.split(" ");
+            entries.add(new Segment(f[0], Integer.parseInt(f[1])));
+        } // for
+        return entries;
+    } // readEntries
+
+    /************************************************************************************
+     * This inner class presents the tuple lists of several segments as one list.
+     * Tuples added to it are kept on the heap after the last segment.
+     */
+    static class SegmentedTuples
+            extends AbstractList<Comparable[]>
+            implements RandomAccess, Serializable {
+        private final List<List<Comparable[]>> parts;
+        private final int[] start;
+        private final List<Comparable[]> added = new ArrayList<>();
+
+        SegmentedTuples(List<List<Comparable[]>> _parts) {
+            parts = _parts;
+            start = new int[parts.size() + 1];
+            for (var p = 0; p < parts.size(); p++) start[p + 1] = start[p] + parts.get(p).size();
+        } // constructor
+
+        @Override
+        public int size() {
+            return start[parts.size()] + added.size();
+        }
+
+        @Override
+        public Comparable[] get(int i) {
+            var stored = start[parts.size()];
+            if (i >= stored) return added.get(i - stored);
+            if (i < 0) throw new IndexOutOfBoundsException("SegmentedTuples index " + i);
+            var p = Arrays.binarySearch(start, 0, parts.size(), i);
+            if (p < 0) p = -p - 2;
+            while (start[p + 1] == i) p++;      // skip empty segments
+            return parts.get(p).get(i - start[p]);
+        }
+
+        @Override
+        public Iterator<Comparable[]> iterator() {
+            var its = new ArrayList<Iterator<Comparable[]>>();
+            for (var part : parts) its.add(part.iterator());
+            its.add(added.iterator());
+            return new Iterator<>() {
+                private int k = 0;
+
+                @Override
+                public boolean hasNext() {
+                    while (k < its.size() - 1 && !its.get(k).hasNext()) k++;
+                    return its.get(k).hasNext();
+                }
+
+                @Override
+                public Comparable[] next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return its.get(k).next();
+                }
+            };
+        }
+
+        @Override
+        public boolean add(Comparable[] t) {
+            modCount++;
+            return added.add(t);
+        }
+
+        /** Serialize as a plain list, since the segments are memory-mapped. */
+        private Object writeReplace() {
+            return new ArrayList<>(this);
+        } // writeReplace
+    } // SegmentedTuples class
+
+} // SegmentStore class
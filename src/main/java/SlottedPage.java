@@ -0,0 +1,110 @@
+
+/****************************************************************************************
+ * @file SlottedPage.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.nio.ByteBuffer;
+
+/****************************************************************************************
+ * This class lays out encoded tuples in fixed-size pages.  A page starts with the number
+ * of tuples and the end of the tuple data; tuple data grows up from the header while a
+ * slot array of tuple offsets grows down from the end of the page.
+ * <pre>
+ *   | nRows | dataEnd | tuple 0 | tuple 1 | ... free ... | slot 1 | slot 0 |
+ * </pre>
+ * All methods take the page's base position within the buffer, so a buffer may hold many
+ * pages (e.g., a memory-mapped region of a file).
+ */
+class SlottedPage {
+    /**
+     * Size of the page header (nRows and dataEnd).
+     */
+    static final int HEADER = 8;
+
+    /**
+     * Size of a slot (the offset of a tuple within its page).
+     */
+    static final int SLOT = 4;
+
+    /************************************************************************************
+     * Format an empty page.
+     *
+     * @param buf   the buffer holding the page
+     * @param base  the position of the page in buf
+     */
+    static void init(ByteBuffer buf, int base) {
+        buf.putInt(base, 0);
+        buf.putInt(base + 4, HEADER);
+    } // init
+
+    /************************************************************************************
+     * Return the number of tuples in the page.
+     *
+     * @param buf   the buffer holding the page
+     * @param base  the position of the page in buf
+     * @return the number of tuples
+     */
+    static int rows(ByteBuffer buf, int base) {
+        return buf.getInt(base);
+    } // rows
+
+    /************************************************************************************
+     * Return the position in buf of the i-th tuple of the page.
+     *
+     * @param buf       the buffer holding the page
+     * @param base      the position of the page in buf
+     * @param pageSize  the size of a page
+     * @param i         the tuple's number within the page
+     * @return the position of the tuple's first byte
+     */
+    static int tuple(ByteBuffer buf, int base, int pageSize, int i) {
+        return base + buf.getInt(base + pageSize - SLOT * (i + 1));
+    } // tuple
+
+    /************************************************************************************
+     * Determine whether a tuple of the given encoded length fits in the page.
+     *
+     * @param buf       the buffer holding the page
+     * @param base      the position of the page in buf
+     * @param pageSize  the size of a page
+     * @param len       the encoded length of the tuple
+     * @return whether there is room for the tuple and its slot
+     */
+    static boolean fits(ByteBuffer buf, int base, int pageSize, int len) {
+        var n = buf.getInt(base);
+        var end = buf.getInt(base + 4);
+        return end + len <= pageSize - SLOT * (n + 1);
+    } // fits
+
+    /************************************************************************************
+     * Determine whether a tuple of the given encoded length fits in an empty page.
+     *
+     * @param pageSize  the size of a page
+     * @param len       the encoded length of the tuple
+     * @return whether the tuple can be stored at all
+     */
+    static boolean fitsEmpty(int pageSize, int len) {
+        return HEADER + len + SLOT <= pageSize;
+    } // fitsEmpty
+
+    /************************************************************************************
+     * Append an encoded tuple to the page (the caller checks that it fits).
+     *
+     * @param buf       the buffer holding the page
+     * @param base      the position of the page in buf
+     * @param pageSize  the size of a page
+     * @param row       the encoded tuple (from its position to its limit)
+     */
+    static void append(ByteBuffer buf, int base, int pageSize, ByteBuffer row) {
+        var n = buf.getInt(base);
+        var end = buf.getInt(base + 4);
+        var len = row.remaining();
+        buf.put(base + end, row, row.position(), len);
+        buf.putInt(base + pageSize - SLOT * (n + 1), end);
+        buf.putInt(base, n + 1);
+        buf.putInt(base + 4, end + len);
+    } // append
+
+} // SlottedPage class
@@ -9,7 +9,11 @@
  */
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -18,7 +22,7 @@ import static java.lang.System.out;
 /****************************************************************************************
  * This class implements relational database tables (including attribute names, domains
  * and a list of tuples.  Five basic relational algebra operators are provided: project,
- * select, union, minus and join.  The insert data manipulation operator is also provided.
+ * select, union, minus and join, along with intersect.  The insert data manipulation operator is also provided.
  * Missing are update and delete data manipulation operators.
  */
 public class Table
@@ -33,6 +37,64 @@ public class Table
      */
     private static final String EXT = ".dbf";
 
+    /**
+     * Filename extension for write-ahead log files
+     */
+    private static final String LOG_EXT = ".wal";
+
+    /**
+     * Filename extension for statistics files
+     */
+    private static final String STATS_EXT = ".stats";
+
+    /**
+     * Filename extension for the list of a table's secondary indexes
+     */
+    private static final String INDEX_EXT = ".idx";
+
+    /**
+     * The number of logged inserts after which a table is checkpointed (saved and its
+     * log emptied).
+     */
+    private static int checkpointInterval = 100_000;
+
+    /**
+     * The maximum number of tuples an operator holds in memory before spilling to disk.
+     */
+    private static int memoryBudget = 1_000_000;
+
+    /**
+     * The pool used for parallel execution of select, project and hash join, or null to
+     * run every operator on the calling thread.
+     */
+    private static ForkJoinPool pool = null;
+
+    /**
+     * Whether parallel operators must keep the tuples in input order.
+     */
+    private static boolean ordered = true;
+
+    /**
+     * Inputs with fewer tuples than this are processed sequentially even when a pool is
+     * set, since splitting them costs more than it saves.
+     */
+    private static final int PARALLEL_THRESHOLD = 10_000;
+
+    /**
+     * The number of tuples insertAll appends (and logs) at a time.
+     */
+    private static final int BATCH = 8192;
+
+    /**
+     * The buffer pool used by PAGED tables (created on first use).
+     */
+    private static BufferPool bufferPool = null;
+
+    /**
+     * The number of frames in the default buffer pool (32 MB of 8 KB pages).
+     */
+    private static final int DEFAULT_FRAMES = 4096;
+
     /**
      * Counter for naming temporary tables.
      */
@@ -57,7 +119,8 @@ public class Table
     private final Class[] domain;
 
     /**
-     * Collection of tuples (data storage).
+     * Collection of tuples (data storage): an ArrayList for ROW tables, a ColumnStore
+     * for COLUMNAR tables or PagedTuples for PAGED tables.
      */
     private final List<Comparable[]> tuples;
 
@@ -67,35 +130,192 @@ public class Table
     private final String[] key;
 
     /**
-     * Index into tuples (maps key to tuple number).
+     * Column positions of the primary key attributes.
+     */
+    private final int[] keyPos;
+
+    /**
+     * Index into tuples (maps key to tuple).  Unless the tuples are held in an ArrayList,
+     * the value is a one-element array holding the tuple's position, since the other
+     * stores (columnar, mapped, segmented and paged) build a new array on every read and
+     * the index would otherwise keep a copy of every tuple on the heap (see deref).
      */
     private final Map<KeyType, Comparable[]> index;
 
+    /**
+     * Number of tuples (from the front of tuples) that have been added to the index.
+     */
+    private int indexed = 0;
+
+    /**
+     * Whether the key values indexed so far are unique (so the index covers every tuple).
+     */
+    private boolean uniqueKeys = true;
+
+    /**
+     * The secondary indexes on other attributes than the key (see createIndex).
+     */
+    private final List<SecondaryIndex> indexes = new CopyOnWriteArrayList<>();
+
+    /**
+     * The redo log making inserts durable, or null if inserts are not logged.
+     */
+    private transient WriteAheadLog wal = null;
+
+    /**
+     * The segments this table is saved to incrementally, or null if it is not.
+     */
+    private transient SegmentStore segments = null;
+
+    /**
+     * The name operator metrics are recorded under for this table, or null for the
+     * temporary tables operators return (counted only under Metrics.ALL).
+     */
+    private transient String metricsName = null;
+
+    /**
+     * The insert metrics under metricsName, resolved when it is set (see nameMetrics).
+     */
+    private transient OperatorMetrics insertMetrics = null;
+
+    /**
+     * The statistics of the tuples, kept up to date by insert, or null until first asked
+     * for (tables made by the operators only get them if asked).
+     */
+    private transient TableStats stats = null;
+
     /**
      * The supported map types.
      */
-    private enum MapType {NO_MAP, TREE_MAP, LINHASH_MAP, BPTREE_MAP}
+    public enum MapType {NO_MAP, TREE_MAP, LINHASH_MAP, BPTREE_MAP}
 
     /**
-     * The map type to be used for indices.  Change as needed.
+     * The supported storage layouts: a list of tuple arrays, one (primitive where
+     * possible) array per column (see ColumnStore), or pages of a heap file read and
+     * written through the buffer pool (see PagedTuples).
      */
-    private static final MapType mType = MapType.TREE_MAP;
+    public enum StorageType {ROW, COLUMNAR, PAGED}
+
+    /**
+     * The ways project can eliminate duplicate tuples: keeping the tuples seen in a hash
+     * set, or sorting the tuples (with an external merge sort, so it spills when they do
+     * not fit in memory) and keeping one of each run of equal tuples.
+     */
+    public enum Distinct {HASH, SORT}
+
+    /**
+     * The map type used for tables that do not specify one.  Change as needed.
+     */
+    private static MapType defaultMapType = MapType.TREE_MAP;
+
+    /**
+     * The map type used for this table's index.
+     */
+    private final MapType mType;
 
     /************************************************************************************
      * Make a map (index) given the MapType.
+     *
+     * @param type  the type of map to make
+     * @return the new map, or null for NO_MAP
      */
-    private static Map<KeyType, Comparable[]> makeMap() {
-        switch (mType) {
+    static <V> Map<KeyType, V> makeMap(MapType type) {
+        switch (type) {
             case TREE_MAP:
                 return new TreeMap<>();
-//        case LINHASH_MAP -> new LinHashMap <> (KeyType.class, Comparable [].class);
-//        case BPTREE_MAP  -> new BpTreeMap <> (KeyType.class, Comparable [].class);
+            case LINHASH_MAP:
+                return new LinHashMap<>();
+            case BPTREE_MAP:
+                return new BpTreeMap<>();
             default:
                 return null;
         }
         // switch
     } // makeMap
 
+    /************************************************************************************
+     * Set the number of tuples an operator may hold in memory before it spills to disk.
+     *
+     * @param tuples  the new memory budget, in tuples
+     */
+    public static void setMemoryBudget(int tuples) {
+        memoryBudget = Math.max(1, tuples);
+    } // setMemoryBudget
+
+    /************************************************************************************
+     * Get the number of tuples an operator may hold in memory before it spills to disk.
+     *
+     * @return the memory budget, in tuples
+     */
+    public static int getMemoryBudget() {
+        return memoryBudget;
+    } // getMemoryBudget
+
+    /************************************************************************************
+     * Run select, project and hash joins in parallel on the given pool.  With ordered
+     * merging, results keep the order a sequential run would give; unordered merging
+     * takes partial results as they finish.
+     *
+     * #usage Table.setParallelism (new ForkJoinPool (32), false)
+     *
+     * @param _pool     the pool to run on, or null to run sequentially
+     * @param _ordered  whether results must keep the input order
+     */
+    public static void setParallelism(ForkJoinPool _pool, boolean _ordered) {
+        pool = _pool;
+        ordered = _ordered;
+    } // setParallelism
+
+    /************************************************************************************
+     * Determine whether an operator over n tuples should run in parallel.
+     *
+     * @param n  the number of input tuples
+     * @return whether a pool is set and the input is large enough
+     */
+    private static boolean parallel(int n) {
+        return pool != null && n >= PARALLEL_THRESHOLD;
+    } // parallel
+
+    /************************************************************************************
+     * Set how many logged inserts trigger a checkpoint of the table.
+     *
+     * @param inserts  the number of inserts between checkpoints
+     */
+    public static void setCheckpointInterval(int inserts) {
+        checkpointInterval = Math.max(1, inserts);
+    } // setCheckpointInterval
+
+    /************************************************************************************
+     * Set the buffer pool used by PAGED tables created from now on.
+     *
+     * #usage Table.setBufferPool (new BufferPool (1024, 8192))
+     *
+     * @param _pool  the buffer pool
+     */
+    public static void setBufferPool(BufferPool _pool) {
+        bufferPool = _pool;
+    } // setBufferPool
+
+    /************************************************************************************
+     * Get the buffer pool used by PAGED tables (e.g., to read its hit and miss counts),
+     * creating the default pool if there is none yet.
+     *
+     * @return the buffer pool
+     */
+    public static synchronized BufferPool getBufferPool() {
+        if (bufferPool == null) bufferPool = new BufferPool(DEFAULT_FRAMES, TableFile.PAGE_SIZE);
+        return bufferPool;
+    } // getBufferPool
+
+    /************************************************************************************
+     * Set the map type used for tables created without an explicit MapType.
+     *
+     * @param type  the new default map type
+     */
+    public static void setDefaultMapType(MapType type) {
+        defaultMapType = type;
+    } // setDefaultMapType
+
     //-----------------------------------------------------------------------------------
     // Constructors
     //-----------------------------------------------------------------------------------
@@ -109,13 +329,7 @@ public class Table
      * @param _key        the primary key
      */
     public Table(String _name, String[] _attribute, Class[] _domain, String[] _key) {
-        name = _name;
-        attribute = _attribute;
-        domain = _domain;
-        key = _key;
-        tuples = new ArrayList<>();
-        index = makeMap();
-
+        this(_name, _attribute, _domain, _key, new ArrayList<>(), defaultMapType);
     } // primary constructor
 
     /************************************************************************************
@@ -129,12 +343,30 @@ public class Table
      */
     public Table(String _name, String[] _attribute, Class[] _domain, String[] _key,
                  List<Comparable[]> _tuples) {
+        this(_name, _attribute, _domain, _key, _tuples, defaultMapType);
+    } // constructor
+
+    /************************************************************************************
+     * Construct a table from the meta-data specifications and data in _tuples list,
+     * using the given type of map for its index.
+     *
+     * @param _name       the name of the relation
+     * @param _attribute  the string containing attributes names
+     * @param _domain     the string containing attribute domains (data types)
+     * @param _key        the primary key
+     * @param _tuples     the list of tuples containing the data
+     * @param _mType      the map type for the index
+     */
+    public Table(String _name, String[] _attribute, Class[] _domain, String[] _key,
+                 List<Comparable[]> _tuples, MapType _mType) {
         name = _name;
         attribute = _attribute;
         domain = _domain;
         key = _key;
         tuples = _tuples;
-        index = makeMap();
+        keyPos = match(key);
+        mType = _mType;
+        index = makeMap(mType);
     } // constructor
 
     /************************************************************************************
@@ -146,11 +378,78 @@ public class Table
      * @param _key        the primary key
      */
     public Table(String _name, String attributes, String domains, String _key) {
-        this(_name, attributes.split(" "), findClass(domains.split(" ")), _key.split(" "));
+        this(_name, attributes, domains, _key, defaultMapType);
+    } // constructor
 
-        out.println("DDL> create table " + name + " (" + attributes + ")");
+    /************************************************************************************
+     * Construct an empty table from the raw string specifications, using the given type
+     * of map for its index.
+     *
+     * #usage new Table ("movieStar", "name address", "String String", "name", MapType.LINHASH_MAP)
+     *
+     * @param _name       the name of the relation
+     * @param attributes  the string containing attributes names
+     * @param domains     the string containing attribute domains (data types)
+     * @param _key        the primary key
+     * @param _mType      the map type for the index
+     */
+    public Table(String _name, String attributes, String domains, String _key, MapType _mType) {
+        this(_name, attributes, domains, _key, _mType, StorageType.ROW);
+    } // constructor
+
+    /************************************************************************************
+     * Construct an empty table from the raw string specifications, using the given type
+     * of map for its index and the given storage layout for its tuples.
+     *
+     * #usage new Table ("movie", "title year", "String Integer", "title year", MapType.TREE_MAP, StorageType.COLUMNAR)
+     *
+     * @param _name       the name of the relation
+     * @param attributes  the string containing attributes names
+     * @param domains     the string containing attribute domains (data types)
+     * @param _key        the primary key
+     * @param _mType      the map type for the index
+     * @param _storage    the storage layout for the tuples
+     */
+    public Table(String _name, String attributes, String domains, String _key, MapType _mType,
+                 StorageType _storage) {
+        this(_name, attributes.split(" "), findClass(domains.split(" ")), _key.split(" "),
+                null, _mType, _storage);
+
+        nameMetrics(name);
+        stats = new TableStats(attribute.length);
+        Log.log(() -> "DDL> create table " + name + " (" + attributes + ")");
+    } // constructor
+
+    /************************************************************************************
+     * Construct an empty table, or a table over the given tuples, choosing the storage
+     * for an empty table from the storage layout.
+     */
+    private Table(String _name, String[] _attribute, Class[] _domain, String[] _key,
+                  List<Comparable[]> _tuples, MapType _mType, StorageType _storage) {
+        this(_name, _attribute, _domain, _key, (_tuples != null) ? _tuples : emptyTuples(_name, _domain, _storage),
+                _mType);
     } // constructor
 
+    /************************************************************************************
+     * Make the empty tuple list for a table with the given storage layout.
+     *
+     * @param _name     the name of the relation
+     * @param _domain   the attribute domains
+     * @param _storage  the storage layout
+     * @return an empty list of tuples
+     */
+    static List<Comparable[]> emptyTuples(String _name, Class[] _domain, StorageType _storage) {
+        switch (_storage) {
+            case COLUMNAR:
+                return new ColumnStore(_domain);
+            case PAGED:
+                return new PagedTuples(getBufferPool(), _domain, DIR, _name);
+            default:
+                return new ArrayList<>();
+        }
+        // switch
+    } // emptyTuples
+
     //----------------------------------------------------------------------------------
     // Public Methods
     //----------------------------------------------------------------------------------
@@ -165,24 +464,155 @@ public class Table
      * @return a table of projected tuples
      */
     public Table project(String attributes) {
-        out.println("RA> " + name + ".project (" + attributes + ")");
+        Log.log(() -> "RA> " + name + ".project (" + attributes + ")");
+        var start = System.nanoTime();
         var attrs = attributes.split(" ");
         var colDomain = extractDom(match(attrs), domain);
         var newKey = (Arrays.asList(attrs).containsAll(Arrays.asList(key))) ? key : attrs;
 
         List<Comparable[]> rows = new ArrayList<>();
+        var colPos = match(attrs);
 
-        //Go through all the tuples of table
-        for(int i = 0; i < tuples.size(); i++) {
-            //Get only the columns that are needed
-            var t = this.extract(this.tuples.get(i), attrs);
-            //Insert the tuple to the list
-            rows.add(t);
+        if (parallel(tuples.size())) {
+            rows = Parallel.map(pool, tuples, t -> extract(t, colPos), ordered);
+        } else {
+            //Go through all the tuples of table
+            for(int i = 0; i < tuples.size(); i++) {
+                //Get only the columns that are needed
+                var t = extract(tuples.get(i), colPos);
+                //Insert the tuple to the list
+                rows.add(t);
+            }
         }
 
-        return new Table(name + count++, attrs, colDomain, newKey, rows);
+        return done("project", start, tuples.size(),
+                new Table(name + count++, attrs, colDomain, newKey, rows, mType));
     } // project
 
+    /************************************************************************************
+     * Project the tuples onto the given attributes, eliminating duplicate tuples (set
+     * semantics).  HASH keeps the first of each distinct tuple, in input order; should
+     * the distinct tuples outgrow the memory budget, it starts over as SORT.  SORT sorts
+     * the projected tuples with an external merge sort, spilling runs to the storage
+     * directory when they do not fit, and returns the distinct tuples in sorted order.
+     * A projection keeping the primary key of a table whose keys are known to be unique
+     * has no duplicates, so none are looked for.
+     *
+     * #usage movie.project ("genre studioName", Table.Distinct.HASH)
+     *
+     * @param attributes  the attributes to project onto
+     * @param distinct    how to eliminate duplicates
+     * @return a table of the distinct projected tuples
+     */
+    public Table project(String attributes, Distinct distinct) {
+        Log.log(() -> "RA> " + name + ".project (" + attributes + ", " + distinct + ")");
+        var start = System.nanoTime();
+        var attrs = attributes.split(" ");
+        var colPos = match(attrs);
+        var colDomain = extractDom(colPos, domain);
+        var keyKept = Arrays.asList(attrs).containsAll(Arrays.asList(key));
+        var newKey = keyKept ? key : attrs;
+
+        List<Comparable[]> rows = null;
+        if (keyKept && index != null && uniqueKeys && indexed == tuples.size()) {
+            rows = new ArrayList<>(tuples.size());
+            for (var t : tuples) rows.add(extract(t, colPos));
+        } else if (distinct == Distinct.HASH) {
+            rows = new ArrayList<>();
+            var seen = new HashSet<KeyType>();
+            for (var t : tuples) {
+                var u = extract(t, colPos);
+                if (!seen.add(new KeyType(u))) continue;
+                if (seen.size() > memoryBudget) {
+                    rows = null;
+                    break;
+                } // if
+                rows.add(u);
+            } // for
+        } // if
+
+        if (rows == null) {
+            var all = new int[attrs.length];
+            for (var j = 0; j < all.length; j++) all[j] = j;
+            Comparator<Comparable[]> cmp = (a, b) -> compareCols(a, all, b, all);
+            Iterable<Comparable[]> projected = () -> tuples.stream().map(t -> extract(t, colPos)).iterator();
+            rows = new ArrayList<>();
+            try (var sorted = ExternalSort.sort(projected, cmp, memoryBudget, DIR)) {
+                Comparable[] prev = null;
+                while (sorted.hasNext()) {
+                    var u = sorted.next();
+                    if (prev == null || cmp.compare(prev, u) != 0) rows.add(u);
+                    prev = u;
+                } // while
+            } // try
+        } // if
+
+        return done("project", start, tuples.size(),
+                new Table(name + count++, attrs, colDomain, newKey, rows, mType));
+    } // project
+
+    /************************************************************************************
+     * Start a pipeline over this table.  Operators chained onto the scan pass tuples
+     * along one at a time instead of materializing a table per step (see Operator).
+     *
+     * #usage movie.scan ().select (t -> (Integer) t[1] < 1980).project ("title").toTable ()
+     *
+     * @return a scan operator over the tuples of this table
+     */
+    public Operator scan() {
+        return new Operator.Scan(this);
+    } // scan
+
+    /************************************************************************************
+     * Start a logical plan over this table.  Operators chained onto the plan are run
+     * when it is executed, after optionally being reordered by the optimizer (see Plan).
+     *
+     * #usage movie.plan ().join ("studioName", "name", studio.plan ()).optimize ().execute ()
+     *
+     * @return a plan scanning this table
+     */
+    public Plan plan() {
+        return new Plan.Scan(this);
+    } // plan
+
+    /************************************************************************************
+     * Create a secondary index on the given attributes, which need not be unique.  It is
+     * kept up to date as tuples are inserted and saved with the table, and select (given
+     * an Expr), join, h_join and i_join use it when their condition or join attributes
+     * match it.  A sorted index (TREE_MAP or BPTREE_MAP) on one attribute also answers
+     * range conditions.
+     *
+     * #usage movie.createIndex ("studioName", MapType.LINHASH_MAP)
+     *
+     * @param attributes  the attributes to index
+     * @param type        the map type for the index
+     * @return whether the index was created
+     */
+    public boolean createIndex(String attributes, MapType type) {
+        Log.log(() -> "DDL> create index on " + name + " (" + attributes + ")");
+        var attrs = attributes.split(" ");
+        for (var a : attrs) {
+            if (col(a) < 0) {
+                out.println("createIndex: attribute " + a + " not found");
+                return false;
+            } // if
+        } // for
+        if (type == MapType.NO_MAP) {
+            out.println("createIndex: NO_MAP cannot hold an index");
+            return false;
+        } // if
+        synchronized (this) {
+            if (findIndex(attrs) != null) {
+                out.println("createIndex: " + name + " already has an index on " + attributes);
+                return false;
+            } // if
+            var ix = new SecondaryIndex(attrs, match(attrs), type);
+            ix.update(tuples);
+            indexes.add(ix);
+        } // synchronized
+        return true;
+    } // createIndex
+
     /************************************************************************************
      * Select the tuples satisfying the given predicate (Boolean function).
      *
@@ -192,45 +622,258 @@ public class Table
      * @return a table with tuples satisfying the predicate
      */
     public Table select(Predicate<Comparable[]> predicate) {
-        out.println("RA> " + name + ".select (" + predicate + ")");
+        Log.log(() -> "RA> " + name + ".select (" + predicate + ")");
+        var start = System.nanoTime();
+
+        if (parallel(tuples.size())) {
+            return done("select", start, tuples.size(), new Table(name + count++, attribute, domain, key,
+                    Parallel.map(pool, tuples, t -> predicate.test(t) ? t : null, ordered), mType));
+        } // if
 
-        return new Table(name + count++, attribute, domain, key,
+        return done("select", start, tuples.size(), new Table(name + count++, attribute, domain, key,
                 tuples.stream().filter(t -> predicate.test(t))
-                        .collect(Collectors.toList()));
+                        .collect(Collectors.toList()), mType));
     } // select
 
     /************************************************************************************
      * Select the tuples satisfying the given key predicate (key = value).  Use an index
-     * (Map) to retrieve the tuple with the given key value.
+     * (Map) to retrieve the tuple with the given key value.  Tables without a usable
+     * index (NO_MAP, or duplicate keys) fall back to comparing the key columns of each
+     * tuple.
      * @author Miruna Cristian
-     * @param keyVal  the given key value
+     * @param keyVal  the given key value (one value per key attribute)
      * @return a table with the tuple satisfying the key predicate
      */
     public Table select(KeyType keyVal) {
-        out.println("RA> " + name + ".select (" + keyVal + ")");
+        Log.log(() -> "RA> " + name + ".select (" + keyVal + ")");
+        var start = System.nanoTime();
 
         List<Comparable[]> rows = new ArrayList<>();
 
-        //Search the tuples to find the ones that match the key
-        for(int i = 0; i < tuples.size(); i++) {
-            //get an individual tuple
-            var t = this.extract(this.tuples.get(i), this.key);
-            //turn it in a KeyType
-            KeyType comparison = new KeyType(new Comparable[] {t[0]});
-
-            //compare the keyVal to the tuple
-            if(keyVal.compareTo(comparison) == 0){
-                //if true add to the new table
-                rows.add(this.tuples.get(i));
-            }
-        }
+        if (keyVal.size() != keyPos.length) {
+            out.println("select: key " + keyVal + " does not match key " + Arrays.toString(key));
+        } else if (ensureIndex()) {
+            var t = indexGet(keyVal);
+            if (t != null) rows.add(t);
+            Metrics.index(metricsName, "select", 1, rows.size());
+        } else {
+            Metrics.scan(metricsName, "select");
+            for (var t : tuples) {
+                if (keyMatches(t, keyVal)) rows.add(t);
+            } // for
+        } // if
+
+        return done("select", start, tuples.size(), new Table(name + count++, attribute, domain, key, rows, mType));
+    } // select
+
+    /************************************************************************************
+     * Select the tuples whose key lies between the given bounds (inclusive).  A null
+     * bound leaves that side of the range open.  Sorted indices (TREE_MAP and
+     * BPTREE_MAP) answer the query with an ordered range scan; otherwise the tuples
+     * are scanned.
+     *
+     * #usage movie.select (new KeyType ("Rambo", 1978), new KeyType ("Star_Wars", 1977))
+     *
+     * @param fromKey  the lowest key to include (null for no lower bound)
+     * @param toKey    the highest key to include (null for no upper bound)
+     * @return a table with the tuples whose keys lie in the range, in key order if indexed
+     */
+    public Table select(KeyType fromKey, KeyType toKey) {
+        Log.log(() -> "RA> " + name + ".select (" + fromKey + ", " + toKey + ")");
+        var start = System.nanoTime();
+
+        var rows = indexRange(fromKey, toKey);
+        if (rows != null) {
+            Metrics.index(metricsName, "select", 1, rows.isEmpty() ? 0 : 1);
+        } else {
+            Metrics.scan(metricsName, "select");
+            rows = new ArrayList<>();
+            for (var t : tuples) {
+                var k = keyOf(t);
+                if ((fromKey == null || k.compareTo(fromKey) >= 0) &&
+                        (toKey == null || k.compareTo(toKey) <= 0)) rows.add(t);
+            } // for
+        } // if
 
-        return new Table(name + count++, attribute, domain, key, rows);
+        return done("select", start, tuples.size(), new Table(name + count++, attribute, domain, key, rows, mType));
     } // select
 
+    /************************************************************************************
+     * Select the tuples satisfying the given condition.  Unlike a lambda, the condition
+     * is inspected before it is evaluated: equality conditions on every key attribute
+     * become an index lookup, range conditions on a single-attribute key become a range
+     * scan of a sorted index, and on COLUMNAR tables simple comparisons of an attribute
+     * with a value are evaluated column by column.  Only the tuples that survive are
+     * checked against the rest of the condition.
+     *
+     * #usage movie.select (Expr.col ("year").lt (1980).and (Expr.col ("genre").eq ("sciFi")))
+     *
+     * @param condition  the check condition for tuples
+     * @return a table with tuples satisfying the condition
+     */
+    public Table select(Expr condition) {
+        Log.log(() -> "RA> " + name + ".select (" + condition + ")");
+        var start = System.nanoTime();
+
+        var bound = condition.bind(attribute);
+        var conjuncts = bound.conjuncts();
+        var simple = new ArrayList<Expr.Cmp>();
+        var residual = new ArrayList<Expr>();
+        for (var c : conjuncts) {
+            var cmp = (c instanceof Expr.Cmp) ? ((Expr.Cmp) c).columnVsLiteral() : null;
+            if (cmp != null) simple.add(cmp);
+            else residual.add(c);
+        } // for
+
+        List<Comparable[]> rows = new ArrayList<>();
+        var candidates = indexCandidates(simple);
+        if (candidates == null) Metrics.scan(metricsName, "select");
+
+        if (candidates != null) {
+            Metrics.index(metricsName, "select", 1, candidates.isEmpty() ? 0 : 1);
+            for (var t : candidates) if (bound.test(t)) rows.add(t);
+        } else if (tuples instanceof ColumnStore) {
+            var store = (ColumnStore) tuples;
+            var bits = new BitSet(store.size());
+            bits.set(0, store.size());
+            for (var cmp : simple) {
+                store.filter(((Expr.Col) cmp.left).pos, cmp.op, ((Expr.Lit) cmp.right).value, bits);
+            } // for
+            for (var i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+                var t = store.get(i);
+                if (residual.stream().allMatch(e -> e.test(t))) rows.add(t);
+            } // for
+        } else {
+            for (var t : tuples) if (bound.test(t)) rows.add(t);
+        } // if
+
+        return done("select", start, tuples.size(), new Table(name + count++, attribute, domain, key, rows, mType));
+    } // select
+
+    /**
+     * Helper method to use the indexes for the column-versus-literal comparisons of a
+     * condition: equality on every key attribute gives a point lookup, as does equality
+     * on every attribute of a secondary index, and bounds on a single-attribute key (or
+     * the attribute of a sorted secondary index) give a range scan.
+     *
+     * @param simple the comparisons, each of the form "column op literal"
+     * @return the candidate tuples (a superset of the answer; none if the bounds on
+     *         some column contradict), or null if no index can narrow the search
+     */
+    private List<Comparable[]> indexCandidates(List<Expr.Cmp> simple) {
+        var eq = new HashMap<Integer, Comparable>();
+        var lo = new HashMap<Integer, Comparable>();
+        var hi = new HashMap<Integer, Comparable>();
+        for (var cmp : simple) {
+            var pos = ((Expr.Col) cmp.left).pos;
+            var lit = ((Expr.Lit) cmp.right).value;
+            if (lit == null || lit.getClass() != domain[pos]) continue;
+
+            if (cmp.op == Expr.Op.EQ) eq.putIfAbsent(pos, lit);
+            if (cmp.op == Expr.Op.EQ || cmp.op == Expr.Op.GT || cmp.op == Expr.Op.GE) tighten(lo, pos, lit, 1);
+            if (cmp.op == Expr.Op.EQ || cmp.op == Expr.Op.LT || cmp.op == Expr.Op.LE) tighten(hi, pos, lit, -1);
+        } // for
+        for (var e : lo.entrySet()) {
+            var h = hi.get(e.getKey());
+            if (h != null && compare(e.getValue(), h) > 0) return List.of();   // contradictory bounds
+        } // for
+
+        if (index != null && eq.keySet().containsAll(box(keyPos)) && ensureIndex()) {
+            var t = indexGet(extractKey(eq, keyPos));
+            return (t == null) ? List.of() : List.<Comparable[]>of(t);
+        } // if
+        SecondaryIndex best = null;
+        for (var ix : indexes) {
+            if (eq.keySet().containsAll(box(ix.cols)) && (best == null || ix.cols.length > best.cols.length)) best = ix;
+        } // for
+        if (best != null) return best.get(extractKey(eq, best.cols), tuples);
+
+        if (index != null && keyPos.length == 1 && (lo.containsKey(keyPos[0]) || hi.containsKey(keyPos[0]))) {
+            var rows = indexRange(boundKey(lo, keyPos[0]), boundKey(hi, keyPos[0]));
+            if (rows != null) return rows;
+        } // if
+        for (var ix : indexes) {
+            var c = ix.cols[0];
+            if (ix.cols.length == 1 && ix.sorted() && (lo.containsKey(c) || hi.containsKey(c)))
+                return ix.range(boundKey(lo, c), boundKey(hi, c), tuples);
+        } // for
+        return null;
+    }
+
+    /**
+     * Helper method to keep the tighter of a column's bounds: the larger lower bound
+     * (sign 1) or the smaller upper bound (sign -1).
+     */
+    private static void tighten(Map<Integer, Comparable> bounds, int col, Comparable lit, int sign) {
+        bounds.merge(col, lit, (old, v) -> Integer.signum(compare(v, old)) == sign ? v : old);
+    }
+
+    /**
+     * Helper method to compare two values of the same domain.
+     */
+    @SuppressWarnings("unchecked")
+    private static int compare(Comparable a, Comparable b) {
+        return a.compareTo(b);
+    }
+
+    /**
+     * Helper method to build a key from the values bound to the given columns.
+     */
+    private static KeyType extractKey(Map<Integer, Comparable> values, int[] colPos) {
+        var keyVal = new Comparable[colPos.length];
+        for (var j = 0; j < colPos.length; j++) keyVal[j] = values.get(colPos[j]);
+        return new KeyType(keyVal);
+    }
+
+    /**
+     * Helper method to make a one-attribute range bound, or null if col is unbounded.
+     */
+    private static KeyType boundKey(Map<Integer, Comparable> bounds, int col) {
+        var v = bounds.get(col);
+        return (v == null) ? null : new KeyType(v);
+    }
+
+    /**
+     * Helper method to box column positions for set comparisons.
+     */
+    private static List<Integer> box(int[] cols) {
+        var list = new ArrayList<Integer>(cols.length);
+        for (var c : cols) list.add(c);
+        return list;
+    }
+
+    /**
+     * Helper method to scan a sorted index (TREE_MAP or BPTREE_MAP) for the tuples whose
+     * key lies between the given inclusive bounds.
+     *
+     * @param fromKey the lowest key to include (null for no lower bound)
+     * @param toKey   the highest key to include (null for no upper bound)
+     * @return the tuples in key order (none if fromKey is above toKey), or null if there
+     *         is no usable sorted index
+     */
+    @SuppressWarnings("unchecked")
+    private synchronized List<Comparable[]> indexRange(KeyType fromKey, KeyType toKey) {
+        if (!(index instanceof SortedMap) || !ensureIndex()) return null;
+        if (fromKey != null && toKey != null && fromKey.compareTo(toKey) > 0) return new ArrayList<>();
+
+        if (index instanceof NavigableMap) {
+            var nav = (NavigableMap<KeyType, Comparable[]>) index;
+            var range = (fromKey == null)
+                    ? (toKey == null ? nav : nav.headMap(toKey, true))
+                    : (toKey == null ? nav.tailMap(fromKey, true) : nav.subMap(fromKey, true, toKey, true));
+            return derefAll(range.values());
+        } // if
+        if (index instanceof BpTreeMap) {
+            var bpt = (BpTreeMap<KeyType, Comparable[]>) index;
+            return derefAll(bpt.subMap(fromKey, true, toKey, true).values());
+        } // if
+        return null;
+    }
+
     /************************************************************************************
      * Union this table and table2.  Check that the two tables are compatible. Puts all
-     * tuples in this table and table2 into one table, not checking for duplicates.
+     * tuples in this table and table2 into one table, eliminating duplicates.  Tuples are
+     * hashed on all their attributes, so the union takes O(n + m) time.
      *
      * #usage movie.union (show)
      *
@@ -239,25 +882,29 @@ public class Table
      * @author Ravi Parashar
      */
     public Table union(Table table2) {
-        out.println("RA> " + name + ".union (" + table2.name + ")");
+        Log.log(() -> "RA> " + name + ".union (" + table2.name + ")");
+        var start = System.nanoTime();
         if (!compatible(table2)) return null;
 
         List<Comparable[]> rows = new ArrayList<>();
+        var seen = tupleSet(tuples.size() + table2.tuples.size());
 
-        Table table1 = this;
-        for (Comparable[] x: table1.tuples) {
-            rows.add(x);
+        for (Comparable[] x : this.tuples) {
+            if (seen.add(new KeyType(x))) rows.add(x);
         }
-        for (Comparable[] x: table2.tuples) {
-            rows.add(x);
+        for (Comparable[] x : table2.tuples) {
+            if (seen.add(new KeyType(x))) rows.add(x);
         }
 
-        return new Table(name + count++, attribute, domain, key, rows);
+        return done("union", start, tuples.size() + table2.tuples.size(),
+                new Table(name + count++, attribute, domain, key, rows, mType));
     } // union
 
     /************************************************************************************
      * Take the difference of this table and table2.  Check that the two tables are
-     * compatible. Puts all tuples in this table but not in table2 into one table.
+     * compatible. Puts all tuples in this table but not in table2 into one table,
+     * eliminating duplicates.  The tuples of table2 are hashed once and each tuple of
+     * this table is probed against them, so the difference takes O(n + m) time.
      *
      * #usage movie.minus (show)
      *
@@ -266,34 +913,66 @@ public class Table
      * @author Ravi Parashar
      */
     public Table minus(Table table2) {
-        out.println("RA> " + name + ".minus (" + table2.name + ")");
+        Log.log(() -> "RA> " + name + ".minus (" + table2.name + ")");
+        var start = System.nanoTime();
         if (!compatible(table2)) return null;
 
         List<Comparable[]> rows = new ArrayList<>();
-        boolean brk = false;
-        Table table1 = this;
-        for (Comparable[] x1: table1.tuples) {
-            for(Comparable[] x2: table2.tuples){
-                if(Arrays.equals(x1, x2)){
-                    brk = true;
-                    break;
-                } else {
-                    brk = false;
-                }
-            }
-            if(!brk){
-                rows.add(x1);
-            }
+        var seen = tupleSet(tuples.size() + table2.tuples.size());
+
+        for (Comparable[] x2 : table2.tuples) seen.add(new KeyType(x2));
+        for (Comparable[] x1 : this.tuples) {
+            if (seen.add(new KeyType(x1))) rows.add(x1);
         }
 
-        return new Table(name + count++, attribute, domain, key, rows);
+        return done("minus", start, tuples.size() + table2.tuples.size(),
+                new Table(name + count++, attribute, domain, key, rows, mType));
     } // minus
 
+    /************************************************************************************
+     * Intersect this table and table2.  Check that the two tables are compatible. Puts
+     * all tuples that are in both this table and table2 into one table, eliminating
+     * duplicates.  Runs in O(n + m) time like minus.
+     *
+     * #usage movie.intersect (cinema)
+     *
+     * @param table2  The rhs table in the intersect operation
+     * @return a table representing the intersection or null if the tables are union incompatible
+     */
+    public Table intersect(Table table2) {
+        Log.log(() -> "RA> " + name + ".intersect (" + table2.name + ")");
+        var start = System.nanoTime();
+        if (!compatible(table2)) return null;
+
+        List<Comparable[]> rows = new ArrayList<>();
+        var those = tupleSet(table2.tuples.size());
+
+        for (Comparable[] x2 : table2.tuples) those.add(new KeyType(x2));
+        for (Comparable[] x1 : this.tuples) {
+            if (those.remove(new KeyType(x1))) rows.add(x1);
+        }
+
+        return done("intersect", start, tuples.size() + table2.tuples.size(),
+                new Table(name + count++, attribute, domain, key, rows, mType));
+    } // intersect
+
+    /**
+     * Helper method to make a hash set of whole tuples (each wrapped in a KeyType) sized
+     * so that it does not need to rehash.
+     *
+     * @param expected the number of tuples expected to be added
+     * @return an empty set of tuple keys
+     */
+    private static Set<KeyType> tupleSet(int expected) {
+        return new HashSet<>(Math.max(16, (int) (expected / 0.75f) + 1));
+    }
+
     /************************************************************************************
      * Join this table and table2 by performing an "equi-join".  Tuples from both tables
      * are compared requiring attributes1 to equal attributes2.  Disambiguate attribute
      * names by append "2" to the end of any duplicate attribute name.  Implement using
-     * a Nested Loop Join algorithm.
+     * a Nested Loop Join algorithm, or by probing table2's secondary index on attributes2
+     * if it has one.
      *
      * @author David Luo
      *
@@ -305,7 +984,8 @@ public class Table
      * @return a table with tuples satisfying the equality predicate
      */
     public Table join(String attributes1, String attributes2, Table table2) {
-        out.println("RA> " + name + ".join (" + attributes1 + ", " + attributes2 + ", " + table2.name + ")");
+        Log.log(() -> "RA> " + name + ".join (" + attributes1 + ", " + attributes2 + ", " + table2.name + ")");
+        var start = System.nanoTime();
 
         var t_attrs = attributes1.split(" ");
         var u_attrs = attributes2.split(" ");
@@ -314,39 +994,53 @@ public class Table
             throw new ArrayIndexOutOfBoundsException("Attributes must be of equal length.");
 
         var newRows = new ArrayList<Comparable[]>();
+        var ix = table2.findIndex(u_attrs);
 
-        for (var these : this.tuples) {
-            for (var those : table2.tuples) {
-                boolean add = true;
-                for (int i = 0; i < t_attrs.length; i++) {
-                    var thisAttr = t_attrs[i];
-                    var thatAttr = u_attrs[i];
-
-                    var thisCol = this.col(thisAttr);
-                    var thatCol = table2.col(thatAttr);
-
-                    var thisVal = these[thisCol];
-                    var thatVal = those[thatCol];
-
-                    if (thisVal.compareTo(thatVal) != 0) {
-                        add = false;
-                        break;
+        if (ix != null) {
+            // table2 has a secondary index on attributes2, so probe it instead of scanning
+            newRows = indexJoin(this, t_attrs, table2, u_attrs, ix, true, null);
+            Metrics.index(metricsName, "join", tuples.size(), newRows.size());
+        } else {
+            for (var these : this.tuples) {
+                for (var those : table2.tuples) {
+                    boolean add = true;
+                    for (int i = 0; i < t_attrs.length; i++) {
+                        var thisAttr = t_attrs[i];
+                        var thatAttr = u_attrs[i];
+
+                        var thisCol = this.col(thisAttr);
+                        var thatCol = table2.col(thatAttr);
+
+                        var thisVal = these[thisCol];
+                        var thatVal = those[thatCol];
+
+                        if (thisVal.compareTo(thatVal) != 0) {
+                            add = false;
+                            break;
+                        }
+                    }
+                    if (add) {
+                        var newRow = ArrayUtil.concat(these, those);
+                        newRows.add(newRow);
                     }
-                }
-                if (add) {
-                    var newRow = ArrayUtil.concat(these, those);
-                    newRows.add(newRow);
                 }
             }
-        }
+        } // if
 
-        return new Table(name + count++, renameDupeCols(table2),
-                ArrayUtil.concat(domain, table2.domain), key, newRows);
+        return done("join", start, tuples.size() + table2.tuples.size(),
+                new Table(name + count++, renameDupeCols(table2),
+                ArrayUtil.concat(domain, table2.domain), key, newRows, mType));
     } // join
 
     /************************************************************************************
      * Join this table and table2 by performing an "equi-join".  Same as above, but implemented
-     * using an Index Join algorithm.
+     * using an Index Join algorithm.  When attributes2 is the primary key of table2, each
+     * tuple of this table is joined by a single probe of table2's index.  Otherwise a
+     * secondary index of table2 on attributes2 is probed if there is one, and failing
+     * that a temporary hash index is built over the attributes2 columns of table2 and
+     * probed the same way.
+     *
+     * #usage starsIn.i_join ("movieTitle movieYear", "title year", movie)
      *
      * @param attributes1  the attributes of this table to be compared (Foreign Key)
      * @param attributes2  the attributes of table2 to be compared (Primary Key)
@@ -354,9 +1048,226 @@ public class Table
      * @return a table with tuples satisfying the equality predicate
      */
     public Table i_join(String attributes1, String attributes2, Table table2) {
-        return null;
+        Log.log(() -> "RA> " + name + ".i_join (" + attributes1 + ", " + attributes2 + ", " + table2.name + ")");
+        var start = System.nanoTime();
+
+        var t_attrs = attributes1.split(" ");
+        var u_attrs = attributes2.split(" ");
+
+        if (t_attrs.length != u_attrs.length)
+            throw new ArrayIndexOutOfBoundsException("Attributes must be of equal length.");
+
+        var newRows = new ArrayList<Comparable[]>();
+        var probeCols = table2.keyProbe(t_attrs, u_attrs, this);
+
+        if (probeCols != null && table2.ensureIndex()) {
+            // probe the primary index, building the key in table2's key order
+            for (var these : tuples) {
+                var keyVal = new Comparable[probeCols.length];
+                for (var j = 0; j < probeCols.length; j++) keyVal[j] = these[probeCols[j]];
+                var those = table2.indexGet(new KeyType(keyVal));
+                if (those != null) newRows.add(ArrayUtil.concat(these, those));
+            } // for
+            Metrics.index(metricsName, "i_join", tuples.size(), newRows.size());
+        } else if (table2.findIndex(u_attrs) != null) {
+            newRows = indexJoin(this, t_attrs, table2, u_attrs, table2.findIndex(u_attrs), true, null);
+            Metrics.index(metricsName, "i_join", tuples.size(), newRows.size());
+        } else {
+            Metrics.scan(metricsName, "i_join");
+            // no usable index on attributes2, so build a temporary one
+            var thoseCols = table2.match(u_attrs);
+            var theseCols = match(t_attrs);
+            var tmpIndex = new HashMap<KeyType, List<Comparable[]>>();
+            for (var those : table2.tuples) {
+                tmpIndex.computeIfAbsent(extractKey(those, thoseCols), k -> new ArrayList<>()).add(those);
+            } // for
+            for (var these : tuples) {
+                var matches = tmpIndex.get(extractKey(these, theseCols));
+                if (matches == null) continue;
+                for (var those : matches) newRows.add(ArrayUtil.concat(these, those));
+            } // for
+        } // if
+
+        return done("i_join", start, tuples.size() + table2.tuples.size(),
+                new Table(name + count++, renameDupeCols(table2),
+                ArrayUtil.concat(domain, table2.domain), key, newRows, mType));
     } // i_join
 
+    /**
+     * Helper method to line up the join attributes with this table's primary key.
+     *
+     * @param outerAttrs the join attributes of the outer table
+     * @param innerAttrs the join attributes of this (inner) table
+     * @param outer      the outer table
+     * @return for each key attribute of this table, the column of the outer table that
+     *         supplies its value, or null if innerAttrs is not exactly the primary key
+     */
+    private int[] keyProbe(String[] outerAttrs, String[] innerAttrs, Table outer) {
+        var order = keyOrder(innerAttrs);
+        if (order == null) return null;
+        var probeCols = new int[order.length];
+        for (var j = 0; j < order.length; j++) probeCols[j] = outer.col(outerAttrs[order[j]]);
+        return probeCols;
+    }
+
+    /**
+     * Helper method to find a secondary index of this table on exactly the given
+     * attributes, in any order.
+     *
+     * @param attrs the attributes
+     * @return the index, or null if there is none
+     */
+    private SecondaryIndex findIndex(String[] attrs) {
+        var set = Arrays.asList(attrs);
+        for (var ix : indexes) {
+            if (ix.attrs.length == attrs.length && set.containsAll(Arrays.asList(ix.attrs))) return ix;
+        } // for
+        return null;
+    }
+
+    /**
+     * Helper method to join the tuples of outer with those of inner by probing a
+     * secondary index of inner once per outer tuple.
+     *
+     * @param outer      the table whose tuples probe the index
+     * @param outerAttrs the join attributes of outer
+     * @param inner      the indexed table
+     * @param innerAttrs the join attributes of inner, matching outerAttrs pairwise
+     * @param ix         inner's index on innerAttrs
+     * @param outerFirst whether the joined tuples start with outer's columns
+     * @param keep       the columns kept of the table whose columns come second (null
+     *                   for all)
+     * @return the joined tuples
+     */
+    private static ArrayList<Comparable[]> indexJoin(Table outer, String[] outerAttrs, Table inner,
+                                                     String[] innerAttrs, SecondaryIndex ix, boolean outerFirst,
+                                                     int[] keep) {
+        // for each indexed attribute, the column of outer supplying its value
+        var probeCols = new int[ix.attrs.length];
+        for (var j = 0; j < probeCols.length; j++) {
+            probeCols[j] = outer.col(outerAttrs[Arrays.asList(innerAttrs).indexOf(ix.attrs[j])]);
+        } // for
+        var newRows = new ArrayList<Comparable[]>();
+        for (var t : outer.tuples) {
+            for (var u : ix.get(extractKey(t, probeCols), inner.tuples)) {
+                newRows.add(outerFirst ? joined(t, u, keep) : joined(u, t, keep));
+            } // for
+        } // for
+        return newRows;
+    }
+
+    /************************************************************************************
+     * Join this table and table2 by performing an "equi-join".  Same as above, but implemented
+     * using a Sort-Merge Join algorithm.  Each input is brought into join-attribute order and
+     * the two sorted streams are merged.  An input is not re-sorted when it is already in
+     * order: a TREE_MAP or BPTREE_MAP table joined on its primary key is read through its
+     * index, and tuples that are already sorted are used as they are.  Otherwise inputs
+     * larger than the memory budget are sorted with an external merge sort that spills
+     * runs to the storage directory.
+     *
+     * #usage starsIn.sm_join ("movieTitle movieYear", "title year", movie)
+     *
+     * @param attributes1  the attributes of this table to be compared (Foreign Key)
+     * @param attributes2  the attributes of table2 to be compared (Primary Key)
+     * @param table2      the rhs table in the join operation
+     * @return a table with tuples satisfying the equality predicate
+     */
+    public Table sm_join(String attributes1, String attributes2, Table table2) {
+        Log.log(() -> "RA> " + name + ".sm_join (" + attributes1 + ", " + attributes2 + ", " + table2.name + ")");
+        var start = System.nanoTime();
+
+        var t_attrs = attributes1.split(" ");
+        var u_attrs = attributes2.split(" ");
+
+        if (t_attrs.length != u_attrs.length)
+            throw new ArrayIndexOutOfBoundsException("Attributes must be of equal length.");
+
+        // list the attribute pairs in table2's key order when they cover its key
+        var order = table2.keyOrder(u_attrs);
+        if (order == null) order = keyOrder(t_attrs);
+        if (order != null) {
+            var t_sorted = new String[order.length];
+            var u_sorted = new String[order.length];
+            for (var j = 0; j < order.length; j++) {
+                t_sorted[j] = t_attrs[order[j]];
+                u_sorted[j] = u_attrs[order[j]];
+            } // for
+            t_attrs = t_sorted;
+            u_attrs = u_sorted;
+        } // if
+
+        var theseCols = match(t_attrs);
+        var thoseCols = table2.match(u_attrs);
+        var newRows = new ArrayList<Comparable[]>();
+        // close both sorts when done, as either may stop before its runs are read through
+        try (var left = sortedOn(theseCols); var right = table2.sortedOn(thoseCols)) {
+            var these = left.hasNext() ? left.next() : null;
+            var those = right.hasNext() ? right.next() : null;
+
+            while (these != null && those != null) {
+                var cmp = compareCols(these, theseCols, those, thoseCols);
+                if (cmp < 0) {
+                    these = left.hasNext() ? left.next() : null;
+                } else if (cmp > 0) {
+                    those = right.hasNext() ? right.next() : null;
+                } else {
+                    // gather the group of table2 tuples with this join value, then pair it
+                    // with every tuple of this table having the same value
+                    var first = those;
+                    var group = new ArrayList<Comparable[]>();
+                    while (those != null && compareCols(first, thoseCols, those, thoseCols) == 0) {
+                        group.add(those);
+                        those = right.hasNext() ? right.next() : null;
+                    } // while
+                    while (these != null && compareCols(these, theseCols, first, thoseCols) == 0) {
+                        for (var match : group) newRows.add(ArrayUtil.concat(these, match));
+                        these = left.hasNext() ? left.next() : null;
+                    } // while
+                } // if
+            } // while
+        } // try
+
+        return done("sm_join", start, tuples.size() + table2.tuples.size(),
+                new Table(name + count++, renameDupeCols(table2),
+                ArrayUtil.concat(domain, table2.domain), key, newRows, mType));
+    } // sm_join
+
+    /**
+     * Helper method to iterate over this table's tuples ordered on the given columns,
+     * reusing an existing order (sorted index or already sorted tuples) when possible.
+     *
+     * @param cols the column positions to order on
+     * @return a closeable iterator over the tuples in order
+     */
+    private ExternalSort.Sorted sortedOn(int[] cols) {
+        synchronized (this) {
+            // read the index through under the lock, as inserts may change it afterwards
+            if (Arrays.equals(cols, keyPos) && index instanceof SortedMap && ensureIndex())
+                return ExternalSort.of(derefAll(index.values()).iterator());
+        } // synchronized
+
+        Comparator<Comparable[]> cmp = (a, b) -> compareCols(a, cols, b, cols);
+        if (ExternalSort.isSorted(tuples, cmp)) return ExternalSort.of(tuples.iterator());
+        return ExternalSort.sort(tuples, cmp, memoryBudget, DIR);
+    }
+
+    /**
+     * Helper method to find where each primary key attribute appears in attrs.
+     *
+     * @param attrs the attributes to line up with the primary key
+     * @return for each key attribute, its position in attrs, or null if attrs is not a
+     *         permutation of the primary key
+     */
+    private int[] keyOrder(String[] attrs) {
+        if (attrs.length != key.length) return null;
+        var order = new int[key.length];
+        for (var j = 0; j < key.length; j++) {
+            order[j] = Arrays.asList(attrs).indexOf(key[j]);
+            if (order[j] < 0) return null;
+        } // for
+        return order;
+    }
+
     /************************************************************************************
      * Join this table and table2 by performing an "equi-join".  Same as above, but implemented
      * using a Hash Join algorithm.
@@ -369,7 +1280,8 @@ public class Table
      * @return a table with tuples satisfying the equality predicate
      */
     public Table h_join(String attributes1, String attributes2, Table table2) {
-        out.println("RA> " + name + ".h_join (" + attributes1 + ", " + attributes2 + ", " + table2.name + ")");
+        Log.log(() -> "RA> " + name + ".h_join (" + attributes1 + ", " + attributes2 + ", " + table2.name + ")");
+        var start = System.nanoTime();
 
         var theseAttrs = attributes1.split(" ");
         var thoseAttrs = attributes2.split(" ");
@@ -377,57 +1289,166 @@ public class Table
         if (theseAttrs.length != thoseAttrs.length)
             throw new ArrayIndexOutOfBoundsException("Attributes must be of equal length.");
 
-        var newRows = hJoinImpl(table2, theseAttrs, thoseAttrs);
+        var newRows = hJoinImpl(table2, theseAttrs, thoseAttrs, null);
 
-        return new Table(name + count++, renameDupeCols(table2),
-                ArrayUtil.concat(domain, table2.domain), key, newRows);
+        return done("h_join", start, tuples.size() + table2.tuples.size(),
+                new Table(name + count++, renameDupeCols(table2),
+                ArrayUtil.concat(domain, table2.domain), key, newRows, mType));
     } // h_join
 
     /**
-     * Implementation of hash join for use in h_join and natural join
+     * Implementation of hash join for use in h_join and natural join.  One hash table is
+     * built over all the join columns of this table (keyed by the value itself for a
+     * single column), holding each tuple's position chained to the previous tuple with
+     * the same key, and probed with the tuples of table2.  Joined tuples are built
+     * directly in the output layout.  When either table has a secondary index on its
+     * join attributes, the other table probes it instead.  When this table has more
+     * tuples than the memory budget, the join is handed to HybridHashJoin, which builds
+     * on the smaller table and spills the partitions that do not fit to the storage
+     * directory only if that table is also over the budget.
+     *
+     * @param table2     the other table to join
+     * @param theseAttrs attributes on this table to check
+     * @param thoseAttrs attributes on the other table to check
+     * @param keep       the columns of table2 kept in the output (null for all)
+     * @return the rows of the new table (this table's columns followed by table2's kept
+     *         columns)
+     * @author David Luo
+     */
+    private List<Comparable[]> hJoinImpl(Table table2, String[] theseAttrs, String[] thoseAttrs, int[] keep) {
+        // an existing index on either side's join attributes replaces the hash table
+        var ix = findIndex(theseAttrs);
+        if (ix != null) return indexJoin(table2, thoseAttrs, this, theseAttrs, ix, false, keep);
+        ix = table2.findIndex(thoseAttrs);
+        if (ix != null) return indexJoin(this, theseAttrs, table2, thoseAttrs, ix, true, keep);
+
+        var theseCols = match(theseAttrs);
+        var thoseCols = table2.match(thoseAttrs);
+        if (tuples.size() > memoryBudget)
+            return HybridHashJoin.join(tuples, theseCols, table2.tuples, thoseCols, keep, memoryBudget, DIR);
+        if (parallel(tuples.size() + table2.tuples.size()))
+            return parallelHashJoin(table2, theseCols, thoseCols, keep);
+
+        // build: head maps a key to its first tuple, next[i] to the tuple after i with the
+        // same key (chained from the end, so matches come out in insertion order)
+        var n = tuples.size();
+        var rows = new Comparable[n][];
+        var next = new int[n];
+        var head = new HashMap<Object, Integer>(hashCapacity(theseCols, 1));
+        var i = 0;
+        for (var row : tuples) rows[i++] = row;
+        for (i = n - 1; i >= 0; i--) {
+            var after = head.put(hashKey(rows[i], theseCols), i);
+            next[i] = (after == null) ? -1 : after;
+        } // for
+
+        // probe
+        var newRows = new ArrayList<Comparable[]>();
+        for (var thatRow : table2.tuples) {
+            var h = head.get(hashKey(thatRow, thoseCols));
+            if (h == null) continue;
+            for (int k = h; k >= 0; k = next[k]) newRows.add(joined(rows[k], thatRow, keep));
+        } // for
+        return newRows;
+    }
+
+    /**
+     * Parallel hash join for use in hJoinImpl.  The tuples of this table are split into
+     * chunks that are hash partitioned on the join columns in parallel; each partition's
+     * hash table is then built by its own task, and the tuples of table2 are probed in
+     * parallel chunks.  Tuples match when all the join columns are equal.
+     *
+     * @param table2    the other table to join
+     * @param theseCols the join columns of this table
+     * @param thoseCols the join columns of the other table
+     * @param keep      the columns of table2 kept in the output (null for all)
+     * @return the rows of the new table (this table's columns followed by table2's kept
+     *         columns)
+     */
+    @SuppressWarnings("unchecked")
+    private List<Comparable[]> parallelHashJoin(Table table2, int[] theseCols, int[] thoseCols, int[] keep) {
+        var parts = pool.getParallelism();
+        var n = tuples.size();
+
+        // partition the build side, chunk by chunk
+        var chunked = new List[parts][parts];
+        Parallel.forEachPartition(pool, parts, c -> {
+            for (var p = 0; p < parts; p++) chunked[c][p] = new ArrayList<Comparable[]>();
+            for (var i = (int) ((long) n * c / parts); i < (int) ((long) n * (c + 1) / parts); i++) {
+                var row = tuples.get(i);
+                chunked[c][Math.floorMod(hashKey(row, theseCols).hashCode(), parts)].add(row);
+            } // for
+        });
+
+        // build one hash table per partition
+        var built = new Map[parts];
+        Parallel.forEachPartition(pool, parts, p -> {
+            var hash = new HashMap<Object, List<Comparable[]>>(hashCapacity(theseCols, parts));
+            for (var c = 0; c < parts; c++) {
+                for (var row : (List<Comparable[]>) chunked[c][p]) {
+                    hash.computeIfAbsent(hashKey(row, theseCols), k -> new ArrayList<>(1)).add(row);
+                } // for
+            } // for
+            built[p] = hash;
+        });
+
+        // probe with the tuples of table2
+        return Parallel.scan(pool, table2.tuples, (thatRow, out) -> {
+            var k = hashKey(thatRow, thoseCols);
+            var matches = (List<Comparable[]>) built[Math.floorMod(k.hashCode(), parts)].get(k);
+            if (matches != null) for (var row : matches) out.add(joined(row, thatRow, keep));
+        }, ordered);
+    }
+
+    /**
+     * Helper method to make the hash key of a tuple on the given columns: the value
+     * itself for a single column (saving a KeyType per tuple), otherwise the composite
+     * key.
      *
-     * @param table2     the other table to join
-     * @param theseAttrs attributes on this table to check
-     * @param thoseAttrs attributes on the other table to check
-     * @return the rows of the new table.
-     * @author David Luo
+     * @param t    the tuple
+     * @param cols the columns hashed on
+     * @return the key
      */
-    private List<Comparable[]> hJoinImpl(Table table2, String[] theseAttrs, String[] thoseAttrs) {
-        var newRows = new ArrayList<Comparable[]>();
+    static Object hashKey(Comparable[] t, int[] cols) {
+        return (cols.length == 1) ? t[cols[0]] : extractKey(t, cols);
+    }
 
-        // hashes = [{value: rows with that value}... for each attribute]
-        var hashes = new ArrayList<HashMap<Comparable, List<Comparable[]>>>();
-        for (String attr : theseAttrs) {
-            var attrHash = new HashMap<Comparable, List<Comparable[]>>();
-
-            int col = this.col(attr);
-            for (Comparable[] row : this.tuples) {
-                var valRows = attrHash.get(row[col]);
-                if (valRows == null) {
-                    valRows = new ArrayList<>();
-                    valRows.add(row);
-                    attrHash.put(row[col], valRows);
-                } else {
-                    valRows.add(row);
-                }
-            }
-            hashes.add(attrHash);
-        }
+    /**
+     * Helper method to build a joined tuple: all of t followed by the values of u at the
+     * given columns.
+     *
+     * @param t     the first tuple
+     * @param u     the second tuple
+     * @param uCols the columns of u to append (null for all)
+     * @return the joined tuple
+     */
+    static Comparable[] joined(Comparable[] t, Comparable[] u, int[] uCols) {
+        if (uCols == null) return ArrayUtil.concat(t, u);
+        var tup = Arrays.copyOf(t, t.length + uCols.length);
+        for (var j = 0; j < uCols.length; j++) tup[t.length + j] = u[uCols[j]];
+        return tup;
+    }
 
-        for (var thatRow : table2.tuples) {
-            HashSet<List<Comparable>> toAdd = new HashSet<>();
-            for (int i = 0; i < thoseAttrs.length; i++) {
-                String attr = thoseAttrs[i];
-                var attrHash = hashes.get(i);
-                var col = table2.col(attr);
-                if (attrHash.containsKey(thatRow[col])) {
-                    var theseRows = attrHash.get(thatRow[col]);
-                    theseRows.forEach(it -> toAdd.add(Arrays.asList(it)));
-                }
-            }
-            toAdd.forEach(it -> newRows.add(ArrayUtil.concat(it.toArray(new Comparable[0]), thatRow)));
-        }
-        return newRows;
+    /**
+     * Helper method to size a hash table on the given columns of this table ahead of
+     * time, from the distinct values the statistics estimate, so it is not rehashed as
+     * it grows.  Without statistics the default size is used (a scan just to count would
+     * cost more than the rehashing).
+     *
+     * @param cols  the columns hashed on
+     * @param parts the number of hash tables the keys are spread over
+     * @return the initial capacity for each hash table
+     */
+    private int hashCapacity(int[] cols, int parts) {
+        TableStats s;
+        synchronized (this) {
+            s = stats;
+        } // synchronized
+        if (s == null || s.rows() == 0) return 16;
+        var keys = 1.0;
+        for (var c : cols) keys *= s.column(c).distinct();
+        keys = Math.min(keys, tuples.size()) / parts;
+        return (int) Math.min(1 << 30, keys / 0.75 + 1);
     }
 
     /**
@@ -453,9 +1474,11 @@ public class Table
     /************************************************************************************
      * Join this table and table2 by performing an "natural join".  Tuples from both tables
      * are compared requiring common attributes to be equal.  The duplicate column is also
-     * eliminated.
+     * eliminated: the result has this table's attributes followed by the attributes of
+     * table2 not in this table.  With no common attributes, every pair of tuples joins.
      *
-     * Internally uses h_join.
+     * Internally uses h_join, building the joined tuples directly without the duplicate
+     * columns.
      *
      * @author David Luo
      *
@@ -465,60 +1488,25 @@ public class Table
      * @return a table with tuples satisfying the equality predicate
      */
     public Table join(Table table2) {
-        out.println("RA> " + name + ".join (" + table2.name + ")");
-
-        var theseAttrs = new HashSet<>(Arrays.asList(this.getAttribute()));
-        var thoseAttrs = new HashSet<>(Arrays.asList(table2.getAttribute()));
-
-        var commonAttrs = new HashSet<>(theseAttrs);
-        commonAttrs.retainAll(thoseAttrs);
-
-        var attributes = commonAttrs.toArray(new String[0]);
-
-        var dupeIndicies = removeDupeCols(table2);
-        dupeIndicies.sort((it1, it2) -> -it1.compareTo(it2));
-
-        var newAttributes = new ArrayList<>(Arrays.asList(ArrayUtil.concat(this.getAttribute(), table2.getAttribute())));
-        var newDomains = new ArrayList<>(Arrays.asList(ArrayUtil.concat(this.getDomain(), table2.getDomain())));
-        var newRows = this.hJoinImpl(table2, attributes, attributes);
-        for (int index : dupeIndicies) {
-            newAttributes.remove(index);
-            newDomains.remove(index);
-        }
-
-        for (int i = 0; i < newRows.size(); i++) {
-            var rowAsList = new ArrayList<>(Arrays.asList(newRows.get(i)));
-            for (int index : dupeIndicies)
-                rowAsList.remove(index);
-            newRows.set(i, rowAsList.toArray(new Comparable[0]));
-        }
-
-        // FIX - eliminate duplicate columns
-        return new Table(name + count++, newAttributes.toArray(new String[0]), newDomains.toArray(new Class[0]), key, newRows);
+        Log.log(() -> "RA> " + name + ".join (" + table2.name + ")");
+        var start = System.nanoTime();
+
+        // the common attributes, in this table's order, and the other columns of table2
+        var common = new ArrayList<String>();
+        for (var a : attribute) if (table2.col(a) >= 0) common.add(a);
+        var others = new ArrayList<String>();
+        for (var a : table2.attribute) if (col(a) < 0) others.add(a);
+        var otherAttrs = others.toArray(new String[0]);
+        var keep = table2.match(otherAttrs);
+
+        var attributes = common.toArray(new String[0]);
+        var newRows = hJoinImpl(table2, attributes, attributes, keep);
+
+        return done("join", start, tuples.size() + table2.tuples.size(),
+                new Table(name + count++, ArrayUtil.concat(attribute, otherAttrs),
+                ArrayUtil.concat(domain, extractDom(keep, table2.domain)), key, newRows, mType));
     } // join
 
-    /**
-     * Helper method to remove duplicate columns
-     *
-     * @param table2 the table to join
-     * @return an array of indices to delete in the new table
-     * @author David Luo
-     */
-    private List<Integer> removeDupeCols(Table table2) {
-        var theseAttrs = new HashSet<>(Arrays.asList(this.getAttribute()));
-
-        var indicies = new ArrayList<Integer>();
-
-        var index = this.getAttribute().length;
-        for (var attr : table2.getAttribute()) {
-            if (theseAttrs.contains(attr))
-                indicies.add(index);
-            index++;
-        }
-
-        return indicies;
-    }
-
     /************************************************************************************
      * Return the column position for the given attribute name.
      *
@@ -539,23 +1527,208 @@ public class Table
      * #usage movie.insert ("'Star_Wars'", 1977, 124, "T", "Fox", 12345)
      *
      * @param tup  the array of attribute values forming the tuple
-     * @return whether insertion was successful
+     * @return whether insertion was successful (a tuple that cannot be logged is still
+     *         inserted, but is not durable: see getLogFailure)
      */
     public boolean insert(Comparable[] tup) {
-        out.println("DML> insert into " + name + " values ( " + Arrays.toString(tup) + " )");
+        Log.log(() -> "DML> insert into " + name + " values ( " + Arrays.toString(tup) + " )");
+        var start = System.nanoTime();
 
         if (typeCheck(tup)) {
-            tuples.add(tup);
-            var keyVal = new Comparable[key.length];
-            var cols = match(key);
-            for (var j = 0; j < keyVal.length; j++) keyVal[j] = tup[cols[j]];
-            if (mType != MapType.NO_MAP) index.put(new KeyType(keyVal), tup);
+            WriteAheadLog log;
+            var seq = 0L;
+            synchronized (this) {
+                if (stats != null) getStats();          // catch up on tuples added without stats
+                tuples.add(tup);
+                if (stats != null) stats.add(tup);
+                if (!(tuples instanceof ColumnStore)) {
+                    ensureIndex();
+                    for (var ix : indexes) ix.update(tuples);
+                } // if
+                log = wal;
+                if (log != null) seq = log.append(tup);
+            } // synchronized
+
+            if (log != null) {
+                // wait for the group commit outside the lock, so concurrent inserts share a force
+                try {
+                    log.commit(seq);
+                } catch (IOException ex) {
+                    out.println("insert: IO Exception (tuple inserted but not logged)");
+                    ex.printStackTrace();
+                } // try
+                if (log.records() >= checkpointInterval) checkpoint();
+            } // if
+            Metrics.record(Metrics.INSERTS, insertMetrics, 1, 1, System.nanoTime() - start);
             return true;
         } else {
             return false;
         } // if
     } // insert
 
+    /************************************************************************************
+     * Insert many tuples at once.  Tuples are checked against the domains and appended
+     * (and logged, if the table is logged) in batches, and the index is built once at
+     * the end by sorting the new keys and loading them bottom-up, instead of being
+     * updated tuple by tuple.  Tuples that do not match the domains are skipped.
+     *
+     * #usage movie.insertAll (List.of (film0, film1, film2))
+     *
+     * @param rows  the tuples to insert
+     * @return the number of tuples inserted
+     */
+    public int insertAll(Iterable<Comparable[]> rows) {
+        Log.log(() -> "DML> insert all into " + name);
+        var start = System.nanoTime();
+
+        var batch = new ArrayList<Comparable[]>(BATCH);
+        int inserted = 0, rejected = 0;
+        for (var t : rows) {
+            if (!typeCheck(t)) {
+                rejected++;
+                continue;
+            } // if
+            batch.add(t);
+            if (batch.size() == BATCH) {
+                inserted += appendBatch(batch);
+                batch.clear();
+            } // if
+        } // for
+        inserted += appendBatch(batch);
+
+        synchronized (this) {
+            if (!(tuples instanceof ColumnStore)) {
+                ensureIndex();
+                for (var ix : indexes) ix.update(tuples);
+            } // if
+        } // synchronized
+        if (rejected > 0) out.println("insertAll: skipped " + rejected + " tuples not matching the domains");
+        Metrics.record(metricsName, "insertAll", inserted + rejected, inserted, System.nanoTime() - start);
+        return inserted;
+    } // insertAll
+
+    /************************************************************************************
+     * Insert the tuples of a delimited text file (e.g., CSV), one tuple per line with
+     * fields in attribute order.  The file is streamed through insertAll, so it is never
+     * held in memory as text.  Lines that cannot be converted to the domains are
+     * reported and skipped.
+     *
+     * #usage movie.loadDelimited ("movie.csv", ',', true)
+     *
+     * @param fileName   the file to read
+     * @param delimiter  the character separating fields
+     * @param header     whether the first line is a header to skip
+     * @return the number of tuples inserted
+     */
+    public int loadDelimited(String fileName, char delimiter, boolean header) {
+        try (var in = Files.newBufferedReader(Paths.get(fileName))) {
+            if (header) in.readLine();
+            var reader = new DelimitedReader(in, delimiter, domain);
+            var n = insertAll(() -> reader);
+            if (reader.skipped() > 0) out.println("loadDelimited: skipped " + reader.skipped() + " bad lines");
+            return n;
+        } catch (IOException | UncheckedIOException ex) {
+            out.println("loadDelimited: IO Exception");
+            ex.printStackTrace();
+            return 0;
+        } // try
+    } // loadDelimited
+
+    /************************************************************************************
+     * Append a batch of checked tuples, logging them with a single group commit.
+     *
+     * @param batch  the tuples to append
+     * @return the number of tuples appended
+     */
+    private int appendBatch(List<Comparable[]> batch) {
+        if (batch.isEmpty()) return 0;
+        WriteAheadLog log;
+        var seq = 0L;
+        synchronized (this) {
+            if (stats != null) getStats();              // catch up on tuples added without stats
+            tuples.addAll(batch);
+            if (stats != null) for (var t : batch) stats.add(t);
+            log = wal;
+            if (log != null) for (var t : batch) seq = log.append(t);
+        } // synchronized
+
+        if (log != null) {
+            try {
+                log.commit(seq);
+            } catch (IOException ex) {
+                out.println("insertAll: IO Exception (tuples inserted but not logged)");
+                ex.printStackTrace();
+            } // try
+            if (log.records() >= checkpointInterval) checkpoint();
+        } // if
+        return batch.size();
+    } // appendBatch
+
+    /************************************************************************************
+     * Make inserts into this table durable: save the table as a checkpoint, then log
+     * every later insert to a write-ahead log before insert returns.  The table is
+     * checkpointed again every checkpointInterval inserts, and Table.load replays the
+     * log after the last checkpoint.  Checkpoints are incremental saves, so each one
+     * writes only the tuples logged since the one before.
+     *
+     * #usage movie.enableLog ()
+     */
+    public synchronized void enableLog() {
+        if (wal != null) return;
+        if (!saveIncremental()) return;
+        try {
+            wal = WriteAheadLog.open(Paths.get(DIR + name + LOG_EXT), domain, tuples.size(), t -> { });
+            wal.reset(tuples.size());
+        } catch (IOException ex) {
+            out.println("enableLog: IO Exception");
+            ex.printStackTrace();
+        } // try
+    } // enableLog
+
+    /************************************************************************************
+     * Save the tuples inserted since the last checkpoint and empty the log, so recovery
+     * need only replay later inserts.  If the save fails the log is kept, since it is
+     * then the only durable copy of those inserts.  Does nothing if the table is not
+     * logged.
+     */
+    public synchronized void checkpoint() {
+        if (wal == null) return;
+        try {
+            wal.sync();
+            if (!saveIncremental()) return;
+            wal.reset(tuples.size());
+        } catch (IOException ex) {
+            out.println("checkpoint: IO Exception");
+            ex.printStackTrace();
+        } // try
+    } // checkpoint
+
+    /************************************************************************************
+     * Stop logging inserts into this table, forcing and closing its log.  The log file
+     * is kept, so loading the table still replays it.
+     */
+    public synchronized void closeLog() {
+        if (wal == null) return;
+        try {
+            wal.close();
+        } catch (IOException ex) {
+            out.println("closeLog: IO Exception");
+            ex.printStackTrace();
+        } // try
+        wal = null;
+    } // closeLog
+
+    /************************************************************************************
+     * Return the error that stopped this table's write-ahead log, if any.  Tuples
+     * inserted after the log fails are kept in the table, but are not durable until the
+     * table is saved.
+     *
+     * @return the log's error, or null if the table is not logged or its log is sound
+     */
+    public synchronized IOException getLogFailure() {
+        return (wal == null) ? null : wal.failure();
+    } // getLogFailure
+
     /************************************************************************************
      * Get the name of the table.
      *
@@ -566,9 +1739,10 @@ public class Table
     } // getName
 
     /************************************************************************************
-     * Print this table.
+     * Print this table (after any logged statements, so the output stays in order).
      */
     public void print() {
+        Log.flush();
         out.println("\n Table " + name);
         out.print("|-");
         out.print("---------------".repeat(attribute.length));
@@ -593,51 +1767,179 @@ public class Table
      * Print this table's index (Map).
      */
     public void printIndex() {
+        Log.flush();
         out.println("\n Index for " + name);
         out.println("-------------------");
         if (mType != MapType.NO_MAP) {
-            for (var e : index.entrySet()) {
-                out.println(e.getKey() + " -> " + Arrays.toString(e.getValue()));
-            } // for
+            synchronized (this) {
+                for (var e : index.entrySet()) {
+                    out.println(e.getKey() + " -> " + Arrays.toString(deref(e.getValue())));
+                } // for
+            } // synchronized
         } // if
         out.println("-------------------");
     } // printIndex
 
     /************************************************************************************
-     * Load the table with the given name into memory.
+     * Load the table with the given name.  The table file is memory-mapped, so loading
+     * reads only the schema and page directory; tuples are decoded when they are read,
+     * and the index is built on first keyed access.  If the table has a write-ahead log,
+     * the inserts logged after the checkpoint are replayed and later inserts are logged.
      *
      * @param name  the name of the table to load
      */
     public static Table load(String name) {
         Table tab = null;
         try {
-            ObjectInputStream ois = new ObjectInputStream(new FileInputStream(DIR + name + EXT));
-            tab = (Table) ois.readObject();
-            ois.close();
+            if (SegmentStore.exists(DIR, name)) {
+                tab = SegmentStore.load(DIR, name);
+                tab.segments = SegmentStore.open(tab, DIR);
+            } else {
+                tab = TableFile.load(Paths.get(DIR + name + EXT));
+            } // if
+            tab.nameMetrics(name);
+            tab.stats = loadStats(name);
+            loadIndexes(tab);
+            var logPath = Paths.get(DIR + name + LOG_EXT);
+            if (Files.exists(logPath)) {
+                var tuples = tab.tuples;
+                tab.wal = WriteAheadLog.open(logPath, tab.domain, tuples.size(), tuples::add);
+            } // if
         } catch (IOException ex) {
             out.println("load: IO Exception");
             ex.printStackTrace();
-        } catch (ClassNotFoundException ex) {
-            out.println("load: Class Not Found Exception");
-            ex.printStackTrace();
         } // try
         return tab;
     } // load
 
     /************************************************************************************
-     * Save this table in a file.
+     * Name the metrics of this table's operators, resolving the insert metrics once so
+     * that each insert records without building names or looking them up.
+     *
+     * @param _name  the name to record operator metrics under
+     */
+    private void nameMetrics(String _name) {
+        metricsName = _name;
+        insertMetrics = Metrics.of(_name, "insert");
+    } // nameMetrics
+
+    /************************************************************************************
+     * Load the saved statistics of the named table.  Statistics that are missing or
+     * unreadable are rebuilt from the tuples when next asked for.
+     *
+     * @param name  the name of the table
+     * @return the statistics, or null if they could not be loaded
+     */
+    private static TableStats loadStats(String name) {
+        var path = Paths.get(DIR + name + STATS_EXT);
+        if (!Files.exists(path)) return null;
+        try {
+            return TableStats.load(path);
+        } catch (IOException ex) {
+            out.println("load: cannot read statistics, rebuilding them: " + ex.getMessage());
+            return null;
+        } // try
+    } // loadStats
+
+    /************************************************************************************
+     * Recreate the secondary indexes listed when the named table was saved.  Like the
+     * primary index, each is built from the tuples on first use.
+     *
+     * @param tab  the loaded table
+     * @throws IOException if the list cannot be read
+     */
+    private static void loadIndexes(Table tab) throws IOException {
+        var path = Paths.get(DIR + tab.name + INDEX_EXT);
+        if (!Files.exists(path)) return;
+        for (var line : Files.readAllLines(path)) {
+            var fields = line.split(" ", 2);
+            var attrs = fields[1].split(" ");
+            tab.indexes.add(new SecondaryIndex(attrs, tab.match(attrs), MapType.valueOf(fields[0])));
+        } // for
+    } // loadIndexes
+
+    /************************************************************************************
+     * Save the list of this table's secondary indexes (map type and attributes, one per
+     * line), or remove the list if there are none.  The indexes themselves are rebuilt
+     * after loading.
+     *
+     * @throws IOException if the list cannot be written
+     */
+    private void saveIndexes() throws IOException {
+        var path = Paths.get(DIR + name + INDEX_EXT);
+        if (indexes.isEmpty()) {
+            Files.deleteIfExists(path);
+            return;
+        } // if
+        var lines = new ArrayList<String>();
+        for (var ix : indexes) lines.add(ix.type + " " + String.join(" ", ix.attrs));
+        Files.write(path, lines);
+    } // saveIndexes
+
+    /************************************************************************************
+     * Save this table in a file, in the paged binary format of TableFile.  A full save
+     * replaces any segments saved by saveIncremental.
+     *
+     * @return whether the table was saved
      */
-    public void save() {
+    public synchronized boolean save() {
         try {
-            var oos = new ObjectOutputStream(new FileOutputStream(DIR + name + EXT));
-            oos.writeObject(this);
-            oos.close();
+            TableFile.save(this, Paths.get(DIR + name + EXT));
+            if (segments != null) segments.close();
+            SegmentStore.delete(DIR, name);
+            segments = null;
+            getStats().save(Paths.get(DIR + name + STATS_EXT));
+            saveIndexes();
         } catch (IOException ex) {
             out.println("save: IO Exception");
             ex.printStackTrace();
+            return false;
         } // try
+        return true;
     } // save
 
+    /************************************************************************************
+     * Save the tuples added since the last incremental save as a new segment file (the
+     * first incremental save writes every tuple).  Small segments are merged in the
+     * background.  Table.load reads the segments in place of a full save.
+     *
+     * #usage movie.saveIncremental ()
+     *
+     * @return whether the tuples were saved
+     */
+    public synchronized boolean saveIncremental() {
+        try {
+            if (segments == null) segments = SegmentStore.create(this, DIR);
+            segments.append(tuples);
+            getStats().save(Paths.get(DIR + name + STATS_EXT));
+            saveIndexes();
+        } catch (IOException ex) {
+            out.println("saveIncremental: IO Exception");
+            ex.printStackTrace();
+            return false;
+        } // try
+        return true;
+    } // saveIncremental
+
+    /************************************************************************************
+     * Merge this table's small segments now, waiting for any background merge first.
+     * Does nothing if the table is not saved incrementally.
+     */
+    public void compact() {
+        SegmentStore store;
+        synchronized (this) {
+            store = segments;
+        } // synchronized
+        if (store == null) return;
+        store.awaitCompaction();
+        try {
+            store.compact();
+        } catch (IOException ex) {
+            out.println("compact: IO Exception");
+            ex.printStackTrace();
+        } // try
+    } // compact
+
     //----------------------------------------------------------------------------------
     // Private Methods
     //----------------------------------------------------------------------------------
@@ -688,6 +1990,192 @@ public class Table
         return colPos;
     } // match
 
+    /************************************************************************************
+     * Record a call of an operator on this table in the metrics.
+     *
+     * @param op      the operator's name
+     * @param start   System.nanoTime () when the operator started
+     * @param in      the number of input tuples
+     * @param result  the operator's result
+     * @return the result
+     */
+    private Table done(String op, long start, long in, Table result) {
+        Metrics.record(metricsName, op, in, result.tuples.size(), System.nanoTime() - start);
+        return result;
+    } // done
+
+    /************************************************************************************
+     * Make sure the index covers every tuple, adding any tuples that are not yet in it.
+     * Row tables index each tuple as it is inserted; tables constructed from a list of
+     * tuples (e.g., the results of other operators) and columnar tables index on first
+     * keyed access.  The index cannot be used once duplicate key values are found.
+     * Readers catch the index up under the table lock, the same one insert holds.
+     *
+     * @return whether the index can be used for keyed access
+     */
+    private synchronized boolean ensureIndex() {
+        if (index == null || !uniqueKeys) return false;
+        var byPos = byPosition();
+        if (index instanceof SortedMap && tuples.size() - indexed > 1) return bulkIndex(byPos);
+        for (; indexed < tuples.size(); indexed++) {
+            var t = tuples.get(indexed);
+            if (index.put(keyOf(t), byPos ? new Comparable[]{indexed} : t) != null) uniqueKeys = false;
+        } // for
+        return uniqueKeys;
+    } // ensureIndex
+
+    /************************************************************************************
+     * Add the tuples not yet in a sorted index (TREE_MAP or BPTREE_MAP) by sorting their
+     * keys.  An empty index is then built bottom-up from the sorted run (TreeMap and
+     * BpTreeMap both build from a SortedMap in linear time); otherwise the keys are
+     * put in order, so each put lands next to the one before.
+     *
+     * @param byPos  whether the index holds tuple positions rather than tuples
+     * @return whether the index can be used for keyed access
+     */
+    @SuppressWarnings("unchecked")
+    private boolean bulkIndex(boolean byPos) {
+        var n = tuples.size() - indexed;
+        var entries = new Map.Entry[n];
+        var i = 0;
+        for (var it = tuples.listIterator(indexed); it.hasNext(); i++) {
+            var t = it.next();
+            entries[i] = new AbstractMap.SimpleImmutableEntry<>(keyOf(t), byPos ? new Comparable[]{indexed + i} : t);
+        } // for
+        Comparator<Map.Entry> byKey = (a, b) -> ((KeyType) a.getKey()).compareTo((KeyType) b.getKey());
+        if (n >= PARALLEL_THRESHOLD) Arrays.parallelSort(entries, byKey);
+        else Arrays.sort(entries, byKey);
+
+        for (i = 1; i < n; i++) {
+            if (byKey.compare(entries[i - 1], entries[i]) == 0) uniqueKeys = false;
+        } // for
+        if (!uniqueKeys) return false;
+
+        if (index.isEmpty()) {
+            index.putAll(new SortedRun((List) Arrays.asList(entries)));
+        } else {
+            for (var e : entries) {
+                if (index.put((KeyType) e.getKey(), (Comparable[]) e.getValue()) != null) uniqueKeys = false;
+            } // for
+        } // if
+        indexed = tuples.size();
+        return uniqueKeys;
+    } // bulkIndex
+
+    /************************************************************************************
+     * Determine whether the index holds tuple positions rather than tuples: only the
+     * tuples of an ArrayList are kept as they are, so only they are indexed directly.
+     *
+     * @return whether index values are positions
+     */
+    private boolean byPosition() {
+        return !(tuples instanceof ArrayList);
+    } // byPosition
+
+    /************************************************************************************
+     * Turn an index value into its tuple: unless the tuples are in an ArrayList, the
+     * index holds the tuple's position, which is read from the store.
+     *
+     * @param entry  the value stored in the index
+     * @return the tuple
+     */
+    private Comparable[] deref(Comparable[] entry) {
+        return byPosition() ? tuples.get((Integer) entry[0]) : entry;
+    } // deref
+
+    /************************************************************************************
+     * Look up the tuple with the given key in the index (which must be usable), under
+     * the table lock so the lookup cannot overlap a change to the index.
+     *
+     * @param keyVal  the key to look up
+     * @return the tuple, or null if there is none
+     */
+    private synchronized Comparable[] indexGet(KeyType keyVal) {
+        var t = index.get(keyVal);
+        return (t == null) ? null : deref(t);
+    } // indexGet
+
+    /************************************************************************************
+     * Turn a collection of index values into their tuples.
+     *
+     * @param entries  the values stored in the index
+     * @return the tuples, in the same order
+     */
+    private List<Comparable[]> derefAll(Collection<Comparable[]> entries) {
+        var rows = new ArrayList<Comparable[]>(entries.size());
+        for (var e : entries) rows.add(deref(e));
+        return rows;
+    } // derefAll
+
+    /************************************************************************************
+     * Determine whether the key columns of tuple t equal the given key value.
+     *
+     * @param t       the tuple to check
+     * @param keyVal  the key value to compare with
+     * @return whether t has the given key
+     */
+    @SuppressWarnings("unchecked")
+    private boolean keyMatches(Comparable[] t, KeyType keyVal) {
+        for (var j = 0; j < keyPos.length; j++) {
+            if (t[keyPos[j]].compareTo(keyVal.get(j)) != 0) return false;
+        } // for
+        return true;
+    } // keyMatches
+
+    /************************************************************************************
+     * Build the primary key of tuple t.
+     *
+     * @param t  the tuple to take the key from
+     * @return the (possibly composite) key of t
+     */
+    private KeyType keyOf(Comparable[] t) {
+        return extractKey(t, keyPos);
+    } // keyOf
+
+    /************************************************************************************
+     * Build a key from the values of tuple t at the given column positions.
+     *
+     * @param t       the tuple to take the values from
+     * @param colPos  the column positions forming the key
+     * @return the (possibly composite) key
+     */
+    private static KeyType extractKey(Comparable[] t, int[] colPos) {
+        var keyVal = new Comparable[colPos.length];
+        for (var j = 0; j < colPos.length; j++) keyVal[j] = t[colPos[j]];
+        return new KeyType(keyVal);
+    } // extractKey
+
+    /************************************************************************************
+     * Compare tuples t and u on the given columns, in order.
+     *
+     * @param t      the first tuple
+     * @param tCols  the column positions to compare in t
+     * @param u      the second tuple
+     * @param uCols  the corresponding column positions in u
+     * @return negative, zero or positive as t is less than, equal to or greater than u
+     */
+    @SuppressWarnings("unchecked")
+    private static int compareCols(Comparable[] t, int[] tCols, Comparable[] u, int[] uCols) {
+        for (var j = 0; j < tCols.length; j++) {
+            var cmp = t[tCols[j]].compareTo(u[uCols[j]]);
+            if (cmp != 0) return cmp;
+        } // for
+        return 0;
+    } // compareCols
+
+    /************************************************************************************
+     * Extract the values at the given column positions from tuple t.
+     *
+     * @param t       the tuple to extract from
+     * @param colPos  the column positions to keep
+     * @return a smaller tuple extracted from tuple t
+     */
+    private static Comparable[] extract(Comparable[] t, int[] colPos) {
+        var tup = new Comparable[colPos.length];
+        for (var j = 0; j < colPos.length; j++) tup[j] = t[colPos[j]];
+        return tup;
+    } // extract
+
     /************************************************************************************
      * Extract the attributes specified by the column array from tuple t.
      *
@@ -760,10 +2248,66 @@ public class Table
         return obj;
     } // extractDom
 
+    public StorageType getStorageType() {
+        if (tuples instanceof ColumnStore) return StorageType.COLUMNAR;
+        return (tuples instanceof PagedTuples) ? StorageType.PAGED : StorageType.ROW;
+    }
+
+    /************************************************************************************
+     * Return the statistics of this table's tuples, bringing them up to date first
+     * (building them by a scan the first time they are asked for on a table made by an
+     * operator, or if they could not be loaded).
+     *
+     * #usage movie.getStats ().rows ()
+     *
+     * @return the table statistics
+     */
+    public synchronized TableStats getStats() {
+        if (stats == null || stats.rows() > tuples.size() || stats.columns() != attribute.length)
+            stats = new TableStats(attribute.length);
+        if (stats.rows() < tuples.size()) stats.addFrom(tuples, (int) stats.rows());
+        return stats;
+    } // getStats
+
+    /************************************************************************************
+     * Return the statistics of one column of this table's tuples.
+     *
+     * #usage movie.getStats ("genre").distinct ()
+     *
+     * @param attr  the attribute name
+     * @return the column statistics
+     */
+    public ColumnStats getStats(String attr) {
+        var j = col(attr);
+        if (j < 0) throw new IllegalArgumentException("getStats: attribute " + attr + " not found");
+        return getStats().column(j);
+    } // getStats
+
+    /************************************************************************************
+     * Return the attributes of each of this table's secondary indexes.
+     *
+     * @return one array of attribute names per index
+     */
+    public String[][] getIndexes() {
+        var result = new String[indexes.size()][];
+        for (var i = 0; i < result.length; i++) result[i] = indexes.get(i).attrs.clone();
+        return result;
+    } // getIndexes
+
+    public MapType getMapType() {
+        return mType;
+    }
+
     public String[] getAttribute() {
         return attribute;
     }
 
+    /**
+     * Return the tuples.  For COLUMNAR and PAGED tables this is a view whose tuples are
+     * materialized as they are read.
+     *
+     * @return the list of tuples
+     */
     public List<Comparable[]> getTuples() {
         return tuples;
     }
@@ -820,5 +2364,108 @@ public class Table
             return false;
         return true;
     }
+
+    /************************************************************************************
+     * This inner class presents a list of entries already sorted on distinct keys as a
+     * read-only SortedMap, so that an empty TreeMap or BpTreeMap will build itself from
+     * it bottom-up (see putAll).  Lookups and sub-map views binary search the entries.
+     */
+    static class SortedRun
+            extends AbstractMap<KeyType, Comparable[]>
+            implements SortedMap<KeyType, Comparable[]> {
+        private final List<Map.Entry<KeyType, Comparable[]>> entries;
+
+        SortedRun(List<Map.Entry<KeyType, Comparable[]>> _entries) {
+            entries = _entries;
+        }
+
+        @Override
+        public Set<Map.Entry<KeyType, Comparable[]>> entrySet() {
+            return new AbstractSet<>() {
+                public Iterator<Map.Entry<KeyType, Comparable[]>> iterator() {
+                    return Collections.unmodifiableList(entries).iterator();
+                }
+
+                public int size() {
+                    return entries.size();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return find(key) >= 0;
+        }
+
+        @Override
+        public Comparable[] get(Object key) {
+            var i = find(key);
+            return i >= 0 ? entries.get(i).getValue() : null;
+        }
+
+        @Override
+        public Comparator<? super KeyType> comparator() {
+            return null;
+        }
+
+        @Override
+        public KeyType firstKey() {
+            if (entries.isEmpty()) throw new NoSuchElementException();
+            return entries.get(0).getKey();
+        }
+
+        @Override
+        public KeyType lastKey() {
+            if (entries.isEmpty()) throw new NoSuchElementException();
+            return entries.get(entries.size() - 1).getKey();
+        }
+
+        @Override
+        public SortedMap<KeyType, Comparable[]> subMap(KeyType fromKey, KeyType toKey) {
+            if (fromKey.compareTo(toKey) > 0) throw new IllegalArgumentException("fromKey > toKey");
+            return new SortedRun(entries.subList(lowerBound(fromKey), lowerBound(toKey)));
+        }
+
+        @Override
+        public SortedMap<KeyType, Comparable[]> headMap(KeyType toKey) {
+            return new SortedRun(entries.subList(0, lowerBound(toKey)));
+        }
+
+        @Override
+        public SortedMap<KeyType, Comparable[]> tailMap(KeyType fromKey) {
+            return new SortedRun(entries.subList(lowerBound(fromKey), entries.size()));
+        }
+
+        /********************************************************************************
+         * Return the position of the first entry whose key is at least the given key
+         * (the size when there is none).
+         * @param key  the key to search for
+         */
+        private int lowerBound(KeyType key) {
+            int lo = 0, hi = entries.size();
+            while (lo < hi) {
+                var mid = (lo + hi) >>> 1;
+                if (entries.get(mid).getKey().compareTo(key) < 0) lo = mid + 1;
+                else hi = mid;
+            } // while
+            return lo;
+        } // lowerBound
+
+        /********************************************************************************
+         * Return the position of the entry with the given key, or -1 if there is none.
+         * @param key  the key to search for
+         */
+        private int find(Object key) {
+            if (!(key instanceof KeyType)) return -1;
+            var i = lowerBound((KeyType) key);
+            return i < entries.size() && entries.get(i).getKey().equals(key) ? i : -1;
+        } // find
+    } // SortedRun class
+
 } // Table class
 
@@ -0,0 +1,336 @@
+
+/****************************************************************************************
+ * @file TableFile.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/****************************************************************************************
+ * This class reads and writes tables in a paged binary format.  A table file holds:
+ * <pre>
+ *   header pages  | data pages (see SlottedPage) | page directory
+ * </pre>
+ * The header records the schema (name, attributes, domains, key, map and storage types),
+ * the page size, the number of pages and tuples, and where the page directory starts.
+ * The directory gives the number of the first tuple on each page, so a tuple can be
+ * found without touching any other page.
+ * <p>
+ * Loading memory-maps the file: the tuples of a ROW table stay in the mapping and are
+ * decoded only when read, so opening a table does not read its data.
+ */
+class TableFile {
+    /**
+     * Magic number identifying table files ("DBF1").
+     */
+    private static final int MAGIC = 0x44424631;
+
+    /**
+     * The default page size.
+     */
+    static final int PAGE_SIZE = 8192;
+
+    /**
+     * The largest region mapped at once (whole pages only).
+     */
+    private static final long MAX_REGION = 1L << 30;
+
+    /************************************************************************************
+     * Write the table to the given file.  The file is written next to its final name
+     * and then moved into place, so a crash never leaves a half-written table.
+     *
+     * @param table  the table to save
+     * @param path   the file to write
+     * @throws IOException if the file cannot be written
+     */
+    static void save(Table table, Path path) throws IOException {
+        save(table, table.getTuples(), path);
+    } // save
+
+    /************************************************************************************
+     * Write the given tuples, with the table's schema, to the given file (e.g., one
+     * segment of a table saved incrementally).
+     *
+     * @param table   the table whose schema is written
+     * @param tuples  the tuples to write
+     * @param path    the file to write
+     * @throws IOException if the file cannot be written
+     */
+    static void save(Table table, List<Comparable[]> tuples, Path path) throws IOException {
+        var codec = new RowCodec(table.getDomain());
+
+        // pick a page size that holds the largest tuple (measured, so each is encoded once)
+        var pageSize = PAGE_SIZE;
+        for (var t : tuples) {
+            while (!SlottedPage.fitsEmpty(pageSize, codec.size(t))) pageSize *= 2;
+        } // for
+
+        var header = header(table, pageSize, 0, 0, 0L);
+        var headerPages = (header.remaining() + pageSize - 1) / pageSize;
+
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        var tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (var ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.position((long) headerPages * pageSize);
+
+            var page = ByteBuffer.allocate(pageSize);
+            SlottedPage.init(page, 0);
+            var firstRow = new ArrayList<Integer>();
+            var row = 0;
+            for (var t : tuples) {
+                var enc = codec.encode(t);
+                if (!SlottedPage.fits(page, 0, pageSize, enc.remaining())) {
+                    firstRow.add(row - SlottedPage.rows(page, 0));
+                    writePage(ch, page);
+                    SlottedPage.init(page, 0);
+                } // if
+                SlottedPage.append(page, 0, pageSize, enc);
+                row++;
+            } // for
+            if (SlottedPage.rows(page, 0) > 0) {
+                firstRow.add(row - SlottedPage.rows(page, 0));
+                writePage(ch, page);
+            } // if
+
+            var dirPos = ch.position();
+            var dir = ByteBuffer.allocate(4 * firstRow.size());
+            for (var f : firstRow) dir.putInt(f);
+            dir.flip();
+            while (dir.hasRemaining()) ch.write(dir);
+
+            header = header(table, pageSize, firstRow.size(), row, dirPos);
+            ch.position(0);
+            while (header.hasRemaining()) ch.write(header);
+            ch.force(true);
+        } // try
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } // save
+
+    /************************************************************************************
+     * Open the table in the given file.  ROW tables keep their tuples in the mapped file
+     * (tuples inserted later are kept on the heap); COLUMNAR tables are read into a
+     * ColumnStore and PAGED tables are copied into a heap file behind the buffer pool.
+     *
+     * @param path  the file to read
+     * @return the table
+     * @throws IOException if the file cannot be read or is not a table file
+     */
+    static Table load(Path path) throws IOException {
+        var file = open(path);
+        return file.table(file.tuples);
+    } // load
+
+    /************************************************************************************
+     * Open the table in the given file, leaving its tuples in the mapped file whatever
+     * its storage type, so that they are copied at most once (see Mapped.table).
+     *
+     * @param path  the file to read
+     * @return the schema and mapped tuples of the file
+     * @throws IOException if the file cannot be read or is not a table file
+     */
+    static Mapped open(Path path) throws IOException {
+        try (var ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            var fixed = ByteBuffer.allocate(32);
+            while (fixed.hasRemaining()) {
+                if (ch.read(fixed) < 0) break;
+            } // while
+            fixed.flip();
+            if (fixed.remaining() < 32 || fixed.getInt(0) != MAGIC)
+                throw new IOException(path + " is not a table file");
+            var pageSize = fixed.getInt(4);
+            var headerLen = fixed.getInt(8);
+            var pageCount = fixed.getInt(12);
+            var tupleCount = fixed.getInt(16);
+            var dirPos = fixed.getLong(20);
+
+            var header = ch.map(FileChannel.MapMode.READ_ONLY, 0, headerLen);
+            header.position(32);
+            var name = readString(header);
+            var attribute = readStrings(header);
+            var domainNames = readStrings(header);
+            var key = readStrings(header);
+            var mType = Table.MapType.valueOf(readString(header));
+            var storage = Table.StorageType.valueOf(readString(header));
+
+            var domain = new Class[domainNames.length];
+            for (var j = 0; j < domain.length; j++) {
+                try {
+                    domain[j] = Class.forName("java.lang." + domainNames[j]);
+                } catch (ClassNotFoundException ex) {
+                    throw new IOException("unknown domain " + domainNames[j], ex);
+                } // try
+            } // for
+
+            var firstRow = new int[pageCount + 1];
+            if (pageCount > 0) {
+                var dir = ch.map(FileChannel.MapMode.READ_ONLY, dirPos, 4L * pageCount);
+                for (var p = 0; p < pageCount; p++) firstRow[p] = dir.getInt(4 * p);
+            } // if
+            firstRow[pageCount] = tupleCount;
+
+            var headerPages = (headerLen + pageSize - 1) / pageSize;
+            var mapped = new MappedTuples(ch, (long) headerPages * pageSize, pageSize, firstRow,
+                    new RowCodec(domain));
+            return new Mapped(name, attribute, domain, key, mType, storage, mapped);
+        } // try
+    } // open
+
+    //----------------------------------------------------------------------------------
+    // Private Methods
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Build the header: fixed fields (magic, page size, header length, page count, tuple
+     * count, directory position) followed by the schema.
+     */
+    private static ByteBuffer header(Table table, int pageSize, int pageCount, int tupleCount, long dirPos) {
+        var domainNames = new String[table.getDomain().length];
+        for (var j = 0; j < domainNames.length; j++) domainNames[j] = table.getDomain()[j].getSimpleName();
+
+        var schema = new ArrayList<byte[]>();
+        schema.add(bytes(table.getName()));
+        addStrings(schema, table.getAttribute());
+        addStrings(schema, domainNames);
+        addStrings(schema, table.getKey());
+        schema.add(bytes(table.getMapType().name()));
+        schema.add(bytes(table.getStorageType().name()));
+
+        var len = 32;
+        for (var b : schema) len += 4 + b.length;
+        var buf = ByteBuffer.allocate(len);
+        buf.putInt(MAGIC).putInt(pageSize).putInt(len).putInt(pageCount).putInt(tupleCount).putLong(dirPos).putInt(0);
+        for (var b : schema) buf.putInt(b.length).put(b);
+        return buf.flip();
+    } // header
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    } // bytes
+
+    private static void addStrings(List<byte[]> schema, String[] strings) {
+        schema.add(bytes(Integer.toString(strings.length)));
+        for (var s : strings) schema.add(bytes(s));
+    } // addStrings
+
+    private static String readString(ByteBuffer buf) {
+        var b = new byte[buf.getInt()];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    } // readString
+
+    private static String[] readStrings(ByteBuffer buf) {
+        var strings = new String[Integer.parseInt(readString(buf))];
+        for (var i = 0; i < strings.length; i++) strings[i] = readString(buf);
+        return strings;
+    } // readStrings
+
+    private static void writePage(FileChannel ch, ByteBuffer page) throws IOException {
+        page.clear();
+        while (page.hasRemaining()) ch.write(page);
+        Arrays.fill(page.array(), (byte) 0);
+    } // writePage
+
+    /************************************************************************************
+     * This inner class holds a table file's schema and its tuples still in the mapping.
+     */
+    static class Mapped {
+        final String name;
+        final String[] attribute;
+        final Class[] domain;
+        final String[] key;
+        final Table.MapType mType;
+        final Table.StorageType storage;
+        final MappedTuples tuples;
+
+        Mapped(String _name, String[] _attribute, Class[] _domain, String[] _key, Table.MapType _mType,
+               Table.StorageType _storage, MappedTuples _tuples) {
+            name = _name;
+            attribute = _attribute;
+            domain = _domain;
+            key = _key;
+            mType = _mType;
+            storage = _storage;
+            tuples = _tuples;
+        } // constructor
+
+        /** Make a table of this file's schema over the given tuples, converted to its storage. */
+        Table table(List<Comparable[]> rows) {
+            var tuples = rows;
+            if (storage != Table.StorageType.ROW) {
+                tuples = Table.emptyTuples(name, domain, storage);
+                tuples.addAll(rows);
+            } // if
+            return new Table(name, attribute, domain, key, tuples, mType);
+        } // table
+    } // Mapped inner class
+
+    /************************************************************************************
+     * This inner class is the tuple list of a loaded ROW table.  Tuples in the file are
+     * decoded from the mapping when read; tuples added afterwards are kept on the heap.
+     * It is serialized (e.g., by ObjectOutputStream) as an ordinary list.
+     */
+    static class MappedTuples
+            extends AbstractList<Comparable[]>
+            implements RandomAccess, Serializable {
+        private final MappedByteBuffer[] region;
+        private final int pagesPerRegion;
+        private final int pageSize;
+        private final int[] firstRow;
+        private final RowCodec codec;
+        private final List<Comparable[]> added = new ArrayList<>();
+
+        MappedTuples(FileChannel ch, long dataPos, int _pageSize, int[] _firstRow, RowCodec _codec)
+                throws IOException {
+            pageSize = _pageSize;
+            firstRow = _firstRow;
+            codec = _codec;
+            pagesPerRegion = (int) (MAX_REGION / pageSize);
+            var pages = firstRow.length - 1;
+            region = new MappedByteBuffer[(pages + pagesPerRegion - 1) / pagesPerRegion];
+            for (var r = 0; r < region.length; r++) {
+                var n = Math.min(pagesPerRegion, pages - r * pagesPerRegion);
+                region[r] = ch.map(FileChannel.MapMode.READ_ONLY,
+                        dataPos + (long) r * pagesPerRegion * pageSize, (long) n * pageSize);
+            } // for
+        } // constructor
+
+        @Override
+        public int size() {
+            return firstRow[firstRow.length - 1] + added.size();
+        }
+
+        @Override
+        public Comparable[] get(int i) {
+            var stored = firstRow[firstRow.length - 1];
+            if (i >= stored) return added.get(i - stored);
+            if (i < 0) throw new IndexOutOfBoundsException("MappedTuples index " + i);
+
+            var p = Arrays.binarySearch(firstRow, 0, firstRow.length - 1, i);
+            if (p < 0) p = -p - 2;
+            var buf = region[p / pagesPerRegion];
+            var base = (p % pagesPerRegion) * pageSize;
+            return codec.decode(buf, SlottedPage.tuple(buf, base, pageSize, i - firstRow[p]));
+        }
+
+        @Override
+        public boolean add(Comparable[] t) {
+            modCount++;
+            return added.add(t);
+        }
+
+        /** Serialize as a plain list, since a mapping cannot be serialized. */
+        private Object writeReplace() {
+            return new ArrayList<>(this);
+        } // writeReplace
+    } // MappedTuples class
+
+} // TableFile class
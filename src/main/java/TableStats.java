@@ -0,0 +1,120 @@
+
+/****************************************************************************************
+ * @file TableStats.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/****************************************************************************************
+ * This class holds the statistics of a table: its number of tuples and the statistics
+ * of each column (see ColumnStats).  Tables keep them up to date as tuples are inserted
+ * and save them next to their data, so the optimizer and the join operators can
+ * estimate cardinalities without scanning the table.
+ */
+public class TableStats
+        implements Serializable {
+    /**
+     * The number of tuples added.
+     */
+    private long rows = 0;
+
+    /**
+     * The statistics of each column.
+     */
+    private final ColumnStats[] column;
+
+    /************************************************************************************
+     * Construct empty statistics for a table with the given number of columns.
+     *
+     * @param columns  the number of columns
+     */
+    TableStats(int columns) {
+        column = new ColumnStats[columns];
+        for (var j = 0; j < columns; j++) column[j] = new ColumnStats();
+    } // constructor
+
+    /************************************************************************************
+     * Add a tuple.
+     *
+     * @param t  the tuple
+     */
+    synchronized void add(Comparable[] t) {
+        for (var j = 0; j < column.length; j++) column[j].add(t[j]);
+        rows++;
+    } // add
+
+    /************************************************************************************
+     * Add the tuples from position from to the end of a list.
+     *
+     * @param tuples  the tuples
+     * @param from    the first position to add
+     */
+    synchronized void addFrom(List<Comparable[]> tuples, int from) {
+        var it = tuples.listIterator(from);
+        while (it.hasNext()) add(it.next());
+    } // addFrom
+
+    /************************************************************************************
+     * Return the number of tuples.
+     *
+     * @return the number of tuples added
+     */
+    public synchronized long rows() {
+        return rows;
+    } // rows
+
+    /************************************************************************************
+     * Return the statistics of column j.
+     *
+     * @param j  the column position
+     * @return the column's statistics
+     */
+    public ColumnStats column(int j) {
+        return column[j];
+    } // column
+
+    /************************************************************************************
+     * Return the number of columns.
+     *
+     * @return the number of columns
+     */
+    public int columns() {
+        return column.length;
+    } // columns
+
+    /************************************************************************************
+     * Save the statistics to a file (replacing it atomically).
+     *
+     * @param path  the file
+     * @throws IOException if the file cannot be written
+     */
+    synchronized void save(Path path) throws IOException {
+        var tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (var oos = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            oos.writeObject(this);
+        } // try
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } // save
+
+    /************************************************************************************
+     * Load statistics saved by save.
+     *
+     * @param path  the file
+     * @return the statistics
+     * @throws IOException if the file cannot be read or does not hold statistics
+     */
+    static TableStats load(Path path) throws IOException {
+        try (var ois = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            return (TableStats) ois.readObject();
+        } catch (ClassNotFoundException | ClassCastException ex) {
+            throw new IOException(path + " does not hold table statistics", ex);
+        } // try
+    } // load
+
+} // TableStats class
@@ -0,0 +1,308 @@
+
+/****************************************************************************************
+ * @file WriteAheadLog.java
+ *
+ * @author  Sequel To SQL
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/****************************************************************************************
+ * This class is a redo log of the tuples inserted into a table since its last checkpoint
+ * (the last time the table was saved).  The file holds:
+ * <pre>
+ *   magic | base | record | record | ...      record = length | crc32 | encoded tuple
+ * </pre>
+ * where base is the number of tuples the checkpoint holds, so the i-th record is tuple
+ * number base + i.  A crash between saving a checkpoint and resetting the log therefore
+ * replays nothing twice, and a torn record at the end (bad length or checksum) is cut
+ * off on recovery.
+ * <p>
+ * Inserts are made durable by group commit: append adds a record to an in-memory batch,
+ * and commit waits until the record has been forced to disk.  The first committer to
+ * find no force in progress becomes the leader and writes and forces everything
+ * appended so far; the others wait for it, so one fsync covers every insert that
+ * arrived while the previous one was running.
+ */
+class WriteAheadLog {
+    /**
+     * Magic number identifying log files ("WAL1").
+     */
+    private static final int MAGIC = 0x57414C31;
+
+    /**
+     * Size of the file header (magic and base).
+     */
+    private static final int HEADER = 12;
+
+    /**
+     * Size of a record header (length and checksum).
+     */
+    private static final int RECORD_HEADER = 8;
+
+    /**
+     * The open log file.
+     */
+    private final FileChannel ch;
+
+    /**
+     * The codec for the table's domains.
+     */
+    private final RowCodec codec;
+
+    /**
+     * Checksum of a record's tuple.
+     */
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Records appended but not yet written, and the buffer the leader last wrote
+     * (swapped with pending by each force).
+     */
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16), spare = ByteBuffer.allocate(1 << 16);
+
+    /**
+     * Number of records appended, and number forced to disk, since the last reset.
+     */
+    private long appended = 0, durable = 0;
+
+    /**
+     * Whether a leader is writing and forcing a batch.
+     */
+    private boolean forcing = false;
+
+    /**
+     * The error that stopped the log, if any (later commits fail with it).
+     */
+    private IOException failure = null;
+
+    /**
+     * Number of forces (fsyncs), for measuring how well commits are grouped.
+     */
+    private long forces = 0;
+
+    /************************************************************************************
+     * Construct a log over an open file positioned for appending.
+     */
+    private WriteAheadLog(FileChannel _ch, Class[] domain) {
+        ch = _ch;
+        codec = new RowCodec(domain);
+    } // constructor
+
+    /************************************************************************************
+     * Open the log at path, creating it if it does not exist.  The records after the
+     * first rows - base (those not already in the checkpoint) are passed to redo, in
+     * order, and any torn record at the end is cut off.
+     *
+     * @param path    the log file
+     * @param domain  the domains of the table's tuples
+     * @param rows    the number of tuples in the checkpoint
+     * @param redo    applies a logged tuple to the table
+     * @return the log, ready for appending
+     * @throws IOException if the log cannot be read or written
+     */
+    static WriteAheadLog open(Path path, Class[] domain, int rows, Consumer<Comparable[]> redo)
+            throws IOException {
+        var ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        var log = new WriteAheadLog(ch, domain);
+        if (ch.size() < HEADER) {
+            log.reset(rows);
+            return log;
+        } // if
+
+        var head = ByteBuffer.allocate(HEADER);
+        readFully(ch, head, 0);
+        if (head.getInt(0) != MAGIC) {
+            ch.close();
+            throw new IOException(path + " is not a log file");
+        } // if
+        var skip = rows - head.getLong(4);
+
+        var pos = (long) HEADER;
+        var recHead = ByteBuffer.allocate(RECORD_HEADER);
+        var i = 0L;
+        for (; ; i++) {
+            recHead.clear();
+            if (readFully(ch, recHead, pos) < RECORD_HEADER) break;
+            var len = recHead.getInt(0);
+            if (len < 0 || pos + RECORD_HEADER + len > ch.size()) break;
+            var body = ByteBuffer.allocate(len);
+            readFully(ch, body, pos + RECORD_HEADER);
+            log.crc.reset();
+            log.crc.update(body.array(), 0, len);
+            if ((int) log.crc.getValue() != recHead.getInt(4)) break;
+
+            if (i >= skip) redo.accept(log.codec.decode(body, 0));
+            pos += RECORD_HEADER + len;
+        } // for
+
+        ch.truncate(pos);
+        ch.position(pos);
+        log.appended = log.durable = i;
+        return log;
+    } // open
+
+    /************************************************************************************
+     * Append a redo record for tuple t to the current batch.  The caller must append
+     * records in the order the tuples are added to the table.
+     *
+     * @param t  the inserted tuple
+     * @return the record's sequence number, to pass to commit
+     */
+    synchronized long append(Comparable[] t) {
+        var enc = codec.encode(t);
+        var len = enc.remaining();
+        crc.reset();
+        crc.update(enc.array(), 0, len);
+        if (pending.remaining() < RECORD_HEADER + len) {
+            var bigger = ByteBuffer.allocate(Math.max(2 * pending.capacity(), pending.position() + RECORD_HEADER + len));
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        } // if
+        pending.putInt(len).putInt((int) crc.getValue()).put(enc);
+        return ++appended;
+    } // append
+
+    /************************************************************************************
+     * Wait until record seq (and every record before it) is on disk, forcing the log
+     * as the leader if no force is in progress.
+     *
+     * @param seq  the sequence number returned by append
+     * @throws IOException if the log could not be written
+     */
+    void commit(long seq) throws IOException {
+        ByteBuffer batch;
+        long upTo;
+        synchronized (this) {
+            while (durable < seq && forcing && failure == null) {
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted waiting for the log", ex);
+                } // try
+            } // while
+            if (failure != null) throw failure;
+            if (durable >= seq) return;
+
+            forcing = true;
+            batch = pending;
+            pending = spare;
+            upTo = appended;
+        } // synchronized
+
+        IOException error = null;
+        try {
+            batch.flip();
+            while (batch.hasRemaining()) ch.write(batch);
+            ch.force(false);
+        } catch (IOException ex) {
+            error = ex;
+        } // try
+
+        synchronized (this) {
+            batch.clear();
+            spare = batch;
+            forcing = false;
+            if (error != null) failure = error;
+            else {
+                durable = upTo;
+                forces++;
+            } // if
+            notifyAll();
+        } // synchronized
+        if (error != null) throw error;
+    } // commit
+
+    /************************************************************************************
+     * Force every record appended so far to disk.
+     *
+     * @throws IOException if the log could not be written
+     */
+    void sync() throws IOException {
+        long seq;
+        synchronized (this) {
+            seq = appended;
+        } // synchronized
+        commit(seq);
+    } // sync
+
+    /************************************************************************************
+     * Empty the log after a checkpoint holding the given number of tuples has been
+     * saved.  The caller must make sure nothing is appended meanwhile.
+     *
+     * @param rows  the number of tuples in the checkpoint
+     * @throws IOException if the log could not be written
+     */
+    synchronized void reset(int rows) throws IOException {
+        ch.truncate(HEADER);
+        var head = ByteBuffer.allocate(HEADER).putInt(MAGIC).putLong(rows).flip();
+        ch.write(head, 0);
+        ch.force(true);
+        ch.position(HEADER);
+        pending.clear();
+        appended = 0;
+        durable = 0;
+    } // reset
+
+    /************************************************************************************
+     * Force any remaining records and close the log file.
+     *
+     * @throws IOException if the log could not be written
+     */
+    void close() throws IOException {
+        sync();
+        ch.close();
+    } // close
+
+    /************************************************************************************
+     * Return the number of records since the last checkpoint.
+     *
+     * @return the number of records appended since the log was opened or reset
+     */
+    synchronized long records() {
+        return appended;
+    } // records
+
+    /************************************************************************************
+     * Return the error that stopped the log, if any.  Records appended after it are not
+     * written.
+     *
+     * @return the error, or null if every commit so far has succeeded
+     */
+    synchronized IOException failure() {
+        return failure;
+    } // failure
+
+    /************************************************************************************
+     * Return the number of forces (fsyncs) done, which is less than the number of
+     * committed records when commits are grouped.
+     *
+     * @return the number of forces
+     */
+    synchronized long forces() {
+        return forces;
+    } // forces
+
+    /************************************************************************************
+     * Read from ch at pos until buf is full or the file ends.
+     *
+     * @return the number of bytes read
+     */
+    private static int readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        var start = buf.position();
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, pos + buf.position() - start) < 0) break;
+        } // while
+        return buf.position() - start;
+    } // readFully
+
+} // WriteAheadLog class
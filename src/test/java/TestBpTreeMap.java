@@ -0,0 +1,151 @@
+/*****************************************************************************************
+ * @file TestBpTreeMap.java
+ *
+ * @author Sequel To SQL
+ */
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/*****************************************************************************************
+ * The TestBpTreeMap class tests the B+Tree map and range selects on tables.
+ */
+public class TestBpTreeMap {
+
+    /************************************************************************************
+     * Tests that the map agrees with a TreeMap for point lookups and range scans
+     */
+    @Test
+    public void agreesWithTreeMap() {
+        var rand = new Random(4370);
+        var map = new BpTreeMap<KeyType, Integer>(4);
+        var truth = new TreeMap<KeyType, Integer>();
+        for (int i = 0; i < 5000; i++) {
+            var k = new KeyType("title" + rand.nextInt(2000), rand.nextInt(50));
+            assertEquals(truth.put(k, i), map.put(k, i));
+        }
+        assertEquals(truth.size(), map.size());
+        assertEquals(new ArrayList<>(truth.entrySet()), new ArrayList<>(map.entrySet()));
+        assertEquals(truth.firstKey(), map.firstKey());
+        assertEquals(truth.lastKey(), map.lastKey());
+
+        var lo = new KeyType("title1", 10);
+        var hi = new KeyType("title5", 20);
+        assertEquals(new ArrayList<>(truth.subMap(lo, true, hi, true).values()),
+                new ArrayList<>(map.subMap(lo, true, hi, true).values()));
+        assertEquals(new ArrayList<>(truth.headMap(hi).keySet()), new ArrayList<>(map.headMap(hi).keySet()));
+        assertEquals(new ArrayList<>(truth.tailMap(lo).keySet()), new ArrayList<>(map.tailMap(lo).keySet()));
+
+        for (int i = 0; i < 1000; i++) {
+            var k = new KeyType("title" + i, i % 50);
+            assertEquals(truth.remove(k), map.remove(k));
+        }
+        assertEquals(new ArrayList<>(truth.entrySet()), new ArrayList<>(map.entrySet()));
+    }
+
+    /************************************************************************************
+     * Tests that a bottom-up bulk load gives the same map as puts, and stays correct
+     * under later puts
+     */
+    @Test
+    public void bulkLoad() {
+        var rand = new Random(4370);
+        var truth = new TreeMap<KeyType, Integer>();
+        for (int i = 0; i < 5000; i++) truth.put(new KeyType("title" + rand.nextInt(3000), rand.nextInt(50)), i);
+
+        var map = new BpTreeMap<KeyType, Integer>(5);
+        map.putAll(truth);
+        assertEquals(truth.size(), map.size());
+        assertEquals(new ArrayList<>(truth.entrySet()), new ArrayList<>(map.entrySet()));
+        for (var k : truth.keySet()) assertEquals(truth.get(k), map.get(k));
+
+        for (int i = 0; i < 2000; i++) {
+            var k = new KeyType("title" + rand.nextInt(4000), rand.nextInt(50));
+            assertEquals(truth.put(k, -i), map.put(k, -i));
+        }
+        assertEquals(new ArrayList<>(truth.entrySet()), new ArrayList<>(map.entrySet()));
+        var lo = new KeyType("title2", 0);
+        var hi = new KeyType("title3", 0);
+        assertEquals(new ArrayList<>(truth.subMap(lo, true, hi, true).values()),
+                new ArrayList<>(map.subMap(lo, true, hi, true).values()));
+    }
+
+    /************************************************************************************
+     * Tests a range select on a composite (title, year) key
+     */
+    @Test
+    public void rangeSelect() {
+        var movie = new Table("movie", "title year length genre studioName producerNo",
+                "String Integer Integer String String Integer", "title year", Table.MapType.BPTREE_MAP);
+        movie.insert(new Comparable[]{"Star_Wars", 1977, 124, "sciFi", "Fox", 12345});
+        movie.insert(new Comparable[]{"Star_Wars_2", 1980, 124, "sciFi", "Fox", 12345});
+        movie.insert(new Comparable[]{"Rocky", 1985, 200, "action", "Universal", 12125});
+        movie.insert(new Comparable[]{"Rambo", 1978, 100, "action", "Universal", 32355});
+
+        var range = movie.select(new KeyType("Rocky", 1985), new KeyType("Star_Wars", 1977));
+        assertEquals(2, range.getTuples().size());
+        assertEquals("Rocky", range.getTuples().get(0)[0]);
+        assertEquals("Star_Wars", range.getTuples().get(1)[0]);
+
+        var open = movie.select(new KeyType("Rocky", 1985), null);
+        assertEquals(3, open.getTuples().size());
+        assertTrue(movie.select(null, new KeyType("A", 0)).getTuples().isEmpty());
+
+        // an inverted range is empty on every map type, as on the scan path
+        for (var type : new Table.MapType[]{Table.MapType.TREE_MAP, Table.MapType.BPTREE_MAP, Table.MapType.NO_MAP}) {
+            var t = new Table("movie", "title year", "String Integer", "title year", type);
+            t.insert(new Comparable[]{"Rocky", 1985});
+            assertTrue(t.select(new KeyType("Star_Wars", 1977), new KeyType("Rocky", 1985)).getTuples().isEmpty());
+        }
+    }
+
+    /************************************************************************************
+     * Tests views of views and lastKey, including after the last leaves are emptied by
+     * deletes
+     */
+    @Test
+    public void nestedViews() {
+        var map = new BpTreeMap<Integer, Integer>(4);
+        var truth = new TreeMap<Integer, Integer>();
+        for (int i = 0; i < 1000; i += 2) {
+            map.put(i, i);
+            truth.put(i, i);
+        }
+        var view = map.subMap(100, 200);
+        var expected = truth.subMap(100, 200);
+        assertEquals(new ArrayList<>(expected.subMap(120, 140).keySet()), new ArrayList<>(view.subMap(120, 140).keySet()));
+        assertEquals(new ArrayList<>(expected.headMap(150).keySet()), new ArrayList<>(view.headMap(150).keySet()));
+        assertEquals(new ArrayList<>(expected.tailMap(150).keySet()), new ArrayList<>(view.tailMap(150).keySet()));
+        assertEquals(new ArrayList<>(expected.headMap(200).keySet()), new ArrayList<>(view.headMap(200).keySet()));
+        assertEquals(expected.lastKey(), view.lastKey());
+        assertEquals(expected.headMap(151).lastKey(), view.headMap(151).lastKey());
+        for (var bad : new Runnable[]{() -> view.headMap(300), () -> view.tailMap(50), () -> view.subMap(150, 250),
+                () -> view.subMap(90, 150), () -> view.subMap(150, 120), () -> view.tailMap(200)}) {
+            try {
+                bad.run();
+                fail("bound outside the view accepted");
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+        }
+
+        for (int i = 998; i >= 600; i -= 2) map.remove(i);
+        assertEquals(598, (int) map.lastKey());
+        assertEquals(598, (int) map.headMap(900).lastKey());
+        assertEquals(400, (int) map.subMap(0, true, 401, false).lastKey());
+        for (int i = 0; i < 600; i += 2) map.remove(i);
+        try {
+            map.lastKey();
+            fail("lastKey of an empty map");
+        } catch (java.util.NoSuchElementException ex) {
+            // expected
+        }
+    }
+}
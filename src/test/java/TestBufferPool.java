@@ -0,0 +1,154 @@
+/*****************************************************************************************
+ * @file TestBufferPool.java
+ *
+ * @author Sequel To SQL
+ */
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/*****************************************************************************************
+ * The TestBufferPool class tests the buffer pool and PAGED tables that are much larger
+ * than the pool.
+ */
+public class TestBufferPool {
+
+    /************************************************************************************
+     * Restores the default buffer pool
+     */
+    @After
+    public void tearDown() {
+        Table.setBufferPool(null);
+    }
+
+    /************************************************************************************
+     * Tests hits, misses, eviction, write-back of dirty pages and the all-pinned error
+     */
+    @Test
+    public void pinUnpin() {
+        var pool = new BufferPool(2, 64);
+        var file = PageFile.temporary("store/", "pool", 64);
+        for (int p = 0; p < 3; p++) {
+            var page = file.allocate();
+            ByteBuffer buf = pool.pin(file, page);
+            buf.putInt(0, 100 + p);
+            pool.unpin(file, page, true);
+        }
+        assertEquals(3, pool.misses());
+        assertEquals(1, pool.evictions());
+        assertEquals(1, pool.writes());
+
+        assertEquals(102, pool.pin(file, 2).getInt(0));
+        pool.unpin(file, 2, false);
+        assertEquals(1, pool.hits());
+        assertEquals(100, pool.pin(file, 0).getInt(0));     // re-read after write-back
+        assertEquals(2, pool.evictions());
+
+        pool.pin(file, 1);                                   // both frames now pinned
+        try {
+            pool.pin(file, 2);
+            fail("expected every frame to be pinned");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        pool.discard(file);
+        file.delete();
+    }
+
+    /************************************************************************************
+     * Tests that threads pinning, changing and unpinning pages of a file much larger
+     * than the pool (so reads and write-backs overlap) always see each page's contents
+     */
+    @Test
+    public void concurrentPins() throws Exception {
+        var pool = new BufferPool(10, 64);
+        var file = PageFile.temporary("store/", "poolMt", 64);
+        for (int p = 0; p < 200; p++) {
+            var page = file.allocate();
+            pool.pin(file, page).putInt(0, page);
+            pool.unpin(file, page, true);
+        }
+
+        var error = new AtomicReference<Throwable>();
+        var threads = new ArrayList<Thread>();
+        for (int k = 0; k < 6; k++) {
+            var seed = k;
+            threads.add(new Thread(() -> {
+                var rand = new Random(seed);
+                try {
+                    for (int i = 0; i < 20000; i++) {
+                        var page = rand.nextInt(200);
+                        var buf = pool.pin(file, page);
+                        var ok = buf.getInt(0) == page;
+                        var dirty = rand.nextInt(4) == 0;
+                        if (dirty) buf.putInt(0, page);
+                        pool.unpin(file, page, dirty);
+                        if (!ok) throw new AssertionError("page " + page + " read wrong contents");
+                    }
+                } catch (Throwable ex) {
+                    error.compareAndSet(null, ex);
+                }
+            }));
+        }
+        for (var t : threads) t.start();
+        for (var t : threads) t.join();
+        if (error.get() != null) throw new AssertionError(error.get());
+        assertTrue(pool.writes() > 0);
+
+        pool.flush(file);
+        var fresh = new BufferPool(2, 64);
+        for (int p = 0; p < 200; p += 17) {
+            assertEquals(p, fresh.pin(file, p).getInt(0));
+            fresh.unpin(file, p, false);
+        }
+        pool.discard(file);
+        file.delete();
+    }
+
+    /************************************************************************************
+     * Tests scans, keyed and range selects, joins and save/load on a PAGED table that
+     * spans many more pages than the pool has frames
+     */
+    @Test
+    public void pagedTable() {
+        var pool = new BufferPool(8, TableFile.PAGE_SIZE);
+        Table.setBufferPool(pool);
+        var movie = new Table("pagedMovie", "title year length studioName", "String Integer Integer String",
+                "title year", Table.MapType.TREE_MAP, Table.StorageType.PAGED);
+        var studio = new Table("studio", "name presNo", "String Integer", "name");
+        for (int i = 0; i < 20000; i++) {
+            movie.insert(new Comparable[]{"title" + i, 1900 + i % 120, 90 + i % 60, "studio" + (i % 50)});
+        }
+        for (int i = 0; i < 50; i++) studio.insert(new Comparable[]{"studio" + i, i});
+        assertEquals(Table.StorageType.PAGED, movie.getStorageType());
+
+        var count = 0;
+        for (var t : movie.getTuples()) {
+            assertEquals("title" + count, t[0]);
+            count++;
+        }
+        assertEquals(20000, count);
+        assertTrue(pool.evictions() > 0);
+
+        var hit = movie.select(new KeyType("title12345", 1900 + 12345 % 120));
+        assertEquals(1, hit.getTuples().size());
+        assertEquals(90 + 12345 % 60, hit.getTuples().get(0)[2]);
+        assertEquals(167, movie.select(t -> t[1].equals(1950)).getTuples().size());
+        assertEquals(20000, movie.i_join("studioName", "name", studio).getTuples().size());
+
+        movie.save();
+        var loaded = Table.load("pagedMovie");
+        assertEquals(Table.StorageType.PAGED, loaded.getStorageType());
+        assertEquals(20000, loaded.getTuples().size());
+        assertEquals(1, loaded.select(new KeyType("title7", 1907)).getTuples().size());
+    }
+}
@@ -0,0 +1,117 @@
+/*****************************************************************************************
+ * @file TestBulkLoad.java
+ *
+ * @author Sequel To SQL
+ */
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/*****************************************************************************************
+ * The TestBulkLoad class tests insertAll, the deferred index build and loading tuples
+ * from delimited files.
+ */
+public class TestBulkLoad {
+
+    /************************************************************************************
+     * Tests that bulk inserts are indexed for keyed and range selects on each map type
+     */
+    @Test
+    public void insertAllBuildsIndex() {
+        for (var type : new Table.MapType[]{Table.MapType.TREE_MAP, Table.MapType.BPTREE_MAP,
+                Table.MapType.LINHASH_MAP}) {
+            var movie = new Table("bulkMovie", "title year length", "String Integer Integer", "title year", type);
+            var rows = new ArrayList<Comparable[]>();
+            for (int i = 0; i < 20000; i++) rows.add(new Comparable[]{"title" + (i * 7919 % 20000), 2000, i});
+            rows.add(new Comparable[]{"bad", "2000", 1});                       // wrong domain
+            assertEquals(20000, movie.insertAll(rows));
+
+            var hit = movie.select(new KeyType("title1234", 2000));
+            assertEquals(1, hit.getTuples().size());
+            movie.insert(new Comparable[]{"title_new", 2001, 1});                 // index kept up to date
+            assertEquals(1, movie.select(new KeyType("title_new", 2001)).getTuples().size());
+            if (type != Table.MapType.LINHASH_MAP) {
+                var range = movie.select(new KeyType("title100", 2000), new KeyType("title101", 2000));
+                assertEquals(112, range.getTuples().size());   // title100, title1000.., title10000.., title101
+            }
+        }
+    }
+
+    /************************************************************************************
+     * Tests that duplicate keys in a bulk insert fall back to scanning
+     */
+    @Test
+    public void duplicateKeys() {
+        var star = new Table("bulkStar", "name age", "String Integer", "name");
+        var rows = new ArrayList<Comparable[]>();
+        for (int i = 0; i < 100; i++) rows.add(new Comparable[]{"star" + (i % 50), i});
+        star.insertAll(rows);
+        assertEquals(2, star.select(new KeyType("star7")).getTuples().size());
+    }
+
+    /************************************************************************************
+     * Tests that the sorted run handed to putAll behaves as a SortedMap, sub-maps included
+     */
+    @Test
+    public void sortedRunViews() {
+        var entries = new ArrayList<Map.Entry<KeyType, Comparable[]>>();
+        for (int i = 0; i < 100; i += 2)
+            entries.add(new AbstractMap.SimpleEntry<>(new KeyType(i), new Comparable[]{i}));
+        var run = new Table.SortedRun(entries);
+        var tree = new TreeMap<KeyType, Comparable[]>();
+        for (var e : entries) tree.put(e.getKey(), e.getValue());
+
+        assertArrayEquals(tree.get(new KeyType(42)), run.get(new KeyType(42)));
+        assertNull(run.get(new KeyType(43)));
+        assertEquals(keys(tree.subMap(new KeyType(11), new KeyType(30))), keys(run.subMap(new KeyType(11), new KeyType(30))));
+        assertEquals(keys(tree.headMap(new KeyType(7))), keys(run.headMap(new KeyType(7))));
+        assertEquals(keys(tree.tailMap(new KeyType(90))), keys(run.tailMap(new KeyType(90))));
+        var nested = run.tailMap(new KeyType(20)).headMap(new KeyType(40)).subMap(new KeyType(25), new KeyType(31));
+        assertEquals(List.of(new KeyType(26), new KeyType(28), new KeyType(30)), keys(nested));
+        assertEquals(new KeyType(26), nested.firstKey());
+        assertEquals(new KeyType(30), nested.lastKey());
+        assertEquals(0, run.subMap(new KeyType(5), new KeyType(5)).size());
+
+        var copy = new TreeMap<KeyType, Comparable[]>();
+        copy.putAll(run.subMap(new KeyType(10), new KeyType(20)));
+        assertEquals(keys(tree.subMap(new KeyType(10), new KeyType(20))), keys(copy));
+    }
+
+    private static List<KeyType> keys(Map<KeyType, Comparable[]> map) {
+        return new ArrayList<>(map.keySet());
+    }
+
+    /************************************************************************************
+     * Tests streaming a CSV file with a header, quoted fields and bad lines
+     */
+    @Test
+    public void loadDelimited() throws Exception {
+        var file = Paths.get("store/bulkStar.csv");
+        Files.write(file, String.join("\n",
+                "name,address,gender,birthdate",
+                "Carrie_Fisher,Hollywood,F,9/9/99",
+                "\"Mark_Hamill\", \"Brentwood\" ,M,8/8/88",
+                "Harrison_Ford,Beverly_Hills,MM,7/7/77",                          // bad gender
+                "too,few,fields",
+                "",
+                "Harrison_Ford,Beverly_Hills,M,7/7/77").getBytes());
+
+        var movieStar = new Table("movieStar", "name address gender birthdate",
+                "String String Character String", "name");
+        assertEquals(3, movieStar.loadDelimited(file.toString(), ',', true));
+        var mark = movieStar.select(new KeyType("Mark_Hamill")).getTuples();
+        assertEquals("Brentwood", mark.get(0)[1]);
+        assertEquals('M', mark.get(0)[2]);
+    }
+}
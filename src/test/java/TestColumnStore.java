@@ -0,0 +1,72 @@
+/*****************************************************************************************
+ * @file TestColumnStore.java
+ *
+ * @author Sequel To SQL
+ */
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/*****************************************************************************************
+ * The TestColumnStore class tests columnar storage of tuples.
+ */
+public class TestColumnStore {
+
+    /************************************************************************************
+     * Tests that tuples of every supported domain come back with the same values and types
+     */
+    @Test
+    public void roundTrip() {
+        var store = new ColumnStore(new Class[]{String.class, Integer.class, Short.class, Byte.class,
+                Long.class, Double.class, Float.class, Character.class});
+        for (int i = 0; i < 100; i++) {
+            store.add(new Comparable[]{"s" + (i % 3), i, (short) -i, (byte) i, (long) i << 40,
+                    i / 3.0, i / 7.0f, (char) ('a' + i % 26)});
+        }
+        assertEquals(100, store.size());
+        assertEquals(3, store.dictionarySize(0));
+        assertEquals(-1, store.dictionarySize(1));
+        var t = store.get(42);
+        assertArrayEquals(new Comparable[]{"s0", 42, (short) -42, (byte) 42, 42L << 40,
+                42 / 3.0, 42 / 7.0f, 'q'}, t);
+        assertEquals(Float.class, t[6].getClass());
+        assertEquals(Short.class, t[2].getClass());
+    }
+
+    /************************************************************************************
+     * Tests that a columnar table answers the same queries as a row table
+     */
+    @Test
+    public void columnarTable() {
+        var rows = new Table("movie", "title year length genre studioName producerNo",
+                "String Integer Integer String String Integer", "title year");
+        var cols = new Table("movie", "title year length genre studioName producerNo",
+                "String Integer Integer String String Integer", "title year",
+                Table.MapType.TREE_MAP, Table.StorageType.COLUMNAR);
+        var film0 = new Comparable[]{"Star_Wars", 1977, 124, "sciFi", "Fox", 12345};
+        var film1 = new Comparable[]{"Star_Wars_2", 1980, 124, "sciFi", "Fox", 12345};
+        var film2 = new Comparable[]{"Rocky", 1985, 200, "action", "Universal", 12125};
+        for (var film : new Comparable[][]{film0, film1, film2}) {
+            rows.insert(film);
+            cols.insert(film);
+        }
+
+        assertEquals(Table.StorageType.COLUMNAR, cols.getStorageType());
+        assertTrue(rows.equalsIgnoreName(cols));
+        assertTrue(rows.project("genre studioName").equalsIgnoreName(cols.project("genre studioName")));
+        assertTrue(rows.select(new KeyType("Rocky", 1985)).equalsIgnoreName(cols.select(new KeyType("Rocky", 1985))));
+        assertEquals(1, cols.select(new KeyType("Rocky", 1985)).getTuples().size());
+
+        cols.insert(new Comparable[]{"Rambo", 1978, 100, "action", "Universal", 32355});
+        assertEquals(1, cols.select(new KeyType("Rambo", 1978)).getTuples().size());
+
+        // the index holds positions, not boxed copies of the rows: each select boxes anew
+        var first = cols.select(new KeyType("Rocky", 1985)).getTuples().get(0);
+        assertNotSame(first, cols.select(new KeyType("Rocky", 1985)).getTuples().get(0));
+        assertArrayEquals(film2, first);
+    }
+}
@@ -0,0 +1,128 @@
+/*****************************************************************************************
+ * @file TestIndex.java
+ *
+ * @author Sequel To SQL
+ */
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*****************************************************************************************
+ * The TestIndex class tests that secondary indexes give the same answers as scans and
+ * are kept up to date, saved and used by the optimizer.
+ */
+public class TestIndex {
+
+    /************************************************************************************
+     * Tests equality and range selects on non-key attributes, before and after inserts
+     */
+    @Test
+    public void select() {
+        var gen = new MovieGen(5, 4000);
+        var plain = gen.movie();
+        var movie = gen.movie();
+        assertTrue(movie.createIndex("studioName", Table.MapType.LINHASH_MAP));
+        assertTrue(movie.createIndex("year", Table.MapType.BPTREE_MAP));
+        assertTrue(movie.createIndex("genre year", Table.MapType.TREE_MAP));
+        assertFalse(movie.createIndex("year", Table.MapType.TREE_MAP));
+        assertFalse(movie.createIndex("rating", Table.MapType.TREE_MAP));
+
+        var conditions = List.of(Expr.col("studioName").eq("Studio3"),
+                Expr.col("year").ge(1950).and(Expr.col("year").lt(1960)),
+                Expr.col("genre").eq("drama").and(Expr.col("year").eq(1977)),
+                Expr.col("studioName").eq("Studio1").and(Expr.col("length").gt(100)));
+        for (var c : conditions) assertEquals(sorted(plain.select(c)), sorted(movie.select(c)));
+
+        var extra = new Comparable[]{"Extra", 1955, 90, "drama", "Studio3", 1};
+        plain.insert(extra);
+        movie.insert(extra);
+        for (var c : conditions) assertEquals(sorted(plain.select(c)), sorted(movie.select(c)));
+    }
+
+    /************************************************************************************
+     * Tests that contradictory bounds on a sorted secondary index select nothing
+     */
+    @Test
+    public void emptyRange() {
+        for (var type : new Table.MapType[]{Table.MapType.TREE_MAP, Table.MapType.BPTREE_MAP}) {
+            var movie = new MovieGen(8, 500).movie();
+            movie.createIndex("year", type);
+            assertTrue(movie.select(Expr.col("year").ge(1940).and(Expr.col("year").le(1910))).getTuples().isEmpty());
+            assertTrue(movie.select(Expr.col("year").ge(1910).and(Expr.col("year").le(1940))).getTuples().size() > 0);
+        }
+    }
+
+    /************************************************************************************
+     * Tests that the joins probing a secondary index give the same tuples as without one
+     */
+    @Test
+    public void joins() {
+        var gen = new MovieGen(6, 3000);
+        var plain = gen.movie();
+        var movie = gen.movie();
+        var studio = gen.studio();
+        movie.createIndex("studioName", Table.MapType.TREE_MAP);
+
+        var expected = sorted(studio.h_join("name", "studioName", plain));
+        assertEquals(3000, expected.size());
+        assertEquals(expected, sorted(studio.join("name", "studioName", movie)));
+        assertEquals(expected, sorted(studio.h_join("name", "studioName", movie)));
+        assertEquals(expected, sorted(studio.i_join("name", "studioName", movie)));
+        assertEquals(sorted(plain.h_join("studioName", "name", studio)),
+                sorted(movie.h_join("studioName", "name", studio)));
+    }
+
+    /************************************************************************************
+     * Tests that indexes are listed when saved and rebuilt after loading
+     */
+    @Test
+    public void persistence() {
+        var t = new Table("indexSaved", "id grp", "Integer String", "id");
+        for (var i = 0; i < 2000; i++) t.insert(new Comparable[]{i, "g" + i % 40});
+        t.createIndex("grp", Table.MapType.BPTREE_MAP);
+        t.save();
+
+        var loaded = Table.load("indexSaved");
+        assertEquals(1, loaded.getIndexes().length);
+        assertArrayEquals(new String[]{"grp"}, loaded.getIndexes()[0]);
+        assertEquals(50, loaded.select(Expr.col("grp").eq("g7")).getTuples().size());
+        loaded.insert(new Comparable[]{2000, "g7"});
+        assertEquals(51, loaded.select(Expr.col("grp").eq("g7")).getTuples().size());
+    }
+
+    /************************************************************************************
+     * Tests that the optimizer joins through a secondary index
+     */
+    @Test
+    public void optimizer() {
+        var gen = new MovieGen(7, 3000);
+        var movie = gen.movie();
+        var studio = gen.studio();
+        movie.createIndex("studioName", Table.MapType.LINHASH_MAP);
+
+        var plan = movie.plan().join("studioName", "name", studio.plan())
+                .select(Expr.col("address").eq(studio.getTuples().get(0)[1]));
+        var best = plan.optimize();
+        assertTrue(best.explain(), best.explain().contains("join INDEX on studio.name = studioName"));
+        assertEquals(sorted(plan.execute().getTuples()), sorted(best.execute().getTuples()));
+    }
+
+    private static List<List<Comparable>> sorted(Table t) {
+        return sorted(t.getTuples());
+    }
+
+    private static List<List<Comparable>> sorted(List<Comparable[]> tuples) {
+        var rows = new ArrayList<List<Comparable>>();
+        for (var t : tuples) rows.add(Arrays.asList(t));
+        rows.sort((a, b) -> a.toString().compareTo(b.toString()));
+        return rows;
+    }
+}
@@ -2,6 +2,10 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -95,6 +99,186 @@ public class TestJoin {
         assertTrue(equiJoin.equalsIgnoreName(nameIdJoin));
     }
 
+    /**
+     * Test index join. Tests `student` ⋈_x `ta` where `x` is the following:
+     * - x = student.name = ta.name (no index on ta.name)
+     * - x = student.id = ta.id (probes ta's primary index)
+     * - x = student.name = ta.name && student.id = ta.id
+     */
+    @Test
+    public void indexJoin() {
+        var nameJoin = student.i_join("name", "name", ta);
+        assertTrue(equiJoin.equalsIgnoreName(nameJoin));
+        var idJoin = student.i_join("id", "id", ta);
+        assertTrue(equiJoin.equalsIgnoreName(idJoin));
+        var nameIdJoin = student.i_join("name id", "name id", ta);
+        assertTrue(equiJoin.equalsIgnoreName(nameIdJoin));
+    }
+
+    /**
+     * Test sort-merge join. Tests `student` ⋈_x `ta` where `x` is the following:
+     * - x = student.name = ta.name (sorted in memory)
+     * - x = student.id = ta.id (read in order through both indices)
+     * - x = student.name = ta.name && student.id = ta.id
+     */
+    @Test
+    public void sortMergeJoin() {
+        var nameJoin = student.sm_join("name", "name", ta);
+        assertTrue(equiJoin.equalsIgnoreName(nameJoin));
+        var idJoin = student.sm_join("id", "id", ta);
+        assertTrue(equiJoin.equalsIgnoreName(idJoin));
+        var nameIdJoin = student.sm_join("name id", "name id", ta);
+        assertTrue(equiJoin.equalsIgnoreName(nameIdJoin));
+    }
+
+    /**
+     * Test sort-merge join with a memory budget small enough to force the external sort
+     * to spill runs, and with duplicate join values on both sides.
+     */
+    @Test
+    public void sortMergeJoinSpill() {
+        var course = new Table("course", "dept num", "String Integer", "num");
+        var enroll = new Table("enroll", "sid dept", "Integer String", "sid");
+        for (int i = 0; i < 40; i++) {
+            course.insert(new Comparable[]{"d" + (i % 7), i});
+            enroll.insert(new Comparable[]{i, "d" + ((i * 3) % 5)});
+        }
+        var expected = course.join("dept", "dept", enroll);
+
+        var budget = Table.getMemoryBudget();
+        Table.setMemoryBudget(3);
+        try {
+            var joined = course.sm_join("dept", "dept", enroll);
+            assertEquals(expected.getTuples().size(), joined.getTuples().size());
+            assertTrue(expected.equalsIgnoreName(joined));
+        } finally {
+            Table.setMemoryBudget(budget);
+        }
+    }
+
+    /**
+     * Test sort-merge join over more runs than are merged at once, so the external sort
+     * makes intermediate merge passes.
+     */
+    @Test
+    public void sortMergeJoinManyRuns() {
+        var course = new Table("course", "dept num", "String Integer", "num");
+        var enroll = new Table("enroll", "sid dept", "Integer String", "sid");
+        for (int i = 0; i < 3000; i++) {
+            course.insert(new Comparable[]{"d" + (i % 700), i});
+            enroll.insert(new Comparable[]{i, "d" + ((i * 7) % 1000)});
+        }
+        var expected = course.h_join("dept", "dept", enroll);
+
+        var budget = Table.getMemoryBudget();
+        var runs = runFiles();
+        Table.setMemoryBudget(10);
+        try {
+            var joined = course.sm_join("dept", "dept", enroll);     // course runs out first
+            assertEquals(expected.getTuples().size(), joined.getTuples().size());
+            assertTrue(expected.equalsIgnoreName(joined));
+            assertEquals(runs, runFiles());                          // unread runs deleted
+        } finally {
+            Table.setMemoryBudget(budget);
+        }
+    }
+
+    /**
+     * Count the external sort's run files in the store directory.
+     */
+    static int runFiles() {
+        var files = new File("store").list((dir, f) -> f.startsWith("run") && f.endsWith(".tmp"));
+        return files == null ? 0 : files.length;
+    }
+
+    /**
+     * Test hash join and natural join with a memory budget small enough to force the
+     * hybrid hash join to spill and repartition, including a key too frequent to split.
+     */
+    @Test
+    public void hashJoinSpill() {
+        var enroll = new Table("enroll", "sid dept year", "Integer String Integer", "sid");
+        var course = new Table("course", "num dept year", "Integer String Integer", "num");
+        for (int i = 0; i < 5000; i++) {
+            enroll.insert(new Comparable[]{i, (i < 1000) ? "hot" : "d" + (i % 300), 2000 + i % 3});
+        } // for
+        for (int i = 0; i < 3000; i++) {
+            course.insert(new Comparable[]{i, (i % 50 == 0) ? "hot" : "d" + (i % 400), 2000 + i % 2});
+        } // for
+        var expected = enroll.h_join("dept year", "dept year", course);
+        var expectedNatural = enroll.join(course.project("dept year"));
+        var spillFiles = spillFiles();
+        var spilled = HybridHashJoin.spilled();
+
+        var budget = Table.getMemoryBudget();
+        Table.setMemoryBudget(100);
+        try {
+            var joined = enroll.h_join("dept year", "dept year", course);
+            assertEquals(expected.getTuples().size(), joined.getTuples().size());
+            assertTrue(expected.equalsIgnoreName(joined));
+            assertTrue(expectedNatural.equalsIgnoreName(enroll.join(course.project("dept year"))));
+        } finally {
+            Table.setMemoryBudget(budget);
+        }
+        assertTrue(HybridHashJoin.spilled() > spilled);
+        assertEquals(spillFiles, spillFiles());
+    }
+
+    /**
+     * Test that a hash join of a table over the memory budget with one under it builds
+     * on the small table in memory instead of spilling, in either order.
+     */
+    @Test
+    public void hashJoinSmallBuild() {
+        var enroll = new Table("enroll", "sid dept", "Integer String", "sid");
+        var dept = new Table("dept", "name building", "String String", "name");
+        for (int i = 0; i < 5000; i++) enroll.insert(new Comparable[]{i, "d" + (i % 60)});
+        for (int i = 0; i < 50; i++) dept.insert(new Comparable[]{"d" + i, "b" + i});
+        var expected = enroll.h_join("dept", "name", dept);
+        var expectedFlipped = dept.h_join("name", "dept", enroll);
+        var spilled = HybridHashJoin.spilled();
+
+        var budget = Table.getMemoryBudget();
+        Table.setMemoryBudget(100);
+        try {
+            var joined = enroll.h_join("dept", "name", dept);
+            assertEquals(4170, joined.getTuples().size());
+            assertTrue(expected.equalsIgnoreName(joined));
+            assertTrue(expectedFlipped.equalsIgnoreName(dept.h_join("name", "dept", enroll)));
+        } finally {
+            Table.setMemoryBudget(budget);
+        }
+        assertEquals(spilled, HybridHashJoin.spilled());
+    }
+
+    private static int spillFiles() {
+        var files = new java.io.File("store").list((dir, f) -> f.startsWith("part") && f.endsWith(".tmp"));
+        return (files == null) ? 0 : files.length;
+    }
+
+    /**
+     * Test index join on a composite foreign key, with the key attributes given out of order.
+     */
+    @Test
+    public void indexJoinCompositeKey() {
+        var movie = new Table("movie", "title year length", "String Integer Integer", "title year");
+        movie.insert(new Comparable[]{"Star_Wars", 1977, 124});
+        movie.insert(new Comparable[]{"Star_Wars", 1980, 124});
+        var starsIn = new Table("starsIn", "movieTitle movieYear starName",
+                "String Integer String", "movieTitle movieYear starName");
+        starsIn.insert(new Comparable[]{"Star_Wars", 1977, "Carrie_Fisher"});
+        starsIn.insert(new Comparable[]{"Star_Wars", 1999, "Mark_Hamill"});
+
+        var expected = new Table("expected", "movieTitle movieYear starName title year length",
+                "String Integer String String Integer Integer", "movieTitle movieYear starName");
+        expected.insert(new Comparable[]{"Star_Wars", 1977, "Carrie_Fisher", "Star_Wars", 1977, 124});
+
+        assertTrue(expected.equalsIgnoreName(starsIn.i_join("movieYear movieTitle", "year title", movie)));
+        assertTrue(expected.equalsIgnoreName(starsIn.join("movieYear movieTitle", "year title", movie)));
+        assertTrue(expected.equalsIgnoreName(starsIn.sm_join("movieYear movieTitle", "year title", movie)));
+        assertTrue(expected.equalsIgnoreName(starsIn.h_join("movieYear movieTitle", "year title", movie)));
+    }
+
     /**
      * Tests natural join. Equivalent to `student` ⋈_x `ta` where `x` = student.name = ta.name && student.id = ta.id
      */
@@ -103,4 +287,20 @@ public class TestJoin {
         var joined = student.join(ta);
         assertTrue(naturalJoin.equalsIgnoreName(joined));
     }
+
+    /**
+     * Tests natural join of tables with no common attributes (every pair of tuples joins).
+     */
+    @Test
+    public void naturalJoinNoCommon() {
+        var genre = new Table("genre", "genre", "String", "genre");
+        genre.insert(new Comparable[]{"drama"});
+        genre.insert(new Comparable[]{"comedy"});
+        var year = new Table("year", "year", "Integer", "year");
+        for (var y = 1990; y < 1993; y++) year.insert(new Comparable[]{y});
+
+        var joined = genre.join(year);
+        assertArrayEquals(new String[]{"genre", "year"}, joined.getAttribute());
+        assertEquals(6, joined.getTuples().size());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,128 @@
+/*****************************************************************************************
+ * @file TestKeyType.java
+ *
+ * @author Sequel To SQL
+ */
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*****************************************************************************************
+ * The TestKeyType class tests that normalized keys order, compare and hash the same as
+ * their values.
+ */
+public class TestKeyType {
+
+    /************************************************************************************
+     * Tests that keys of each domain (and of several values) order as their values do
+     */
+    @Test
+    public void order() {
+        var rnd = new Random(11);
+        var shapes = new String[][]{{"Integer"}, {"Long"}, {"Integer", "Integer"}, {"Double"}, {"Float"},
+                {"Short", "Byte"}, {"Character", "Integer"}, {"String"}, {"String", "Long"},
+                {"String", "Double", "String"}};
+        for (var shape : shapes) {
+            var keys = new KeyType[400];
+            for (var i = 0; i < keys.length; i++) {
+                var vals = new Comparable[shape.length];
+                for (var j = 0; j < shape.length; j++) vals[j] = value(shape[j], rnd);
+                keys[i] = new KeyType(vals);
+            } // for
+            for (var a : keys) {
+                for (var b : keys) {
+                    var expected = valueOrder(a, b);
+                    assertEquals(a + " vs " + b, expected, a.compareTo(b));
+                    assertEquals(a + " vs " + b, expected == 0, a.equals(b));
+                    if (expected == 0) assertEquals(a.hashCode(), b.hashCode());
+                } // for
+            } // for
+        } // for
+    }
+
+    /************************************************************************************
+     * Tests the edge cases of the encoding: prefixes, zero characters, signed zeros,
+     * infinities and NaN, and extreme integers
+     */
+    @Test
+    public void edges() {
+        assertOrdered(new KeyType("", 5), new KeyType("\0", 1), new KeyType("\0\0", 0), new KeyType("\u0001", 0),
+                new KeyType("a", 9), new KeyType("a\0", 0), new KeyType("ab", 0), new KeyType("\uffff", 0));
+        assertOrdered(new KeyType(Double.NEGATIVE_INFINITY), new KeyType(-1.5), new KeyType(-0.0),
+                new KeyType(0.0), new KeyType(Double.MIN_VALUE), new KeyType(Double.POSITIVE_INFINITY),
+                new KeyType(Double.NaN));
+        assertOrdered(new KeyType(Integer.MIN_VALUE, 0), new KeyType(-1, Integer.MAX_VALUE), new KeyType(0, Integer.MIN_VALUE),
+                new KeyType(Integer.MAX_VALUE, -1));
+        assertOrdered(new KeyType(Long.MIN_VALUE), new KeyType(-1L), new KeyType(0L), new KeyType(Long.MAX_VALUE));
+        assertEquals(new KeyType("x", 2.5), new KeyType("x", 2.5));
+        assertTrue(new KeyType(1).equals(new KeyType(1)) && !new KeyType(1, 2).equals(new KeyType(1, 3)));
+    }
+
+    /************************************************************************************
+     * Tests that keys holding values of no built-in domain are still compared by value
+     */
+    @Test
+    public void otherValues() {
+        var set = new TreeSet<KeyType>();
+        for (var i = 0; i < 100; i++) set.add(new KeyType(java.math.BigInteger.valueOf(i % 37), "v"));
+        assertEquals(37, set.size());
+        assertEquals(new KeyType(java.math.BigInteger.TEN, "v"), set.higher(new KeyType(java.math.BigInteger.valueOf(9), "v")));
+    }
+
+    /************************************************************************************
+     * Tests that keys holding null compare and hash consistently, null first
+     */
+    @Test
+    public void nulls() {
+        assertOrdered(new KeyType(null, 5), key("a", null), new KeyType("a", 1), key("b", null));
+        assertEquals(key("a", null), key("a", null));
+        assertEquals(key("a", null).hashCode(), key("a", null).hashCode());
+        var set = new TreeSet<KeyType>();
+        for (var i = 0; i < 10; i++) set.add(new KeyType(i % 3 == 0 ? null : i % 3));
+        assertEquals(3, set.size());
+        assertEquals(new KeyType((Comparable) null), set.first());
+    }
+
+    private static KeyType key(Comparable... values) {
+        return new KeyType(values);
+    }
+
+    private static void assertOrdered(KeyType... keys) {
+        for (var i = 0; i < keys.length; i++) {
+            for (var j = 0; j < keys.length; j++) {
+                assertEquals(keys[i] + " vs " + keys[j], Integer.compare(i, j), keys[i].compareTo(keys[j]));
+            } // for
+        } // for
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int valueOrder(KeyType a, KeyType b) {
+        for (var i = 0; i < a.size(); i++) {
+            var cmp = a.get(i).compareTo(b.get(i));
+            if (cmp != 0) return Integer.signum(cmp);
+        } // for
+        return 0;
+    }
+
+    private static Comparable value(String type, Random rnd) {
+        switch (type) {
+            case "Integer": return rnd.nextInt(40) - 20;
+            case "Long": return rnd.nextBoolean() ? rnd.nextLong() : (long) rnd.nextInt(9) - 4;
+            case "Double": return rnd.nextInt(10) == 0 ? -0.0 : (rnd.nextInt(9) - 4) / 2.0;
+            case "Float": return rnd.nextInt(10) == 0 ? Float.NaN : rnd.nextFloat() * 4 - 2;
+            case "Short": return (short) (rnd.nextInt(8) - 4);
+            case "Byte": return (byte) (rnd.nextInt(256) - 128);
+            case "Character": return (char) (rnd.nextBoolean() ? rnd.nextInt(4) : 0xfff0 + rnd.nextInt(16));
+            default:
+                var s = new StringBuilder();
+                var len = rnd.nextInt(4);
+                for (var i = 0; i < len; i++) s.append("\0ab\u00e9\ud83d".charAt(rnd.nextInt(5)));
+                return s.toString();
+        } // switch
+    }
+}
@@ -0,0 +1,58 @@
+/*****************************************************************************************
+ * @file TestLinHashMap.java
+ *
+ * @author Sequel To SQL
+ */
+
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/*****************************************************************************************
+ * The TestLinHashMap class tests the linear hashing map and its use as a table index.
+ */
+public class TestLinHashMap {
+
+    /************************************************************************************
+     * Tests that the map agrees with a HashMap while it grows through many splits
+     */
+    @Test
+    public void putGetRemove() {
+        var map = new LinHashMap<KeyType, Integer>(2);
+        var truth = new HashMap<KeyType, Integer>();
+        for (int i = 0; i < 10000; i++) {
+            var k = new KeyType("title" + (i % 7000), i % 13);
+            assertEquals(truth.put(k, i), map.put(k, i));
+        }
+        assertEquals(truth.size(), map.size());
+        assertTrue(map.buckets() > 2);
+        for (var e : truth.entrySet()) assertEquals(e.getValue(), map.get(e.getKey()));
+
+        for (int i = 0; i < 3000; i++) {
+            var k = new KeyType("title" + i, i % 13);
+            assertEquals(truth.remove(k), map.remove(k));
+        }
+        assertEquals(truth, map);
+        assertNull(map.get(new KeyType("missing", 0)));
+    }
+
+    /************************************************************************************
+     * Tests that a table can be created with a linear hashing index
+     */
+    @Test
+    public void tableIndex() {
+        var movieStar = new Table("movieStar", "name address gender birthdate",
+                "String String Character String", "name", Table.MapType.LINHASH_MAP);
+        movieStar.insert(new Comparable[]{"Carrie_Fisher", "Hollywood", 'F', "9/9/99"});
+        movieStar.insert(new Comparable[]{"Mark_Hamill", "Brentwood", 'M', "8/8/88"});
+
+        assertEquals(Table.MapType.LINHASH_MAP, movieStar.getMapType());
+        var select = movieStar.select(new KeyType("Mark_Hamill"));
+        assertEquals(1, select.getTuples().size());
+        assertEquals("Brentwood", select.getTuples().get(0)[1]);
+    }
+}
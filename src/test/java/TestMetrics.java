@@ -0,0 +1,56 @@
+/*****************************************************************************************
+ * @file TestMetrics.java
+ *
+ * @author Sequel To SQL
+ */
+
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/*****************************************************************************************
+ * The TestMetrics class tests that operators are counted per table and over JMX.
+ */
+public class TestMetrics {
+
+    /************************************************************************************
+     * Tests calls, rows, index probes and scans recorded for a named table
+     */
+    @Test
+    public void countsOperators() throws Exception {
+        var allInserts = Metrics.of(Metrics.ALL, "insert");
+        assertSame(Metrics.INSERTS, allInserts);
+        var before = allInserts.getCalls();
+        var star = new Table("metricStar", "name age", "String Integer", "name");
+        for (int i = 0; i < 100; i++) star.insert(new Comparable[]{"star" + i, i});
+
+        star.select(new KeyType("star7"));
+        star.select(new KeyType("nobody"));
+        star.select(t -> (Integer) t[1] < 10);
+
+        var inserts = Metrics.of("metricStar", "insert");
+        assertEquals(100, inserts.getCalls());
+        assertTrue(allInserts.getCalls() >= before + 100);
+
+        var selects = Metrics.of("metricStar", "select");
+        assertEquals(3, selects.getCalls());
+        assertEquals(300, selects.getRowsIn());
+        assertEquals(11, selects.getRowsOut());
+        assertEquals(2, selects.getIndexProbes());
+        assertEquals(0.5, selects.getIndexHitRate(), 1e-9);
+        assertTrue(selects.getP99Micros() >= selects.getP50Micros());
+        assertTrue(Metrics.of(Metrics.ALL, "select").getCalls() >= 3);
+
+        var server = ManagementFactory.getPlatformMBeanServer();
+        var name = new ObjectName("TableDB:type=Operator,table=\"metricStar\",name=select");
+        assertEquals(3L, server.getAttribute(name, "Calls"));
+
+        selects.reset();
+        assertEquals(0, selects.getCalls());
+    }
+}
@@ -0,0 +1,98 @@
+/*****************************************************************************************
+ * @file TestMovieGen.java
+ *
+ * @author Sequel To SQL
+ */
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/*****************************************************************************************
+ * The TestMovieGen class tests that the generated MovieDB tables are reproducible and
+ * have the promised shape.
+ */
+public class TestMovieGen {
+
+    /************************************************************************************
+     * Tests that the same seed gives the same tuples and another seed does not
+     */
+    @Test
+    public void deterministic() {
+        var a = rows(new MovieGen(7, 2000).movieRows());
+        var b = rows(new MovieGen(7, 2000).movieRows());
+        var c = rows(new MovieGen(8, 2000).movieRows());
+        assertEquals(2000, a.size());
+        for (var i = 0; i < a.size(); i++) assertTrue(Arrays.equals(a.get(i), b.get(i)));
+        assertNotEquals(Arrays.asList(a.get(0)), Arrays.asList(c.get(0)));
+    }
+
+    /************************************************************************************
+     * Tests that starsIn, producerNo and presNo only refer to existing tuples
+     */
+    @Test
+    public void foreignKeys() {
+        var gen = new MovieGen(1, 5000).cast(3);
+        var movie = gen.movie();
+        var starsIn = gen.starsIn();
+        var movieStar = gen.movieStar();
+        var movieExec = gen.movieExec();
+        var studio = gen.studio();
+
+        var n = starsIn.getTuples().size();
+        assertTrue(n > 5000);
+        assertEquals(n, starsIn.i_join("movieTitle movieYear", "title year", movie).getTuples().size());
+        assertEquals(n, starsIn.h_join("starName", "name", movieStar).getTuples().size());
+        assertEquals(5000, movie.h_join("producerNo", "certNo", movieExec).getTuples().size());
+        assertEquals(5000, movie.h_join("studioName", "name", studio).getTuples().size());
+        assertEquals(studio.getTuples().size(),
+                studio.h_join("presNo", "certNo", movieExec).getTuples().size());
+    }
+
+    /************************************************************************************
+     * Tests the overlap of movie and cinema
+     */
+    @Test
+    public void overlap() {
+        var gen = new MovieGen(3, 4000).overlap(0.25);
+        var movie = gen.movie();
+        var cinema = gen.cinema();
+        assertEquals(4000, cinema.getTuples().size());
+        assertEquals(1000, movie.intersect(cinema).getTuples().size());
+        assertEquals(3000, movie.minus(cinema).getTuples().size());
+    }
+
+    /************************************************************************************
+     * Tests that studioName is skewed toward the first studios, and uniform without skew
+     */
+    @Test
+    public void skew() {
+        var skewed = counts(new MovieGen(5, 20000).studios(100).movieRows());
+        var uniform = counts(new MovieGen(5, 20000).studios(100).skew(0).movieRows());
+        assertTrue(skewed.get("Studio0") > 10 * skewed.get("Studio99"));
+        assertTrue(uniform.get("Studio0") < 2 * 20000 / 100);
+        assertEquals(100, uniform.size());
+        var titles = new HashSet<Comparable>();
+        for (var t : new MovieGen(5, 20000).movieRows()) assertTrue(titles.add(t[0]));
+    }
+
+    private static ArrayList<Comparable[]> rows(Iterable<Comparable[]> it) {
+        var list = new ArrayList<Comparable[]>();
+        it.forEach(list::add);
+        return list;
+    }
+
+    private static HashMap<Comparable, Integer> counts(Iterable<Comparable[]> movies) {
+        var count = new HashMap<Comparable, Integer>();
+        for (var t : movies) count.merge(t[4], 1, Integer::sum);
+        return count;
+    }
+
+}
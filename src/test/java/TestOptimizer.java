@@ -0,0 +1,116 @@
+/*****************************************************************************************
+ * @file TestOptimizer.java
+ *
+ * @author Sequel To SQL
+ */
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*****************************************************************************************
+ * The TestOptimizer class tests that optimized plans give the same result as the plans
+ * as written, and that the optimizer picks the expected plan shapes.
+ */
+public class TestOptimizer {
+    private static Table movie, cinema, movieStar, starsIn, movieExec, studio;
+
+    @BeforeClass
+    public static void setUp() {
+        var gen = new MovieGen(11, 1000);
+        movie = gen.movie();
+        cinema = gen.cinema();
+        movieStar = gen.movieStar();
+        starsIn = gen.starsIn();
+        movieExec = gen.movieExec();
+        studio = gen.studio();
+    }
+
+    /************************************************************************************
+     * Tests a badly ordered five-table join with the filters at the top
+     */
+    @Test
+    public void fiveTableJoin() {
+        var plan = starsIn.plan()
+                .join("starName", "name", movieStar.plan())
+                .join("movieTitle movieYear", "title year", movie.plan())
+                .join("studioName", "name", studio.plan())
+                .join("producerNo", "certNo", movieExec.plan())
+                .select(Expr.col("year").lt(1960).and(Expr.col("gender").eq('F')))
+                .project("movieTitle starName studioName fee");
+        var best = plan.optimize();
+        var text = best.explain();
+
+        assertArrayEquals(plan.getAttribute(), best.getAttribute());
+        assertFalse(text, text.contains("NESTED_LOOP"));
+        assertTrue(text, text.contains("INDEX"));
+        assertTrue(text, text.contains("select movie.year < 1960"));
+        assertEquals(sorted(plan.execute()), sorted(best.execute()));
+    }
+
+    /************************************************************************************
+     * Tests that a key select becomes an index lookup joined through the primary index
+     */
+    @Test
+    public void keyLookupAndIndexJoin() {
+        var plan = starsIn.plan().h_join("movieTitle", "title", movie.plan())
+                .select(Expr.col("title").eq("Movie7").and(Expr.col("movieYear").eq(Expr.col("year"))));
+        var best = plan.optimize();
+        assertEquals(sorted(plan.execute()), sorted(best.execute()));
+        assertTrue(best.rows >= 1 && best.rows < 100);
+        assertTrue(best.explain(), best.explain().contains("movie.title = 'Movie7'"));
+    }
+
+    /************************************************************************************
+     * Tests pushing a select through union and minus, and natural join
+     */
+    @Test
+    public void unionMinusNatural() {
+        var drama = Expr.col("genre").eq("drama");
+        var union = movie.plan().union(cinema.plan()).select(drama);
+        var minus = movie.plan().minus(cinema.plan()).select(drama);
+        assertTrue(union.optimize().explain().startsWith("union"));
+        assertEquals(sorted(union.execute()), sorted(union.optimize().execute()));
+        assertEquals(sorted(minus.execute()), sorted(minus.optimize().execute()));
+
+        var rich = studio.plan().project("name presNo")
+                .join("presNo", "certNo", movieExec.plan().select(Expr.col("fee").gt(5_000_000f)))
+                .project("name fee");
+        var natural = cinema.plan().project("title genre").join(movie.plan().project("title studioName"))
+                .join("studioName", "name", rich);
+        var best = natural.optimize();
+        assertArrayEquals(natural.getAttribute(), best.getAttribute());
+        assertEquals(sorted(natural.execute()), sorted(best.execute()));
+    }
+
+    /************************************************************************************
+     * Tests that a distinct projection keeps its joins apart and takes the selects above
+     */
+    @Test
+    public void distinctProject() {
+        var pairs = movie.plan().project("studioName genre", Table.Distinct.HASH);
+        var plan = studio.plan().join("name", "studioName", pairs).select(Expr.col("genre").eq("drama"));
+        var best = plan.optimize();
+        var text = best.explain();
+        assertTrue(text, text.contains("project distinct HASH studioName genre"));
+        assertTrue(text, text.indexOf("select genre = 'drama'") > text.indexOf("project distinct"));
+        assertTrue(pairs.optimize().rows < movie.getTuples().size() / 2);
+        assertEquals(sorted(plan.execute()), sorted(best.execute()));
+    }
+
+    private static List<String> sorted(Table t) {
+        var rows = new ArrayList<String>();
+        for (var tup : t.getTuples()) rows.add(Arrays.toString(tup));
+        rows.sort(null);
+        return rows;
+    }
+
+}
@@ -0,0 +1,151 @@
+/*****************************************************************************************
+ * @file TestParallel.java
+ *
+ * @author Sequel To SQL
+ */
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*****************************************************************************************
+ * The TestParallel class tests that parallel select, project and hash join give the same
+ * results as sequential execution.
+ */
+public class TestParallel {
+
+    private Table movie;
+    private Table studio;
+    private ForkJoinPool pool;
+
+    /************************************************************************************
+     * Sets up tables large enough to be processed in parallel
+     */
+    @Before
+    public void setUp() {
+        movie = new Table("movie", "title year length genre studioName producerNo",
+                "String Integer Integer String String Integer", "title year");
+        studio = new Table("studio", "name address presNo", "String String Integer", "name");
+        for (int i = 0; i < 30000; i++) {
+            movie.insert(new Comparable[]{"title" + i, 1900 + i % 120, 90 + i % 60,
+                    (i % 3 == 0) ? "sciFi" : "drama", "studio" + (i % 500), i});
+        }
+        for (int i = 0; i < 400; i++) {
+            studio.insert(new Comparable[]{"studio" + i, "address" + i, i});
+        }
+        pool = new ForkJoinPool(4);
+    }
+
+    /************************************************************************************
+     * Restores sequential execution
+     */
+    @After
+    public void tearDown() {
+        Table.setParallelism(null, true);
+        pool.shutdown();
+    }
+
+    /************************************************************************************
+     * Tests ordered and unordered parallel execution against sequential execution
+     */
+    @Test
+    public void matchesSequential() {
+        var select = movie.select(t -> (Integer) t[1] < 1950);
+        var project = movie.project("genre studioName");
+        var join = movie.h_join("studioName", "name", studio);
+
+        Table.setParallelism(pool, true);
+        var pSelect = movie.select(t -> (Integer) t[1] < 1950);
+        var pProject = movie.project("genre studioName");
+        assertEquals(select.getTuples(), pSelect.getTuples());
+        assertEquals(project.getTuples().size(), pProject.getTuples().size());
+        for (int i = 0; i < project.getTuples().size(); i += 997) {
+            assertEquals(java.util.Arrays.asList(project.getTuples().get(i)),
+                    java.util.Arrays.asList(pProject.getTuples().get(i)));
+        }
+        var pJoin = movie.h_join("studioName", "name", studio);
+        assertEquals(join.getTuples().size(), pJoin.getTuples().size());
+        for (int i = 0; i < join.getTuples().size(); i++) {       // several matches per probe, same order
+            assertArrayEquals(join.getTuples().get(i), pJoin.getTuples().get(i));
+        }
+
+        Table.setParallelism(pool, false);
+        assertTrue(select.equalsIgnoreName(movie.select(t -> (Integer) t[1] < 1950)));
+        assertTrue(join.equalsIgnoreName(movie.h_join("studioName", "name", studio)));
+    }
+
+    /************************************************************************************
+     * Tests that a hash join on several columns matches on all of them whether it runs
+     * sequentially or in parallel
+     */
+    @Test
+    public void compositeKeyJoin() {
+        var release = new Table("release", "studio yr region", "String Integer String", "studio yr");
+        for (int i = 0; i < 400; i++) {
+            release.insert(new Comparable[]{"studio" + i, 1900 + i % 120, "region" + i % 7});
+        }
+        var expected = 0;
+        for (var m : movie.getTuples()) {
+            for (var r : release.getTuples()) if (m[4].equals(r[0]) && m[1].equals(r[1])) expected++;
+        }
+
+        var join = movie.h_join("studioName year", "studio yr", release);
+        assertEquals(expected, join.getTuples().size());
+        Table.setParallelism(pool, false);
+        var pJoin = movie.h_join("studioName year", "studio yr", release);
+        assertEquals(expected, pJoin.getTuples().size());
+        assertTrue(join.equalsIgnoreName(pJoin));
+    }
+
+    /************************************************************************************
+     * Tests keyed and range selects on a table built from a list (so indexed on first
+     * keyed access) from several threads while another thread inserts
+     */
+    @Test
+    public void concurrentKeyedReads() throws Exception {
+        for (var type : new Table.MapType[]{Table.MapType.TREE_MAP, Table.MapType.LINHASH_MAP,
+                Table.MapType.BPTREE_MAP}) {
+            var rows = new ArrayList<Comparable[]>();
+            for (int i = 0; i < 20000; i++) rows.add(new Comparable[]{i, "v" + i});
+            var kv = new Table("kv", new String[]{"k", "v"}, new Class[]{Integer.class, String.class},
+                    new String[]{"k"}, rows, type);
+
+            var error = new AtomicReference<Throwable>();
+            var threads = new ArrayList<Thread>();
+            for (int k = 0; k < 4; k++) {
+                var seed = k;
+                threads.add(new Thread(() -> {
+                    var rand = new Random(seed);
+                    try {
+                        for (int i = 0; i < 3000; i++) {
+                            var key = rand.nextInt(20000);
+                            if (kv.select(new KeyType(key)).getTuples().size() != 1)
+                                throw new AssertionError("key " + key + " not found");
+                            if (type != Table.MapType.LINHASH_MAP && i % 100 == 0 &&
+                                    kv.select(new KeyType(key), new KeyType(key + 9)).getTuples().size() < Math.min(10, 20000 - key))
+                                throw new AssertionError("range from " + key + " too short");
+                        }
+                    } catch (Throwable ex) {
+                        error.compareAndSet(null, ex);
+                    }
+                }));
+            }
+            threads.add(new Thread(() -> {
+                for (int i = 20000; i < 30000; i++) kv.insert(new Comparable[]{i, "v" + i});
+            }));
+            for (var t : threads) t.start();
+            for (var t : threads) t.join();
+            if (error.get() != null) throw new AssertionError(type + ": " + error.get(), error.get());
+            assertEquals(1, kv.select(new KeyType(29999)).getTuples().size());
+        }
+    }
+}
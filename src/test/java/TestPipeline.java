@@ -0,0 +1,81 @@
+/*****************************************************************************************
+ * @file TestPipeline.java
+ *
+ * @author Sequel To SQL
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*****************************************************************************************
+ * The TestPipeline class tests that pipelined operators agree with the table operators.
+ */
+public class TestPipeline {
+
+    private Table movie;
+    private Table cinema;
+    private Table studio;
+
+    /************************************************************************************
+     * Sets up all the tables before testings
+     */
+    @Before
+    public void setUp() {
+        movie = new Table("movie", "title year length genre studioName producerNo",
+                "String Integer Integer String String Integer", "title year");
+        cinema = new Table("cinema", "title year length genre studioName producerNo",
+                "String Integer Integer String String Integer", "title year");
+        studio = new Table("studio", "name address presNo", "String String Integer", "name");
+
+        var film0 = new Comparable[]{"Star_Wars", 1977, 124, "sciFi", "Fox", 12345};
+        var film1 = new Comparable[]{"Star_Wars_2", 1980, 124, "sciFi", "Fox", 12345};
+        var film2 = new Comparable[]{"Rocky", 1985, 200, "action", "Universal", 12125};
+        var film3 = new Comparable[]{"Rambo", 1978, 100, "action", "Universal", 32355};
+        var film4 = new Comparable[]{"Galaxy_Quest", 1999, 104, "comedy", "DreamWorks", 67890};
+        movie.insert(film0);
+        movie.insert(film1);
+        movie.insert(film2);
+        movie.insert(film3);
+        cinema.insert(film2);
+        cinema.insert(film3);
+        cinema.insert(film4);
+        studio.insert(new Comparable[]{"Fox", "Los_Angeles", 7777});
+        studio.insert(new Comparable[]{"Universal", "Universal_City", 8888});
+        studio.insert(new Comparable[]{"DreamWorks", "Universal_City", 9999});
+    }
+
+    /************************************************************************************
+     * Tests a select, project, join chain against the same chain of table operators
+     */
+    @Test
+    public void chain() {
+        var expected = movie.select(t -> (Integer) t[1] < 1985)
+                .project("title studioName")
+                .h_join("studioName", "name", studio);
+        var piped = movie.scan()
+                .select(Expr.col("year").lt(1985))
+                .project("title studioName")
+                .h_join("studioName", "name", studio.scan())
+                .toTable();
+
+        assertTrue(expected.equalsIgnoreName(piped));
+        assertEquals(3, piped.getTuples().size());
+    }
+
+    /************************************************************************************
+     * Tests the set operators and that limit stops early
+     */
+    @Test
+    public void setOperatorsAndLimit() {
+        assertTrue(movie.union(cinema).equalsIgnoreName(movie.scan().union(cinema.scan()).toTable()));
+        assertTrue(movie.minus(cinema).equalsIgnoreName(movie.scan().minus(cinema.scan()).toTable()));
+
+        var pulled = new int[1];
+        var limited = movie.scan().select(t -> ++pulled[0] > 0).limit(2).toTable();
+        assertEquals(2, limited.getTuples().size());
+        assertEquals(2, pulled[0]);
+    }
+}
@@ -8,6 +8,12 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /*****************************************************************************************
@@ -107,6 +113,49 @@ public class TestProjectSelect {
         assertTrue(projectNewKey.equalsIgnoreName(movieproject));
     }
 
+    /************************************************************************************
+     * Tests projection with duplicate elimination, by hashing (input order) and by
+     * sorting (sorted order)
+     */
+    @Test
+    public void projectDistinct(){
+        assertEquals(4, movie.project("genre studioName").getTuples().size());
+
+        var hash = movie.project("genre studioName", Table.Distinct.HASH);
+        var sort = movie.project("genre studioName", Table.Distinct.SORT);
+        assertEquals(2, hash.getTuples().size());
+        assertArrayEquals(new Comparable[]{"sciFi", "Fox"}, hash.getTuples().get(0));
+        assertArrayEquals(new Comparable[]{"action", "Universal"}, sort.getTuples().get(0));
+        assertTrue(hash.equalsIgnoreName(sort));
+
+        assertTrue(projectOldKey.equalsIgnoreName(movie.project("title year genre", Table.Distinct.HASH)));
+    }
+
+    /************************************************************************************
+     * Tests projection with duplicate elimination when the distinct tuples do not fit
+     * in the memory budget
+     */
+    @Test
+    public void projectDistinctSpill(){
+        var big = new MovieGen(9, 5000).movie();
+        var expected = new HashSet<List<Comparable>>();
+        for (var t : big.getTuples()) expected.add(List.of(t[big.col("genre")], t[big.col("studioName")]));
+
+        var budget = Table.getMemoryBudget();
+        var runs = TestJoin.runFiles();
+        Table.setMemoryBudget(20);
+        try {
+            for (var d : Table.Distinct.values()) {
+                var rows = big.project("genre studioName", d).getTuples();
+                assertEquals(expected.size(), rows.size());
+                for (var t : rows) assertTrue(expected.contains(Arrays.asList(t)));
+            } // for
+            assertEquals(runs, TestJoin.runFiles());
+        } finally {
+            Table.setMemoryBudget(budget);
+        }
+    }
+
     /************************************************************************************
      * Test the selection method with a key
      */
@@ -116,4 +165,69 @@ public class TestProjectSelect {
 
         assertTrue(select.equalsIgnoreName(movieStarSelect));
     }
-}
\ No newline at end of file
+
+    /************************************************************************************
+     * Test the selection method with a composite key, on both a base table and a
+     * derived table (whose index is built on first use)
+     */
+    @Test
+    public void selectCompositeKey(){
+        var starWars = movie.select(new KeyType("Star_Wars", 1977));
+        assertEquals(1, starWars.getTuples().size());
+        assertEquals(124, starWars.getTuples().get(0)[2]);
+
+        assertTrue(movie.select(new KeyType("Star_Wars", 1980)).getTuples().isEmpty());
+
+        var derived = movie.select(t -> t[movie.col("genre")].equals("action"));
+        var rocky = derived.select(new KeyType("Rocky", 1985));
+        assertEquals(1, rocky.getTuples().size());
+        assertTrue(derived.select(new KeyType("Star_Wars", 1977)).getTuples().isEmpty());
+    }
+
+    /************************************************************************************
+     * Test the selection method with an expression, comparing against the equivalent
+     * lambda on row and columnar tables (key lookup, key range, column-wise and residual
+     * conditions)
+     */
+    @Test
+    public void selectExpr(){
+        var columnar = new Table("movie", "title year length genre studioName producerNo",
+                "String Integer Integer String String Integer", "title year",
+                Table.MapType.TREE_MAP, Table.StorageType.COLUMNAR);
+        movie.getTuples().forEach(columnar::insert);
+
+        var key = Expr.col("title").eq("Rocky").and(Expr.col("year").eq(1985));
+        var mixed = Expr.col("year").lt(1980).and(Expr.col("genre").eq("sciFi"));
+        var residual = Expr.col("genre").eq("action").and(Expr.col("length").gt(150).or(Expr.col("year").eq(1978).not()));
+
+        for (var table : new Table[]{movie, columnar}) {
+            assertTrue(table.select(t -> t[0].equals("Rocky") && t[1].equals(1985)).equalsIgnoreName(table.select(key)));
+            assertEquals(1, table.select(key).getTuples().size());
+            assertTrue(table.select(t -> (Integer) t[1] < 1980 && t[3].equals("sciFi")).equalsIgnoreName(table.select(mixed)));
+            assertEquals(1, table.select(mixed).getTuples().size());
+            assertTrue(table.select(t -> t[3].equals("action") && ((Integer) t[2] > 150 || !t[1].equals(1978)))
+                    .equalsIgnoreName(table.select(residual)));
+        }
+
+        var byName = movieStar.select(Expr.col("name").ge("H").and(Expr.col("name").lt("N")));
+        assertEquals(2, byName.getTuples().size());
+        assertEquals("Harrison_Ford", byName.getTuples().get(0)[0]);
+    }
+
+    /************************************************************************************
+     * Test the selection method with several, or contradictory, bounds on a key
+     */
+    @Test
+    public void selectExprBounds(){
+        for (var type : new Table.MapType[]{Table.MapType.TREE_MAP, Table.MapType.BPTREE_MAP}) {
+            var t = new Table("ids", "id", "Integer", "id", type);
+            for (int i = 0; i < 100; i++) t.insert(new Comparable[]{i});
+            var id = Expr.col("id");
+
+            assertEquals(4, t.select(id.gt(40).and(id.gt(5)).and(id.lt(45))).getTuples().size());
+            assertEquals(4, t.select(id.lt(90).and(id.le(44)).and(id.ge(41))).getTuples().size());
+            assertTrue(t.select(id.ge(30).and(id.le(10))).getTuples().isEmpty());
+            assertTrue(t.select(id.eq(3).and(id.eq(4))).getTuples().isEmpty());
+        }
+    }
+}
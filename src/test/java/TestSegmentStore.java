@@ -0,0 +1,117 @@
+/*****************************************************************************************
+ * @file TestSegmentStore.java
+ *
+ * @author Sequel To SQL
+ */
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*****************************************************************************************
+ * The TestSegmentStore class tests incremental saves into segment files, compaction of
+ * small segments, and loading a table from its segments.
+ */
+public class TestSegmentStore {
+
+    /************************************************************************************
+     * Tests that each incremental save writes only the new tuples and that compaction
+     * merges the small segments without changing the table
+     */
+    @Test
+    public void incrementalSaveAndCompact() throws Exception {
+        var movie = new Table("segMovie", "title year", "String Integer", "title year");
+        for (int batch = 0; batch < 6; batch++) {
+            for (int i = 0; i < 100; i++) movie.insert(new Comparable[]{"title" + batch + "_" + i, 1950 + i});
+            movie.saveIncremental();
+            movie.compact();
+        }
+        movie.saveIncremental();                                 // nothing new: no segment
+
+        var manifest = Files.readAllLines(Paths.get("store/segMovie.manifest"));
+        var segments = manifest.size() - 1;
+        assertTrue(segments < 6);
+        for (var line : manifest.subList(1, manifest.size())) {
+            assertTrue(Files.exists(Paths.get("store", line.split(" ")[0])));
+        }
+        assertFalse(Files.exists(Paths.get("store/segMovie.seg0.dbf")));   // merged away
+
+        var loaded = Table.load("segMovie");
+        assertEquals(600, loaded.getTuples().size());
+        assertTrue(movie.equalsIgnoreName(loaded));
+        assertEquals(1, loaded.select(new KeyType("title5_99", 2049)).getTuples().size());
+
+        // appending after a load continues the same store
+        loaded.insert(new Comparable[]{"new", 2020});
+        loaded.saveIncremental();
+        loaded.compact();
+        assertTrue(Files.readAllLines(Paths.get("store/segMovie.manifest")).size() - 1 <= segments + 1);
+        assertEquals(601, Table.load("segMovie").getTuples().size());
+    }
+
+    /************************************************************************************
+     * Tests that a full save replaces the segments
+     */
+    @Test
+    public void fullSaveReplacesSegments() {
+        var star = new Table("segStar", "name", "String", "name");
+        star.saveIncremental();
+        assertEquals(0, Table.load("segStar").getTuples().size());
+        star.insert(new Comparable[]{"Carrie_Fisher"});
+        star.save();
+        assertFalse(Files.exists(Paths.get("store/segStar.manifest")));
+        assertEquals(1, Table.load("segStar").getTuples().size());
+    }
+
+    /************************************************************************************
+     * Tests that a full save made while small segments are being merged in the
+     * background leaves no manifest behind
+     */
+    @Test
+    public void fullSaveDuringCompaction() {
+        for (int round = 0; round < 5; round++) {
+            var movie = new Table("segRace", "title year", "String Integer", "title year");
+            for (int batch = 0; batch < 8; batch++) {
+                for (int i = 0; i < 2000; i++) movie.insert(new Comparable[]{"title" + batch + "_" + i, 1950 + i % 70});
+                movie.saveIncremental();
+            }
+            movie.save();
+            assertFalse(Files.exists(Paths.get("store/segRace.manifest")));
+            assertEquals(16000, Table.load("segRace").getTuples().size());
+        }
+    }
+
+    /************************************************************************************
+     * Tests that loading and compacting a PAGED table reads its segments in place,
+     * making a heap file only for the loaded table
+     */
+    @Test
+    public void pagedSegmentsCopiedOnce() throws Exception {
+        var movie = new Table("segPaged", "title year", "String Integer", "title year",
+                Table.MapType.TREE_MAP, Table.StorageType.PAGED);
+        for (int batch = 0; batch < 5; batch++) {
+            for (int i = 0; i < 50; i++) movie.insert(new Comparable[]{"title" + batch + "_" + i, 1950 + i});
+            movie.saveIncremental();
+        }
+        var before = heapFiles("segPaged");
+        var loaded = Table.load("segPaged");
+        assertEquals(Table.StorageType.PAGED, loaded.getStorageType());
+        assertTrue(movie.equalsIgnoreName(loaded));
+        assertEquals(before + 1, heapFiles("segPaged"));
+
+        loaded.compact();
+        assertEquals(before + 1, heapFiles("segPaged"));
+        assertEquals(250, Table.load("segPaged").getTuples().size());
+    }
+
+    private static int heapFiles(String name) {
+        var files = new File("store").list((dir, f) -> f.startsWith(name + "_") && f.endsWith(".pages"));
+        return files == null ? 0 : files.length;
+    }
+}
@@ -0,0 +1,125 @@
+/*****************************************************************************************
+ * @file TestStats.java
+ *
+ * @author Sequel To SQL
+ */
+
+import org.junit.Test;
+
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/*****************************************************************************************
+ * The TestStats class tests the column statistics tables keep as tuples are inserted.
+ */
+public class TestStats {
+
+    /************************************************************************************
+     * Tests counts, min/max and the distinct estimate against exact values
+     */
+    @Test
+    public void columns() {
+        var t = new Table("statsT", "id grp note", "Integer String String", "id");
+        for (var i = 0; i < 50000; i++) {
+            t.insert(new Comparable[]{i, "g" + (i * 7919 % 3000), "n" + i % 500});
+        }
+        var stats = t.getStats();
+        assertEquals(50000, stats.rows());
+
+        var id = t.getStats("id");
+        assertEquals(50000, id.count());
+        assertEquals(0, id.nulls());
+        assertEquals(0, id.min());
+        assertEquals(49999, id.max());
+        assertEquals(50000, id.distinct(), 50000 * 0.05);
+
+        var grp = t.getStats("grp");
+        assertEquals(3000, grp.distinct(), 3000 * 0.05);
+
+        var note = t.getStats("note");
+        assertEquals(500, note.distinct(), 500 * 0.05);
+        assertEquals(1.0 / 500, note.selectivity(Expr.Op.EQ, "n1"), 1.0 / 500);
+        assertEquals(0.0, note.selectivity(Expr.Op.EQ, "zzz"), 0.0);
+    }
+
+    /************************************************************************************
+     * Tests that null values are counted apart and scale the selectivity estimates
+     */
+    @Test
+    public void nulls() {
+        var stats = new TableStats(1);
+        for (var i = 0; i < 1000; i++) stats.add(new Comparable[]{(i % 4 == 0) ? null : i % 100});
+        var c = stats.column(0);
+        assertEquals(250, c.nulls());
+        assertEquals(750, c.count());
+        assertEquals(1, c.min());
+        assertEquals(99, c.max());
+        assertEquals(0.75, c.selectivity(Expr.Op.LE, 99), 0.0);
+        assertEquals(0.75, c.selectivity(Expr.Op.GE, 1), 0.0);
+    }
+
+    /************************************************************************************
+     * Tests that the histogram estimates range selectivity on generated movie years
+     */
+    @Test
+    public void histogram() {
+        var movie = new MovieGen(3, 20000).movie();
+        var year = movie.getStats("year");
+        var bounds = year.histogram();
+        assertTrue(bounds.length > 1);
+        for (var k = 1; k < bounds.length; k++) assertTrue(((Integer) bounds[k - 1]).compareTo((Integer) bounds[k]) <= 0);
+
+        for (var y : new Integer[]{1940, 1960, 1990, 2010}) {
+            var exact = 0;
+            for (var tup : movie.getTuples()) if ((Integer) tup[1] < y) exact++;
+            assertEquals((double) exact / 20000, year.selectivity(Expr.Op.LT, y), 0.06);
+        }
+        assertEquals(0.0, year.selectivity(Expr.Op.LT, (Integer) year.min()), 0.0);
+        assertEquals(1.0, year.selectivity(Expr.Op.LE, (Integer) year.max()), 0.0);
+    }
+
+    /************************************************************************************
+     * Tests that statistics are saved with the table and kept up to date after loading
+     */
+    @Test
+    public void persistence() {
+        var t = new Table("statsSaved", "id name", "Integer String", "id");
+        for (var i = 0; i < 3000; i++) t.insert(new Comparable[]{i, "s" + i % 700});
+        t.save();
+
+        var loaded = Table.load("statsSaved");
+        var name = loaded.getStats("name");
+        assertNotNull(name);
+        assertEquals(3000, name.count());
+        assertEquals(t.getStats("name").distinct(), name.distinct());
+        assertEquals("s0", name.min());
+
+        loaded.insert(new Comparable[]{3000, "a"});
+        assertEquals(3001, loaded.getStats().rows());
+        assertEquals("a", loaded.getStats("name").min());
+    }
+
+    /************************************************************************************
+     * Tests that tuples replayed from the log are in the statistics after later inserts
+     */
+    @Test
+    public void replayedInserts() {
+        var t = new Table("statsWal", "id name", "Integer String", "id");
+        for (var i = 0; i < 100; i++) t.insert(new Comparable[]{i, "m" + i});
+        t.save();
+        t.enableLog();
+        t.insert(new Comparable[]{100, "a0"});
+        t.closeLog();
+
+        var loaded = Table.load("statsWal");
+        loaded.insert(new Comparable[]{101, "z"});
+        var name = loaded.getStats("name");
+        assertEquals(102, name.count());
+        assertEquals("a0", name.min());
+        assertEquals("z", name.max());
+        loaded.closeLog();
+    }
+}
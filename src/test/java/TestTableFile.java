@@ -0,0 +1,84 @@
+/*****************************************************************************************
+ * @file TestTableFile.java
+ *
+ * @author Sequel To SQL
+ */
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/*****************************************************************************************
+ * The TestTableFile class tests saving and loading tables in the paged binary format.
+ */
+public class TestTableFile {
+
+    /************************************************************************************
+     * Tests that a table spanning many pages comes back with the same schema and tuples,
+     * and that the loaded table can be queried and inserted into
+     */
+    @Test
+    public void roundTrip() {
+        var movie = new Table("fileMovie", "title year length genre rating score code",
+                "String Integer Long Character Double Float Short", "title year", Table.MapType.BPTREE_MAP);
+        for (int i = 0; i < 5000; i++) {
+            movie.insert(new Comparable[]{"title_" + i + "_é", 1900 + i % 100, (long) i << 33,
+                    (char) ('A' + i % 26), i / 3.0, i / 7.0f, (short) (i % 300)});
+        }
+        movie.save();
+
+        var loaded = Table.load("fileMovie");
+        assertEquals("fileMovie", loaded.getName());
+        assertTrue(Arrays.equals(movie.getAttribute(), loaded.getAttribute()));
+        assertTrue(Arrays.equals(movie.getDomain(), loaded.getDomain()));
+        assertEquals(Table.MapType.BPTREE_MAP, loaded.getMapType());
+        assertEquals(5000, loaded.getTuples().size());
+        for (int i = 0; i < 5000; i += 7) {
+            assertEquals(Arrays.asList(movie.getTuples().get(i)), Arrays.asList(loaded.getTuples().get(i)));
+        }
+
+        assertEquals(1, loaded.select(new KeyType("title_42_é", 1942)).getTuples().size());
+
+        // the index of the mapped table holds positions, so tuples are decoded per read
+        var first = loaded.select(new KeyType("title_42_é", 1942)).getTuples().get(0);
+        assertNotSame(first, loaded.select(new KeyType("title_42_é", 1942)).getTuples().get(0));
+        loaded.insert(new Comparable[]{"new", 2020, 1L, 'N', 1.0, 1.0f, (short) 1});
+        assertEquals(5001, loaded.getTuples().size());
+        assertEquals(1, loaded.select(new KeyType("new", 2020)).getTuples().size());
+    }
+
+    /************************************************************************************
+     * Tests empty and columnar tables
+     */
+    @Test
+    public void emptyAndColumnar() {
+        var empty = new Table("fileEmpty", "name", "String", "name");
+        empty.save();
+        assertTrue(Table.load("fileEmpty").getTuples().isEmpty());
+
+        var star = new Table("fileStar", "name address gender birthdate",
+                "String String Character String", "name", Table.MapType.TREE_MAP, Table.StorageType.COLUMNAR);
+        star.insert(new Comparable[]{"Carrie_Fisher", "Hollywood", 'F', "9/9/99"});
+        star.insert(new Comparable[]{"Mark_Hamill", "Brentwood", 'M', "8/8/88"});
+        star.save();
+        var loaded = Table.load("fileStar");
+        assertEquals(Table.StorageType.COLUMNAR, loaded.getStorageType());
+        assertTrue(star.equalsIgnoreName(loaded));
+    }
+
+    /************************************************************************************
+     * Tests that the measured size of a tuple is the length of its encoding
+     */
+    @Test
+    public void encodedSize() {
+        var codec = new RowCodec(new Class[]{String.class, Integer.class, Character.class, Double.class});
+        for (var s : new String[]{"", "plain", "é€", "\ud83c\udfac film", "lone \ud83c", "\udfac"}) {
+            var t = new Comparable[]{s, 1, 'x', 2.0};
+            assertEquals(s, codec.encode(t).remaining(), codec.size(t));
+        }
+    }
+}
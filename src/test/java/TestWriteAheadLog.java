@@ -0,0 +1,147 @@
+/*****************************************************************************************
+ * @file TestWriteAheadLog.java
+ *
+ * @author Sequel To SQL
+ */
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/*****************************************************************************************
+ * The TestWriteAheadLog class tests that logged inserts survive without a save, that
+ * checkpoints do not cause tuples to be replayed twice, and that a torn log record is
+ * ignored.
+ */
+public class TestWriteAheadLog {
+
+    /************************************************************************************
+     * Restores the default checkpoint interval
+     */
+    @After
+    public void tearDown() {
+        Table.setCheckpointInterval(100_000);
+    }
+
+    /************************************************************************************
+     * Tests that inserts from several threads are all recovered after a "crash"
+     */
+    @Test
+    public void concurrentInsertsRecovered() throws Exception {
+        var movie = new Table("walMovie", "title year", "String Integer", "title year");
+        movie.insert(new Comparable[]{"Star_Wars", 1977});
+        movie.enableLog();
+
+        var threads = new ArrayList<Thread>();
+        for (int k = 0; k < 4; k++) {
+            var thread = k;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 500; i++) movie.insert(new Comparable[]{"title" + thread + "_" + i, 2000 + i});
+            }));
+        }
+        for (var t : threads) t.start();
+        for (var t : threads) t.join();
+
+        // never saved after enableLog: every insert must come from the log
+        var recovered = Table.load("walMovie");
+        assertEquals(2001, recovered.getTuples().size());
+        var titles = new HashSet<Comparable>();
+        for (var t : recovered.getTuples()) titles.add(t[0]);
+        assertEquals(2001, titles.size());
+        assertEquals(1, recovered.select(new KeyType("title3_499", 2499)).getTuples().size());
+        recovered.closeLog();
+        movie.closeLog();
+    }
+
+    /************************************************************************************
+     * Tests recovery across checkpoints and with a torn record at the end of the log
+     */
+    @Test
+    public void checkpointAndTornTail() throws Exception {
+        Table.setCheckpointInterval(300);
+        var star = new Table("walStar", "name age", "String Integer", "name");
+        star.enableLog();
+        for (int i = 0; i < 1000; i++) star.insert(new Comparable[]{"star" + i, i});
+        star.closeLog();
+
+        try (var ch = FileChannel.open(Paths.get("store/walStar.wal"), StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            ch.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, 1, 2, 3}));
+        }
+
+        var recovered = Table.load("walStar");
+        assertEquals(1000, recovered.getTuples().size());
+        recovered.insert(new Comparable[]{"star1000", 1000});
+        recovered.closeLog();
+
+        assertEquals(1001, Table.load("walStar").getTuples().size());
+    }
+
+    /************************************************************************************
+     * Tests that a checkpoint whose save fails keeps the logged inserts in the log
+     */
+    @Test
+    public void failedCheckpointKeepsLog() throws Exception {
+        var star = new Table("walKeep", "name age", "String Integer", "name");
+        star.insert(new Comparable[]{"star0", 0});
+        star.enableLog();
+        for (int i = 1; i <= 50; i++) star.insert(new Comparable[]{"star" + i, i});
+
+        // a directory where the next segment's temporary file goes makes the save fail
+        var blocker = Paths.get("store/walKeep.seg1.dbf.tmp");
+        Files.createDirectories(blocker);
+        try {
+            var logSize = Files.size(Paths.get("store/walKeep.wal"));
+            star.checkpoint();
+            assertEquals(logSize, Files.size(Paths.get("store/walKeep.wal")));
+        } finally {
+            Files.delete(blocker);
+        }
+        star.closeLog();
+
+        var recovered = Table.load("walKeep");
+        assertEquals(51, recovered.getTuples().size());
+        assertTrue(recovered.select(new KeyType("star50")).getTuples().size() == 1);
+
+        // once the save succeeds the checkpoint empties the log
+        recovered.checkpoint();
+        recovered.closeLog();
+        assertEquals(51, Table.load("walKeep").getTuples().size());
+        assertTrue(Files.size(Paths.get("store/walKeep.wal")) < 100);
+    }
+
+    /************************************************************************************
+     * Tests that inserts whose log commit fails are kept, one by one or in batches, and
+     * that the failure is reported
+     */
+    @Test
+    public void failedCommitKeepsTuples() throws Exception {
+        var star = new Table("walFail", "name age", "String Integer", "name");
+        star.enableLog();
+        assertTrue(star.insert(new Comparable[]{"star0", 0}));
+        assertNull(star.getLogFailure());
+
+        var field = Table.class.getDeclaredField("wal");
+        field.setAccessible(true);
+        ((WriteAheadLog) field.get(star)).close();                   // later commits fail
+
+        assertTrue(star.insert(new Comparable[]{"star1", 1}));
+        assertNotNull(star.getLogFailure());
+        assertEquals(1, star.select(new KeyType("star1")).getTuples().size());
+        assertEquals(2, star.insertAll(List.of(new Comparable[]{"star2", 2}, new Comparable[]{"star3", 3})));
+        assertEquals(4, star.getTuples().size());
+    }
+}
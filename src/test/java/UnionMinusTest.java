@@ -1,6 +1,7 @@
 import java.lang.reflect.Field;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class UnionMinusTest {
 
@@ -44,7 +45,7 @@ public class UnionMinusTest {
         movieStar.insert(star1);
         movieStar.insert(star2);
 
-        //should return film0, film1, film2, film3, film2, film3, and film4
+        //should return film0, film1, film2, film3, and film4 (no duplicates)
         var union1 = movie.union(cinema);
         //incompatible
         var union2 = movie.union(movieStar);
@@ -55,8 +56,6 @@ public class UnionMinusTest {
         truth1.insert(film1);
         truth1.insert(film2);
         truth1.insert(film3);
-        truth1.insert(film2);
-        truth1.insert(film3);
         truth1.insert(film4);
         Field uniontuple = null;
         Field truthtuple = null;
@@ -78,6 +77,8 @@ public class UnionMinusTest {
         }
 
         assertEquals(uniontuple, truthtuple);
+        assertEquals(5, union1.getTuples().size());
+        assertTrue(truth1.equalsIgnoreName(union1));
         assertEquals(null, union2);
     }
 
@@ -150,6 +151,48 @@ public class UnionMinusTest {
         }
 
         assertEquals(minustuple, truthtuple);
+        assertEquals(2, minus1.getTuples().size());
+        assertTrue(truth1.equalsIgnoreName(minus1));
         assertEquals(null, minus2);
     }
+
+    /************************************************************************************
+     * Tests that intersect returns null on union incompatible tables and keeps exactly
+     * the tuples present in both tables, once each.
+     *
+     * @author Sequel To SQL
+     */
+    @org.junit.Test
+    public void intersect() {
+        var movie = new Table("movie", "title year length genre studioName producerNo",
+                "String Integer Integer String String Integer", "title year");
+
+        var cinema = new Table("cinema", "title year length genre studioName producerNo",
+                "String Integer Integer String String Integer", "title year");
+
+        var movieStar = new Table("movieStar", "name address gender birthdate",
+                "String String Character String", "name");
+
+        var film0 = new Comparable[]{"Star_Wars", 1977, 124, "sciFi", "Fox", 12345};
+        var film2 = new Comparable[]{"Rocky", 1985, 200, "action", "Universal", 12125};
+        var film3 = new Comparable[]{"Rambo", 1978, 100, "action", "Universal", 32355};
+        var film4 = new Comparable[]{"Galaxy_Quest", 1999, 104, "comedy", "DreamWorks", 67890};
+        movie.insert(film0);
+        movie.insert(film2);
+        movie.insert(film3);
+        cinema.insert(film2);
+        cinema.insert(film3);
+        cinema.insert(film4);
+        cinema.insert(film3.clone());
+
+        var truth1 = new Table("movie", "title year length genre studioName producerNo",
+                "String Integer Integer String String Integer", "title year");
+        truth1.insert(film2);
+        truth1.insert(film3);
+
+        var intersect1 = movie.intersect(cinema);
+        assertEquals(2, intersect1.getTuples().size());
+        assertTrue(truth1.equalsIgnoreName(intersect1));
+        assertEquals(null, movie.intersect(movieStar));
+    }
 }
\ No newline at end of file